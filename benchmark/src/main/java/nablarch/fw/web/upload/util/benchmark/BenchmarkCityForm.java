@@ -0,0 +1,85 @@
+package nablarch.fw.web.upload.util.benchmark;
+
+import java.util.Map;
+
+import nablarch.core.validation.ValidateFor;
+import nablarch.core.validation.ValidationContext;
+import nablarch.core.validation.ValidationUtil;
+import nablarch.core.validation.convertor.Digits;
+import nablarch.core.validation.validator.Length;
+import nablarch.core.validation.validator.Required;
+
+/**
+ * ベンチマークで使用するフォームクラス。
+ * <p/>
+ * 単体テストのTEST_CITIESテーブルに対応するフォームと同じ項目・バリデーションを持つ。
+ * 都市名の桁数はベンチマークのパラメータで変更するため、最大桁数のみ広げている。
+ */
+public class BenchmarkCityForm {
+
+    /** ID */
+    private Long id;
+
+    /** 都市名 */
+    private String city;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param params 入力値
+     */
+    public BenchmarkCityForm(Map<String, Object> params) {
+        this.id = (Long) params.get("id");
+        this.city = (String) params.get("city");
+    }
+
+    /**
+     * IDを取得する。
+     *
+     * @return ID
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * IDを設定する。
+     *
+     * @param id ID
+     */
+    @Required
+    @Digits(integer = 10, fraction = 0)
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * 都市名を取得する。
+     *
+     * @return 都市名
+     */
+    public String getCity() {
+        return city;
+    }
+
+    /**
+     * 都市名を設定する。
+     *
+     * @param city 都市名
+     */
+    @Required
+    @Length(min = 3, max = 1000)
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    /**
+     * アップロード時のバリデーションを行う。
+     *
+     * @param context バリデーションコンテキスト
+     */
+    @ValidateFor("upload")
+    public static void validateForUpload(ValidationContext<BenchmarkCityForm> context) {
+        ValidationUtil.validate(context, new String[] {"id", "city"});
+    }
+}
@@ -0,0 +1,218 @@
+package nablarch.fw.web.upload.util.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.db.connection.ConnectionFactory;
+import nablarch.core.db.connection.DbConnectionContext;
+import nablarch.core.db.connection.TransactionManagerConnection;
+import nablarch.core.db.support.DbAccessSupport;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.repository.di.DiContainer;
+import nablarch.core.repository.di.config.xml.XmlComponentDefinitionLoader;
+import nablarch.core.transaction.TransactionContext;
+import nablarch.core.util.FilePathSetting;
+import nablarch.fw.web.upload.PartInfo;
+import nablarch.fw.web.upload.util.BulkValidationResult;
+import nablarch.fw.web.upload.util.UploadHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * アップロードファイルのバリデーションおよび一括登録のベンチマーク。
+ * <p/>
+ * {@link UploadHelper#applyFormat(String, String)}から
+ * {@link nablarch.fw.web.upload.util.BulkValidator.ErrorHandlingBulkValidator#validateWith(Class, String)}、
+ * {@link BulkValidationResult#importWith(DbAccessSupport, String)}までを、インメモリのH2に対して計測する。
+ * <p/>
+ * 1回の呼び出しでファイル全体を処理するため、スループット（ファイル/秒）と
+ * 1ファイルあたりの処理時間の分布（パーセンタイル）を計測する。
+ * アロケーションレートは{@code -prof gc}を指定して計測する。
+ * 登録したレコードは呼び出しごとにロールバックするため、各呼び出しは空のテーブルに対して登録する。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class UploadBenchmark {
+
+    /** コンポーネント設定ファイル */
+    private static final String COMPONENT_FILE = "nablarch/fw/web/upload/util/benchmark/benchmark.xml";
+
+    /** フォーマット定義ファイルのベースパス論理名 */
+    private static final String FORMAT_BASE_PATH = "format";
+
+    /** 登録に使用するSQLID */
+    private static final String INSERT_SQL_ID = "INSERT_CITY";
+
+    /** レコード件数 */
+    @Param({"1000", "100000"})
+    public int recordCount;
+
+    /** ファイルタイプ */
+    @Param({UploadFileGenerator.FIXED, UploadFileGenerator.VARIABLE})
+    public String fileType;
+
+    /** 都市名の桁数（レコード幅） */
+    @Param({"9", "100"})
+    public int cityWidth;
+
+    /** 作業ディレクトリ */
+    private File workDir;
+
+    /**
+     * フォーマット定義ファイル名。
+     * フォーマット定義はファイルパスをキーにキャッシュされるため、パラメータごとに別のファイル名とする。
+     */
+    private String layoutFileName;
+
+    /** アップロードファイル */
+    private PartInfo part;
+
+    /** 登録に使用する{@link DbAccessSupport} */
+    private final DbAccessSupport dbAccessSupport = new DbAccessSupport(UploadBenchmark.class);
+
+    /** 呼び出しごとのコネクション */
+    private TransactionManagerConnection connection;
+
+    /**
+     * リポジトリ、テーブルおよびアップロードファイルを準備する。
+     *
+     * @throws IOException 入出力エラーが発生した場合
+     */
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        SystemRepository.load(new DiContainer(new XmlComponentDefinitionLoader(COMPONENT_FILE)));
+
+        workDir = createWorkDir();
+        layoutFileName = "BENCHMARK_" + fileType + "_" + cityWidth;
+        UploadFileGenerator.writeLayout(new File(workDir, layoutFileName + ".fmt"), fileType, cityWidth);
+        File data = new File(workDir, "upload.dat");
+        UploadFileGenerator.writeData(data, fileType, recordCount, cityWidth);
+        FilePathSetting.getInstance()
+                .addBasePathSetting(FORMAT_BASE_PATH, "file:" + workDir.getAbsolutePath())
+                .addFileExtensions(FORMAT_BASE_PATH, "fmt");
+
+        part = PartInfo.newInstance("upload");
+        part.setSavedFile(data);
+
+        setUpConnection();
+        try {
+            connection.prepareStatement("DROP TABLE BENCHMARK_CITIES IF EXISTS").executeUpdate();
+            connection.prepareStatement(
+                    "CREATE TABLE BENCHMARK_CITIES (ID BIGINT NOT NULL, CITY VARCHAR(" + cityWidth + ") NOT NULL,"
+                    + " PRIMARY KEY (ID, CITY))").executeUpdate();
+            connection.commit();
+        } finally {
+            tearDownConnection();
+        }
+    }
+
+    /**
+     * 作業ディレクトリを削除する。
+     */
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    /**
+     * 呼び出しごとにコネクションを取得する。
+     * <p/>
+     * 1回の呼び出しでファイル全体を処理するため、呼び出し単位の準備処理による誤差は無視できる。
+     */
+    @Setup(Level.Invocation)
+    public void setUpConnection() {
+        ConnectionFactory factory = SystemRepository.get("connectionFactory");
+        connection = factory.getConnection(TransactionContext.DEFAULT_TRANSACTION_CONTEXT_KEY);
+        DbConnectionContext.setConnection(connection);
+    }
+
+    /**
+     * 登録したレコードをロールバックし、コネクションを解放する。
+     */
+    @TearDown(Level.Invocation)
+    public void tearDownConnection() {
+        try {
+            connection.rollback();
+        } finally {
+            DbConnectionContext.removeConnection();
+            connection.terminate();
+        }
+    }
+
+    /**
+     * フォーマットの適用とバリデーションを計測する。
+     *
+     * @return バリデーション結果
+     */
+    @Benchmark
+    public BulkValidationResult<BenchmarkCityForm> validate() {
+        BulkValidationResult<BenchmarkCityForm> result = validateWith();
+        if (result.hasError()) {
+            throw new IllegalStateException("generated file has errors. " + result.getErrorMessages());
+        }
+        return result;
+    }
+
+    /**
+     * フォーマットの適用からバリデーション、一括登録までを計測する。
+     *
+     * @return 登録件数
+     */
+    @Benchmark
+    public int validateAndImport() {
+        int count = validateWith().importWith(dbAccessSupport, INSERT_SQL_ID);
+        if (count != recordCount) {
+            throw new IllegalStateException("unexpected import count. expected=[" + recordCount + "] actual=[" + count + "]");
+        }
+        return count;
+    }
+
+    /**
+     * アップロードファイルにフォーマットを適用し、バリデーションを行う。
+     *
+     * @return バリデーション結果
+     */
+    private BulkValidationResult<BenchmarkCityForm> validateWith() {
+        return new UploadHelper(part)
+                .applyFormat(FORMAT_BASE_PATH, layoutFileName)
+                .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                .validateWith(BenchmarkCityForm.class, "upload");
+    }
+
+    /**
+     * 作業ディレクトリを作成する。
+     *
+     * @return 作業ディレクトリ
+     * @throws IOException 作成に失敗した場合
+     */
+    private static File createWorkDir() throws IOException {
+        File dir = File.createTempFile("upload-benchmark", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("failed to create work directory. path=[" + dir + "]");
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,143 @@
+package nablarch.fw.web.upload.util.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * ベンチマーク用のフォーマット定義ファイルとアップロードファイルを生成するクラス。
+ * <p/>
+ * 単体テストのFMT001（IDと都市名の固定長ファイル）をモデルとし、
+ * 固定長・可変長（CSV）のファイルを任意の件数・桁数で生成する。
+ * 同じ引数であれば常に同じ内容のファイルを生成する。
+ */
+public final class UploadFileGenerator {
+
+    /** ファイルタイプ：固定長 */
+    public static final String FIXED = "Fixed";
+
+    /** ファイルタイプ：可変長 */
+    public static final String VARIABLE = "Variable";
+
+    /** 文字コード */
+    private static final String ENCODING = "ms932";
+
+    /** IDの桁数 */
+    private static final int ID_WIDTH = 10;
+
+    /** 都市名の最小桁数（フォームのバリデーションに合わせる） */
+    private static final int MIN_CITY_LENGTH = 3;
+
+    /** 都市名に使用する文字 */
+    private static final char[] CITY_CHARS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    /** 隠蔽コンストラクタ。 */
+    private UploadFileGenerator() {
+    }
+
+    /**
+     * フォーマット定義ファイルを生成する。
+     *
+     * @param file      出力先ファイル
+     * @param fileType  ファイルタイプ（{@link #FIXED}または{@link #VARIABLE}）
+     * @param cityWidth 都市名の桁数
+     * @throws IOException 入出力エラーが発生した場合
+     */
+    public static void writeLayout(File file, String fileType, int cityWidth) throws IOException {
+        Writer writer = open(file);
+        try {
+            writer.write("file-type:     \"" + fileType + "\"\n");
+            writer.write("text-encoding: \"" + ENCODING + "\"\n");
+            if (FIXED.equals(fileType)) {
+                writer.write("record-length: " + (ID_WIDTH + cityWidth) + "\n");
+                writer.write("[Default]\n");
+                writer.write("1    id      Z(" + ID_WIDTH + ")\n");
+                writer.write(ID_WIDTH + 1 + "    city    X(" + cityWidth + ")\n");
+            } else if (VARIABLE.equals(fileType)) {
+                writer.write("record-separator: \"\\n\"\n");
+                writer.write("field-separator:  \",\"\n");
+                writer.write("[Default]\n");
+                writer.write("1    id      X\n");
+                writer.write("2    city    X\n");
+            } else {
+                throw new IllegalArgumentException("unsupported file type. fileType=[" + fileType + "]");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * アップロードファイルを生成する。
+     * <p/>
+     * IDは1からの連番、都市名は3文字以上、都市名の桁数以下のランダムな英小文字とする。
+     *
+     * @param file        出力先ファイル
+     * @param fileType    ファイルタイプ（{@link #FIXED}または{@link #VARIABLE}）
+     * @param recordCount レコード件数
+     * @param cityWidth   都市名の桁数
+     * @throws IOException 入出力エラーが発生した場合
+     */
+    public static void writeData(File file, String fileType, int recordCount, int cityWidth) throws IOException {
+        if (cityWidth < MIN_CITY_LENGTH) {
+            throw new IllegalArgumentException("cityWidth must be " + MIN_CITY_LENGTH + " or more. cityWidth=[" + cityWidth + "]");
+        }
+        boolean fixed = FIXED.equals(fileType);
+        Random random = new Random(recordCount * 31L + cityWidth);
+        StringBuilder record = new StringBuilder(ID_WIDTH + cityWidth + 1);
+        Writer writer = open(file);
+        try {
+            for (int i = 1; i <= recordCount; i++) {
+                record.setLength(0);
+                String id = String.valueOf(i);
+                if (fixed) {
+                    pad(record, '0', ID_WIDTH - id.length());
+                }
+                record.append(id);
+                if (!fixed) {
+                    record.append(',');
+                }
+                int length = MIN_CITY_LENGTH + random.nextInt(cityWidth - MIN_CITY_LENGTH + 1);
+                for (int j = 0; j < length; j++) {
+                    record.append(CITY_CHARS[random.nextInt(CITY_CHARS.length)]);
+                }
+                if (fixed) {
+                    pad(record, ' ', cityWidth - length);
+                } else {
+                    record.append('\n');
+                }
+                writer.append(record);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 指定した文字を指定した数だけ追加する。
+     *
+     * @param sb    追加先
+     * @param c     追加する文字
+     * @param count 追加する数
+     */
+    private static void pad(StringBuilder sb, char c, int count) {
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+    }
+
+    /**
+     * 出力先ファイルを開く。
+     *
+     * @param file 出力先ファイル
+     * @return ライター
+     * @throws IOException 入出力エラーが発生した場合
+     */
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+    }
+}
@@ -0,0 +1,12 @@
+INSERT_CITY =
+INSERT INTO
+    BENCHMARK_CITIES
+    (
+    ID,
+    CITY
+    )
+VALUES
+    (
+    :id,
+    :city
+    )
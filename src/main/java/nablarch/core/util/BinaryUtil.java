@@ -1,11 +1,10 @@
 package nablarch.core.util;
 
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import nablarch.core.util.annotation.Published;
 
@@ -17,6 +16,12 @@ import nablarch.core.util.annotation.Published;
 @Published
 public final class BinaryUtil {
 
+    /** 確保可能な配列の最大長（VMによってはヘッダ分を確保できないため、余裕を持たせる） */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /** 長さの見込みが不明な場合の初期バッファサイズ */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
     /**
      * コンストラクタ。<br/>
      * 本クラスはインスタンス化できない。
@@ -211,18 +216,97 @@ public final class BinaryUtil {
      * @return バイト配列
      */
     public static byte[] toByteArray(InputStream inputStream) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        InputStream in = new BufferedInputStream(inputStream);
-        int b;
+        return toByteArray(inputStream, -1L);
+    }
+
+    /**
+     * 長さの見込みを指定して、入力ストリームをバイト配列に変換する。<br/>
+     * 引数であたえられた入力ストリームはクローズされる。
+     * <p/>
+     * 長さの見込みの配列へまとめて読み込むため、見込みどおりであれば配列の再確保もコピーも行わない。
+     * 見込みと異なる場合も、全て読み込む。
+     *
+     * @param inputStream    入力ストリーム
+     * @param expectedLength 長さの見込み（ファイルサイズなど。不明な場合は負数）
+     * @return バイト配列
+     */
+    public static byte[] toByteArray(InputStream inputStream, long expectedLength) {
+        return toByteArray(inputStream, expectedLength, MAX_ARRAY_SIZE);
+    }
+
+    /**
+     * 長さの見込みと最大バイト数を指定して、入力ストリームをバイト配列に変換する。<br/>
+     * 引数であたえられた入力ストリームはクローズされる。
+     * <p/>
+     * 長さの見込みの配列へまとめて読み込むため、見込みどおりであれば配列の再確保もコピーも行わない。
+     * 見込みと異なる場合も、最大バイト数までは全て読み込む。
+     *
+     * @param inputStream    入力ストリーム
+     * @param expectedLength 長さの見込み（ファイルサイズなど。不明な場合は負数）
+     * @param maxSize        読み込みを許容する最大バイト数
+     * @return バイト配列
+     * @throws IllegalArgumentException 最大バイト数が負数の場合
+     * @throws IllegalStateException    長さの見込み、または読み込んだバイト数が最大バイト数を超えた場合
+     */
+    public static byte[] toByteArray(InputStream inputStream, long expectedLength, int maxSize) {
         try {
-            while ((b = in.read()) != -1) {
-                out.write(b);
-            }
+            return readFully(inputStream, expectedLength, maxSize);
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
-            FileUtil.closeQuietly(in);
+            FileUtil.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * 入力ストリームの内容を全て読み込む。
+     *
+     * @param in             入力ストリーム
+     * @param expectedLength 長さの見込み（不明な場合は負数）
+     * @param maxSize        読み込みを許容する最大バイト数
+     * @return 読み込んだバイト列
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static byte[] readFully(InputStream in, long expectedLength, int maxSize) throws IOException {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be 0 or more. maxSize=[" + maxSize + "]");
+        }
+        if (expectedLength > maxSize) {
+            throw createSizeExceededException(expectedLength, maxSize);
         }
-        return out.toByteArray();
+        byte[] buffer = new byte[expectedLength >= 0 ? (int) expectedLength : Math.min(DEFAULT_BUFFER_SIZE, maxSize)];
+        int count = 0;
+        while (true) {
+            if (count == buffer.length) {
+                // 見込みどおりであれば、ここで終端に達する
+                int b = in.read();
+                if (b < 0) {
+                    return buffer;
+                }
+                if (count >= maxSize) {
+                    throw createSizeExceededException(count + 1L, maxSize);
+                }
+                buffer = Arrays.copyOf(buffer,
+                        (int) Math.min(Math.max(buffer.length * 2L, DEFAULT_BUFFER_SIZE), maxSize));
+                buffer[count++] = (byte) b;
+                continue;
+            }
+            int read = in.read(buffer, count, buffer.length - count);
+            if (read < 0) {
+                return Arrays.copyOf(buffer, count);
+            }
+            count += read;
+        }
+    }
+
+    /**
+     * 最大バイト数を超えた場合に送出する例外を生成する。
+     *
+     * @param size    バイト数
+     * @param maxSize 最大バイト数
+     * @return 例外
+     */
+    private static IllegalStateException createSizeExceededException(long size, int maxSize) {
+        return new IllegalStateException("size exceeds the limit. size=[" + size + "] maxSize=[" + maxSize + "]");
     }
 }
@@ -6,6 +6,7 @@ import nablarch.core.message.ApplicationException;
 import nablarch.core.message.Message;
 import nablarch.core.message.MessageLevel;
 import nablarch.core.message.MessageUtil;
+import nablarch.core.message.StringResource;
 import nablarch.core.validation.ValidationContext;
 import nablarch.core.validation.ValidationUtil;
 import nablarch.fw.web.upload.util.BulkValidator.ErrorHandlingBulkValidator;
@@ -30,6 +31,9 @@ public class BasicValidatingStrategy<FORM> implements ValidatingStrategy<FORM> {
     /** エラー発生時のメッセージIDを持つクラス */
     private ErrorHandlingBulkValidator msgIds;
 
+    /** バリデーションエラー時のメッセージの文字列リソース（取得前は{@code null}） */
+    private volatile StringResource validationErrorResource;
+
     /**
      * コンストラクタ。
      *
@@ -58,22 +62,37 @@ public class BasicValidatingStrategy<FORM> implements ValidatingStrategy<FORM> {
      * {@inheritDoc}
      * 本実装では、発生したバリデーションエラーメッセージを、
      * コンストラクタで指定されたメッセージで置き換える。
+     * メッセージのパラメータには、行番号と発生したバリデーションエラーメッセージの文言がこの順に設定される。
+     * <p/>
+     * 発生したバリデーションエラーメッセージは、置き換えたメッセージをフォーマットする時点でフォーマットする。
      */
     public List<Message> handleInvalidRecord(
             DataRecord errorRecord, ValidationContext<FORM> context) {
 
+        StringResource resource = getValidationErrorResource();
         List<Message> result = new ArrayList<Message>(context.getMessages().size());
         for (Message e : context.getMessages()) {
-            Message edited = MessageUtil.createMessage(
-                    MessageLevel.ERROR,
-                    msgIds.msgIdOnValidationError,
-                    errorRecord.getRecordNumber(),
-                    e.formatMessage());
-            result.add(edited);
+            result.add(new RecordErrorMessage(MessageLevel.ERROR, resource, errorRecord.getRecordNumber(), e));
         }
         return result;
     }
 
+    /**
+     * バリデーションエラー時のメッセージの文字列リソースを取得する。
+     * <p/>
+     * 文字列リソースは最初のバリデーションエラー発生時に1度だけ取得する。
+     *
+     * @return 文字列リソース
+     */
+    private StringResource getValidationErrorResource() {
+        StringResource resource = validationErrorResource;
+        if (resource == null) {
+            resource = MessageUtil.getStringResource(msgIds.msgIdOnValidationError);
+            validationErrorResource = resource;
+        }
+        return resource;
+    }
+
     /**
      * {@inheritDoc}
      * 本実装では、発生した形式エラーを、
@@ -0,0 +1,306 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+
+import nablarch.core.db.DbAccessException;
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.connection.TransactionManagerConnection;
+import nablarch.core.db.statement.ParameterizedSqlPStatement;
+
+/**
+ * 登録ロジックを用いて、バリデーション済みオブジェクトを一括実行数ごとにバッチ登録するクラス。
+ * <p/>
+ * プリペアドステートメントは最初のオブジェクトが追加された時点で作成し、
+ * 以降のバッチ登録でも同じステートメントを使用する。
+ * <p/>
+ * ロールバック可能として生成した場合、セーブポイントは{@link #finish()}または{@link #rollback()}で解放する。
+ *
+ * @param <FORM> 登録に使用するフォームクラスの型
+ */
+class BatchInserter<FORM> {
+
+    /** 登録ロジック */
+    private final InsertionStrategy<FORM> strategy;
+
+    /** 一括実行数の決定ロジック */
+    private final BatchSizeController batchSizeController;
+
+    /** 登録したレコードをロールバック可能とするかどうか */
+    private final boolean rollbackSupported;
+
+    /** プリペアドステートメント */
+    private ParameterizedSqlPStatement statement;
+
+    /** ロールバック時に使用するセーブポイント */
+    private Savepoint savepoint;
+
+    /** バッチ登録待ちの件数 */
+    private int pending = 0;
+
+    /** バッチ実行済みの件数 */
+    private int executed = 0;
+
+    /** バッチ実行した回数 */
+    private int batches = 0;
+
+    /** アップロード処理の計測結果（計測しない場合は{@code null}） */
+    private UploadMetrics metrics;
+
+    /** 進捗（記録しない場合は{@code null}） */
+    private UploadProgress progress;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param strategy  登録ロジック
+     * @param batchSize INSERT時の一括実行数
+     */
+    BatchInserter(InsertionStrategy<FORM> strategy, int batchSize) {
+        this(strategy, batchSize, false);
+    }
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * {@code rollbackSupported}に{@code true}を指定した場合、
+     * 最初のバッチ実行前にセーブポイントを設定し、{@link #rollback()}で本クラスが登録したレコードのみを取り消せるようにする。
+     *
+     * @param strategy          登録ロジック
+     * @param batchSize         INSERT時の一括実行数
+     * @param rollbackSupported 登録したレコードをロールバック可能とする場合、{@code true}
+     */
+    BatchInserter(InsertionStrategy<FORM> strategy, int batchSize, boolean rollbackSupported) {
+        this(strategy, createController(batchSize), rollbackSupported);
+    }
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * 一括実行数は、指定された決定ロジックに従いバッチ実行ごとに決定する。
+     *
+     * @param strategy            登録ロジック
+     * @param batchSizeController 一括実行数の決定ロジック
+     * @param rollbackSupported   登録したレコードをロールバック可能とする場合、{@code true}
+     */
+    BatchInserter(InsertionStrategy<FORM> strategy, BatchSizeController batchSizeController,
+                  boolean rollbackSupported) {
+        this.strategy = strategy;
+        this.batchSizeController = batchSizeController;
+        this.rollbackSupported = rollbackSupported;
+    }
+
+    /**
+     * 一括実行数を固定とする決定ロジックを生成する。
+     *
+     * @param batchSize 一括実行数
+     * @return 決定ロジック
+     */
+    private static BatchSizeController createController(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than 0. batchSize=[" + batchSize + "]");
+        }
+        return new BatchSizeController(batchSize);
+    }
+
+    /**
+     * アップロード処理の計測結果を保持するオブジェクトを設定する。
+     *
+     * @param metrics 計測結果を保持するオブジェクト（計測しない場合は{@code null}）
+     * @return 本インスタンス
+     */
+    BatchInserter<FORM> setMetrics(UploadMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * 進捗を設定する。
+     *
+     * @param progress 進捗（記録しない場合は{@code null}）
+     * @return 本インスタンス
+     */
+    BatchInserter<FORM> setProgress(UploadProgress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * バリデーション済みオブジェクトをバッチ登録する。
+     * <p/>
+     * バッチ登録待ちの件数が一括実行数に達した場合、バッチ実行する。
+     *
+     * @param form バリデーション済みオブジェクト
+     */
+    void add(FORM form) {
+        if (statement == null) {
+            statement = strategy.prepareStatement(form);
+            if (rollbackSupported) {
+                savepoint = setSavepoint(statement);
+            }
+        }
+        strategy.addBatch(statement, form);
+        pending++;
+        if (pending >= batchSizeController.getBatchSize()) {
+            flush();
+        }
+    }
+
+    /**
+     * バッチ登録待ちのオブジェクトをバッチ実行する。
+     * バッチ登録待ちのオブジェクトが存在しない場合は何もしない。
+     * <p/>
+     * 一括実行数を自動調整する場合、または計測する場合は、バッチ実行に要した時間を計測する。
+     */
+    void flush() {
+        if (pending == 0) {
+            return;
+        }
+        if (batchSizeController.isAdaptive() || metrics != null) {
+            long start = System.nanoTime();
+            statement.executeBatch();
+            long elapsed = System.nanoTime() - start;
+            batchSizeController.recordExecution(pending, elapsed);
+            if (metrics != null) {
+                metrics.record(UploadPhase.EXECUTE_BATCH, elapsed);
+            }
+        } else {
+            statement.executeBatch();
+        }
+        executed += pending;
+        batches++;
+        if (progress != null) {
+            progress.addImported(pending);
+        }
+        pending = 0;
+    }
+
+    /**
+     * バッチ登録待ちのオブジェクトをバッチ実行し、登録を完了する。
+     * <p/>
+     * バッチ実行に成功した場合、セーブポイントを解放する。
+     * 以降、{@link #rollback()}で登録したレコードを取り消すことはできない。
+     */
+    void finish() {
+        flush();
+        releaseSavepoint();
+    }
+
+    /**
+     * 本クラスで登録したレコードを取り消す。
+     * <p/>
+     * バッチ登録待ちのオブジェクトは破棄し、既にバッチ実行したレコードはセーブポイントまでロールバックする。
+     * ロールバックした後、セーブポイントを解放する。
+     *
+     * @throws IllegalStateException ロールバック可能として生成されていない場合
+     */
+    void rollback() {
+        if (!rollbackSupported) {
+            throw new IllegalStateException("rollback is not supported by this inserter.");
+        }
+        // バッチ実行の途中で失敗した場合も一部のレコードが登録されている可能性があるため、
+        // バッチ実行済みの件数に関わらずセーブポイントまでロールバックする
+        if (savepoint != null) {
+            Connection con = getJdbcConnection(statement);
+            try {
+                con.rollback(savepoint);
+            } catch (SQLException e) {
+                throw new DbAccessException("failed to rollback to savepoint.", e);
+            }
+        }
+        if (pending > 0) {
+            statement.clearBatch();
+            pending = 0;
+        }
+        if (progress != null) {
+            progress.addImported(-executed);
+        }
+        executed = 0;
+        releaseSavepoint();
+    }
+
+    /**
+     * 呼び出し元がトランザクションをコミットしたことを進捗に記録する。
+     */
+    void committed() {
+        if (progress != null) {
+            progress.committed();
+        }
+    }
+
+    /**
+     * バッチ実行済みの件数を取得する。
+     *
+     * @return バッチ実行済みの件数
+     */
+    int getExecutedCount() {
+        return executed;
+    }
+
+    /**
+     * バッチ実行した回数を取得する。
+     *
+     * @return バッチ実行した回数
+     */
+    int getExecutedBatchCount() {
+        return batches;
+    }
+
+    /**
+     * ステートメントが使用するコネクションにセーブポイントを設定する。
+     *
+     * @param stmt ステートメント
+     * @return セーブポイント
+     */
+    private static Savepoint setSavepoint(ParameterizedSqlPStatement stmt) {
+        Connection con = getJdbcConnection(stmt);
+        try {
+            return con.setSavepoint();
+        } catch (SQLException e) {
+            throw new DbAccessException("failed to set savepoint.", e);
+        }
+    }
+
+    /**
+     * セーブポイントを解放する。
+     * <p/>
+     * セーブポイントが設定されていない場合は何もしない。
+     * JDBCドライバがセーブポイントの解放をサポートしていない場合は、
+     * トランザクションの終了時に解放されるため何もしない。
+     */
+    private void releaseSavepoint() {
+        if (savepoint == null) {
+            return;
+        }
+        Connection con = getJdbcConnection(statement);
+        try {
+            con.releaseSavepoint(savepoint);
+        } catch (SQLFeatureNotSupportedException ignored) {
+            // トランザクションの終了時に解放される
+        } catch (SQLException e) {
+            throw new DbAccessException("failed to release savepoint.", e);
+        }
+        savepoint = null;
+    }
+
+    /**
+     * ステートメントが使用するJDBCコネクションを取得する。
+     *
+     * @param stmt ステートメント
+     * @return JDBCコネクション
+     * @throws IllegalStateException ステートメントのコネクションが{@link TransactionManagerConnection}でない場合
+     */
+    private static Connection getJdbcConnection(ParameterizedSqlPStatement stmt) {
+        AppDbConnection con = stmt.getConnection();
+        if (!(con instanceof TransactionManagerConnection)) {
+            throw new IllegalStateException(concat(
+                    "savepoint requires a statement created from TransactionManagerConnection. ",
+                    "connection class=[", con == null ? null : con.getClass().getName(), "]"));
+        }
+        return ((TransactionManagerConnection) con).getConnection();
+    }
+}
@@ -0,0 +1,164 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+
+/**
+ * バッチ登録時の一括実行数を決定するクラス。
+ * <p/>
+ * 最小値と最大値が異なる場合、一括実行数を自動調整する。
+ * 一定回数のバッチ実行ごとに、その間のスループット（1秒あたりの登録件数）を直前の計測値と比較し、
+ * 向上していれば同じ方向へ、低下していれば逆方向へ一括実行数を変更する。
+ * 一括実行数は最小値と最大値の範囲内で変更する。
+ * <p/>
+ * 最小値と最大値が同じ場合は、一括実行数を変更しない。
+ */
+class BatchSizeController {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(BatchSizeController.class);
+
+    /** 一括実行数を変更するまでに計測するバッチ実行回数 */
+    static final int SAMPLES_PER_STEP = 3;
+
+    /** スループットが変化したとみなす比率 */
+    private static final double TOLERANCE = 0.05;
+
+    /** 一括実行数の最小値 */
+    private final int minBatchSize;
+
+    /** 一括実行数の最大値 */
+    private final int maxBatchSize;
+
+    /** 現在の一括実行数 */
+    private int batchSize;
+
+    /** 一括実行数を増やす方向に変更する場合は{@code true} */
+    private boolean growing = true;
+
+    /** 計測したバッチ実行回数 */
+    private int samples = 0;
+
+    /** 計測した登録件数 */
+    private long sampledRows = 0;
+
+    /** 計測した実行時間（ナノ秒） */
+    private long sampledNanos = 0;
+
+    /** 直前に計測したスループット（未計測の場合は負数） */
+    private double lastThroughput = -1;
+
+    /**
+     * 一括実行数を固定とするコンストラクタ。
+     *
+     * @param batchSize 一括実行数
+     */
+    BatchSizeController(int batchSize) {
+        this(batchSize, batchSize, batchSize);
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param batchSize    一括実行数の初期値
+     * @param minBatchSize 一括実行数の最小値
+     * @param maxBatchSize 一括実行数の最大値
+     */
+    BatchSizeController(int batchSize, int minBatchSize, int maxBatchSize) {
+        if (minBatchSize <= 0) {
+            throw new IllegalArgumentException(
+                    "minBatchSize must be greater than 0. minBatchSize=[" + minBatchSize + "]");
+        }
+        if (minBatchSize > maxBatchSize) {
+            throw new IllegalArgumentException(concat(
+                    "minBatchSize must not be greater than maxBatchSize.",
+                    " minBatchSize=[", minBatchSize, "] maxBatchSize=[", maxBatchSize, "]"));
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSize = clamp(batchSize);
+    }
+
+    /**
+     * 現在の一括実行数を取得する。
+     *
+     * @return 一括実行数
+     */
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 一括実行数を自動調整するかどうか。
+     *
+     * @return 自動調整する場合は{@code true}
+     */
+    boolean isAdaptive() {
+        return minBatchSize < maxBatchSize;
+    }
+
+    /**
+     * バッチ実行の結果を記録し、必要に応じて一括実行数を変更する。
+     * <p/>
+     * 一括実行数に満たない件数でのバッチ実行（最後の端数）は、スループットの計測対象としない。
+     *
+     * @param rows         バッチ実行した件数
+     * @param elapsedNanos バッチ実行に要した時間（ナノ秒）
+     */
+    void recordExecution(int rows, long elapsedNanos) {
+        if (!isAdaptive() || rows < batchSize) {
+            return;
+        }
+        samples++;
+        sampledRows += rows;
+        sampledNanos += elapsedNanos;
+        if (samples < SAMPLES_PER_STEP) {
+            return;
+        }
+        double throughput = sampledRows * 1000000000.0 / Math.max(sampledNanos, 1L);
+        int previous = batchSize;
+        if (lastThroughput < 0 || throughput > lastThroughput * (1 + TOLERANCE)) {
+            batchSize = next(growing);
+        } else if (throughput < lastThroughput * (1 - TOLERANCE)) {
+            growing = !growing;
+            batchSize = next(growing);
+        }
+        if (batchSize == previous && (batchSize == minBatchSize || batchSize == maxBatchSize)) {
+            // 上限または下限に達した場合は、次回は逆方向を試す
+            growing = batchSize == minBatchSize;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug(concat(
+                    "batch size adjusted.",
+                    " throughput=[", (long) throughput, " rows/s]",
+                    " previous=[", previous, "]",
+                    " next=[", batchSize, "]"));
+        }
+        lastThroughput = throughput;
+        samples = 0;
+        sampledRows = 0;
+        sampledNanos = 0;
+    }
+
+    /**
+     * 次の一括実行数を算出する。
+     *
+     * @param grow 増やす場合は{@code true}
+     * @return 次の一括実行数
+     */
+    private int next(boolean grow) {
+        return clamp(grow ? (int) Math.min(batchSize * 2L, maxBatchSize) : batchSize / 2);
+    }
+
+    /**
+     * 一括実行数を最小値と最大値の範囲内に収める。
+     *
+     * @param size 一括実行数
+     * @return 範囲内に収めた一括実行数
+     */
+    private int clamp(int size) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+}
@@ -0,0 +1,122 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.List;
+
+import nablarch.core.message.Message;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.web.upload.util.BulkValidationResult.ErrorMessages;
+
+/**
+ * 一括バリデーションと並行して行った一括登録の結果を保持するクラス。
+ *
+ * @see BulkValidator#validateAndImportAll(ValidatingStrategy, InsertionStrategy, boolean)
+ */
+public class BulkImportResult {
+
+    /** 一括バリデーション結果 */
+    private final BulkValidationResult<?> validationResult;
+
+    /** レコード登録件数 */
+    private final int importedCount;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param validationResult 一括バリデーション結果
+     * @param importedCount    レコード登録件数
+     */
+    BulkImportResult(BulkValidationResult<?> validationResult, int importedCount) {
+        this.validationResult = validationResult;
+        this.importedCount = importedCount;
+    }
+
+    /**
+     * エラーが発生しているかどうかを判定する。
+     *
+     * @return エラーが１件でも発生している場合は、{@code true}
+     */
+    @Published
+    public boolean hasError() {
+        return validationResult.hasError();
+    }
+
+    /**
+     * エラーメッセージを取得する。
+     * <p/>
+     * エラーが発生していない場合、空の{@link ErrorMessages}が返却される。
+     *
+     * @return エラーメッセージ
+     * @see BulkValidationResult#getErrorMessages()
+     */
+    @Published
+    public ErrorMessages getErrorMessages() {
+        return validationResult.getErrorMessages();
+    }
+
+    /**
+     * 行番号の昇順で、全てのエラーメッセージを取得する。
+     *
+     * @return エラーメッセージ
+     * @see BulkValidationResult#getAllErrorMessages()
+     */
+    List<Message> getAllErrorMessages() {
+        return validationResult.getAllErrorMessages();
+    }
+
+    /**
+     * エラーが発生したレコード数を取得する。
+     *
+     * @return エラーが発生したレコード数
+     * @see BulkValidationResult#getErrorCount()
+     */
+    @Published
+    public int getErrorCount() {
+        return validationResult.getErrorCount();
+    }
+
+    /**
+     * エラー件数が閾値を超えたため、バリデーションを打ち切ったかどうかを判定する。
+     *
+     * @return 打ち切った場合は{@code true}
+     * @see BulkValidationResult#isTruncated()
+     */
+    @Published
+    public boolean isTruncated() {
+        return validationResult.isTruncated();
+    }
+
+    /**
+     * バリデーションを打ち切ったことを示すメッセージを取得する。
+     *
+     * @return バリデーションを打ち切ったことを示すメッセージ（打ち切っていない場合は{@code null}）
+     */
+    @Published
+    public Message getTruncationMessage() {
+        return validationResult.getTruncationMessage();
+    }
+
+    /**
+     * アップロードファイルのダイジェストを16進数文字列で取得する。
+     *
+     * @param algorithm アルゴリズム名
+     * @return ダイジェスト（大文字の16進数文字列）
+     * @throws IllegalArgumentException 指定されていないアルゴリズムの場合
+     * @see BulkValidationResult#getDigest(String)
+     */
+    @Published
+    public String getDigest(String algorithm) {
+        return validationResult.getDigest(algorithm);
+    }
+
+    /**
+     * レコード登録件数を取得する。
+     * <p/>
+     * 全件登録モードでエラーが発生した場合、登録したレコードはロールバックされているため0となる。
+     *
+     * @return レコード登録件数
+     */
+    @Published
+    public int getImportedCount() {
+        return importedCount;
+    }
+}
@@ -1,44 +1,99 @@
 package nablarch.fw.web.upload.util;
 
+import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 
+import nablarch.core.db.connection.ConnectionFactory;
 import nablarch.core.db.statement.ParameterizedSqlPStatement;
+import nablarch.core.db.statement.SqlResultSet;
+import nablarch.core.db.statement.SqlRow;
 import nablarch.core.db.support.DbAccessSupport;
 import nablarch.core.message.ApplicationException;
 import nablarch.core.message.Message;
+import nablarch.core.util.ObjectUtil;
 import nablarch.core.util.annotation.Published;
 
 /**
  * 一括バリデーション結果を保持するクラス。
  * <p/>
  * バリデーション結果の取得やバリデーション済みオブジェクトの登録機能を持つ。
+ * <p/>
+ * バリデーション済みオブジェクトを一時ファイルへ退避した場合
+ * （{@link BulkValidator#setMaxValidObjectsOnHeap(int)}を参照）、
+ * 使用後に{@link #close()}を呼び出して一時ファイルを削除すること。
  *
  * @param <FORM> バリデーションに使用するフォームクラスの型
  * @author T.Kawasaki
  */
-public class BulkValidationResult<FORM> {
+public class BulkValidationResult<FORM> implements Closeable {
 
     /** INSERT時の一括実行数のデフォルト値 */
-    private static final int BATCH_SIZE = 100;
+    static final int BATCH_SIZE = 100;
 
     /** バリデーション済みオブジェクト */
-    private final List<FORM> validObjects = new ArrayList<FORM>();
+    private final List<FORM> validObjects;
 
     /** エラーメッセージ */
-    private ErrorMessages errorMessages = new ErrorMessages();
+    private CompactErrorStore errors = new CompactErrorStore(0);
+
+    /** 行番号から妥当なレコードとエラーのレコードを引く索引 */
+    private final RecordIndex recordIndex = new RecordIndex();
+
+    /** {@link #getErrorMessages()}で返却するエラーメッセージ（生成前またはエラー追加後は{@code null}） */
+    private ErrorMessages errorMessages;
+
+    /** INSERT時の一括実行数（自動調整する場合は初期値） */
+    private int batchSize;
+
+    /** 一括実行数の最小値 */
+    private int minBatchSize;
+
+    /** 一括実行数の最大値 */
+    private int maxBatchSize;
+
+    /** エラー件数が閾値を超えたためバリデーションを打ち切った場合のメッセージ */
+    private Message truncationMessage;
+
+    /** アップロード処理の計測結果（計測しない場合は{@code null}） */
+    private UploadMetrics metrics;
+
+    /** 読み込みと同時にダイジェストを計算した入力ストリーム（計算しない場合は{@code null}） */
+    private DigestingInputStream digestStream;
+
+    /** 進捗（記録しない場合は{@code null}） */
+    private UploadProgress progress;
 
-    /** INSERT時の一括実行数 */
-    private final int batchSize;
+    /** 進捗の通知先（通知しない場合は{@code null}） */
+    private UploadProgressListener progressListener;
+
+    /** 進捗を通知するレコード数の間隔 */
+    private int progressRecordInterval;
+
+    /** 進捗を通知する時間の間隔（ミリ秒） */
+    private long progressTimeIntervalMillis;
 
     /**
      * {@code BulkValidationResult}を生成する。
      */
     BulkValidationResult() {
-        this(BATCH_SIZE);
+        this(new ArrayList<FORM>());
+    }
+
+    /**
+     * バリデーション済みオブジェクトを格納するリストを指定して、{@code BulkValidationResult}を生成する。
+     *
+     * @param validObjects バリデーション済みオブジェクトを格納するリスト
+     */
+    BulkValidationResult(List<FORM> validObjects) {
+        this(BATCH_SIZE, validObjects);
     }
 
     /**
@@ -47,7 +102,19 @@ public class BulkValidationResult<FORM> {
      * @param batchSize 一括実行数
      */
     BulkValidationResult(int batchSize) {
-        this.batchSize = batchSize;
+        this(batchSize, new ArrayList<FORM>());
+    }
+
+    /**
+     * INSERT時の一括実行数と、バリデーション済みオブジェクトを格納するリストを指定して、
+     * {@code BulkValidationResult}を生成する。
+     *
+     * @param batchSize    一括実行数
+     * @param validObjects バリデーション済みオブジェクトを格納するリスト
+     */
+    BulkValidationResult(int batchSize, List<FORM> validObjects) {
+        this.validObjects = validObjects;
+        setBatchSize(batchSize);
     }
 
     /**
@@ -57,21 +124,165 @@ public class BulkValidationResult<FORM> {
      */
     @Published
     public boolean hasError() {
-        return !errorMessages.isEmpty();
+        return !errors.isEmpty();
     }
 
     /**
      * エラーメッセージを取得する。
      * <p/>
      * エラーが発生していない場合、空の{@link ErrorMessages}が返却される。
+     * メッセージを保持する行数の上限を設定した場合、上限を超えた行のメッセージは含まれない。
+     * <p/>
+     * <b>互換性に関する注意：</b>
+     * 従来は本結果が保持するエラーメッセージ自体（ライブビュー）を返却していたが、
+     * エラーメッセージを行番号ごとの{@link ErrorMessages}で保持しなくなったため、スナップショットを返却するよう変更した。
+     * 返却した{@link ErrorMessages}を変更して本結果のエラーを追加・削除していた場合は、動作が変わるため注意すること。
+     * <p/>
+     * 返却する{@link ErrorMessages}は、本結果が保持するエラーメッセージから呼び出し時点の内容で生成したスナップショットである。
+     * 以降に追加されたエラーメッセージは反映されず、返却した{@link ErrorMessages}を変更しても本結果には反映されない
+     * （{@link #hasError()}や{@link #getErrorMessages(int)}の結果は変わらない）。
+     * 生成した{@link ErrorMessages}はエラーメッセージが追加されるまで保持し、同じインスタンスを返却する。
+     * 全行分の{@link ErrorMessages}を生成するため、特定の行のエラーメッセージのみが必要な場合は
+     * {@link #getErrorMessages(int)}を使用すること。
      *
      * @return エラーメッセージ
+     * @see BulkValidator#setMaxRetainedErrorRecords(int)
      */
     @Published
     public ErrorMessages getErrorMessages() {
+        if (errorMessages == null) {
+            errorMessages = errors.toErrorMessages();
+        }
         return errorMessages;
     }
 
+    /**
+     * 行番号の昇順で、保持している全てのエラーメッセージを取得する。
+     * <p/>
+     * {@link #getErrorMessages()}と異なり、行番号をキーとする{@link ErrorMessages}を生成しない。
+     *
+     * @return エラーメッセージ
+     */
+    List<Message> getAllErrorMessages() {
+        return errors.getAllMessages();
+    }
+
+    /**
+     * 指定した行番号のエラーメッセージを取得する。
+     * <p/>
+     * エラーメッセージは行番号の昇順の配列を二分探索して取得するため、
+     * {@link #getErrorMessages()}のように全行分の{@link ErrorMessages}を生成しない。
+     *
+     * @param recordNumber 行番号
+     * @return エラーメッセージ（エラーが発生していない行、またはメッセージを保持していない行の場合は空のリスト）
+     */
+    @Published
+    public List<Message> getErrorMessages(int recordNumber) {
+        List<Message> messages = errors.get(recordNumber);
+        return messages == null ? Collections.<Message>emptyList() : messages;
+    }
+
+    /**
+     * 一括バリデーションで処理したレコード数を取得する。
+     * <p/>
+     * 妥当なレコードとエラーのレコードの両方を含む。
+     * バリデーションを打ち切った場合、打ち切った時点以降のレコードは含まない。
+     * {@link #getRecordNumber(int)}と組み合わせて、処理したレコードを行番号順にページングできる。
+     *
+     * @return 処理したレコード数
+     */
+    @Published
+    public int getRecordCount() {
+        return recordIndex.size();
+    }
+
+    /**
+     * 処理順で指定した位置のレコードの行番号を取得する。
+     *
+     * @param position 処理順の位置（0から{@link #getRecordCount()} - 1まで）
+     * @return 行番号
+     * @throws IndexOutOfBoundsException 位置が範囲外の場合
+     */
+    @Published
+    public int getRecordNumber(int position) {
+        return recordIndex.getRecordNumber(position);
+    }
+
+    /**
+     * 指定した行番号のバリデーション済みオブジェクトを取得する。
+     * <p/>
+     * {@link #getValidObjects()}と異なり、エラーが発生していても例外は発生しない。
+     * ヒープ上に保持する件数を制限した場合、一時ファイルに退避したオブジェクトの取得は低速となる。
+     * 前回取得した行より後ろの行であれば一時ファイルの続きから読み込むが、
+     * それ以外の場合は一時ファイルの先頭から読み込み直すため、退避した件数に比例した時間がかかる。
+     * 複数の行を取得する場合は、行番号の昇順に取得すること。
+     *
+     * @param recordNumber 行番号
+     * @return バリデーション済みオブジェクト（エラーのレコード、または処理していない行の場合は{@code null}）
+     * @see BulkValidator#setMaxValidObjectsOnHeap(int)
+     */
+    @Published
+    public FORM getValidObject(int recordNumber) {
+        int slot = recordIndex.getValidSlot(recordNumber);
+        return slot < 0 ? null : validObjects.get(slot);
+    }
+
+    /**
+     * エラーが発生したレコード数を取得する。
+     * <p/>
+     * メッセージを保持する行数の上限を超え、メッセージを保持していないレコードも含む。
+     *
+     * @return エラーが発生したレコード数
+     */
+    @Published
+    public int getErrorCount() {
+        return errors.getErrorCount();
+    }
+
+    /**
+     * エラー件数が閾値を超えたため、バリデーションを打ち切ったかどうかを判定する。
+     * <p/>
+     * 打ち切った場合、打ち切った時点以降のレコードはバリデーションされていない。
+     *
+     * @return 打ち切った場合は{@code true}
+     * @see BulkValidator#setMaxErrorCount(int, String)
+     * @see BulkValidator#setMaxErrorRatio(double, int, String)
+     */
+    @Published
+    public boolean isTruncated() {
+        return truncationMessage != null;
+    }
+
+    /**
+     * バリデーションを打ち切ったことを示すメッセージを取得する。
+     *
+     * @return バリデーションを打ち切ったことを示すメッセージ（打ち切っていない場合は{@code null}）
+     */
+    @Published
+    public Message getTruncationMessage() {
+        return truncationMessage;
+    }
+
+    /**
+     * アップロードファイルのダイジェストを16進数文字列で取得する。
+     * <p/>
+     * ダイジェストは一括バリデーションでファイルを読み込む際に同時に計算したものである。
+     * バリデーションを打ち切った場合、ファイルを終端まで読み込んでいないためダイジェストは確定せず、例外を送出する。
+     * 打ち切った場合もファイル全体のダイジェストが必要な場合は、
+     * {@link UploadHelper#setDigestRemainingOnClose(boolean)}で{@code true}を設定すること。
+     * {@link #importAllWithCheckpoint(InsertionStrategy, String, int)}のダイジェストとしても使用できる。
+     *
+     * @param algorithm アルゴリズム名
+     * @return ダイジェスト（大文字の16進数文字列）
+     * @throws IllegalArgumentException 指定されていないアルゴリズムの場合
+     * @throws IllegalStateException    ファイルを終端まで読み込んでいないため、ダイジェストが確定していない場合
+     * @see UploadHelper#setDigestAlgorithms(String...)
+     */
+    @Published
+    public String getDigest(String algorithm) {
+        return BulkValidator.getDigest(digestStream, algorithm);
+    }
+
     /**
      * バリデーション対象があるかどうか。
      * <p/>
@@ -80,7 +291,7 @@ public class BulkValidationResult<FORM> {
      * @return バリデーション対象がない場合{@code true}
      */
     public boolean isEmpty() {
-        return validObjects.isEmpty() && errorMessages.isEmpty();
+        return validObjects.isEmpty() && errors.isEmpty();
     }
 
     /**
@@ -88,11 +299,16 @@ public class BulkValidationResult<FORM> {
      *
      * @return バリデーション済みオブジェクト
      * @throws ApplicationException 一件でもバリデーションエラーが発生していた場合。
-     *          この例外には、発生したすべてのバリデーションエラーのメッセージが格納されている。
+     *          この例外には、発生したすべてのバリデーションエラーのメッセージ
+     *          （メッセージを保持する行数の上限を設定した場合は、保持しているメッセージ）が格納されている。
+     *          バリデーションを打ち切った場合は、打ち切ったことを示すメッセージが最後に格納されている。
      */
     public List<FORM> getValidObjects() throws ApplicationException {
         if (hasError()) {
-            List<Message> all = errorMessages.getAllMessages();
+            List<Message> all = errors.getAllMessages();
+            if (truncationMessage != null) {
+                all.add(truncationMessage);
+            }
             throw new ApplicationException(all);
         }
         return validObjects;
@@ -107,17 +323,8 @@ public class BulkValidationResult<FORM> {
      * @return レコード登録件数(バリデーション済みオブジェクトがない場合は0を返す)
      */
     @Published
-    public int importWith(final DbAccessSupport dbAccessSupport, final String insertSqlId) {
-        InsertionStrategy<FORM> strategy = new InsertionStrategy<FORM>() {
-            public ParameterizedSqlPStatement prepareStatement(FORM form) {
-                return dbAccessSupport.getParameterizedSqlStatement(insertSqlId, form);
-            }
-
-            public void addBatch(ParameterizedSqlPStatement statement, FORM form) {
-                statement.addBatchObject(form);
-            }
-        };
-        return importAll(strategy);
+    public int importWith(DbAccessSupport dbAccessSupport, String insertSqlId) {
+        return importAll(BulkValidationResult.<FORM>createInsertionStrategy(dbAccessSupport, insertSqlId));
     }
 
 
@@ -129,37 +336,463 @@ public class BulkValidationResult<FORM> {
      */
     @Published
     public int importAll(InsertionStrategy<FORM> strategy) {
-        List<FORM> validObjects = getValidObjects();
-        if (validObjects.isEmpty()) {
-            return 0;    // 空ファイルの場合
-        }
-
-        ParameterizedSqlPStatement statement = strategy.prepareStatement(validObjects.get(0));
-        int cnt = 0;
-        for (FORM e : validObjects) {
-            strategy.addBatch(statement, e);
-            cnt++;
-            // 一定間隔ごとにexecuteBatch
-            boolean timeToExec = isTimeToExecBatch(cnt);
-            if (timeToExec) {
-                statement.executeBatch();
+        try {
+            List<FORM> validObjects = getValidObjects();
+            if (validObjects.isEmpty()) {
+                return 0;    // 空ファイルの場合
             }
+
+            BatchInserter<FORM> inserter = createBatchInserter(strategy);
+            ProgressReporter reporter = progressListener == null ? null
+                    : new ProgressReporter(progressListener, progressRecordInterval, progressTimeIntervalMillis,
+                            UploadPhase.EXECUTE_BATCH, validObjects.size(), null, -1L);
+            int count = 0;
+            Iterator<FORM> it = validObjects.iterator();
+            try {
+                while (it.hasNext()) {
+                    // 一定間隔ごとにexecuteBatch
+                    inserter.add(it.next());
+                    if (reporter != null) {
+                        reporter.report(++count, 0);
+                    }
+                }
+            } finally {
+                SpillableList.closeIterator(it);
+            }
+            // 最後に余ったものをexecuteBatch
+            inserter.flush();
+            if (reporter != null) {
+                reporter.complete(count, 0);
+            }
+            return inserter.getExecutedCount();
+        } finally {
+            finishMetrics();
+        }
+    }
+
+    /**
+     * 指定されたSQLIDを用いて、バリデーション済みオブジェクト({@link #getValidObjects}の結果)を
+     * 登録済みのレコードは更新、未登録のレコードは登録するマージ登録を行う。
+     * <p/>
+     * 一括実行数分のオブジェクトごとに、キーを検索するSQLをIN句で1回実行して登録済みのキーを取得し、
+     * 更新と登録をそれぞれバッチ実行する。
+     * キーを検索するSQLは、検索条件のキーを{@code keys}という名前の配列で受け取り、キーのカラムのみを取得すること。
+     * <pre>
+     * SELECT ID FROM TEST_CITIES WHERE $if(keys) {ID IN (:keys[])}
+     * </pre>
+     * IN句に指定できる要素数に上限があるデータベースでは、一括実行数を上限以下に設定すること。
+     * <p/>
+     * データベースがMERGE文を提供する場合は、本メソッドを使用せず
+     * {@link #importWith(DbAccessSupport, String)}でMERGE文をバッチ実行すればよい。
+     *
+     * @param dbAccessSupport 登録に使用する{@link DbAccessSupport}クラス
+     * @param keyPropertyName キーとするプロパティ名
+     * @param selectKeySqlId  登録済みのキーを検索するSQLID
+     * @param updateSqlId     更新に使用するSQLID
+     * @param insertSqlId     登録に使用するSQLID
+     * @return マージ登録の結果
+     * @throws ApplicationException 一件でもバリデーションエラーが発生していた場合
+     * @throws IllegalStateException キーを検索するSQLが1カラム以外を取得した場合
+     */
+    @Published
+    public MergeImportResult mergeWith(DbAccessSupport dbAccessSupport, String keyPropertyName,
+                                       String selectKeySqlId, String updateSqlId, String insertSqlId)
+            throws ApplicationException {
+        return mergeAll(BulkValidationResult.<FORM>createMergeStrategy(
+                dbAccessSupport, keyPropertyName, selectKeySqlId, updateSqlId, insertSqlId));
+    }
+
+    /**
+     * マージ登録ロジックを用いて、バリデーション済みオブジェクト({@link #getValidObjects}の結果)を
+     * 登録済みのレコードは更新、未登録のレコードは登録するマージ登録を行う。
+     * <p/>
+     * 一括実行数分のオブジェクトごとに、登録済みのキーを{@link MergeStrategy#findExistingKeys(List)}でまとめて検索し、
+     * 登録のバッチ、更新のバッチの順に実行する。
+     * アップロードファイル内で同じキーが複数回現れた場合は、後に現れたオブジェクトの内容で更新される。
+     * 一括実行数は自動調整しない（自動調整を設定した場合は初期値を使用する）。
+     *
+     * @param strategy マージ登録ロジック
+     * @return マージ登録の結果
+     * @throws ApplicationException 一件でもバリデーションエラーが発生していた場合
+     */
+    @Published
+    public MergeImportResult mergeAll(MergeStrategy<FORM> strategy) throws ApplicationException {
+        try {
+            List<FORM> validObjects = getValidObjects();
+            if (validObjects.isEmpty()) {
+                return new MergeImportResult(0, 0);    // 空ファイルの場合
+            }
+            return new MergeImporter<FORM>(strategy, batchSize, metrics, progress).importAll(validObjects);
+        } finally {
+            finishMetrics();
+        }
+    }
+
+    /**
+     * 指定されたSQLIDを用いて、バリデーション済みオブジェクト({@link #getValidObjects}の結果)を
+     * 複数のコネクションで並列に一括登録する。
+     *
+     * @param dbAccessSupport   登録に使用する{@link DbAccessSupport}クラス
+     * @param insertSqlId       登録に使用するSQLID
+     * @param connectionFactory パーティションごとのコネクションを取得する{@link ConnectionFactory}
+     * @param executor          登録を実行する{@link ExecutorService}
+     * @param partitionCount    パーティション数
+     * @return 並列登録の結果
+     * @see #importAllInParallel(InsertionStrategy, ConnectionFactory, ExecutorService, int)
+     */
+    @Published
+    public ParallelImportResult importWithInParallel(DbAccessSupport dbAccessSupport, String insertSqlId,
+                                                     ConnectionFactory connectionFactory,
+                                                     ExecutorService executor, int partitionCount) {
+        return importAllInParallel(BulkValidationResult.<FORM>createInsertionStrategy(dbAccessSupport, insertSqlId),
+                connectionFactory, executor, partitionCount);
+    }
+
+    /**
+     * 登録ロジックを用いて、バリデーション済みオブジェクト({@link #getValidObjects}の結果)を
+     * 複数のコネクションで並列に一括登録する。
+     * <p/>
+     * バリデーション済みオブジェクトを連続した範囲ごとに指定された数のパーティションへ分割し、
+     * パーティションごとに{@link ConnectionFactory}から取得したコネクションを用いて登録する。
+     * 登録はワーカースレッドの{@link nablarch.core.db.connection.DbConnectionContext}に
+     * パーティションのコネクションを設定した状態で行うため、
+     * {@link DbAccessSupport}を用いた登録ロジックをそのまま使用できる。
+     * <p/>
+     * 全パーティションの登録が成功した場合のみ全パーティションをコミットし、
+     * 1つでも失敗した場合は全パーティションをロールバックする。
+     * 失敗したパーティションとその原因は、戻り値から取得できる。
+     * 呼び出し元スレッドのトランザクションには参加しないため、
+     * 呼び出し元のトランザクションがロールバックされても本メソッドで登録したレコードは取り消されない。
+     * <p/>
+     * 登録ロジックは複数スレッドから同時に呼び出されるため、スレッドセーフでなければならない。
+     *
+     * @param strategy          登録ロジック
+     * @param connectionFactory パーティションごとのコネクションを取得する{@link ConnectionFactory}
+     * @param executor          登録を実行する{@link ExecutorService}
+     * @param partitionCount    パーティション数
+     * @return 並列登録の結果
+     * @throws ApplicationException 一件でもバリデーションエラーが発生していた場合
+     */
+    @Published
+    public ParallelImportResult importAllInParallel(InsertionStrategy<FORM> strategy,
+                                                    ConnectionFactory connectionFactory,
+                                                    ExecutorService executor, int partitionCount)
+            throws ApplicationException {
+        try {
+            ParallelImporter<FORM> importer = new ParallelImporter<FORM>(
+                    strategy, connectionFactory, executor, partitionCount, this);
+            return importer.importAll(getValidObjects());
+        } finally {
+            finishMetrics();
+        }
+    }
+
+    /**
+     * 登録ロジックを用いて、バリデーション済みオブジェクト({@link #getValidObjects}の結果)を
+     * 一定回数のバッチ実行ごとにコミットしながら一括登録する。
+     * <p/>
+     * 指定されたバッチ実行回数ごとに、最後に登録したレコードの行番号をアップロードファイルのダイジェストと共に
+     * チェックポイントテーブルへ記録し、スレッドに紐付くトランザクションをコミットする。
+     * 登録中に失敗した場合でも、最後にコミットしたところまでのレコードは登録されたままとなる。
+     * 同じファイルを再度アップロードした場合は、{@link #resumeImportAll(InsertionStrategy, String, int)}で
+     * 続きから登録できる。
+     * 全件の登録が完了した場合は、チェックポイントを削除してコミットする。
+     * <p/>
+     * <b>注意：本メソッドは呼び出し元のトランザクションをコミットする。</b>
+     * 本メソッドは新たなトランザクションを開始せず、スレッドに紐付くトランザクション（呼び出し元のトランザクション）を
+     * チェックポイントごとに繰り返しコミットする。このため、以下の点に注意すること。
+     * <ul>
+     * <li>本メソッドより前に同じトランザクションで行った更新も、最初のチェックポイントでコミットされる。</li>
+     * <li>本メソッドの呼び出し後に呼び出し元のトランザクションをロールバックしても、
+     * コミット済みのレコードおよびチェックポイントは取り消されない。</li>
+     * <li>アップロード処理全体を1つのトランザクションで原子的に行う必要がある場合は、本メソッドを使用しないこと。</li>
+     * </ul>
+     * チェックポイントテーブルのテーブル名およびカラム名は{@link CheckpointTable}で設定する。
+     *
+     * @param strategy       登録ロジック
+     * @param digest         アップロードファイルのダイジェスト（チェックポイントのキー）
+     * @param commitInterval コミット間隔（バッチ実行回数）
+     * @return 登録したレコード件数
+     * @throws ApplicationException 一件でもバリデーションエラーが発生していた場合
+     */
+    @Published
+    public int importAllWithCheckpoint(InsertionStrategy<FORM> strategy, String digest, int commitInterval)
+            throws ApplicationException {
+        try {
+            return createCheckpointImporter(strategy, digest, commitInterval).importAll(getValidObjects(), false);
+        } finally {
+            finishMetrics();
+        }
+    }
+
+    /**
+     * チェックポイントから、バリデーション済みオブジェクト({@link #getValidObjects}の結果)の一括登録を再開する。
+     * <p/>
+     * 指定されたダイジェストのチェックポイントに記録された行番号までのレコードを読み飛ばし、
+     * 以降のレコードを{@link #importAllWithCheckpoint(InsertionStrategy, String, int)}と同様に登録する。
+     * チェックポイントが存在しない場合は、先頭から登録する。
+     * 全件の登録が完了した時点でチェックポイントは削除されるため、
+     * 全件の登録が完了したファイルを再度指定した場合は、先頭から再度登録することに注意すること。
+     * <p/>
+     * <b>注意：本メソッドは呼び出し元のトランザクションをコミットする。</b>
+     * {@link #importAllWithCheckpoint(InsertionStrategy, String, int)}と同様に、
+     * スレッドに紐付くトランザクションをチェックポイントごとに繰り返しコミットするため、
+     * 本メソッドより前に同じトランザクションで行った更新もコミットされ、
+     * 呼び出し後に呼び出し元のトランザクションをロールバックしてもコミット済みのレコードは取り消されない。
+     *
+     * @param strategy       登録ロジック
+     * @param digest         アップロードファイルのダイジェスト（チェックポイントのキー）
+     * @param commitInterval コミット間隔（バッチ実行回数）
+     * @return 本メソッドで登録したレコード件数（読み飛ばしたレコードは含まない）
+     * @throws ApplicationException 一件でもバリデーションエラーが発生していた場合
+     * @throws IllegalStateException チェックポイントの行番号がバリデーション済みオブジェクトの行番号に含まれない場合
+     */
+    @Published
+    public int resumeImportAll(InsertionStrategy<FORM> strategy, String digest, int commitInterval)
+            throws ApplicationException {
+        try {
+            return createCheckpointImporter(strategy, digest, commitInterval).importAll(getValidObjects(), true);
+        } finally {
+            finishMetrics();
         }
-        // 最後に余ったものをexecuteBatch
-        if (!isTimeToExecBatch(cnt)) {
-            statement.executeBatch();
+    }
+
+    /**
+     * チェックポイントを記録しながら一括登録するクラスを生成する。
+     *
+     * @param strategy       登録ロジック
+     * @param digest         アップロードファイルのダイジェスト
+     * @param commitInterval コミット間隔（バッチ実行回数）
+     * @return 一括登録クラス
+     */
+    private CheckpointImporter<FORM> createCheckpointImporter(InsertionStrategy<FORM> strategy, String digest,
+                                                              int commitInterval) {
+        // 行番号を指定せずに追加したバリデーション済みオブジェクトがある場合は、位置を行番号とみなす
+        RecordIndex index = recordIndex.size() == validObjects.size() ? recordIndex : null;
+        return new CheckpointImporter<FORM>(createBatchInserter(strategy),
+                CheckpointTable.getInstance(), digest, commitInterval, index);
+    }
+
+    /**
+     * INSERT時の一括実行数を設定する。
+     * <p/>
+     * 本メソッドで設定した場合、一括実行数は自動調整しない。
+     *
+     * @param batchSize 一括実行数
+     * @return 本インスタンス
+     * @see BulkValidator#setBatchSize(int)
+     */
+    BulkValidationResult<FORM> setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than 0. batchSize=[" + batchSize + "]");
+        }
+        this.batchSize = batchSize;
+        this.minBatchSize = batchSize;
+        this.maxBatchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * INSERT時の一括実行数を自動調整するよう設定する。
+     * <p/>
+     * バッチ実行に要した時間から1秒あたりの登録件数を計測し、
+     * 登録件数が最大となるよう最小値と最大値の範囲内で一括実行数を変更する。
+     * 現在の一括実行数を初期値とする。
+     *
+     * @param minBatchSize 一括実行数の最小値
+     * @param maxBatchSize 一括実行数の最大値
+     * @return 本インスタンス
+     * @see BulkValidator#setAdaptiveBatchSize(int, int)
+     */
+    BulkValidationResult<FORM> setAdaptiveBatchSize(int minBatchSize, int maxBatchSize) {
+        // 範囲の妥当性を検証する
+        new BatchSizeController(batchSize, minBatchSize, maxBatchSize);
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * INSERT時の一括実行数を取得する。
+     * <p/>
+     * 一括実行数を自動調整する場合は、初期値を返却する。
+     *
+     * @return 一括実行数
+     */
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 本インスタンスの一括実行数の設定に従ってバッチ登録するクラスを生成する。
+     *
+     * @param strategy 登録ロジック
+     * @return バッチ登録クラス
+     */
+    BatchInserter<FORM> createBatchInserter(InsertionStrategy<FORM> strategy) {
+        return new BatchInserter<FORM>(strategy, createBatchSizeController(), false)
+                .setMetrics(metrics)
+                .setProgress(progress);
+    }
+
+    /**
+     * アップロード処理の計測結果を保持するオブジェクトを設定する。
+     *
+     * @param metrics 計測結果を保持するオブジェクト（計測しない場合は{@code null}）
+     */
+    void setMetrics(UploadMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 進捗を設定する。
+     *
+     * @param progress 進捗（記録しない場合は{@code null}）
+     */
+    void setProgress(UploadProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * 呼び出し元がトランザクションをコミットしたことを進捗に記録する。
+     */
+    void committed() {
+        if (progress != null) {
+            progress.committed();
         }
-        return cnt;
     }
 
     /**
-     * バッチ実行すべきタイミングであるかどうか判定する。
+     * 進捗の通知先を設定する。
+     *
+     * @param listener           進捗の通知先（通知しない場合は{@code null}）
+     * @param recordInterval     通知するレコード数の間隔
+     * @param timeIntervalMillis 通知する時間の間隔（ミリ秒）
+     * @see BulkValidator#setProgressListener(UploadProgressListener, int, long)
+     */
+    void setProgressListener(UploadProgressListener listener, int recordInterval, long timeIntervalMillis) {
+        this.progressListener = listener;
+        this.progressRecordInterval = recordInterval;
+        this.progressTimeIntervalMillis = timeIntervalMillis;
+    }
+
+    /**
+     * 読み込みと同時にダイジェストを計算する入力ストリームを設定する。
+     *
+     * @param digestStream ダイジェストを計算する入力ストリーム（計算しない場合は{@code null}）
+     */
+    void setDigestStream(DigestingInputStream digestStream) {
+        this.digestStream = digestStream;
+    }
+
+    /**
+     * アップロード処理の計測結果を取得する。
      *
-     * @param cnt 現在のカウント
-     * @return バッチ実行すべき場合は、{@code true}
+     * @return 計測結果を保持するオブジェクト（計測しない場合は{@code null}）
      */
-    private boolean isTimeToExecBatch(int cnt) {
-        return cnt % batchSize == 0;
+    UploadMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 一括バリデーションの終了時に呼び出される。
+     * <p/>
+     * エラーが発生した場合や空ファイルの場合は以降に一括登録を行えないため、計測している場合は処理の終了を通知する。
+     * それ以外の場合は、一括登録の終了時または{@link #close()}の呼び出し時に通知する。
+     */
+    void validationFinished() {
+        if (hasError() || isEmpty()) {
+            finishMetrics();
+        }
+    }
+
+    /**
+     * 計測している場合、処理の終了を通知する。
+     * <p/>
+     * 通知は1つのアップロード処理につき1回のみ行われ、2回目以降の呼び出しでは何もしない。
+     */
+    void finishMetrics() {
+        if (metrics != null) {
+            metrics.finish();
+        }
+    }
+
+    /**
+     * INSERT時の一括実行数の決定ロジックを生成する。
+     *
+     * @return 一括実行数の決定ロジック
+     */
+    BatchSizeController createBatchSizeController() {
+        return new BatchSizeController(batchSize, minBatchSize, maxBatchSize);
+    }
+
+    /**
+     * 指定されたSQLIDを用いて登録する登録ロジックを生成する。
+     *
+     * @param dbAccessSupport 登録に使用する{@link DbAccessSupport}クラス
+     * @param insertSqlId     登録に使用するSQLID
+     * @param <FORM>          登録に使用するフォームクラスの型
+     * @return 登録ロジック
+     */
+    static <FORM> InsertionStrategy<FORM> createInsertionStrategy(
+            final DbAccessSupport dbAccessSupport, final String insertSqlId) {
+        return new InsertionStrategy<FORM>() {
+            public ParameterizedSqlPStatement prepareStatement(FORM form) {
+                return dbAccessSupport.getParameterizedSqlStatement(insertSqlId, form);
+            }
+
+            public void addBatch(ParameterizedSqlPStatement statement, FORM form) {
+                statement.addBatchObject(form);
+            }
+        };
+    }
+
+    /**
+     * 指定されたSQLIDを用いてマージ登録するマージ登録ロジックを生成する。
+     *
+     * @param dbAccessSupport 登録に使用する{@link DbAccessSupport}クラス
+     * @param keyPropertyName キーとするプロパティ名
+     * @param selectKeySqlId  登録済みのキーを検索するSQLID
+     * @param updateSqlId     更新に使用するSQLID
+     * @param insertSqlId     登録に使用するSQLID
+     * @param <FORM>          登録に使用するフォームクラスの型
+     * @return マージ登録ロジック
+     * @see #mergeWith(DbAccessSupport, String, String, String, String)
+     */
+    static <FORM> MergeStrategy<FORM> createMergeStrategy(
+            final DbAccessSupport dbAccessSupport, final String keyPropertyName,
+            final String selectKeySqlId, final String updateSqlId, final String insertSqlId) {
+        final InsertionStrategy<FORM> updateStrategy = createInsertionStrategy(dbAccessSupport, updateSqlId);
+        final InsertionStrategy<FORM> insertStrategy = createInsertionStrategy(dbAccessSupport, insertSqlId);
+        return new MergeStrategy<FORM>() {
+            public Object getKey(FORM form) {
+                return ObjectUtil.getProperty(form, keyPropertyName);
+            }
+
+            public Collection<?> findExistingKeys(List<Object> keys) {
+                Map<String, Object> condition = new HashMap<String, Object>();
+                condition.put("keys", keys.toArray());
+                SqlResultSet rows = dbAccessSupport.getParameterizedSqlStatement(selectKeySqlId, condition)
+                        .retrieve(condition);
+                List<Object> existing = new ArrayList<Object>(rows.size());
+                for (SqlRow e : rows) {
+                    if (e.size() != 1) {
+                        throw new IllegalStateException("key search SQL must select only the key column. "
+                                + "sqlId = [" + selectKeySqlId + "], columns = " + e.keySet());
+                    }
+                    existing.add(e.values().iterator().next());
+                }
+                return existing;
+            }
+
+            public InsertionStrategy<FORM> getUpdateStrategy() {
+                return updateStrategy;
+            }
+
+            public InsertionStrategy<FORM> getInsertStrategy() {
+                return insertStrategy;
+            }
+        };
     }
 
     /**
@@ -171,6 +804,62 @@ public class BulkValidationResult<FORM> {
         validObjects.add(validObject);
     }
 
+    /**
+     * バリデーション結果として、行番号を指定してバリデーション済みのオブジェクトを追加する。
+     * <p/>
+     * 行番号は昇順に追加しなければならない。
+     *
+     * @param recordNumber 妥当なレコード行
+     * @param validObject  追加するバリデーション済みオブジェクト
+     */
+    void addValidObject(int recordNumber, FORM validObject) {
+        recordIndex.addValid(recordNumber);
+        addValidObject(validObject);
+    }
+
+    /**
+     * エラーのレコードを索引に追加する。
+     * <p/>
+     * 最後に追加した行番号以下の行番号（同じ行へのエラーの追加など）は索引に追加しない。
+     *
+     * @param recordNumber エラーとなったレコード行
+     */
+    private void indexInvalid(int recordNumber) {
+        if (recordIndex.size() == 0 || recordNumber > recordIndex.getRecordNumber(recordIndex.size() - 1)) {
+            recordIndex.addInvalid(recordNumber);
+        }
+    }
+
+    /**
+     * バリデーション済みオブジェクトを退避した一時ファイルを削除する。
+     * <p/>
+     * 以降は、一時ファイルへ退避したバリデーション済みオブジェクトを参照および登録できない。
+     * 一時ファイルへ退避していない場合や、既にクローズ済みの場合は何もしない。
+     * <p/>
+     * 計測結果の通知先を設定している場合、一括登録を行わずに本メソッドを呼び出したときは、
+     * 本メソッドの呼び出しをアップロード処理の終了として計測結果を通知する。
+     *
+     * @see UploadMetricsListener
+     */
+    @Published
+    public void close() {
+        finishMetrics();
+        if (validObjects instanceof SpillableList) {
+            ((SpillableList<FORM>) validObjects).close();
+        }
+    }
+
+    /**
+     * バリデーション済みオブジェクトの追加を終える。
+     * <p/>
+     * 一時ファイルへ退避している場合は、一時ファイルへの出力ストリームを閉じる。
+     */
+    void endWriting() {
+        if (validObjects instanceof SpillableList) {
+            ((SpillableList<FORM>) validObjects).endWriting();
+        }
+    }
+
     /**
      * バリデーション結果として、エラーメッセージを追加する。
      *
@@ -178,7 +867,9 @@ public class BulkValidationResult<FORM> {
      * @param messages     エラーメッセージ
      */
     void addErrors(int recordNumber, List<Message> messages) {
-        errorMessages.put(recordNumber, messages);
+        errors.add(recordNumber, messages);
+        indexInvalid(recordNumber);
+        errorMessages = null;
     }
 
     /**
@@ -188,7 +879,30 @@ public class BulkValidationResult<FORM> {
      * @param message      エラーメッセージ
      */
     void addError(Integer recordNumber, Message message) {
-        errorMessages.put(recordNumber, Arrays.asList(message));
+        errors.add(recordNumber, message);
+        indexInvalid(recordNumber);
+        errorMessages = null;
+    }
+
+    /**
+     * エラーメッセージを保持する行数の上限を設定する。
+     * <p/>
+     * エラーメッセージを追加する前に呼び出すこと。
+     *
+     * @param maxRetainedErrorRecords メッセージを保持する行数の上限（0以下の場合は無制限）
+     */
+    void setMaxRetainedErrorRecords(int maxRetainedErrorRecords) {
+        this.errors = new CompactErrorStore(maxRetainedErrorRecords);
+        this.errorMessages = null;
+    }
+
+    /**
+     * エラー件数が閾値を超えたため、バリデーションを打ち切ったことを設定する。
+     *
+     * @param message 打ち切ったことを示すメッセージ
+     */
+    void truncate(Message message) {
+        this.truncationMessage = message;
     }
 
     /**
@@ -202,6 +916,29 @@ public class BulkValidationResult<FORM> {
      */
     public static class ErrorMessages extends TreeMap<Integer, List<Message>> {
 
+        /** 保持する行数の上限を超えたため、含まれていないレコード数 */
+        private int omittedCount = 0;
+
+        /**
+         * 保持する行数の上限を超えたため、含まれていないレコード数を取得する。
+         *
+         * @return 含まれていないレコード数
+         * @see BulkValidator#setMaxRetainedErrorRecords(int)
+         */
+        @Published
+        public int getOmittedCount() {
+            return omittedCount;
+        }
+
+        /**
+         * 保持する行数の上限を超えたため、含まれていないレコード数を設定する。
+         *
+         * @param omittedCount 含まれていないレコード数
+         */
+        void setOmittedCount(int omittedCount) {
+            this.omittedCount = omittedCount;
+        }
+
         /**
          * 行数の昇順でソートされた、全てのエラーメッセージを取得する。
          *
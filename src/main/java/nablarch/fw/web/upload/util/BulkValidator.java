@@ -2,15 +2,26 @@ package nablarch.fw.web.upload.util;
 
 import static nablarch.core.util.Builder.concat;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import nablarch.core.dataformat.DataRecord;
 import nablarch.core.dataformat.DataRecordFormatter;
 import nablarch.core.dataformat.InvalidDataFormatException;
+import nablarch.core.db.support.DbAccessSupport;
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
+import nablarch.core.message.ApplicationException;
 import nablarch.core.message.Message;
+import nablarch.core.util.BinaryUtil;
 import nablarch.core.util.FileUtil;
 import nablarch.core.util.annotation.Published;
 import nablarch.core.validation.ValidationContext;
@@ -27,12 +38,72 @@ public class BulkValidator {
     /** ロガー */
     private static final Logger LOGGER = LoggerManager.get(BulkValidator.class);
 
+    /** ワーカースレッドにまとめて渡すレコード数のデフォルト値 */
+    static final int DEFAULT_VALIDATION_BLOCK_SIZE = 256;
+
     /** アップロードファイルのレコードフォーマッタ */
     private final DataRecordFormatter formatter;
 
     /** アップロードされたファイルのファイル名 */
     private final String fileName;
 
+    /** バリデーションを並列実行する{@link ExecutorService}（逐次実行の場合は{@code null}） */
+    private ExecutorService validationExecutor;
+
+    /** ワーカースレッドにまとめて渡すレコード数 */
+    private int validationBlockSize = DEFAULT_VALIDATION_BLOCK_SIZE;
+
+    /** ヒープ上に保持するバリデーション済みオブジェクトの最大件数（0以下の場合は無制限） */
+    private int maxValidObjectsOnHeap = 0;
+
+    /** バリデーション済みオブジェクトを退避する一時ファイルのディレクトリ */
+    private File spillDirectory;
+
+    /** 一括バリデーションを打ち切るエラー件数の閾値 */
+    private final ErrorThreshold errorThreshold = new ErrorThreshold();
+
+    /** エラーメッセージを保持する行数の上限（0以下の場合は無制限） */
+    private int maxRetainedErrorRecords;
+
+    /** 重複を検査するキーのプロパティ名（検査しない場合は{@code null}） */
+    private String[] uniqueKeyPropertyNames;
+
+    /** キーが重複した場合のメッセージID */
+    private String messageIdOnDuplicateKey;
+
+    /** INSERT時の一括実行数（自動調整する場合は初期値） */
+    private int batchSize = BulkValidationResult.BATCH_SIZE;
+
+    /** INSERT時の一括実行数の最小値 */
+    private int minBatchSize = BulkValidationResult.BATCH_SIZE;
+
+    /** INSERT時の一括実行数の最大値 */
+    private int maxBatchSize = BulkValidationResult.BATCH_SIZE;
+
+    /** アップロード処理の計測結果（計測しない場合は{@code null}） */
+    private UploadMetrics metrics;
+
+    /** 読み込みと同時にダイジェストを計算する入力ストリーム（計算しない場合は{@code null}） */
+    private DigestingInputStream digestStream;
+
+    /** 進捗（記録しない場合は{@code null}） */
+    private UploadProgress progress;
+
+    /** 進捗の通知先（通知しない場合は{@code null}） */
+    private UploadProgressListener progressListener;
+
+    /** 進捗を通知するレコード数の間隔 */
+    private int progressRecordInterval;
+
+    /** 進捗を通知する時間の間隔（ミリ秒） */
+    private long progressTimeIntervalMillis;
+
+    /** アップロードファイルの入力ストリーム（読み込んだバイト数を取得できない場合は{@code null}） */
+    private FileInputStream source;
+
+    /** アップロードファイルのバイト数（不明な場合は-1） */
+    private long sourceLength = -1L;
+
     /**
      * コンストラクタ。
      *
@@ -67,7 +138,435 @@ public class BulkValidator {
      */
     @Published
     public <FORM> BulkValidationResult<FORM> validateAll(ValidatingStrategy<FORM> validatingStrategy) {
-        return new BulkValidationDriver<FORM>(validatingStrategy, formatter, fileName).validateAll();
+        return createDriver(validatingStrategy, this.<FORM>createResult()).validateAll();
+    }
+
+    /**
+     * ヒープ上に保持するバリデーション済みオブジェクトの最大件数を設定する。
+     * <p/>
+     * 最大件数を超えたバリデーション済みオブジェクトは、シリアライズして一時ファイルへ退避する。
+     * 退避したオブジェクトは、{@link BulkValidationResult#getValidObjects()}の結果を先頭から順に参照した際や、
+     * {@link BulkValidationResult#importAll(InsertionStrategy)}の実行時に一時ファイルから読み込まれる。
+     * 一時ファイルは{@link BulkValidationResult#close()}で削除されるため、一括バリデーション結果の使用後に必ず呼び出すこと。
+     * バリデーション中に例外が発生した場合は、一時ファイルを削除してから例外を送出する。
+     * <p/>
+     * 本設定を使用する場合、フォームクラスは{@link java.io.Serializable}を実装していなければならない。
+     *
+     * @param maxValidObjectsOnHeap ヒープ上に保持する最大件数（0以下の場合は無制限）
+     * @return 本インスタンス
+     */
+    @Published(tag = "architect")
+    public BulkValidator setMaxValidObjectsOnHeap(int maxValidObjectsOnHeap) {
+        this.maxValidObjectsOnHeap = maxValidObjectsOnHeap;
+        return this;
+    }
+
+    /**
+     * バリデーション済みオブジェクトを退避する一時ファイルのディレクトリを設定する。
+     * <p/>
+     * 設定しない場合、システムのデフォルトの一時ディレクトリを使用する。
+     *
+     * @param spillDirectory 一時ファイルのディレクトリ
+     * @return 本インスタンス
+     * @see #setMaxValidObjectsOnHeap(int)
+     */
+    @Published(tag = "architect")
+    public BulkValidator setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    /**
+     * 一括バリデーションを打ち切る最大エラー件数を設定する。
+     * <p/>
+     * エラーが発生したレコード数が最大エラー件数に達した時点でバリデーションを打ち切り、
+     * フォーマッタをクローズする。
+     * 打ち切った場合、{@link BulkValidationResult#isTruncated()}は{@code true}を返却し、
+     * 指定されたメッセージIDのメッセージが{@link BulkValidationResult#getTruncationMessage()}で取得できる。
+     * メッセージのパラメータには、打ち切った行の行番号、エラーが発生したレコード数、処理したレコード数がこの順に設定される
+     * （ヘッダレコードや複数行のレコードがある場合、行番号と処理したレコード数は一致しない）。
+     * <p/>
+     * レイアウトの異なるファイルがアップロードされた場合など、全レコードがエラーとなるような場合に、
+     * 無駄なバリデーション処理を行わないために使用する。
+     *
+     * @param maxErrorCount            最大エラー件数
+     * @param messageIdOnTooManyErrors 打ち切った場合のメッセージID
+     * @return 本インスタンス
+     */
+    @Published
+    public BulkValidator setMaxErrorCount(int maxErrorCount, String messageIdOnTooManyErrors) {
+        errorThreshold.setMaxErrorCount(maxErrorCount, messageIdOnTooManyErrors);
+        return this;
+    }
+
+    /**
+     * 一括バリデーションを打ち切る最大エラー率を設定する。
+     * <p/>
+     * サンプル件数以上のレコードを処理した時点で、エラーが発生したレコードの割合が最大エラー率を超えた場合、
+     * バリデーションを打ち切る。打ち切った場合の動作は{@link #setMaxErrorCount(int, String)}と同じである。
+     *
+     * @param maxErrorRatio            最大エラー率（0より大きく1未満）
+     * @param sampleSize               エラー率を判定するまでに処理するレコード数
+     * @param messageIdOnTooManyErrors 打ち切った場合のメッセージID
+     * @return 本インスタンス
+     */
+    @Published
+    public BulkValidator setMaxErrorRatio(double maxErrorRatio, int sampleSize, String messageIdOnTooManyErrors) {
+        errorThreshold.setMaxErrorRatio(maxErrorRatio, sampleSize, messageIdOnTooManyErrors);
+        return this;
+    }
+
+    /**
+     * エラーメッセージを保持する行数の上限を設定する。
+     * <p/>
+     * 上限を超えてエラーが発生した場合、超えた行のエラーメッセージは保持せず件数のみを数える。
+     * エラーが発生したレコード数は{@link BulkValidationResult#getErrorCount()}で、
+     * メッセージを保持していないレコード数は{@link BulkValidationResult.ErrorMessages#getOmittedCount()}で取得できる。
+     * <p/>
+     * バリデーションは打ち切らないため、大半のレコードがエラーとなるファイルでも全レコードをバリデーションしつつ、
+     * エラーメッセージによるメモリ使用量を抑えることができる。
+     * デフォルトは0であり、この場合は全ての行のエラーメッセージを保持する。
+     *
+     * @param maxRetainedErrorRecords メッセージを保持する行数の上限（0以下の場合は無制限）
+     * @return 本インスタンス
+     */
+    @Published
+    public BulkValidator setMaxRetainedErrorRecords(int maxRetainedErrorRecords) {
+        this.maxRetainedErrorRecords = maxRetainedErrorRecords;
+        return this;
+    }
+
+    /**
+     * アップロードファイル内でキーが重複していないかを検査するよう設定する。
+     * <p/>
+     * バリデーション済みオブジェクトの指定されたプロパティの値の組をキーとし、
+     * 先に現れた行とキーが重複した行をエラーとする。
+     * エラーメッセージは{@link BulkValidationResult#getErrorMessages()}に行番号と共に格納され、
+     * メッセージのパラメータには、重複した行の行番号と先に現れた行の行番号がこの順に設定される。
+     * 重複した行はバリデーション済みオブジェクトに含まれず、最大エラー件数などの判定ではエラーとして数える。
+     * <p/>
+     * キーは64ビットのフィンガープリントと、プロパティの値の文字列表現を符号化したバイト列として
+     * プリミティブの配列に保持するため、キーごとにオブジェクトを生成せずに検査できる
+     * （キー1件あたり、数十バイトとキーの文字列表現の長さ分のメモリを使用する）。
+     * フィンガープリントが一致した場合のみ、符号化したキーを比較して重複かどうかを確定するため、
+     * フィンガープリントの衝突により重複と誤判定することはない。
+     * 比較にバリデーション済みオブジェクトは使用しないため、一時ファイルへ退避したオブジェクトを読み込むことはない。
+     *
+     * @param messageIdOnDuplicateKey キーが重複した場合のメッセージID
+     * @param propertyNames           キーとするプロパティ名
+     * @return 本インスタンス
+     */
+    @Published
+    public BulkValidator setUniqueKey(String messageIdOnDuplicateKey, String... propertyNames) {
+        if (propertyNames.length == 0) {
+            throw new IllegalArgumentException("propertyNames must not be empty.");
+        }
+        this.uniqueKeyPropertyNames = propertyNames.clone();
+        this.messageIdOnDuplicateKey = messageIdOnDuplicateKey;
+        return this;
+    }
+
+    /**
+     * アップロード処理の計測結果を保持するオブジェクトを設定する。
+     *
+     * @param metrics 計測結果を保持するオブジェクト（計測しない場合は{@code null}）
+     * @return 本インスタンス
+     */
+    BulkValidator setMetrics(UploadMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * 読み込みと同時にダイジェストを計算する入力ストリームを設定する。
+     *
+     * @param digestStream ダイジェストを計算する入力ストリーム（計算しない場合は{@code null}）
+     * @return 本インスタンス
+     */
+    BulkValidator setDigestStream(DigestingInputStream digestStream) {
+        this.digestStream = digestStream;
+        return this;
+    }
+
+    /**
+     * 進捗を設定する。
+     *
+     * @param progress 進捗（記録しない場合は{@code null}）
+     * @return 本インスタンス
+     */
+    BulkValidator setProgress(UploadProgress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * アップロードファイルの入力ストリームを設定する。
+     * <p/>
+     * 進捗を通知する際、読み込んだバイト数の取得に使用する。
+     *
+     * @param source       アップロードファイルの入力ストリーム（読み込んだバイト数を取得できない場合は{@code null}）
+     * @param sourceLength アップロードファイルのバイト数（不明な場合は-1）
+     * @return 本インスタンス
+     */
+    BulkValidator setSource(FileInputStream source, long sourceLength) {
+        this.source = source;
+        this.sourceLength = sourceLength;
+        return this;
+    }
+
+    /**
+     * 進捗の通知先を設定する。
+     * <p/>
+     * 一括バリデーション中および{@link BulkValidationResult#importAll(InsertionStrategy)}による一括登録中に、
+     * {@code recordInterval}件処理するごと、または前回の通知から{@code timeIntervalMillis}ミリ秒経過するごとに通知する。
+     * 時間は各レコードの処理後に判定するため、1件の処理に時間を要する場合は間隔が長くなる。
+     * 処理の終了時には必ず通知する。
+     * <p/>
+     * 通知先を設定しない場合、進捗の判定は一切行わない。
+     *
+     * @param listener           進捗の通知先（{@code null}の場合は通知しない）
+     * @param recordInterval     通知するレコード数の間隔（0以下の場合はレコード数では通知しない）
+     * @param timeIntervalMillis 通知する時間の間隔（ミリ秒、0以下の場合は時間では通知しない）
+     * @return 本インスタンス
+     */
+    @Published
+    public BulkValidator setProgressListener(UploadProgressListener listener, int recordInterval,
+                                             long timeIntervalMillis) {
+        this.progressListener = listener;
+        this.progressRecordInterval = recordInterval;
+        this.progressTimeIntervalMillis = timeIntervalMillis;
+        return this;
+    }
+
+    /**
+     * アップロードファイルのダイジェストを16進数文字列で取得する。
+     * <p/>
+     * ダイジェストはレコードフォーマッタがファイルを読み込む際に同時に計算され、
+     * 一括バリデーションの終了時（レコードフォーマッタのクローズ時）に確定する。
+     * アルゴリズムは{@link UploadHelper#setDigestAlgorithms(String...)}で指定する。
+     *
+     * @param algorithm アルゴリズム名
+     * @return ダイジェスト（大文字の16進数文字列）
+     * @throws IllegalArgumentException 指定されていないアルゴリズムの場合
+     * @throws IllegalStateException    一括バリデーションが終了していない場合、
+     *                                  またはバリデーションを打ち切ったためファイルを終端まで読み込んでいない場合
+     * @see UploadHelper#setDigestRemainingOnClose(boolean)
+     */
+    @Published
+    public String getDigest(String algorithm) {
+        return getDigest(digestStream, algorithm);
+    }
+
+    /**
+     * ダイジェストを16進数文字列で取得する。
+     *
+     * @param digestStream ダイジェストを計算した入力ストリーム（計算しない場合は{@code null}）
+     * @param algorithm    アルゴリズム名
+     * @return ダイジェスト（大文字の16進数文字列）
+     * @throws IllegalArgumentException 指定されていないアルゴリズムの場合
+     * @throws IllegalStateException    ダイジェストが確定していない場合
+     */
+    static String getDigest(DigestingInputStream digestStream, String algorithm) {
+        if (digestStream == null) {
+            throw new IllegalArgumentException(
+                    "digest algorithm was not specified. algorithm=[" + algorithm + "] specified=[]");
+        }
+        return BinaryUtil.convertToHexString(digestStream.getDigest(algorithm));
+    }
+
+    /**
+     * INSERT時の一括実行数を設定する。
+     * <p/>
+     * 本インスタンスが生成する{@link BulkValidationResult}および
+     * {@link #validateAndImportAll(ValidatingStrategy, InsertionStrategy, boolean)}での登録に適用される。
+     * 本メソッドで設定した場合、一括実行数は自動調整しない。
+     * デフォルトは{@value BulkValidationResult#BATCH_SIZE}。
+     *
+     * @param batchSize 一括実行数
+     * @return 本インスタンス
+     */
+    @Published
+    public BulkValidator setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than 0. batchSize=[" + batchSize + "]");
+        }
+        this.batchSize = batchSize;
+        this.minBatchSize = batchSize;
+        this.maxBatchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * INSERT時の一括実行数を自動調整するよう設定する。
+     * <p/>
+     * バッチ実行に要した時間から1秒あたりの登録件数を計測し、
+     * 登録件数が最大となるよう最小値と最大値の範囲内で一括実行数を変更する。
+     * 現在の一括実行数を初期値とする。
+     * 変更した一括実行数はデバッグレベルでログ出力される。
+     *
+     * @param minBatchSize 一括実行数の最小値
+     * @param maxBatchSize 一括実行数の最大値
+     * @return 本インスタンス
+     */
+    @Published
+    public BulkValidator setAdaptiveBatchSize(int minBatchSize, int maxBatchSize) {
+        // 範囲の妥当性を検証する
+        new BatchSizeController(batchSize, minBatchSize, maxBatchSize);
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * 一括バリデーション結果を生成する。
+     *
+     * @param <FORM> バリデーションに使用するフォームクラスの型
+     * @return 一括バリデーション結果
+     */
+    private <FORM> BulkValidationResult<FORM> createResult() {
+        List<FORM> validObjects = maxValidObjectsOnHeap <= 0
+                ? new ArrayList<FORM>()
+                : new SpillableList<FORM>(maxValidObjectsOnHeap, spillDirectory);
+        BulkValidationResult<FORM> result = new BulkValidationResult<FORM>(batchSize, validObjects);
+        if (minBatchSize < maxBatchSize) {
+            result.setAdaptiveBatchSize(minBatchSize, maxBatchSize);
+        }
+        result.setMaxRetainedErrorRecords(maxRetainedErrorRecords);
+        result.setMetrics(metrics);
+        result.setDigestStream(digestStream);
+        result.setProgress(progress);
+        result.setProgressListener(progressListener, progressRecordInterval, progressTimeIntervalMillis);
+        if (progress != null) {
+            progress.resultCreated(result);
+        }
+        return result;
+    }
+
+    /**
+     * バリデーションを並列実行する{@link ExecutorService}を設定する。
+     * <p/>
+     * 設定した場合、レコードの読み込みは呼び出し元のスレッドで行い、
+     * 読み込んだレコードを一定件数ごとにまとめて{@link ExecutorService}でバリデーションする。
+     * バリデーション済みオブジェクトの順序とエラーメッセージの行番号は、逐次実行した場合と同じとなる。
+     * <p/>
+     * {@link ValidatingStrategy}は複数スレッドから同時に呼び出されるため、スレッドセーフでなければならない。
+     * （{@link BasicValidatingStrategy}はスレッドセーフである）
+     *
+     * @param executor バリデーションを実行する{@link ExecutorService}（{@code null}の場合は逐次実行する）
+     * @return 本インスタンス
+     */
+    @Published(tag = "architect")
+    public BulkValidator setValidationExecutor(ExecutorService executor) {
+        return setValidationExecutor(executor, DEFAULT_VALIDATION_BLOCK_SIZE);
+    }
+
+    /**
+     * バリデーションを並列実行する{@link ExecutorService}と、ワーカースレッドにまとめて渡すレコード数を設定する。
+     *
+     * @param executor  バリデーションを実行する{@link ExecutorService}（{@code null}の場合は逐次実行する）
+     * @param blockSize ワーカースレッドにまとめて渡すレコード数
+     * @return 本インスタンス
+     * @see #setValidationExecutor(ExecutorService)
+     */
+    @Published(tag = "architect")
+    public BulkValidator setValidationExecutor(ExecutorService executor, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be greater than 0. blockSize=[" + blockSize + "]");
+        }
+        this.validationExecutor = executor;
+        this.validationBlockSize = blockSize;
+        return this;
+    }
+
+    /**
+     * 一括バリデーション実行クラスを生成する。
+     *
+     * @param validatingStrategy バリデーションロジック
+     * @param result             結果を格納する一括バリデーション結果
+     * @param <FORM>             バリデーションに使用するフォームクラスの型
+     * @return 一括バリデーション実行クラス
+     */
+    private <FORM> BulkValidationDriver<FORM> createDriver(ValidatingStrategy<FORM> validatingStrategy,
+                                                           BulkValidationResult<FORM> result) {
+        BulkValidationDriver<FORM> driver
+                = new BulkValidationDriver<FORM>(validatingStrategy, formatter, fileName, result);
+        if (validationExecutor != null) {
+            driver.setExecutor(validationExecutor, validationBlockSize);
+        }
+        if (errorThreshold.isEnabled()) {
+            driver.setErrorThreshold(errorThreshold);
+        }
+        if (uniqueKeyPropertyNames != null) {
+            driver.setUniqueKeyChecker(
+                    new UniqueKeyChecker<FORM>(uniqueKeyPropertyNames, messageIdOnDuplicateKey));
+        }
+        driver.setMetrics(metrics);
+        driver.setProgress(progress);
+        if (progressListener != null) {
+            driver.setProgressReporter(new ProgressReporter(progressListener, progressRecordInterval,
+                    progressTimeIntervalMillis, UploadPhase.VALIDATION, -1, source, sourceLength));
+        }
+        return driver;
+    }
+
+    /**
+     * 一括バリデーション処理と一括登録処理を、ファイルを読み込みながら並行して行う。
+     * <p/>
+     * バリデーション済みオブジェクトは一括実行数ごとに登録され、メモリ上には保持されない。
+     * ただし、行番号の索引とエラーメッセージは保持するため、メモリ使用量はファイルの行数やエラーの行数に応じて増加する
+     * （エラーメッセージを保持する行数は{@link #setMaxRetainedErrorRecords(int)}で制限できる）。
+     * <p/>
+     * エラーが１件でも発生した場合、本メソッドで登録したレコードは全てロールバックされる
+     * （全レコードが妥当な場合のみ登録される）。
+     *
+     * @param validatingStrategy バリデーションロジック
+     * @param insertionStrategy  登録ロジック
+     * @param <FORM>             バリデーションに使用するフォームクラスの型
+     * @return 一括登録結果
+     */
+    @Published
+    public <FORM> BulkImportResult validateAndImportAll(ValidatingStrategy<FORM> validatingStrategy,
+                                                        InsertionStrategy<FORM> insertionStrategy) {
+        return validateAndImportAll(validatingStrategy, insertionStrategy, true);
+    }
+
+    /**
+     * 一括バリデーション処理と一括登録処理を、ファイルを読み込みながら並行して行う。
+     * <p/>
+     * {@code allOrNothing}に{@code true}を指定した場合、エラーが１件でも発生した時点で登録を中止し、
+     * 本メソッドで登録したレコードをロールバックする（セーブポイントを使用するため、
+     * 本メソッド呼び出し前に同一トランザクションで行った更新は取り消されない）。
+     * {@code false}を指定した場合、エラーが発生したレコードを除く全てのレコードを登録する。
+     * <p/>
+     * {@code allOrNothing}に{@code true}を指定した場合、登録中に実行時例外が発生したときも
+     * 本メソッドで登録したレコードをロールバックした上で例外を送出する。
+     * <p/>
+     * いずれの場合も、エラーメッセージを収集するため全レコードのバリデーションを実行する。
+     *
+     * @param validatingStrategy バリデーションロジック
+     * @param insertionStrategy  登録ロジック
+     * @param allOrNothing       全レコードが妥当な場合のみ登録する場合、{@code true}
+     * @param <FORM>             バリデーションに使用するフォームクラスの型
+     * @return 一括登録結果
+     */
+    @Published
+    public <FORM> BulkImportResult validateAndImportAll(ValidatingStrategy<FORM> validatingStrategy,
+                                                        InsertionStrategy<FORM> insertionStrategy,
+                                                        boolean allOrNothing) {
+        StreamingImportResult<FORM> result = new StreamingImportResult<FORM>(insertionStrategy,
+                new BatchSizeController(batchSize, minBatchSize, maxBatchSize), allOrNothing);
+        result.setMaxRetainedErrorRecords(maxRetainedErrorRecords);
+        result.setMetrics(metrics);
+        result.setDigestStream(digestStream);
+        result.setProgress(progress);
+        result.setProgressListener(progressListener, progressRecordInterval, progressTimeIntervalMillis);
+        try {
+            createDriver(validatingStrategy, result).validateAll();
+            return new BulkImportResult(result, result.complete());
+        } catch (RuntimeException e) {
+            result.abort();
+            throw e;
+        }
     }
 
     /**
@@ -135,6 +634,40 @@ public class BulkValidator {
                     = new BasicValidatingStrategy<F>(formClass, validateFor, this);
             return bulkValidator.validateAll(strategy);
         }
+
+        /**
+         * 指定されたフォームクラスを用いて一括バリデーション処理を行いながら、
+         * 指定されたSQLIDを用いて一括登録する。
+         * <p/>
+         * バリデーション済みオブジェクトはメモリ上に保持されないため、大量データのアップロードに適している。
+         * エラーが１件でも発生した場合、本メソッドで登録したレコードは全てロールバックされ、例外が送出される。
+         *
+         * @param formClass       バリデーションに使用するフォームクラス
+         * @param validateFor     バリデーションメソッド名
+         * @param dbAccessSupport 登録に使用する{@link DbAccessSupport}クラス
+         * @param insertSqlId     登録に使用するSQLID
+         * @param <F>             フォームクラスの型
+         * @return レコード登録件数
+         * @throws ApplicationException 一件でもエラーが発生した場合。
+         *          この例外には、発生したすべてのエラーのメッセージが格納されている。
+         */
+        @Published
+        public <F> int validateAndImportWith(Class<F> formClass, String validateFor,
+                                             DbAccessSupport dbAccessSupport, String insertSqlId)
+                throws ApplicationException {
+            BasicValidatingStrategy<F> strategy
+                    = new BasicValidatingStrategy<F>(formClass, validateFor, this);
+            BulkImportResult result = bulkValidator.validateAndImportAll(
+                    strategy, BulkValidationResult.<F>createInsertionStrategy(dbAccessSupport, insertSqlId));
+            if (result.hasError()) {
+                List<Message> messages = result.getAllErrorMessages();
+                if (result.isTruncated()) {
+                    messages.add(result.getTruncationMessage());
+                }
+                throw new ApplicationException(messages);
+            }
+            return result.getImportedCount();
+        }
     }
 
     /**
@@ -145,7 +678,7 @@ public class BulkValidator {
     static class BulkValidationDriver<FORM> {
 
         /** 一括バリデーション実行結果クラス */
-        private final BulkValidationResult<FORM> result = new BulkValidationResult<FORM>();
+        private final BulkValidationResult<FORM> result;
 
         /** バリデーションロジック */
         private final ValidatingStrategy<FORM> strategy;
@@ -156,6 +689,33 @@ public class BulkValidator {
         /** アップロードされたファイルのファイル名 */
         private final String fileName;
 
+        /** バリデーションを並列実行する{@link ExecutorService}（逐次実行の場合は{@code null}） */
+        private ExecutorService executor;
+
+        /** ワーカースレッドにまとめて渡すレコード数 */
+        private int blockSize;
+
+        /** 一括バリデーションを打ち切るエラー件数の閾値（打ち切らない場合は{@code null}） */
+        private ErrorThreshold errorThreshold;
+
+        /** キーの重複を検査するオブジェクト（検査しない場合は{@code null}） */
+        private UniqueKeyChecker<FORM> uniqueKeyChecker;
+
+        /** 処理したレコード数 */
+        private int processedCount = 0;
+
+        /** エラーが発生したレコード数 */
+        private int errorCount = 0;
+
+        /** アップロード処理の計測結果（計測しない場合は{@code null}） */
+        private UploadMetrics metrics;
+
+        /** 進捗（記録しない場合は{@code null}） */
+        private UploadProgress progress;
+
+        /** 進捗の通知を行うオブジェクト（通知しない場合は{@code null}） */
+        private ProgressReporter progressReporter;
+
         /**
          * コンストラクタ
          *
@@ -164,26 +724,62 @@ public class BulkValidator {
          * @param fileName  アップロードされたファイルのファイル名
          */
         BulkValidationDriver(ValidatingStrategy<FORM> strategy, DataRecordFormatter formatter, String fileName) {
+            this(strategy, formatter, fileName, new BulkValidationResult<FORM>());
+        }
+
+        /**
+         * 結果を格納する一括バリデーション結果クラスを指定して、インスタンスを生成する。
+         *
+         * @param strategy  バリデーションロジック
+         * @param formatter アップロードファイルのレコードフォーマッタ
+         * @param fileName  アップロードされたファイルのファイル名
+         * @param result    一括バリデーション結果
+         */
+        BulkValidationDriver(ValidatingStrategy<FORM> strategy, DataRecordFormatter formatter, String fileName,
+                             BulkValidationResult<FORM> result) {
             this.strategy = strategy;
             this.formatter = formatter;
             this.fileName = fileName;
+            this.result = result;
         }
 
         /**
          * 一括バリデーション処理を実行する。
          * バリデーションエラーが存在した場合でも処理を継続し、全レコードのバリデーションを実行する
-         * （例外は発生しない）。
+         * （バリデーションエラーでは例外は発生しない）。
+         * <p/>
+         * ただし、以下の場合は例外を送出する。
+         * <ul>
+         * <li>ファイルの読み込みに失敗した場合</li>
+         * <li>空ファイルの場合に{@link ValidatingStrategy#handleEmptyFile(String)}が例外を送出した場合</li>
+         * <li>結果が{@link StreamingImportResult}の場合に、バリデーションと並行して行う登録で例外が発生した場合
+         * （呼び出し元で{@link StreamingImportResult#abort()}を呼び出し、登録を中止すること）</li>
+         * </ul>
          *
          * @return 一括バリデーション処理結果
          */
         BulkValidationResult<FORM> validateAll() {
 
+            boolean completed = false;
             try {
                 validateAllRecord();
+                result.endWriting();
+                completed = true;
+                if (progressReporter != null) {
+                    progressReporter.complete(processedCount, errorCount);
+                }
             } catch (IOException e) {
                 throw new RuntimeException(e);
             } finally {
                 FileUtil.closeQuietly(formatter);
+                if (!completed) {
+                    // 結果を返却しないため、退避した一時ファイルをここで削除する（計測結果も通知される）
+                    result.close();
+                }
+            }
+            result.validationFinished();
+            if (progress != null) {
+                progress.validationCompleted(result);
             }
 
             if (result.isEmpty()) {
@@ -192,34 +788,364 @@ public class BulkValidator {
             return result;
         }
 
+        /**
+         * バリデーションを並列実行する。
+         *
+         * @param executor  バリデーションを実行する{@link ExecutorService}
+         * @param blockSize ワーカースレッドにまとめて渡すレコード数
+         * @return 本インスタンス
+         */
+        BulkValidationDriver<FORM> setExecutor(ExecutorService executor, int blockSize) {
+            if (blockSize <= 0) {
+                throw new IllegalArgumentException("blockSize must be greater than 0. blockSize=[" + blockSize + "]");
+            }
+            this.executor = executor;
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * 一括バリデーションを打ち切るエラー件数の閾値を設定する。
+         *
+         * @param errorThreshold エラー件数の閾値
+         * @return 本インスタンス
+         */
+        BulkValidationDriver<FORM> setErrorThreshold(ErrorThreshold errorThreshold) {
+            this.errorThreshold = errorThreshold;
+            return this;
+        }
+
+        /**
+         * キーの重複を検査するオブジェクトを設定する。
+         *
+         * @param uniqueKeyChecker キーの重複を検査するオブジェクト
+         * @return 本インスタンス
+         */
+        BulkValidationDriver<FORM> setUniqueKeyChecker(UniqueKeyChecker<FORM> uniqueKeyChecker) {
+            this.uniqueKeyChecker = uniqueKeyChecker;
+            return this;
+        }
+
+        /**
+         * アップロード処理の計測結果を保持するオブジェクトを設定する。
+         *
+         * @param metrics 計測結果を保持するオブジェクト（計測しない場合は{@code null}）
+         * @return 本インスタンス
+         */
+        BulkValidationDriver<FORM> setMetrics(UploadMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * 進捗を設定する。
+         *
+         * @param progress 進捗（記録しない場合は{@code null}）
+         * @return 本インスタンス
+         */
+        BulkValidationDriver<FORM> setProgress(UploadProgress progress) {
+            this.progress = progress;
+            return this;
+        }
+
+        /**
+         * 進捗の通知を行うオブジェクトを設定する。
+         *
+         * @param progressReporter 進捗の通知を行うオブジェクト（通知しない場合は{@code null}）
+         * @return 本インスタンス
+         */
+        BulkValidationDriver<FORM> setProgressReporter(ProgressReporter progressReporter) {
+            this.progressReporter = progressReporter;
+            return this;
+        }
+
         /**
          * 全レコードをバリデーションする。
          *
          * @throws IOException 入出力例外
          */
         private void validateAllRecord() throws IOException {
+            if (executor != null) {
+                validateAllRecordInParallel();
+                return;
+            }
+            RecordOutcome<FORM> outcome = new RecordOutcome<FORM>();
             while (formatter.hasNext()) {
-                DataRecord dataRecord = null;
                 try {
-                    dataRecord = formatter.readRecord();
-                    ValidationContext<FORM> context = strategy.validateRecord(dataRecord);
-                    logRecord(dataRecord, context);
-                    if (context.isValid()) {
-                        // バリデーション成功
-                        result.addValidObject(context.createObject());
-                    } else {
-                        // バリデーションエラーあり
-                        logValidationError(dataRecord, context);
-                        List<Message> messages = strategy.handleInvalidRecord(dataRecord, context);
-                        result.addErrors(dataRecord.getRecordNumber(), messages);
-                    }
+                    validateRecord(readRecord(), outcome);
                 } catch (InvalidDataFormatException e) {
-                    logFormatError(e);
-                    // 形式エラー
-                    result.addError(e.getRecordNumber(),
-                            strategy.handleInvalidFormatRecord(e));
+                    handleFormatError(e, outcome);
                     // continue loop until eof.
                 }
+                if (!accept(outcome)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 全レコードを並列にバリデーションする。
+         * <p/>
+         * レコードの読み込みは本スレッドで行い、一定件数ごとにまとめてワーカースレッドでバリデーションする。
+         * バリデーション結果は読み込み順に一括バリデーション結果へ反映するため、
+         * バリデーション済みオブジェクトの順序とエラーメッセージの行番号は逐次実行時と同じになる。
+         * 先読みするブロック数には上限を設け、メモリ使用量が増え続けないようにする。
+         *
+         * @throws IOException 入出力例外
+         */
+        private void validateAllRecordInParallel() throws IOException {
+            ThreadContextSnapshot context = ThreadContextSnapshot.take();
+            int maxPendingBlocks = Runtime.getRuntime().availableProcessors() * 2;
+            LinkedList<Future<List<RecordOutcome<FORM>>>> pending
+                    = new LinkedList<Future<List<RecordOutcome<FORM>>>>();
+            List<RecordOutcome<FORM>> block = new ArrayList<RecordOutcome<FORM>>(blockSize);
+            try {
+                while (formatter.hasNext()) {
+                    RecordOutcome<FORM> outcome = new RecordOutcome<FORM>();
+                    try {
+                        outcome.setUnvalidated(readRecord());
+                    } catch (InvalidDataFormatException e) {
+                        handleFormatError(e, outcome);
+                    }
+                    block.add(outcome);
+                    if (block.size() >= blockSize) {
+                        pending.addLast(executor.submit(new ValidationTask(block, context)));
+                        block = new ArrayList<RecordOutcome<FORM>>(blockSize);
+                        if (pending.size() >= maxPendingBlocks && !acceptAll(pending.removeFirst())) {
+                            return;
+                        }
+                    }
+                }
+                if (!block.isEmpty()) {
+                    pending.addLast(executor.submit(new ValidationTask(block, context)));
+                }
+                while (!pending.isEmpty()) {
+                    if (!acceptAll(pending.removeFirst())) {
+                        return;
+                    }
+                }
+            } finally {
+                for (Future<List<RecordOutcome<FORM>>> e : pending) {
+                    e.cancel(true);
+                }
+            }
+        }
+
+        /**
+         * ワーカースレッドでのバリデーション完了を待ち、結果を一括バリデーション結果に反映する。
+         *
+         * @param future バリデーション結果
+         * @return バリデーションを継続する場合は{@code true}
+         */
+        private boolean acceptAll(Future<List<RecordOutcome<FORM>>> future) {
+            List<RecordOutcome<FORM>> outcomes;
+            try {
+                outcomes = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while waiting for validation.", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+            for (RecordOutcome<FORM> e : outcomes) {
+                if (!accept(e)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * １件分のレコードをバリデーションし、結果を設定する。
+         *
+         * @param dataRecord バリデーション対象となるレコード
+         * @param outcome    結果を設定するオブジェクト
+         */
+        private void validateRecord(DataRecord dataRecord, RecordOutcome<FORM> outcome) {
+            long start = startTime();
+            ValidationContext<FORM> context = strategy.validateRecord(dataRecord);
+            recordTime(UploadPhase.VALIDATION, start);
+            logRecord(dataRecord, context);
+            if (context.isValid()) {
+                // バリデーション成功
+                start = startTime();
+                FORM validObject = context.createObject();
+                recordTime(UploadPhase.OBJECT_CREATION, start);
+                outcome.setValid(dataRecord.getRecordNumber(), validObject);
+                if (uniqueKeyChecker != null) {
+                    // キーの符号化とフィンガープリントの算出はワーカースレッドで行い、重複の判定のみを読み込み順に行う
+                    outcome.key = uniqueKeyChecker.encode(validObject);
+                    outcome.fingerprint = UniqueKeyChecker.fingerprint(outcome.key);
+                }
+            } else {
+                // バリデーションエラーあり
+                logValidationError(dataRecord, context);
+                start = startTime();
+                List<Message> messages = strategy.handleInvalidRecord(dataRecord, context);
+                recordTime(UploadPhase.ERROR_MESSAGE, start);
+                outcome.setInvalid(dataRecord.getRecordNumber(), messages);
+            }
+        }
+
+        /**
+         * 1件分のレコードを読み込む。
+         *
+         * @return 読み込んだレコード
+         * @throws IOException 入出力例外
+         */
+        private DataRecord readRecord() throws IOException {
+            if (metrics == null) {
+                return formatter.readRecord();
+            }
+            long start = System.nanoTime();
+            try {
+                return formatter.readRecord();
+            } finally {
+                metrics.recordSince(UploadPhase.PARSE, start);
+            }
+        }
+
+        /**
+         * 処理時間の計測開始時刻を取得する。
+         *
+         * @return 計測開始時刻（計測しない場合は0）
+         */
+        private long startTime() {
+            return metrics == null ? 0L : System.nanoTime();
+        }
+
+        /**
+         * 計測開始時刻から現在までの処理時間を記録する。
+         *
+         * @param phase 処理区分
+         * @param start 計測開始時刻
+         */
+        private void recordTime(UploadPhase phase, long start) {
+            if (metrics != null) {
+                metrics.recordSince(phase, start);
+            }
+        }
+
+        /**
+         * 形式エラーを処理し、結果を設定する。
+         *
+         * @param e       形式エラー
+         * @param outcome 結果を設定するオブジェクト
+         */
+        private void handleFormatError(InvalidDataFormatException e, RecordOutcome<FORM> outcome) {
+            logFormatError(e);
+            long start = startTime();
+            Message message = strategy.handleInvalidFormatRecord(e);
+            recordTime(UploadPhase.ERROR_MESSAGE, start);
+            outcome.setFormatError(e.getRecordNumber(), message);
+        }
+
+        /**
+         * １件分の結果を一括バリデーション結果に反映する。
+         * <p/>
+         * エラー件数が閾値を超えた場合は、バリデーションを打ち切ったことを一括バリデーション結果に設定する。
+         *
+         * @param outcome １件分の結果
+         * @return バリデーションを継続する場合は{@code true}
+         */
+        private boolean accept(RecordOutcome<FORM> outcome) {
+            processedCount++;
+            if (outcome.formatError != null) {
+                // 形式エラー
+                result.addError(outcome.recordNumber, outcome.formatError);
+                errorCount++;
+            } else if (outcome.messages != null) {
+                result.addErrors(outcome.recordNumber, outcome.messages);
+                errorCount++;
+            } else if (isDuplicated(outcome)) {
+                errorCount++;
+            } else {
+                result.addValidObject(outcome.recordNumber, outcome.validObject);
+                if (progress != null) {
+                    progress.recordValid();
+                }
+                if (progressReporter != null) {
+                    progressReporter.report(processedCount, errorCount);
+                }
+                return true;
+            }
+            if (progress != null) {
+                progress.recordInvalid();
+            }
+            if (progressReporter != null) {
+                progressReporter.report(processedCount, errorCount);
+            }
+            if (errorThreshold != null && errorThreshold.isExceeded(processedCount, errorCount)) {
+                logTruncation(outcome.recordNumber);
+                result.truncate(errorThreshold.createMessage(outcome.recordNumber, processedCount, errorCount));
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * バリデーション済みオブジェクトのキーが、先に現れた行と重複しているかを判定する。
+         * <p/>
+         * 重複している場合は、エラーメッセージを一括バリデーション結果に追加する。
+         *
+         * @param outcome １件分の結果
+         * @return 重複している場合は{@code true}
+         */
+        private boolean isDuplicated(RecordOutcome<FORM> outcome) {
+            if (uniqueKeyChecker == null) {
+                return false;
+            }
+            Message message = uniqueKeyChecker.check(outcome.recordNumber, outcome.key, outcome.fingerprint);
+            if (message == null) {
+                return false;
+            }
+            logDuplicateKey(outcome.recordNumber);
+            result.addError(outcome.recordNumber, message);
+            return true;
+        }
+
+        /** ワーカースレッドで、まとめて渡されたレコードをバリデーションするタスク。 */
+        private final class ValidationTask implements Callable<List<RecordOutcome<FORM>>> {
+
+            /** バリデーション対象 */
+            private final List<RecordOutcome<FORM>> block;
+
+            /** 引き継ぐスレッドコンテキスト */
+            private final ThreadContextSnapshot context;
+
+            /**
+             * コンストラクタ。
+             *
+             * @param block   バリデーション対象
+             * @param context 引き継ぐスレッドコンテキスト
+             */
+            ValidationTask(List<RecordOutcome<FORM>> block, ThreadContextSnapshot context) {
+                this.block = block;
+                this.context = context;
+            }
+
+            /** {@inheritDoc} */
+            public List<RecordOutcome<FORM>> call() {
+                ThreadContextSnapshot previous = context.apply();
+                try {
+                    for (RecordOutcome<FORM> e : block) {
+                        if (e.unvalidated != null) {
+                            DataRecord dataRecord = e.unvalidated;
+                            e.unvalidated = null;
+                            validateRecord(dataRecord, e);
+                        }
+                    }
+                    return block;
+                } finally {
+                    previous.apply();
+                }
             }
         }
 
@@ -255,6 +1181,33 @@ public class BulkValidator {
             }
         }
 
+        /**
+         * キーの重複をログ出力する。
+         *
+         * @param recordNumber 重複した行の行番号
+         */
+        private void logDuplicateKey(int recordNumber) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.logDebug(concat("     duplicate key . line=[", recordNumber, "]"));
+            }
+        }
+
+        /**
+         * バリデーションの打ち切りをログ出力する。
+         *
+         * @param recordNumber 最後に処理したレコードの行番号
+         */
+        private void logTruncation(int recordNumber) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.logInfo(concat(
+                        "bulk validation was truncated because of too many errors.",
+                        " fileName=[", fileName, "]",
+                        " line=[", recordNumber, "]",
+                        " processed=[", processedCount, "]",
+                        " errors=[", errorCount, "]"));
+            }
+        }
+
         /**
          * 形式エラーをログ出力する。
          *
@@ -270,5 +1223,91 @@ public class BulkValidator {
 
             }
         }
+
+        /**
+         * １件分のレコードに対する処理結果。
+         *
+         * @param <FORM> バリデーションに使用するフォームクラス
+         */
+        static final class RecordOutcome<FORM> {
+
+            /** 行番号 */
+            private int recordNumber;
+
+            /** バリデーション済みオブジェクト */
+            private FORM validObject;
+
+            /** バリデーションエラーメッセージ */
+            private List<Message> messages;
+
+            /** 形式エラーメッセージ */
+            private Message formatError;
+
+            /** バリデーション前のレコード */
+            private DataRecord unvalidated;
+
+            /** バリデーション済みオブジェクトの符号化したキー */
+            private byte[] key;
+
+            /** バリデーション済みオブジェクトのキーのフィンガープリント */
+            private long fingerprint;
+
+            /**
+             * バリデーション前のレコードを設定する。
+             *
+             * @param dataRecord レコード
+             */
+            void setUnvalidated(DataRecord dataRecord) {
+                clear();
+                this.recordNumber = dataRecord.getRecordNumber();
+                this.unvalidated = dataRecord;
+            }
+
+            /**
+             * バリデーション成功を設定する。
+             *
+             * @param recordNumber 行番号
+             * @param validObject  バリデーション済みオブジェクト
+             */
+            void setValid(int recordNumber, FORM validObject) {
+                clear();
+                this.recordNumber = recordNumber;
+                this.validObject = validObject;
+            }
+
+            /**
+             * バリデーションエラーを設定する。
+             *
+             * @param recordNumber 行番号
+             * @param messages     エラーメッセージ
+             */
+            void setInvalid(int recordNumber, List<Message> messages) {
+                clear();
+                this.recordNumber = recordNumber;
+                this.messages = messages;
+            }
+
+            /**
+             * 形式エラーを設定する。
+             *
+             * @param recordNumber 行番号
+             * @param message      エラーメッセージ
+             */
+            void setFormatError(int recordNumber, Message message) {
+                clear();
+                this.recordNumber = recordNumber;
+                this.formatError = message;
+            }
+
+            /** 設定内容をクリアする。 */
+            private void clear() {
+                validObject = null;
+                messages = null;
+                formatError = null;
+                unvalidated = null;
+                key = null;
+                fingerprint = 0L;
+            }
+        }
     }
 }
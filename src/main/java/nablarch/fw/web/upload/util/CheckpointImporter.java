@@ -0,0 +1,173 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.util.Iterator;
+import java.util.List;
+
+import nablarch.core.db.connection.DbConnectionContext;
+import nablarch.core.db.connection.TransactionManagerConnection;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+
+/**
+ * 一定回数のバッチ実行ごとにコミットし、登録済みのレコード番号をチェックポイントとして記録しながら一括登録するクラス。
+ * <p/>
+ * チェックポイントには、最後にコミットしたレコードのアップロードファイル上の行番号を記録する。
+ * チェックポイントは登録と同じトランザクションで記録するため、
+ * コミットされたレコードとチェックポイントは常に一致する。
+ * 再開時は、チェックポイントに記録された行番号までのレコードを読み飛ばして登録する。
+ * 全件の登録が完了した場合は、チェックポイントを削除してコミットする。
+ * <p/>
+ * 一括登録はエラーが存在しない場合のみ行われるため、
+ * バリデーション済みオブジェクトのn番目（0始まり）は、行番号の索引のn番目のレコードに対応する。
+ * 行番号の索引を持たない場合は、バリデーション済みオブジェクトのn番目（1始まり）の行番号をnとみなす。
+ *
+ * @param <FORM> 登録に使用するフォームクラスの型
+ */
+class CheckpointImporter<FORM> {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(CheckpointImporter.class);
+
+    /** バッチ登録クラス */
+    private final BatchInserter<FORM> inserter;
+
+    /** チェックポイントテーブル */
+    private final CheckpointTable checkpointTable;
+
+    /** アップロードファイルのダイジェスト */
+    private final String digest;
+
+    /** コミット間隔（バッチ実行回数） */
+    private final int commitInterval;
+
+    /** 行番号の索引（バリデーション済みオブジェクトの位置から行番号を求める場合は{@code null}） */
+    private final RecordIndex recordIndex;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param inserter        バッチ登録クラス
+     * @param checkpointTable チェックポイントテーブル
+     * @param digest          アップロードファイルのダイジェスト
+     * @param commitInterval  コミット間隔（バッチ実行回数）
+     * @param recordIndex     行番号の索引（バリデーション済みオブジェクトの位置から行番号を求める場合は{@code null}）
+     */
+    CheckpointImporter(BatchInserter<FORM> inserter, CheckpointTable checkpointTable,
+                       String digest, int commitInterval, RecordIndex recordIndex) {
+        if (digest == null || digest.length() == 0) {
+            throw new IllegalArgumentException("digest must not be empty.");
+        }
+        if (commitInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "commitInterval must be greater than 0. commitInterval=[" + commitInterval + "]");
+        }
+        this.inserter = inserter;
+        this.checkpointTable = checkpointTable;
+        this.digest = digest;
+        this.commitInterval = commitInterval;
+        this.recordIndex = recordIndex;
+    }
+
+    /**
+     * バリデーション済みオブジェクトを登録する。
+     *
+     * @param validObjects バリデーション済みオブジェクト
+     * @param resume       チェックポイントから再開する場合は{@code true}
+     * @return 本メソッドで登録したレコード件数（読み飛ばしたレコードは含まない）
+     * @throws IllegalStateException チェックポイントの行番号がバリデーション済みオブジェクトの行番号に含まれない場合
+     */
+    int importAll(List<FORM> validObjects, boolean resume) {
+        TransactionManagerConnection connection = DbConnectionContext.getTransactionManagerConnection();
+        int skipped = resume ? toSkipCount(checkpointTable.load(connection, digest), validObjects.size()) : 0;
+        if (LOGGER.isDebugEnabled() && skipped > 0) {
+            LOGGER.logDebug(concat("resume import from checkpoint. digest=[", digest, "] skipped=[", skipped, "]"));
+        }
+
+        int committedBatches = 0;
+        Iterator<FORM> it = SpillableList.iterator(validObjects, skipped, validObjects.size());
+        try {
+            while (it.hasNext()) {
+                inserter.add(it.next());
+                if (inserter.getExecutedBatchCount() - committedBatches >= commitInterval) {
+                    checkpoint(connection, toRecordNumber(skipped + inserter.getExecutedCount()));
+                    committedBatches = inserter.getExecutedBatchCount();
+                }
+            }
+        } finally {
+            SpillableList.closeIterator(it);
+        }
+        inserter.flush();
+        complete(connection);
+        return inserter.getExecutedCount();
+    }
+
+    /**
+     * チェックポイントの行番号から、読み飛ばすバリデーション済みオブジェクトの件数を求める。
+     *
+     * @param recordNumber チェックポイントの行番号（チェックポイントが存在しない場合は0）
+     * @param size         バリデーション済みオブジェクトの件数
+     * @return 読み飛ばす件数
+     * @throws IllegalStateException チェックポイントの行番号がバリデーション済みオブジェクトの行番号に含まれない場合
+     */
+    private int toSkipCount(int recordNumber, int size) {
+        if (recordNumber == 0) {
+            return 0;
+        }
+        if (size == 0 || recordNumber > toRecordNumber(size)) {
+            throw new IllegalStateException(concat(
+                    "checkpoint exceeds the number of records. ",
+                    "digest=[", digest, "] checkpoint=[", recordNumber, "] records=[", size, "]"));
+        }
+        if (recordIndex == null) {
+            return recordNumber;
+        }
+        int slot = recordIndex.getValidSlot(recordNumber);
+        if (slot < 0) {
+            throw new IllegalStateException(concat(
+                    "checkpoint does not match any record number of the upload file. ",
+                    "digest=[", digest, "] checkpoint=[", recordNumber, "]"));
+        }
+        return slot + 1;
+    }
+
+    /**
+     * 登録済みのバリデーション済みオブジェクトの件数から、最後に登録したレコードの行番号を求める。
+     *
+     * @param count 登録済みのバリデーション済みオブジェクトの件数（1以上）
+     * @return 行番号
+     */
+    private int toRecordNumber(int count) {
+        return recordIndex == null ? count : recordIndex.getRecordNumber(count - 1);
+    }
+
+    /**
+     * チェックポイントを記録し、コミットする。
+     *
+     * @param connection   コネクション
+     * @param recordNumber 最後に登録したレコードの行番号
+     */
+    private void checkpoint(TransactionManagerConnection connection, int recordNumber) {
+        checkpointTable.save(connection, digest, recordNumber);
+        connection.commit();
+        inserter.committed();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug(concat("checkpoint committed. digest=[", digest, "] record=[", recordNumber, "]"));
+        }
+    }
+
+    /**
+     * 全件の登録完了時に、チェックポイントを削除してコミットする。
+     *
+     * @param connection コネクション
+     */
+    private void complete(TransactionManagerConnection connection) {
+        checkpointTable.delete(connection, digest);
+        connection.commit();
+        inserter.committed();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug(concat("import completed. checkpoint deleted. digest=[", digest, "]"));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.statement.SqlPStatement;
+import nablarch.core.db.statement.SqlResultSet;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 一括登録のチェックポイントを記録するテーブルへアクセスするクラス。
+ * <p/>
+ * チェックポイントテーブルは、コミット間隔を指定した一括登録において、
+ * アップロードファイルのダイジェストごとに、最後にコミットしたレコードの行番号を記録するテーブルである。
+ * 全件の登録が完了したファイルのチェックポイントは削除される。
+ * ファイルダイジェストのカラムを主キーとし、文字列型とすること。
+ * 登録済みレコード番号のカラムは数値型とすること。
+ * <p/>
+ * テーブル名およびカラム名を変更する場合は、本クラスを{@value #REPOSITORY_KEY}という名前でコンポーネント定義に登録する。
+ * 登録されていない場合は、本クラスのデフォルト値が使用される。
+ * <pre>
+ * {@code
+ * <component name="uploadCheckpointTable" class="nablarch.fw.web.upload.util.CheckpointTable">
+ *   <property name="tableName" value="UPLOAD_CHECKPOINT" />
+ *   <property name="digestColumnName" value="FILE_DIGEST" />
+ *   <property name="recordNumberColumnName" value="LAST_RECORD_NUMBER" />
+ * </component>
+ * }
+ * </pre>
+ *
+ * @see BulkValidationResult#importAllWithCheckpoint(InsertionStrategy, String, int)
+ */
+@Published(tag = "architect")
+public class CheckpointTable {
+
+    /** コンポーネント定義に登録する際の名前 */
+    public static final String REPOSITORY_KEY = "uploadCheckpointTable";
+
+    /** 本クラスのデフォルト値を持つインスタンス */
+    private static final CheckpointTable DEFAULT = new CheckpointTable();
+
+    /** テーブル名 */
+    private String tableName = "UPLOAD_CHECKPOINT";
+
+    /** ファイルダイジェストのカラム名 */
+    private String digestColumnName = "FILE_DIGEST";
+
+    /** 登録済みレコード番号のカラム名 */
+    private String recordNumberColumnName = "LAST_RECORD_NUMBER";
+
+    /**
+     * コンポーネント定義に登録された{@code CheckpointTable}を取得する。
+     * <p/>
+     * 登録されていない場合は、デフォルト値を持つインスタンスを返却する。
+     *
+     * @return {@code CheckpointTable}
+     */
+    static CheckpointTable getInstance() {
+        CheckpointTable table = SystemRepository.get(REPOSITORY_KEY);
+        return table == null ? DEFAULT : table;
+    }
+
+    /**
+     * テーブル名を設定する。
+     * デフォルトは"UPLOAD_CHECKPOINT"。
+     *
+     * @param tableName テーブル名
+     */
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * ファイルダイジェストのカラム名を設定する。
+     * デフォルトは"FILE_DIGEST"。
+     *
+     * @param digestColumnName カラム名
+     */
+    public void setDigestColumnName(String digestColumnName) {
+        this.digestColumnName = digestColumnName;
+    }
+
+    /**
+     * 登録済みレコード番号のカラム名を設定する。
+     * デフォルトは"LAST_RECORD_NUMBER"。
+     *
+     * @param recordNumberColumnName カラム名
+     */
+    public void setRecordNumberColumnName(String recordNumberColumnName) {
+        this.recordNumberColumnName = recordNumberColumnName;
+    }
+
+    /**
+     * 登録済みのレコード番号を取得する。
+     *
+     * @param connection コネクション
+     * @param digest     アップロードファイルのダイジェスト
+     * @return 登録済みのレコード番号（チェックポイントが存在しない場合は0）
+     */
+    int load(AppDbConnection connection, String digest) {
+        SqlPStatement statement = connection.prepareStatement(
+                "SELECT " + recordNumberColumnName + " FROM " + tableName + " WHERE " + digestColumnName + " = ?");
+        statement.setString(1, digest);
+        SqlResultSet rows = statement.retrieve();
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Integer recordNumber = rows.get(0).getInteger(recordNumberColumnName);
+        return recordNumber == null ? 0 : recordNumber;
+    }
+
+    /**
+     * 登録済みのレコード番号を記録する。
+     *
+     * @param connection   コネクション
+     * @param digest       アップロードファイルのダイジェスト
+     * @param recordNumber 登録済みのレコード番号
+     */
+    void save(AppDbConnection connection, String digest, int recordNumber) {
+        SqlPStatement update = connection.prepareStatement(
+                "UPDATE " + tableName + " SET " + recordNumberColumnName + " = ? WHERE " + digestColumnName + " = ?");
+        update.setInt(1, recordNumber);
+        update.setString(2, digest);
+        if (update.executeUpdate() == 0) {
+            SqlPStatement insert = connection.prepareStatement(
+                    "INSERT INTO " + tableName + " (" + digestColumnName + ", " + recordNumberColumnName + ")"
+                            + " VALUES (?, ?)");
+            insert.setString(1, digest);
+            insert.setInt(2, recordNumber);
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * チェックポイントを削除する。
+     *
+     * @param connection コネクション
+     * @param digest     アップロードファイルのダイジェスト
+     */
+    void delete(AppDbConnection connection, String digest) {
+        SqlPStatement delete = connection.prepareStatement(
+                "DELETE FROM " + tableName + " WHERE " + digestColumnName + " = ?");
+        delete.setString(1, digest);
+        delete.executeUpdate();
+    }
+}
@@ -0,0 +1,347 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.StringResource;
+import nablarch.fw.web.upload.util.BulkValidationResult.ErrorMessages;
+
+/**
+ * 一括バリデーションのエラーメッセージを、少ないメモリで保持するクラス。
+ * <p/>
+ * 行番号はプリミティブの昇順配列で保持し、行ごとのメッセージは1件であればメッセージを、
+ * 複数件であればメッセージの配列を保持する。
+ * <p/>
+ * バリデーションエラーのメッセージ（{@link RecordErrorMessage}）は、行番号を除いた
+ * メッセージレベル・文字列リソース（メッセージID）・元のメッセージ（パラメータ）の組をテンプレートとして共有し、
+ * 行ごとにはテンプレートへの参照のみを保持する。メッセージは取得時に行番号を埋め込んで生成する。
+ * 元のメッセージは{@link Message#equals(Object)}で等しいものを同じテンプレートとするため、
+ * 同じ項目で同じエラーが発生した行は1つのテンプレートを共有する。
+ * それ以外のメッセージ（形式エラーなど）は行番号をパラメータに含むため、そのまま保持する。
+ * <p/>
+ * 保持する行数の上限を設定した場合、上限を超えた行のメッセージは保持せず件数のみを数える。
+ * 上限を超えた行は行番号のみをビット列で記録するため、同じ行のメッセージが再度追加されても重複して数えない。
+ * <p/>
+ * 本クラスはバリデーションを実行するスレッドのみから更新されるため、スレッドセーフではない。
+ */
+final class CompactErrorStore {
+
+    /** 配列の初期サイズ */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** 共有するテンプレートの最大件数 */
+    private static final int MAX_POOL_SIZE = 4096;
+
+    /** メッセージを保持する行数の上限（0以下の場合は無制限） */
+    private final int maxRetainedRecords;
+
+    /** エラーが発生した行番号（昇順） */
+    private int[] recordNumbers = new int[0];
+
+    /** 行ごとのメッセージ（メッセージまたはテンプレート、もしくはそれらの配列） */
+    private Object[] entries = new Object[0];
+
+    /** メッセージを保持している行数 */
+    private int retainedCount = 0;
+
+    /** エラーが発生した行数（保持していない行を含む） */
+    private int errorCount = 0;
+
+    /** 上限を超えたためメッセージを保持していない行番号 */
+    private final BitSet omittedRecordNumbers = new BitSet();
+
+    /** 共有するテンプレート */
+    private final Map<MessageTemplate, MessageTemplate> templates = new HashMap<MessageTemplate, MessageTemplate>();
+
+    /**
+     * コンストラクタ。
+     *
+     * @param maxRetainedRecords メッセージを保持する行数の上限（0以下の場合は無制限）
+     */
+    CompactErrorStore(int maxRetainedRecords) {
+        this.maxRetainedRecords = maxRetainedRecords;
+    }
+
+    /**
+     * エラーメッセージを追加する。
+     * <p/>
+     * 既に同じ行番号のメッセージを保持している場合は置き換える。
+     * 同じ行番号のメッセージを複数回追加しても、エラーが発生した行数は1行として数える。
+     *
+     * @param recordNumber エラーが発生した行番号
+     * @param messages     エラーメッセージ
+     */
+    void add(int recordNumber, List<Message> messages) {
+        if (messages.size() == 1) {
+            add(recordNumber, messages.get(0));
+            return;
+        }
+        Object[] array = new Object[messages.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = compact(recordNumber, messages.get(i));
+        }
+        put(recordNumber, array);
+    }
+
+    /**
+     * エラーメッセージを追加する。
+     * <p/>
+     * 既に同じ行番号のメッセージを保持している場合は置き換える。
+     * 同じ行番号のメッセージを複数回追加しても、エラーが発生した行数は1行として数える。
+     *
+     * @param recordNumber エラーが発生した行番号
+     * @param message      エラーメッセージ
+     */
+    void add(int recordNumber, Message message) {
+        put(recordNumber, compact(recordNumber, message));
+    }
+
+    /**
+     * 行のメッセージを格納する。
+     *
+     * @param recordNumber 行番号
+     * @param entry        メッセージまたはテンプレート、もしくはそれらの配列
+     */
+    private void put(int recordNumber, Object entry) {
+        // 通常は行番号の昇順に追加されるため、末尾への追加を優先して判定する
+        int index = retainedCount == 0 || recordNumbers[retainedCount - 1] < recordNumber
+                ? -(retainedCount + 1)
+                : Arrays.binarySearch(recordNumbers, 0, retainedCount, recordNumber);
+        if (index >= 0) {
+            entries[index] = entry;
+            return;
+        }
+        if (maxRetainedRecords > 0 && retainedCount >= maxRetainedRecords) {
+            if (!omittedRecordNumbers.get(recordNumber)) {
+                omittedRecordNumbers.set(recordNumber);
+                errorCount++;
+            }
+            return;
+        }
+        errorCount++;
+        int insertion = -(index + 1);
+        ensureCapacity(retainedCount + 1);
+        if (insertion < retainedCount) {
+            System.arraycopy(recordNumbers, insertion, recordNumbers, insertion + 1, retainedCount - insertion);
+            System.arraycopy(entries, insertion, entries, insertion + 1, retainedCount - insertion);
+        }
+        recordNumbers[insertion] = recordNumber;
+        entries[insertion] = entry;
+        retainedCount++;
+    }
+
+    /**
+     * 配列の容量を確保する。
+     *
+     * @param required 必要な容量
+     */
+    private void ensureCapacity(int required) {
+        if (required <= recordNumbers.length) {
+            return;
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, recordNumbers.length + (recordNumbers.length >> 1));
+        if (capacity < required) {
+            capacity = required;
+        }
+        if (maxRetainedRecords > 0 && capacity > maxRetainedRecords) {
+            capacity = maxRetainedRecords;
+        }
+        recordNumbers = Arrays.copyOf(recordNumbers, capacity);
+        entries = Arrays.copyOf(entries, capacity);
+    }
+
+    /**
+     * メッセージを保持する形式に変換する。
+     * <p/>
+     * 行番号を埋め込んだバリデーションエラーのメッセージは、共有するテンプレートに変換する。
+     *
+     * @param recordNumber 行番号
+     * @param message      メッセージ
+     * @return テンプレート、または変換できない場合は元のメッセージ
+     */
+    private Object compact(int recordNumber, Message message) {
+        if (!(message instanceof RecordErrorMessage)) {
+            return message;
+        }
+        RecordErrorMessage recordMessage = (RecordErrorMessage) message;
+        if (recordMessage.getRecordNumber() != recordNumber
+                || recordMessage.getStringResource() == null
+                || recordMessage.getNestedMessage() == null) {
+            return message;
+        }
+        MessageTemplate template = new MessageTemplate(recordMessage);
+        MessageTemplate pooled = templates.get(template);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (templates.size() < MAX_POOL_SIZE) {
+            templates.put(template, template);
+        }
+        return template;
+    }
+
+    /**
+     * 保持している形式からメッセージを生成する。
+     *
+     * @param recordNumber 行番号
+     * @param element      メッセージまたはテンプレート
+     * @return メッセージ
+     */
+    private static Message expand(int recordNumber, Object element) {
+        return element instanceof MessageTemplate
+                ? ((MessageTemplate) element).toMessage(recordNumber)
+                : (Message) element;
+    }
+
+    /**
+     * 行のメッセージをリストに追加する。
+     *
+     * @param recordNumber 行番号
+     * @param entry        メッセージまたはテンプレート、もしくはそれらの配列
+     * @param dest         追加先のリスト
+     */
+    private static void expandTo(int recordNumber, Object entry, List<Message> dest) {
+        if (entry instanceof Object[]) {
+            for (Object e : (Object[]) entry) {
+                dest.add(expand(recordNumber, e));
+            }
+        } else {
+            dest.add(expand(recordNumber, entry));
+        }
+    }
+
+    /**
+     * エラーが発生していないかどうか。
+     *
+     * @return エラーが発生していない場合は{@code true}
+     */
+    boolean isEmpty() {
+        return errorCount == 0;
+    }
+
+    /**
+     * エラーが発生した行数を取得する（メッセージを保持していない行を含む）。
+     *
+     * @return エラーが発生した行数
+     */
+    int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * 上限を超えたためメッセージを保持していない行数を取得する。
+     *
+     * @return メッセージを保持していない行数
+     */
+    int getOmittedCount() {
+        return errorCount - retainedCount;
+    }
+
+    /**
+     * 行番号のエラーメッセージを取得する。
+     *
+     * @param recordNumber 行番号
+     * @return エラーメッセージ（エラーが発生していない行、またはメッセージを保持していない行の場合は{@code null}）
+     */
+    List<Message> get(int recordNumber) {
+        int index = Arrays.binarySearch(recordNumbers, 0, retainedCount, recordNumber);
+        if (index < 0) {
+            return null;
+        }
+        List<Message> messages = new ArrayList<Message>(1);
+        expandTo(recordNumber, entries[index], messages);
+        return messages;
+    }
+
+    /**
+     * 行番号の昇順で、保持している全てのエラーメッセージを取得する。
+     *
+     * @return エラーメッセージ
+     */
+    List<Message> getAllMessages() {
+        List<Message> all = new ArrayList<Message>(retainedCount);
+        for (int i = 0; i < retainedCount; i++) {
+            expandTo(recordNumbers[i], entries[i], all);
+        }
+        return all;
+    }
+
+    /**
+     * 保持しているエラーメッセージを{@link ErrorMessages}に変換する。
+     *
+     * @return エラーメッセージ
+     */
+    ErrorMessages toErrorMessages() {
+        ErrorMessages errorMessages = new ErrorMessages();
+        for (int i = 0; i < retainedCount; i++) {
+            List<Message> messages = new ArrayList<Message>(1);
+            expandTo(recordNumbers[i], entries[i], messages);
+            errorMessages.put(recordNumbers[i], messages);
+        }
+        errorMessages.setOmittedCount(getOmittedCount());
+        return errorMessages;
+    }
+
+    /**
+     * 行番号を除いた、バリデーションエラーのメッセージのテンプレート。
+     * <p/>
+     * メッセージレベル、文字列リソース、元のメッセージが等しい場合に等しいとみなす。
+     * 文字列リソースは{@link BasicValidatingStrategy}が1度だけ取得したインスタンスを使用するため、同一性で比較する。
+     */
+    private static final class MessageTemplate {
+
+        /** メッセージレベル */
+        private final MessageLevel level;
+
+        /** 文字列リソース */
+        private final StringResource stringResource;
+
+        /** 元のメッセージ */
+        private final Message nestedMessage;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param message テンプレートとするメッセージ
+         */
+        MessageTemplate(RecordErrorMessage message) {
+            this.level = message.getLevel();
+            this.stringResource = message.getStringResource();
+            this.nestedMessage = message.getNestedMessage();
+        }
+
+        /**
+         * 行番号を埋め込んだメッセージを生成する。
+         *
+         * @param recordNumber 行番号
+         * @return メッセージ
+         */
+        Message toMessage(int recordNumber) {
+            return new RecordErrorMessage(level, stringResource, recordNumber, nestedMessage);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MessageTemplate)) {
+                return false;
+            }
+            MessageTemplate other = (MessageTemplate) o;
+            return level == other.level
+                    && stringResource == other.stringResource
+                    && nestedMessage.equals(other.nestedMessage);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return (level.hashCode() * 31 + System.identityHashCode(stringResource)) * 31 + nestedMessage.hashCode();
+        }
+    }
+}
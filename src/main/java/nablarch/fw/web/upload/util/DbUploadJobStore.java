@@ -0,0 +1,363 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.statement.SqlPStatement;
+import nablarch.core.db.statement.SqlResultSet;
+import nablarch.core.db.statement.SqlRow;
+import nablarch.core.db.transaction.SimpleDbTransactionExecutor;
+import nablarch.core.db.transaction.SimpleDbTransactionManager;
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.StringResource;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.web.upload.util.BulkValidationResult.ErrorMessages;
+
+/**
+ * アップロードジョブの状態をデータベースのテーブルに保存するクラス。
+ * <p/>
+ * 全てのアプリケーションサーバから同じテーブルを参照することで、
+ * ジョブを投入したサーバ以外でもジョブの状態を参照できる。
+ * 状態の保存は、ジョブの登録処理とは別のトランザクション（{@link #setTransactionManager}で設定したもの）で行う。
+ * <p/>
+ * テーブルは以下のカラムを持つこと（テーブル名は{@link #setTableName(String)}で変更できる）。
+ * <pre>
+ * CREATE TABLE UPLOAD_JOB (
+ *   JOB_ID         VARCHAR(64) NOT NULL PRIMARY KEY,
+ *   FILE_NAME      VARCHAR(1000),
+ *   JOB_STATE      VARCHAR(10) NOT NULL,
+ *   READ_COUNT     INTEGER NOT NULL,
+ *   VALID_COUNT    INTEGER NOT NULL,
+ *   INVALID_COUNT  INTEGER NOT NULL,
+ *   IMPORTED_COUNT INTEGER NOT NULL,
+ *   ERROR_MESSAGES CLOB,
+ *   FAILURE        VARCHAR(4000)
+ * )
+ * </pre>
+ * エラーメッセージは、ジョブを実行したスレッドの言語でフォーマットした文言を保存する。
+ * 取得したエラーメッセージは、メッセージID、メッセージレベルおよび保存した文言を保持する。
+ * 保存するエラーメッセージの件数は{@link #setMaxStoredErrorMessages(int)}で制限する。
+ */
+@Published(tag = "architect")
+public class DbUploadJobStore implements UploadJobStore {
+
+    /** 保存するエラーメッセージの件数の上限のデフォルト値 */
+    private static final int DEFAULT_MAX_STORED_ERROR_MESSAGES = 1000;
+
+    /** 異常終了した原因を保存する最大文字数 */
+    private static final int MAX_FAILURE_LENGTH = 4000;
+
+    /** エラーメッセージの項目の区切り文字 */
+    private static final char FIELD_SEPARATOR = '\t';
+
+    /** エラーメッセージの区切り文字 */
+    private static final char MESSAGE_SEPARATOR = '\n';
+
+    /** エスケープ文字 */
+    private static final char ESCAPE = '\\';
+
+    /** 状態を保存するトランザクション */
+    private SimpleDbTransactionManager transactionManager;
+
+    /** テーブル名 */
+    private String tableName = "UPLOAD_JOB";
+
+    /** 保存するエラーメッセージの件数の上限 */
+    private int maxStoredErrorMessages = DEFAULT_MAX_STORED_ERROR_MESSAGES;
+
+    /**
+     * 状態を保存するトランザクションを設定する。
+     *
+     * @param transactionManager トランザクション
+     */
+    public void setTransactionManager(SimpleDbTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * テーブル名を設定する。
+     * デフォルトは"UPLOAD_JOB"。
+     *
+     * @param tableName テーブル名
+     */
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * 保存するエラーメッセージの件数の上限を設定する。
+     * <p/>
+     * 上限を超えたエラーメッセージは保存しない（件数は{@link UploadJobStatus#getInvalidCount()}で取得できる）。
+     * デフォルトは1000。
+     *
+     * @param maxStoredErrorMessages 保存するエラーメッセージの件数の上限
+     */
+    public void setMaxStoredErrorMessages(int maxStoredErrorMessages) {
+        this.maxStoredErrorMessages = maxStoredErrorMessages;
+    }
+
+    /** {@inheritDoc} */
+    public void save(final UploadJobStatus status) {
+        new SimpleDbTransactionExecutor<Void>(getTransactionManager()) {
+            @Override
+            public Void execute(AppDbConnection connection) {
+                String errorMessages = encode(status.getErrorMessages(), maxStoredErrorMessages);
+                String failure = truncate(status.getFailure());
+                SqlPStatement update = connection.prepareStatement(
+                        "UPDATE " + tableName + " SET FILE_NAME = ?, JOB_STATE = ?, READ_COUNT = ?, VALID_COUNT = ?,"
+                                + " INVALID_COUNT = ?, IMPORTED_COUNT = ?, ERROR_MESSAGES = ?, FAILURE = ?"
+                                + " WHERE JOB_ID = ?");
+                setColumns(update, status, errorMessages, failure);
+                update.setString(9, status.getJobId());
+                if (update.executeUpdate() == 0) {
+                    SqlPStatement insert = connection.prepareStatement(
+                            "INSERT INTO " + tableName + " (FILE_NAME, JOB_STATE, READ_COUNT, VALID_COUNT,"
+                                    + " INVALID_COUNT, IMPORTED_COUNT, ERROR_MESSAGES, FAILURE, JOB_ID)"
+                                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                    setColumns(insert, status, errorMessages, failure);
+                    insert.setString(9, status.getJobId());
+                    insert.executeUpdate();
+                }
+                return null;
+            }
+        }.doTransaction();
+    }
+
+    /** {@inheritDoc} */
+    public UploadJobStatus load(final String jobId) {
+        return new SimpleDbTransactionExecutor<UploadJobStatus>(getTransactionManager()) {
+            @Override
+            public UploadJobStatus execute(AppDbConnection connection) {
+                SqlPStatement select = connection.prepareStatement(
+                        "SELECT FILE_NAME, JOB_STATE, READ_COUNT, VALID_COUNT, INVALID_COUNT, IMPORTED_COUNT,"
+                                + " ERROR_MESSAGES, FAILURE FROM " + tableName + " WHERE JOB_ID = ?");
+                select.setString(1, jobId);
+                SqlResultSet rows = select.retrieve();
+                if (rows.isEmpty()) {
+                    return null;
+                }
+                SqlRow row = rows.get(0);
+                return new UploadJobStatus(jobId,
+                        row.getString("FILE_NAME"),
+                        UploadJobState.valueOf(row.getString("JOB_STATE")),
+                        row.getInteger("READ_COUNT"),
+                        row.getInteger("VALID_COUNT"),
+                        row.getInteger("INVALID_COUNT"),
+                        row.getInteger("IMPORTED_COUNT"),
+                        decode(row.getString("ERROR_MESSAGES")),
+                        row.getString("FAILURE"));
+            }
+        }.doTransaction();
+    }
+
+    /** {@inheritDoc} */
+    public void remove(final String jobId) {
+        new SimpleDbTransactionExecutor<Void>(getTransactionManager()) {
+            @Override
+            public Void execute(AppDbConnection connection) {
+                SqlPStatement delete = connection.prepareStatement("DELETE FROM " + tableName + " WHERE JOB_ID = ?");
+                delete.setString(1, jobId);
+                delete.executeUpdate();
+                return null;
+            }
+        }.doTransaction();
+    }
+
+    /**
+     * 状態を保存するトランザクションを取得する。
+     *
+     * @return トランザクション
+     * @throws IllegalStateException 設定されていない場合
+     */
+    private SimpleDbTransactionManager getTransactionManager() {
+        if (transactionManager == null) {
+            throw new IllegalStateException("transactionManager is not set.");
+        }
+        return transactionManager;
+    }
+
+    /**
+     * ジョブIDを除くカラムの値を設定する。
+     *
+     * @param statement     ステートメント
+     * @param status        ジョブの状態
+     * @param errorMessages エンコードしたエラーメッセージ
+     * @param failure       異常終了した原因
+     */
+    private static void setColumns(SqlPStatement statement, UploadJobStatus status,
+                                   String errorMessages, String failure) {
+        statement.setString(1, status.getFileName());
+        statement.setString(2, status.getState().name());
+        statement.setInt(3, status.getReadCount());
+        statement.setInt(4, status.getValidCount());
+        statement.setInt(5, status.getInvalidCount());
+        statement.setInt(6, status.getImportedCount());
+        statement.setString(7, errorMessages);
+        statement.setString(8, failure);
+    }
+
+    /**
+     * 異常終了した原因を保存できる長さに切り詰める。
+     *
+     * @param failure 異常終了した原因
+     * @return 切り詰めた値
+     */
+    private static String truncate(String failure) {
+        if (failure == null || failure.length() <= MAX_FAILURE_LENGTH) {
+            return failure;
+        }
+        return failure.substring(0, MAX_FAILURE_LENGTH);
+    }
+
+    /**
+     * エラーメッセージを文字列にエンコードする。
+     * <p/>
+     * 1件のメッセージを「レコード番号、メッセージレベル、メッセージID、文言」のタブ区切りとし、改行で区切る。
+     *
+     * @param errorMessages エラーメッセージ
+     * @param maxCount      エンコードするメッセージの件数の上限
+     * @return エンコードした文字列（エラーメッセージがない場合は{@code null}）
+     */
+    static String encode(ErrorMessages errorMessages, int maxCount) {
+        if (errorMessages.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        int count = 0;
+        for (Map.Entry<Integer, List<Message>> entry : errorMessages.entrySet()) {
+            for (Message message : entry.getValue()) {
+                if (count >= maxCount) {
+                    return sb.toString();
+                }
+                if (count > 0) {
+                    sb.append(MESSAGE_SEPARATOR);
+                }
+                sb.append(entry.getKey()).append(FIELD_SEPARATOR)
+                  .append(message.getLevel().name()).append(FIELD_SEPARATOR);
+                escape(sb, message.getMessageId());
+                sb.append(FIELD_SEPARATOR);
+                escape(sb, message.formatMessage());
+                count++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * {@link #encode(ErrorMessages, int)}でエンコードした文字列をエラーメッセージにデコードする。
+     *
+     * @param encoded エンコードした文字列
+     * @return エラーメッセージ
+     */
+    static ErrorMessages decode(String encoded) {
+        ErrorMessages errorMessages = new ErrorMessages();
+        if (encoded == null || encoded.length() == 0) {
+            return errorMessages;
+        }
+        List<String> fields = new ArrayList<String>(4);
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i <= encoded.length(); i++) {
+            char c = i < encoded.length() ? encoded.charAt(i) : MESSAGE_SEPARATOR;
+            if (c == ESCAPE && i + 1 < encoded.length()) {
+                char next = encoded.charAt(++i);
+                field.append(next == 't' ? FIELD_SEPARATOR : next == 'n' ? MESSAGE_SEPARATOR : next == 'r' ? '\r' : next);
+            } else if (c == FIELD_SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == MESSAGE_SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+                addMessage(errorMessages, fields);
+                fields.clear();
+            } else {
+                field.append(c);
+            }
+        }
+        return errorMessages;
+    }
+
+    /**
+     * デコードした項目からメッセージを生成し、エラーメッセージに追加する。
+     *
+     * @param errorMessages エラーメッセージ
+     * @param fields        デコードした項目
+     */
+    private static void addMessage(ErrorMessages errorMessages, List<String> fields) {
+        if (fields.size() != 4) {
+            throw new IllegalArgumentException("invalid error message format. fields=" + fields);
+        }
+        Integer recordNumber = Integer.valueOf(fields.get(0));
+        List<Message> messages = errorMessages.get(recordNumber);
+        if (messages == null) {
+            messages = new ArrayList<Message>();
+            errorMessages.put(recordNumber, messages);
+        }
+        messages.add(new Message(MessageLevel.valueOf(fields.get(1)),
+                new StoredStringResource(fields.get(2), fields.get(3))));
+    }
+
+    /**
+     * 区切り文字とエスケープ文字をエスケープして追加する。
+     *
+     * @param sb    追加先
+     * @param value 値
+     */
+    private static void escape(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ESCAPE) {
+                sb.append(ESCAPE).append(ESCAPE);
+            } else if (c == FIELD_SEPARATOR) {
+                sb.append(ESCAPE).append('t');
+            } else if (c == MESSAGE_SEPARATOR) {
+                sb.append(ESCAPE).append('n');
+            } else if (c == '\r') {
+                sb.append(ESCAPE).append('r');
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    /** 保存したフォーマット済みの文言を返却する{@link StringResource}。 */
+    private static final class StoredStringResource implements StringResource {
+
+        /** メッセージID */
+        private final String id;
+
+        /** フォーマット済みの文言 */
+        private final String value;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param id    メッセージID
+         * @param value フォーマット済みの文言
+         */
+        StoredStringResource(String id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        /** {@inheritDoc} */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * 言語に関わらず、保存した文言を返却する。
+         */
+        public String getValue(Locale locale) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 読み込んだバイト列でダイジェストを更新する入力ストリーム。
+ * <p/>
+ * レコードフォーマッタによるファイルの読み込みと同時にダイジェストを計算するため、
+ * ダイジェストを計算するためだけにファイルを再度読み込む必要がない。
+ * 複数のアルゴリズムを指定した場合、読み込んだバイト列で全てのダイジェストを更新する。
+ * <p/>
+ * ダイジェストは終端まで読み込んだ後のクローズ時に確定する。
+ * 終端まで読み込まずにクローズした場合、ダイジェストは確定しない（{@link #isCompleted()}は{@code false}を返却する）。
+ * {@link #setDrainOnClose(boolean)}で{@code true}を設定した場合のみ、クローズ時に残りを読み込んでからダイジェストを確定する。
+ * <p/>
+ * 本ストリームはmark/resetをサポートしない。
+ * レコードフォーマッタへは{@link java.io.BufferedInputStream}で包んで渡すこと
+ * （読み戻したバイト列でダイジェストが二重に更新されることはない）。
+ */
+class DigestingInputStream extends FilterInputStream {
+
+    /** 読み飛ばす際のバッファサイズ */
+    private static final int SKIP_BUFFER_SIZE = 8192;
+
+    /** アルゴリズム名をキーとしたダイジェスト */
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<String, MessageDigest>();
+
+    /** アルゴリズム名をキーとした確定済みのダイジェスト（確定前は{@code null}） */
+    private Map<String, byte[]> results;
+
+    /** 終端まで読み込んだかどうか */
+    private boolean eof = false;
+
+    /** クローズ済みかどうか */
+    private boolean closed = false;
+
+    /** クローズ時に終端まで読み込んでいない場合、残りを読み込むかどうか */
+    private boolean drainOnClose = false;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param in         入力ストリーム
+     * @param algorithms ダイジェストのアルゴリズム名
+     * @throws IllegalArgumentException アルゴリズムが指定されていない、またはサポートされていない場合
+     */
+    DigestingInputStream(InputStream in, String... algorithms) {
+        super(in);
+        if (algorithms.length == 0) {
+            throw new IllegalArgumentException("algorithms must not be empty.");
+        }
+        for (String algorithm : algorithms) {
+            try {
+                digests.put(algorithm, MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("unsupported digest algorithm. algorithm=[" + algorithm + "]", e);
+            }
+        }
+    }
+
+    /**
+     * クローズ時に終端まで読み込んでいない場合、残りを読み込んでダイジェストを確定するかどうかを設定する。
+     * <p/>
+     * デフォルトは{@code false}であり、途中でクローズした場合はダイジェストを確定しない。
+     *
+     * @param drainOnClose 残りを読み込む場合は{@code true}
+     * @return 本インスタンス
+     */
+    DigestingInputStream setDrainOnClose(boolean drainOnClose) {
+        this.drainOnClose = drainOnClose;
+        return this;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            eof = true;
+        } else {
+            for (MessageDigest digest : digests.values()) {
+                digest.update((byte) b);
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read < 0) {
+            eof = true;
+        } else {
+            for (MessageDigest digest : digests.values()) {
+                digest.update(b, off, read);
+            }
+        }
+        return read;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 読み飛ばしたバイト列もダイジェストに含めるため、実際に読み込んで読み飛ばす。
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0L), SKIP_BUFFER_SIZE)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(buffer, 0, (int) Math.min(remaining, buffer.length));
+            if (read < 0) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - Math.max(remaining, 0L);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // mark/resetはサポートしない
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * 終端まで読み込んでいればダイジェストを確定し、入力ストリームをクローズする。
+     * <p/>
+     * 終端まで読み込んでいない場合、{@link #setDrainOnClose(boolean)}で{@code true}が設定されていれば
+     * 残りを読み込んでからダイジェストを確定する。設定されていなければダイジェストは確定しない。
+     * 残りの読み込みに失敗した場合も、ダイジェストは確定しない。
+     *
+     * @throws IOException 読み込みまたはクローズに失敗した場合
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (drainOnClose) {
+                byte[] buffer = new byte[SKIP_BUFFER_SIZE];
+                while (!eof) {
+                    read(buffer, 0, buffer.length);
+                }
+            }
+            if (!eof) {
+                return;
+            }
+            Map<String, byte[]> values = new LinkedHashMap<String, byte[]>();
+            for (Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+                values.put(entry.getKey(), entry.getValue().digest());
+            }
+            results = values;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * ダイジェストが確定したかどうかを判定する。
+     *
+     * @return 確定した場合は{@code true}
+     */
+    boolean isCompleted() {
+        return results != null;
+    }
+
+    /**
+     * 確定したダイジェストを取得する。
+     *
+     * @param algorithm アルゴリズム名
+     * @return ダイジェスト
+     * @throws IllegalArgumentException アルゴリズムが指定されていなかった場合
+     * @throws IllegalStateException    ダイジェストが確定していない場合
+     */
+    byte[] getDigest(String algorithm) {
+        if (!digests.containsKey(algorithm)) {
+            throw new IllegalArgumentException(
+                    "digest algorithm was not specified. algorithm=[" + algorithm + "] specified=" + digests.keySet());
+        }
+        if (results == null) {
+            throw new IllegalStateException(
+                    "digest is not completed. the uploaded file has not been read to the end. algorithm=[" + algorithm + "]");
+        }
+        return results.get(algorithm).clone();
+    }
+}
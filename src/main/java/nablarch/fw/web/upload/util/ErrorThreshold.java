@@ -0,0 +1,104 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.MessageUtil;
+
+/**
+ * 一括バリデーションを打ち切るエラー件数の閾値。
+ * <p/>
+ * 以下のいずれかに該当した場合、閾値を超えたと判定する。
+ * <ul>
+ * <li>エラーが発生したレコード数が最大エラー件数に達した場合</li>
+ * <li>サンプル件数以上のレコードを処理した時点で、エラーが発生したレコードの割合が最大エラー率を超えた場合</li>
+ * </ul>
+ */
+final class ErrorThreshold {
+
+    /** 最大エラー件数（0以下の場合は判定しない） */
+    private int maxErrorCount = 0;
+
+    /** 最大エラー率（0以下の場合は判定しない） */
+    private double maxErrorRatio = 0;
+
+    /** エラー率を判定するまでに処理するレコード数 */
+    private int sampleSize = 0;
+
+    /** 閾値を超えた場合のメッセージID */
+    private String messageId;
+
+    /**
+     * 最大エラー件数を設定する。
+     *
+     * @param maxErrorCount 最大エラー件数
+     * @param messageId     閾値を超えた場合のメッセージID
+     */
+    void setMaxErrorCount(int maxErrorCount, String messageId) {
+        if (maxErrorCount <= 0) {
+            throw new IllegalArgumentException(
+                    "maxErrorCount must be greater than 0. maxErrorCount=[" + maxErrorCount + "]");
+        }
+        this.maxErrorCount = maxErrorCount;
+        this.messageId = messageId;
+    }
+
+    /**
+     * 最大エラー率を設定する。
+     *
+     * @param maxErrorRatio 最大エラー率（0より大きく1未満）
+     * @param sampleSize    エラー率を判定するまでに処理するレコード数
+     * @param messageId     閾値を超えた場合のメッセージID
+     */
+    void setMaxErrorRatio(double maxErrorRatio, int sampleSize, String messageId) {
+        if (maxErrorRatio <= 0 || maxErrorRatio >= 1) {
+            throw new IllegalArgumentException(
+                    "maxErrorRatio must be between 0 and 1. maxErrorRatio=[" + maxErrorRatio + "]");
+        }
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException(
+                    "sampleSize must be greater than 0. sampleSize=[" + sampleSize + "]");
+        }
+        this.maxErrorRatio = maxErrorRatio;
+        this.sampleSize = sampleSize;
+        this.messageId = messageId;
+    }
+
+    /**
+     * 閾値が設定されているかどうか。
+     *
+     * @return 設定されている場合は{@code true}
+     */
+    boolean isEnabled() {
+        return maxErrorCount > 0 || maxErrorRatio > 0;
+    }
+
+    /**
+     * 閾値を超えたかどうかを判定する。
+     *
+     * @param processedCount 処理したレコード数
+     * @param errorCount     エラーが発生したレコード数
+     * @return 閾値を超えた場合は{@code true}
+     */
+    boolean isExceeded(int processedCount, int errorCount) {
+        if (maxErrorCount > 0 && errorCount >= maxErrorCount) {
+            return true;
+        }
+        return maxErrorRatio > 0
+                && processedCount >= sampleSize
+                && errorCount > processedCount * maxErrorRatio;
+    }
+
+    /**
+     * 閾値を超えたことを示すメッセージを生成する。
+     * <p/>
+     * メッセージのパラメータには、打ち切った行の行番号、エラーが発生したレコード数、処理したレコード数をこの順に設定する。
+     *
+     * @param recordNumber   打ち切った行の行番号
+     * @param processedCount 処理したレコード数
+     * @param errorCount     エラーが発生したレコード数
+     * @return メッセージ
+     */
+    Message createMessage(int recordNumber, int processedCount, int errorCount) {
+        return MessageUtil.createMessage(MessageLevel.ERROR, messageId, recordNumber, errorCount, processedCount);
+    }
+}
@@ -0,0 +1,101 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロードファイルの移動結果を保持するクラス。
+ *
+ * @see UploadHelper#transferTo(String, String)
+ */
+public class FileMoveResult {
+
+    /** 移動先のファイル */
+    private final File destination;
+
+    /** ファイルサイズ（バイト） */
+    private final long size;
+
+    /** 移動に要した時間（ナノ秒） */
+    private final long elapsedNanos;
+
+    /** 名前の変更のみで移動したかどうか */
+    private final boolean renamed;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param destination  移動先のファイル
+     * @param size         ファイルサイズ（バイト）
+     * @param elapsedNanos 移動に要した時間（ナノ秒）
+     * @param renamed      名前の変更のみで移動した場合は{@code true}
+     */
+    FileMoveResult(File destination, long size, long elapsedNanos, boolean renamed) {
+        this.destination = destination;
+        this.size = size;
+        this.elapsedNanos = elapsedNanos;
+        this.renamed = renamed;
+    }
+
+    /**
+     * 移動先のファイルを取得する。
+     *
+     * @return 移動先のファイル
+     */
+    @Published
+    public File getDestination() {
+        return destination;
+    }
+
+    /**
+     * 移動したファイルのサイズを取得する。
+     *
+     * @return ファイルサイズ（バイト）
+     */
+    @Published
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 移動に要した時間を取得する。
+     *
+     * @param unit 時間の単位
+     * @return 移動に要した時間
+     */
+    @Published
+    public long getElapsedTime(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 名前の変更のみで移動したかどうかを判定する。
+     * <p/>
+     * 移動元と移動先が同じファイルシステムにある場合は、ファイルの内容をコピーせず名前の変更のみで移動する。
+     * 異なるファイルシステムの場合は、内容をコピーした後に移動元を削除する。
+     *
+     * @return 名前の変更のみで移動した場合は{@code true}
+     */
+    @Published
+    public boolean isRenamed() {
+        return renamed;
+    }
+
+    /**
+     * 1秒あたりの転送バイト数を取得する。
+     * <p/>
+     * 名前の変更のみで移動した場合は、ファイルシステムのメタデータ操作の速度となるため、
+     * ストレージの転送性能の目安にはならない。
+     *
+     * @return 1秒あたりの転送バイト数（所要時間が計測できなかった場合は0）
+     */
+    @Published
+    public long getBytesPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0L;
+        }
+        return (long) (size * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+    }
+}
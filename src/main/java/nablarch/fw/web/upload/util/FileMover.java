@@ -0,0 +1,293 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.FileUtil;
+
+/**
+ * ファイルを移動するクラス。
+ * <p/>
+ * まず名前の変更による移動を試み、同じファイルシステム内であればファイルの内容をコピーせずに移動する。
+ * 名前の変更に失敗した場合（異なるファイルシステムへの移動など）は、以下の手順で移動する。
+ * <ol>
+ * <li>移動先と同じディレクトリの一時ファイルへ{@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}で
+ * 内容を転送する（プラットフォームが対応していればカーネル内で転送され、ヒープを経由しない）。</li>
+ * <li>一時ファイルの内容をストレージに同期する。</li>
+ * <li>一時ファイルの名前を移動先に変更し、移動元を削除する。</li>
+ * </ol>
+ * このため、移動先に転送途中のファイルが現れることはない。
+ * <p/>
+ * 移動先にファイルが存在する場合は、プラットフォームによらず置き換える。
+ * 名前の変更で既存のファイルを置き換えられるプラットフォーム（UNIX系など）では、1回の名前の変更で置き換える。
+ * 置き換えられないプラットフォーム（Windowsなど）では、既存のファイルを同じディレクトリの退避ファイルへ
+ * 名前を変更してから移動先へ名前を変更し、成功した後に退避ファイルを削除する。
+ * 移動先への名前の変更に失敗した場合は、退避ファイルを元に戻す。
+ * <p/>
+ * 退避ファイルを使用して置き換える場合、以下の点に注意すること。
+ * <ul>
+ * <li>既存のファイルを退避してから名前を変更するまでの間は、移動先が一時的に存在しない
+ * （移動先に転送途中の内容や壊れた内容が現れることはない）。</li>
+ * <li>置き換えの途中でプロセスが停止した場合は、退避ファイル（移動先のファイル名に".replaced"を付加したもの）が残る。
+ * 残った退避ファイルは自動では削除しないが、以降の移動は別の名前の退避ファイルを使用するため失敗しない。</li>
+ * </ul>
+ */
+final class FileMover {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(FileMover.class);
+
+    /** 転送中の一時ファイルの接尾辞 */
+    private static final String TRANSFER_SUFFIX = ".transferring";
+
+    /** 非同期で移動する際、移動元を退避するファイルの接尾辞 */
+    private static final String STAGING_SUFFIX = ".moving";
+
+    /** 移動先の既存のファイルを置き換える際、既存のファイルを退避するファイルの接尾辞 */
+    private static final String REPLACED_SUFFIX = ".replaced";
+
+    /** 隠蔽コンストラクタ。 */
+    private FileMover() {
+    }
+
+    /**
+     * ファイルを移動する。
+     *
+     * @param source      移動元
+     * @param destination 移動先
+     * @return 移動結果
+     * @throws IOException 移動に失敗した場合
+     */
+    static FileMoveResult move(File source, File destination) throws IOException {
+        if (!source.isFile()) {
+            throw new IOException("source file not found. source=[" + source.getAbsolutePath() + "]");
+        }
+        long start = System.nanoTime();
+        long size = source.length();
+        if (rename(source, destination)) {
+            return log(source, new FileMoveResult(destination, size, System.nanoTime() - start, true));
+        }
+        transfer(source, destination);
+        if (!source.delete()) {
+            LOGGER.logWarn(concat("failed to delete source file after transfer. source=[", source.getAbsolutePath(), "]"));
+        }
+        return log(source, new FileMoveResult(destination, size, System.nanoTime() - start, false));
+    }
+
+    /**
+     * ファイルを非同期で移動する。
+     * <p/>
+     * 名前の変更のみで移動できた場合は、呼び出し元スレッドで移動を完了し、完了済みの{@link Future}を返却する。
+     * 移動できなかった場合は、移動元を同じディレクトリ内の退避ファイルへ名前を変更した上で、転送を{@code executor}で実行する。
+     * 退避するため、リクエスト終了時にアップロードされた一時ファイルが削除されても転送に影響しない。
+     * {@code executor}が転送を受け付けなかった場合は、退避ファイルを移動元へ戻してから例外を送出する。
+     *
+     * @param source      移動元
+     * @param destination 移動先
+     * @param executor    転送を実行する{@link ExecutorService}
+     * @return 移動結果
+     * @throws IOException 移動元が存在しない場合、または退避に失敗した場合
+     * @throws RejectedExecutionException {@code executor}が転送を受け付けなかった場合
+     */
+    static Future<FileMoveResult> moveAsync(File source, final File destination, ExecutorService executor)
+            throws IOException {
+        if (!source.isFile()) {
+            throw new IOException("source file not found. source=[" + source.getAbsolutePath() + "]");
+        }
+        final long start = System.nanoTime();
+        final long size = source.length();
+        if (rename(source, destination)) {
+            FutureTask<FileMoveResult> done = new FutureTask<FileMoveResult>(new Callable<FileMoveResult>() {
+                public FileMoveResult call() {
+                    return new FileMoveResult(destination, size, System.nanoTime() - start, true);
+                }
+            });
+            done.run();
+            return done;
+        }
+        final File staged = unusedFile(source, STAGING_SUFFIX);
+        if (!source.renameTo(staged)) {
+            throw new IOException(concat("failed to stage source file. source=[", source.getAbsolutePath(), "]"));
+        }
+        try {
+            return executor.submit(new Callable<FileMoveResult>() {
+                public FileMoveResult call() throws IOException {
+                    try {
+                        transfer(staged, destination);
+                    } finally {
+                        deleteStaged(staged);
+                    }
+                    return log(staged, new FileMoveResult(destination, size, System.nanoTime() - start, false));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 転送されないため、退避ファイルを移動元へ戻す（戻せない場合は削除する）
+            if (!staged.renameTo(source)) {
+                deleteStaged(staged);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 退避ファイルを削除する。
+     *
+     * @param staged 退避ファイル
+     */
+    private static void deleteStaged(File staged) {
+        if (staged.exists() && !staged.delete()) {
+            LOGGER.logWarn(concat("failed to delete staged file. file=[", staged.getAbsolutePath(), "]"));
+        }
+    }
+
+    /**
+     * 移動先と同じディレクトリの一時ファイルへ内容を転送し、同期した後に移動先へ名前を変更する。
+     *
+     * @param source      転送元
+     * @param destination 転送先
+     * @throws IOException 転送に失敗した場合
+     */
+    static void transfer(File source, File destination) throws IOException {
+        File temp = new File(destination.getPath() + TRANSFER_SUFFIX);
+        boolean completed = false;
+        try {
+            copy(source, temp);
+            if (!rename(temp, destination)) {
+                throw new IOException(concat(
+                        "failed to rename transferred file. file=[", temp.getAbsolutePath(), "] ",
+                        "destination=[", destination.getAbsolutePath(), "]"));
+            }
+            completed = true;
+        } finally {
+            if (!completed && temp.exists() && !temp.delete()) {
+                LOGGER.logWarn(concat("failed to delete temporary file. file=[", temp.getAbsolutePath(), "]"));
+            }
+        }
+    }
+
+    /**
+     * ファイルの名前を変更する。移動先にファイルが存在する場合は置き換える。
+     * <p/>
+     * 名前の変更で既存のファイルを置き換えられないプラットフォームでは、既存のファイルを退避してから名前を変更する。
+     * 名前の変更に失敗した場合は、退避したファイルを元に戻す。
+     *
+     * @param source      変更前のファイル
+     * @param destination 変更後のファイル
+     * @return 名前を変更できた場合は{@code true}
+     */
+    private static boolean rename(File source, File destination) {
+        if (source.renameTo(destination)) {
+            return true;
+        }
+        return destination.isFile() && replace(source, destination);
+    }
+
+    /**
+     * 移動先の既存のファイルを退避ファイルへ名前を変更してから、ファイルの名前を変更する。
+     * <p/>
+     * 名前の変更に成功した場合は退避ファイルを削除し、失敗した場合は退避ファイルを元に戻す。
+     *
+     * @param source      変更前のファイル
+     * @param destination 変更後のファイル（存在すること）
+     * @return 名前を変更できた場合は{@code true}
+     */
+    static boolean replace(File source, File destination) {
+        File replaced = unusedFile(destination, REPLACED_SUFFIX);
+        if (!destination.renameTo(replaced)) {
+            return false;
+        }
+        if (source.renameTo(destination)) {
+            if (!replaced.delete()) {
+                LOGGER.logWarn(concat("failed to delete replaced file. file=[", replaced.getAbsolutePath(), "]"));
+            }
+            return true;
+        }
+        if (!replaced.renameTo(destination)) {
+            LOGGER.logWarn(concat("failed to restore replaced file. file=[", replaced.getAbsolutePath(), "] ",
+                    "destination=[", destination.getAbsolutePath(), "]"));
+        }
+        return false;
+    }
+
+    /**
+     * ファイル名に接尾辞を付加した、存在しないファイルを取得する。
+     * <p/>
+     * 接尾辞を付加したファイルが既に存在する場合（前回の処理で残ったファイルなど）は、
+     * 接尾辞の前に連番を付加したファイル名とする。
+     *
+     * @param file   元のファイル
+     * @param suffix 接尾辞
+     * @return 存在しないファイル
+     */
+    private static File unusedFile(File file, String suffix) {
+        File unused = new File(file.getPath() + suffix);
+        for (int i = 1; unused.exists(); i++) {
+            unused = new File(file.getPath() + '.' + i + suffix);
+        }
+        return unused;
+    }
+
+    /**
+     * ファイルの内容を転送し、ストレージに同期する。
+     *
+     * @param source      転送元
+     * @param destination 転送先
+     * @throws IOException 転送に失敗した場合
+     */
+    private static void copy(File source, File destination) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream out = new FileOutputStream(destination);
+            try {
+                FileChannel inChannel = in.getChannel();
+                FileChannel outChannel = out.getChannel();
+                long size = inChannel.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = inChannel.transferTo(position, size - position, outChannel);
+                    if (transferred <= 0) {
+                        throw new IOException(concat(
+                                "source file was truncated during transfer. source=[", source.getAbsolutePath(), "] ",
+                                "expected=[", size, "] transferred=[", position, "]"));
+                    }
+                    position += transferred;
+                }
+                outChannel.force(true);
+            } finally {
+                out.close();
+            }
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 移動結果をログ出力する。
+     *
+     * @param source 移動元
+     * @param result 移動結果
+     * @return 移動結果
+     */
+    private static FileMoveResult log(File source, FileMoveResult result) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug(concat(
+                    "file moved. source=[", source.getAbsolutePath(), "] ",
+                    "destination=[", result.getDestination().getAbsolutePath(), "] ",
+                    "renamed=[", result.isRenamed(), "] size=[", result.getSize(), "] ",
+                    "bytesPerSecond=[", result.getBytesPerSecond(), "]"));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package nablarch.fw.web.upload.util;
+
+/**
+ * キーのフィンガープリント（64ビットのハッシュ値）を、そのキーが現れた行番号と共に保持するハッシュセット。
+ * <p/>
+ * オープンアドレス法（線形探索）のハッシュテーブルをプリミティブの配列で実装しており、
+ * キー1件あたり{@code long}と{@code int}の2要素分（負荷率を考慮して最大24バイト程度）のメモリしか使用しない。
+ * キー自体は保持しないため、フィンガープリントが一致した場合のみ{@link KeyVerifier}でキーが等しいかを確認する。
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ */
+final class FingerprintSet {
+
+    /** テーブルの初期サイズ（2のべき乗） */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** 空きスロットを表すフィンガープリント */
+    private static final long EMPTY = 0L;
+
+    /** フィンガープリント（{@link #EMPTY}の場合は空きスロット） */
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+
+    /** フィンガープリントに対応する行番号 */
+    private int[] recordNumbers = new int[INITIAL_CAPACITY];
+
+    /** 保持しているキーの数 */
+    private int size = 0;
+
+    /**
+     * フィンガープリントが一致した場合に、キーが等しいかを確認するインタフェース。
+     */
+    interface KeyVerifier {
+
+        /**
+         * 追加しようとしているキーが、指定した行のキーと等しいかを確認する。
+         *
+         * @param recordNumber フィンガープリントが一致した行の行番号
+         * @return キーが等しい場合は{@code true}
+         */
+        boolean isSameKey(int recordNumber);
+    }
+
+    /**
+     * キーを追加する。
+     * <p/>
+     * 同じキーを既に保持している場合は追加せず、そのキーが現れた行番号を返却する。
+     * フィンガープリントが一致しても{@code verifier}がキーが異なると判定した場合は、別のキーとして追加する。
+     *
+     * @param fingerprint  キーのフィンガープリント
+     * @param recordNumber キーが現れた行番号
+     * @param verifier     フィンガープリントが一致した場合にキーが等しいかを確認するオブジェクト
+     * @return 同じキーが現れた行番号（追加した場合は-1）
+     */
+    int add(long fingerprint, int recordNumber, KeyVerifier verifier) {
+        long fp = fingerprint == EMPTY ? 1L : fingerprint;
+        int mask = fingerprints.length - 1;
+        int slot = spread(fp) & mask;
+        while (fingerprints[slot] != EMPTY) {
+            if (fingerprints[slot] == fp && verifier.isSameKey(recordNumbers[slot])) {
+                return recordNumbers[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        fingerprints[slot] = fp;
+        recordNumbers[slot] = recordNumber;
+        size++;
+        if (size * 2 > fingerprints.length) {
+            grow();
+        }
+        return -1;
+    }
+
+    /**
+     * 保持しているキーの数を取得する。
+     *
+     * @return キーの数
+     */
+    int size() {
+        return size;
+    }
+
+    /** テーブルのサイズを2倍にし、保持しているキーを再配置する。 */
+    private void grow() {
+        long[] oldFingerprints = fingerprints;
+        int[] oldRecordNumbers = recordNumbers;
+        fingerprints = new long[oldFingerprints.length * 2];
+        recordNumbers = new int[oldRecordNumbers.length * 2];
+        int mask = fingerprints.length - 1;
+        for (int i = 0; i < oldFingerprints.length; i++) {
+            long fp = oldFingerprints[i];
+            if (fp != EMPTY) {
+                int slot = spread(fp) & mask;
+                while (fingerprints[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                fingerprints[slot] = fp;
+                recordNumbers[slot] = oldRecordNumbers[i];
+            }
+        }
+    }
+
+    /**
+     * フィンガープリントからテーブルの位置を求めるためのハッシュ値を算出する。
+     *
+     * @param fingerprint フィンガープリント
+     * @return ハッシュ値
+     */
+    private static int spread(long fingerprint) {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+}
@@ -0,0 +1,59 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロードジョブの状態をヒープ上に保存するクラス。
+ * <p/>
+ * ジョブを投入したアプリケーションサーバでのみ状態を参照できる。
+ * 保存件数が上限を超えた場合、最も古く投入されたジョブの状態から削除する。
+ */
+@Published(tag = "architect")
+public class InMemoryUploadJobStore implements UploadJobStore {
+
+    /** 保存件数の上限のデフォルト値 */
+    private static final int DEFAULT_MAX_JOBS = 1000;
+
+    /** 保存件数の上限 */
+    private int maxJobs = DEFAULT_MAX_JOBS;
+
+    /** ジョブIDをキーとしたジョブの状態（投入順） */
+    private final Map<String, UploadJobStatus> statuses = new LinkedHashMap<String, UploadJobStatus>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, UploadJobStatus> eldest) {
+            return size() > maxJobs;
+        }
+    };
+
+    /**
+     * 保存件数の上限を設定する。
+     * デフォルトは1000。
+     *
+     * @param maxJobs 保存件数の上限
+     */
+    public synchronized void setMaxJobs(int maxJobs) {
+        if (maxJobs <= 0) {
+            throw new IllegalArgumentException("maxJobs must be greater than 0. maxJobs=[" + maxJobs + "]");
+        }
+        this.maxJobs = maxJobs;
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void save(UploadJobStatus status) {
+        // 投入順を維持するため、既存のエントリは値のみ置き換える
+        statuses.put(status.getJobId(), status);
+    }
+
+    /** {@inheritDoc} */
+    public synchronized UploadJobStatus load(String jobId) {
+        return statuses.get(jobId);
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void remove(String jobId) {
+        statuses.remove(jobId);
+    }
+}
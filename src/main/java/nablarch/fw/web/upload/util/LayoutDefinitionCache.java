@@ -0,0 +1,199 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nablarch.core.dataformat.LayoutDefinition;
+import nablarch.core.dataformat.LayoutFileParser;
+import nablarch.core.dataformat.SyntaxErrorException;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 解析済みのフォーマット定義をキャッシュするクラス。
+ * <p/>
+ * 本クラスを{@value #REPOSITORY_KEY}という名前でコンポーネント定義に登録すると、
+ * {@link UploadHelper#applyFormat(String, String)}で解析したフォーマット定義をキャッシュし、
+ * 以降はフォーマッタの生成のみを行う。
+ * 登録されていない場合はキャッシュせず、{@link nablarch.core.dataformat.FormatterFactory}の設定に従う。
+ * キャッシュする場合は、{@link nablarch.core.dataformat.FormatterFactory}自体のキャッシュは無効にしてよい。
+ * <pre>
+ * {@code
+ * <component name="layoutDefinitionCache" class="nablarch.fw.web.upload.util.LayoutDefinitionCache">
+ *   <property name="maxSize" value="100" />
+ *   <property name="encoding" value="UTF-8" />
+ * </component>
+ * }
+ * </pre>
+ * フォーマット定義ファイルの絶対パスをキーとし、最大件数を超えた場合は最も長く参照されていないエントリを破棄する。
+ * 取得時にファイルの最終更新日時とサイズを確認し、キャッシュ時から変更されている場合は再度解析する。
+ * <p/>
+ * {@link nablarch.core.dataformat.FormatterFactory}のキャッシュと同様に、
+ * 解析済みのフォーマット定義は複数のフォーマッタで共有する。
+ * フォーマット定義の初期化はフォーマッタ側で定義単位に排他制御されるため、スレッド間で共有してよい。
+ * <p/>
+ * 本クラスはスレッドセーフである。
+ */
+@Published(tag = "architect")
+public class LayoutDefinitionCache {
+
+    /** コンポーネント定義に登録する際の名前 */
+    public static final String REPOSITORY_KEY = "layoutDefinitionCache";
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(LayoutDefinitionCache.class);
+
+    /** キャッシュする最大件数 */
+    private volatile int maxSize = 100;
+
+    /** フォーマット定義ファイルの文字コード（{@code null}の場合は{@link LayoutFileParser}のデフォルト） */
+    private volatile String encoding;
+
+    /** キャッシュ（アクセス順） */
+    private final Map<String, CachedDefinition> entries =
+            new LinkedHashMap<String, CachedDefinition>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedDefinition> eldest) {
+                    return size() > maxSize;
+                }
+            };
+
+    /**
+     * コンポーネント定義に登録されたキャッシュを取得する。
+     *
+     * @return キャッシュ（登録されていない場合は{@code null}）
+     */
+    static LayoutDefinitionCache getInstance() {
+        return SystemRepository.get(REPOSITORY_KEY);
+    }
+
+    /**
+     * デフォルトの設定で{@code LayoutDefinitionCache}を生成する。
+     */
+    public LayoutDefinitionCache() {
+    }
+
+    /**
+     * 最大件数と文字コードを指定して{@code LayoutDefinitionCache}を生成する。
+     *
+     * @param maxSize  キャッシュする最大件数
+     * @param encoding フォーマット定義ファイルの文字コード（{@code null}の場合は{@link LayoutFileParser}のデフォルト）
+     */
+    LayoutDefinitionCache(int maxSize, String encoding) {
+        setMaxSize(maxSize);
+        setEncoding(encoding);
+    }
+
+    /**
+     * キャッシュする最大件数を設定する。
+     * <p/>
+     * 最大件数を超えた場合は、最も長く参照されていないものから破棄する。
+     * デフォルトは100。
+     *
+     * @param maxSize キャッシュする最大件数
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0. maxSize=[" + maxSize + "]");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * フォーマット定義ファイルを読み込む文字コードを設定する。
+     * <p/>
+     * {@link nablarch.core.dataformat.FormatterFactory#setEncoding(String)}を設定している場合は、同じ値を設定すること。
+     * デフォルトは{@link LayoutFileParser}のデフォルト（UTF-8）。
+     *
+     * @param encoding 文字コード
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * フォーマット定義を取得する。
+     * <p/>
+     * キャッシュされていない場合、またはキャッシュ時からファイルが変更されている場合は、ファイルを解析してキャッシュする。
+     * 解析はロックの外で行うため、同じファイルを複数のスレッドが同時に解析する場合がある。
+     *
+     * @param layoutFile フォーマット定義ファイル
+     * @return フォーマット定義
+     * @throws SyntaxErrorException フォーマット定義ファイルの解析に失敗した場合
+     */
+    LayoutDefinition get(File layoutFile) throws SyntaxErrorException {
+        String path = layoutFile.getAbsolutePath();
+        long lastModified = layoutFile.lastModified();
+        long length = layoutFile.length();
+        CachedDefinition entry;
+        synchronized (entries) {
+            entry = entries.get(path);
+        }
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+            return entry.definition;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug(concat(
+                    entry == null ? "loading layout definition." : "reloading modified layout definition.",
+                    " layoutFile=[", path, "]"));
+        }
+        LayoutDefinition definition = new LayoutFileParser(path, encoding).parse();
+        synchronized (entries) {
+            entries.put(path, new CachedDefinition(definition, lastModified, length));
+        }
+        return definition;
+    }
+
+    /**
+     * 全てのキャッシュを破棄する。
+     * <p/>
+     * フォーマット定義ファイルを最終更新日時とサイズが変わらないように置き換えた場合などに使用する。
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * キャッシュされている件数を取得する。
+     *
+     * @return 件数
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** キャッシュのエントリ。 */
+    private static final class CachedDefinition {
+
+        /** フォーマット定義 */
+        private final LayoutDefinition definition;
+
+        /** 解析時のファイルの最終更新日時 */
+        private final long lastModified;
+
+        /** 解析時のファイルサイズ */
+        private final long length;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param definition   フォーマット定義
+         * @param lastModified 解析時のファイルの最終更新日時
+         * @param length       解析時のファイルサイズ
+         */
+        CachedDefinition(LayoutDefinition definition, long lastModified, long length) {
+            this.definition = definition;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 計測結果をINFOレベルで1行のログに出力する{@link UploadMetricsListener}実装クラス。
+ * <p/>
+ * 1つのアップロード処理につき、アップロード処理の終了時に1行だけ出力する。
+ * <p/>
+ * 出力例を以下に示す。
+ * <pre>
+ * upload metrics. fileName=[cities.txt] total=[1532ms] LAYOUT_LOAD=[3ms/1] PARSE=[210ms/100000] VALIDATION=[820ms/100000]
+ * OBJECT_CREATION=[95ms/99990] ERROR_MESSAGE=[2ms/10] EXECUTE_BATCH=[0ms/0]
+ * </pre>
+ * 各処理区分の値は「処理時間/処理回数」である。
+ */
+@Published(tag = "architect")
+public class LoggingUploadMetricsListener implements UploadMetricsListener {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(LoggingUploadMetricsListener.class);
+
+    /** {@inheritDoc} */
+    public void onFinish(UploadMetrics metrics) {
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.logInfo(format(metrics));
+        }
+    }
+
+    /**
+     * 計測結果をログ出力用の文字列に変換する。
+     *
+     * @param metrics 計測結果
+     * @return ログ出力用の文字列
+     */
+    protected String format(UploadMetrics metrics) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("upload metrics. fileName=[").append(metrics.getFileName()).append(']')
+          .append(" total=[").append(toMillis(metrics.getWallClockNanos())).append("ms]");
+        for (UploadPhase phase : UploadPhase.values()) {
+            sb.append(' ').append(phase.name())
+              .append("=[").append(toMillis(metrics.getElapsedNanos(phase))).append("ms/")
+              .append(metrics.getCount(phase)).append(']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * ナノ秒をミリ秒に変換する。
+     *
+     * @param nanos ナノ秒
+     * @return ミリ秒
+     */
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
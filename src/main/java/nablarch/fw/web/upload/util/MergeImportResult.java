@@ -0,0 +1,60 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * マージ登録の結果を保持するクラス。
+ *
+ * @see BulkValidationResult#mergeAll(MergeStrategy)
+ */
+public class MergeImportResult {
+
+    /** 登録件数 */
+    private final int insertedCount;
+
+    /** 更新件数 */
+    private final int updatedCount;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param insertedCount 登録件数
+     * @param updatedCount  更新件数
+     */
+    MergeImportResult(int insertedCount, int updatedCount) {
+        this.insertedCount = insertedCount;
+        this.updatedCount = updatedCount;
+    }
+
+    /**
+     * 未登録だったため登録したレコードの件数を取得する。
+     *
+     * @return 登録件数
+     */
+    @Published
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    /**
+     * 登録済みだったため更新したレコードの件数を取得する。
+     * <p/>
+     * アップロードファイル内で同じキーが複数回現れた場合、2回目以降は更新として数える。
+     *
+     * @return 更新件数
+     */
+    @Published
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    /**
+     * 登録件数と更新件数の合計を取得する。
+     *
+     * @return 登録件数と更新件数の合計
+     */
+    @Published
+    public int getMergedCount() {
+        return insertedCount + updatedCount;
+    }
+}
@@ -0,0 +1,141 @@
+package nablarch.fw.web.upload.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * マージ登録ロジックを用いて、バリデーション済みオブジェクトを一括実行数ごとにマージ登録するクラス。
+ * <p/>
+ * 一括実行数分のオブジェクトごとに、キーを1回のSQL実行でまとめて検索し、
+ * 登録済みのオブジェクトは更新のバッチへ、未登録のオブジェクトは登録のバッチへ振り分ける。
+ * 登録のバッチを実行した後に更新のバッチを実行するため、
+ * 同じ一括実行数分の中で同じキーが複数回現れた場合も、ファイル内で後に現れたオブジェクトの内容が反映される。
+ * <p/>
+ * 一括実行数分のオブジェクトはキーの検索と振り分けで2回走査するため、
+ * 一時ファイルへ退避したオブジェクトを読み直さないよう、イテレータで順に読み込んだものをリストに保持して処理する。
+ *
+ * @param <FORM> 登録に使用するフォームクラスの型
+ */
+class MergeImporter<FORM> {
+
+    /** マージ登録ロジック */
+    private final MergeStrategy<FORM> strategy;
+
+    /** 更新のバッチ登録クラス */
+    private final BatchInserter<FORM> updater;
+
+    /** 登録のバッチ登録クラス */
+    private final BatchInserter<FORM> inserter;
+
+    /** キーを検索する件数（一括実行数） */
+    private final int chunkSize;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param strategy  マージ登録ロジック
+     * @param batchSize 一括実行数
+     * @param metrics   アップロード処理の計測結果（計測しない場合は{@code null}）
+     * @param progress  進捗（記録しない場合は{@code null}）
+     */
+    MergeImporter(MergeStrategy<FORM> strategy, int batchSize, UploadMetrics metrics, UploadProgress progress) {
+        this.strategy = strategy;
+        this.chunkSize = batchSize;
+        this.updater = new BatchInserter<FORM>(strategy.getUpdateStrategy(), batchSize)
+                .setMetrics(metrics)
+                .setProgress(progress);
+        this.inserter = new BatchInserter<FORM>(strategy.getInsertStrategy(), batchSize)
+                .setMetrics(metrics)
+                .setProgress(progress);
+    }
+
+    /**
+     * バリデーション済みオブジェクトをマージ登録する。
+     *
+     * @param validObjects バリデーション済みオブジェクト
+     * @return マージ登録の結果
+     */
+    MergeImportResult importAll(List<FORM> validObjects) {
+        Iterator<FORM> it = SpillableList.iterator(validObjects, 0, validObjects.size());
+        try {
+            List<FORM> chunk = new ArrayList<FORM>(Math.min(chunkSize, validObjects.size()));
+            while (it.hasNext()) {
+                chunk.add(it.next());
+                if (chunk.size() >= chunkSize || !it.hasNext()) {
+                    mergeChunk(chunk);
+                    chunk.clear();
+                }
+            }
+        } finally {
+            SpillableList.closeIterator(it);
+        }
+        return new MergeImportResult(inserter.getExecutedCount(), updater.getExecutedCount());
+    }
+
+    /**
+     * 一括実行数分のバリデーション済みオブジェクトをマージ登録する。
+     *
+     * @param chunk 一括実行数分のバリデーション済みオブジェクト
+     */
+    private void mergeChunk(List<FORM> chunk) {
+        List<Object> keys = new ArrayList<Object>(chunk.size());
+        Set<Object> normalizedKeys = new HashSet<Object>();
+        for (FORM e : chunk) {
+            Object key = strategy.getKey(e);
+            if (key != null && normalizedKeys.add(normalize(key))) {
+                keys.add(key);
+            }
+        }
+        Set<Object> existing = new HashSet<Object>();
+        if (!keys.isEmpty()) {
+            for (Object e : strategy.findExistingKeys(keys)) {
+                existing.add(normalize(e));
+            }
+        }
+        for (FORM e : chunk) {
+            Object key = strategy.getKey(e);
+            if (key == null) {
+                inserter.add(e);
+                continue;
+            }
+            // 同じキーの2回目以降は、先に登録したレコードを更新する
+            if (existing.add(normalize(key))) {
+                inserter.add(e);
+            } else {
+                updater.add(e);
+            }
+        }
+        inserter.flush();
+        updater.flush();
+    }
+
+    /**
+     * キーを比較用に正規化する。
+     * <p/>
+     * 数値は型およびスケールを問わず、値が等しければ等しくなるよう文字列に変換する。
+     * 文字列は、CHAR型のカラムから取得した値と一致するよう末尾の空白を除去する。
+     *
+     * @param key キー
+     * @return 正規化したキー
+     */
+    static Object normalize(Object key) {
+        if (key instanceof String) {
+            String s = (String) key;
+            int end = s.length();
+            while (end > 0 && s.charAt(end - 1) == ' ') {
+                end--;
+            }
+            return s.substring(0, end);
+        }
+        if (!(key instanceof Number)) {
+            return key;
+        }
+        BigDecimal value = new BigDecimal(key.toString());
+        // 0はstripTrailingZerosでスケールが除去されないため個別に扱う
+        return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,63 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.Collection;
+import java.util.List;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 既存レコードの更新と新規レコードの登録を振り分けるマージ登録ロジックを記述するためのインタフェース。
+ * <p/>
+ * 以下の処理を提供する。
+ * <ul>
+ * <li>バリデーション済みオブジェクトからのキーの取得</li>
+ * <li>一括実行数分のキーに対する、登録済みキーの一括検索</li>
+ * <li>登録済みのレコードを更新するロジック</li>
+ * <li>未登録のレコードを登録するロジック</li>
+ * </ul>
+ * データベースがMERGE文を提供する場合は、本インタフェースを使用せず
+ * {@link BulkValidationResult#importWith(nablarch.core.db.support.DbAccessSupport, String)}で
+ * MERGE文をバッチ実行すればよい。
+ *
+ * @param <FORM> 登録に使用するフォームクラスの型
+ * @see BulkValidationResult#mergeAll(MergeStrategy)
+ */
+@Published
+public interface MergeStrategy<FORM> {
+
+    /**
+     * バリデーション済みオブジェクトのキーを取得する。
+     *
+     * @param form バリデーション済みオブジェクト
+     * @return キー（{@code null}の場合は常に未登録として扱う）
+     */
+    Object getKey(FORM form);
+
+    /**
+     * 指定されたキーのうち、登録済みのキーを検索する。
+     * <p/>
+     * 一括実行数ごとに1回呼び出される。
+     * IN句による検索や一時テーブルとの結合など、1回のSQL実行で検索すること。
+     * 数値のキーは型およびスケールを問わず値が等しければ同じキーとみなすため、
+     * 返却するキーの型は{@link #getKey(Object)}と一致していなくてもよい。
+     * 文字列のキーは末尾の空白を除いて比較するため、CHAR型のカラムの値を空白で埋められたまま返却してもよい。
+     *
+     * @param keys 検索するキー（{@code null}および重複を含まない）
+     * @return 登録済みのキー
+     */
+    Collection<?> findExistingKeys(List<Object> keys);
+
+    /**
+     * 登録済みのレコードを更新するロジックを取得する。
+     *
+     * @return 更新ロジック
+     */
+    InsertionStrategy<FORM> getUpdateStrategy();
+
+    /**
+     * 未登録のレコードを登録するロジックを取得する。
+     *
+     * @return 登録ロジック
+     */
+    InsertionStrategy<FORM> getInsertStrategy();
+}
@@ -0,0 +1,17 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 何もしない{@link UploadMetricsListener}実装クラス。
+ * <p/>
+ * 本クラスが設定されている場合（デフォルト）、処理時間の計測自体を行わない。
+ */
+@Published(tag = "architect")
+public class NopUploadMetricsListener implements UploadMetricsListener {
+
+    /** {@inheritDoc} */
+    public void onFinish(UploadMetrics metrics) {
+        // nop
+    }
+}
@@ -0,0 +1,210 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 複数のコネクションを用いて並列に行った一括登録の結果を保持するクラス。
+ * <p/>
+ * バリデーション済みオブジェクトは連続した範囲ごとにパーティションへ分割され、
+ * パーティションごとに別々のコネクションで登録される。
+ * 全パーティションの登録が成功した場合のみコミットし、
+ * 1つでも失敗した場合は全パーティションをロールバックする。
+ *
+ * @see BulkValidationResult#importAllInParallel(InsertionStrategy, nablarch.core.db.connection.ConnectionFactory,
+ *      java.util.concurrent.ExecutorService, int)
+ */
+public class ParallelImportResult {
+
+    /** パーティションごとの結果 */
+    private final List<Partition> partitions;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param partitions パーティションごとの結果
+     */
+    ParallelImportResult(List<Partition> partitions) {
+        this.partitions = Collections.unmodifiableList(partitions);
+    }
+
+    /**
+     * 全パーティションの登録がコミットされたかどうかを判定する。
+     * <p/>
+     * 登録対象が存在しない場合は{@code true}を返却する。
+     *
+     * @return 全パーティションがコミットされた場合は{@code true}
+     */
+    @Published
+    public boolean isCommitted() {
+        for (Partition e : partitions) {
+            if (!e.isCommitted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * コミットされたレコードの登録件数を取得する。
+     *
+     * @return 登録件数
+     */
+    @Published
+    public int getImportedCount() {
+        int count = 0;
+        for (Partition e : partitions) {
+            count += e.getImportedCount();
+        }
+        return count;
+    }
+
+    /**
+     * パーティションごとの結果を取得する。
+     *
+     * @return パーティションごとの結果（パーティション番号の昇順）
+     */
+    @Published
+    public List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * 失敗したパーティションの結果を取得する。
+     *
+     * @return 失敗したパーティションの結果（失敗したパーティションが存在しない場合は空のリスト）
+     */
+    @Published
+    public List<Partition> getFailedPartitions() {
+        List<Partition> failed = new ArrayList<Partition>();
+        for (Partition e : partitions) {
+            if (e.getFailure() != null) {
+                failed.add(e);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * パーティションごとの登録結果。
+     */
+    @Published
+    public static class Partition {
+
+        /** パーティション番号 */
+        private final int index;
+
+        /** バリデーション済みオブジェクトにおける開始位置 */
+        private final int fromIndex;
+
+        /** パーティションに含まれるオブジェクトの件数 */
+        private final int size;
+
+        /** バッチ実行した件数 */
+        private int executedCount;
+
+        /** 発生した例外 */
+        private Throwable failure;
+
+        /** コミットされたかどうか */
+        private boolean committed;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param index     パーティション番号
+         * @param fromIndex バリデーション済みオブジェクトにおける開始位置
+         * @param size      パーティションに含まれるオブジェクトの件数
+         */
+        Partition(int index, int fromIndex, int size) {
+            this.index = index;
+            this.fromIndex = fromIndex;
+            this.size = size;
+        }
+
+        /**
+         * パーティション番号を取得する。
+         *
+         * @return パーティション番号（0始まり）
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * バリデーション済みオブジェクトにおける開始位置を取得する。
+         *
+         * @return 開始位置（0始まり）
+         */
+        public int getFromIndex() {
+            return fromIndex;
+        }
+
+        /**
+         * パーティションに含まれるオブジェクトの件数を取得する。
+         *
+         * @return 件数
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * コミットされたレコードの登録件数を取得する。
+         *
+         * @return 登録件数（コミットされていない場合は0）
+         */
+        public int getImportedCount() {
+            return committed ? executedCount : 0;
+        }
+
+        /**
+         * パーティションで発生した例外を取得する。
+         *
+         * @return 発生した例外（発生していない場合は{@code null}）
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * コミットされたかどうかを判定する。
+         *
+         * @return コミットされた場合は{@code true}
+         */
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        /**
+         * バッチ実行した件数を設定する。
+         *
+         * @param executedCount バッチ実行した件数
+         */
+        void setExecutedCount(int executedCount) {
+            this.executedCount = executedCount;
+        }
+
+        /**
+         * パーティションで発生した例外を設定する。
+         * 既に設定されている場合は、最初に発生した例外を保持する。
+         *
+         * @param failure 発生した例外
+         */
+        void setFailure(Throwable failure) {
+            if (this.failure == null) {
+                this.failure = failure;
+            }
+        }
+
+        /**
+         * コミットされたことを設定する。
+         */
+        void setCommitted() {
+            this.committed = true;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.connection.ConnectionFactory;
+import nablarch.core.db.connection.DbConnectionContext;
+import nablarch.core.db.connection.TransactionManagerConnection;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.transaction.TransactionContext;
+import nablarch.fw.web.upload.util.ParallelImportResult.Partition;
+
+/**
+ * バリデーション済みオブジェクトをパーティションに分割し、複数のコネクションで並列に登録するクラス。
+ * <p/>
+ * パーティションごとに{@link ConnectionFactory}からコネクションを取得し、
+ * ワーカースレッドの{@link DbConnectionContext}に設定した上で{@link InsertionStrategy}を呼び出す。
+ * このため、{@link nablarch.core.db.support.DbAccessSupport}を使用する登録ロジックをそのまま使用できる。
+ * <p/>
+ * 全パーティションの登録が終了した後、呼び出し元のスレッドで以下のとおりトランザクションを終了する。
+ * <ul>
+ * <li>全パーティションの登録が成功した場合は、パーティション番号順にコミットする。</li>
+ * <li>1つでも失敗した場合は、全パーティションをロールバックする。</li>
+ * </ul>
+ * いずれかのパーティションが失敗した場合、他のパーティションは登録を中止する。
+ * <p/>
+ * コミット中に失敗した場合、未コミットのパーティションはロールバックするが、
+ * コミット済みのパーティションは取り消せない。どのパーティションがコミットされたかは結果から判断できる。
+ *
+ * @param <FORM> 登録に使用するフォームクラスの型
+ */
+class ParallelImporter<FORM> {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(ParallelImporter.class);
+
+    /** ワーカースレッドで使用するコネクション名 */
+    private static final String CONNECTION_NAME = TransactionContext.DEFAULT_TRANSACTION_CONTEXT_KEY;
+
+    /** 登録ロジック */
+    private final InsertionStrategy<FORM> strategy;
+
+    /** コネクションの取得に使用する{@link ConnectionFactory} */
+    private final ConnectionFactory connectionFactory;
+
+    /** 登録を実行する{@link ExecutorService} */
+    private final ExecutorService executor;
+
+    /** パーティション数 */
+    private final int partitionCount;
+
+    /** バッチ登録クラスを生成する一括バリデーション結果 */
+    private final BulkValidationResult<FORM> batchSizeSource;
+
+    /** 登録を中止するかどうか（いずれかのパーティションが失敗した場合、または割り込まれた場合に設定する） */
+    private volatile boolean aborted = false;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param strategy          登録ロジック
+     * @param connectionFactory コネクションの取得に使用する{@link ConnectionFactory}
+     * @param executor          登録を実行する{@link ExecutorService}
+     * @param partitionCount    パーティション数
+     * @param batchSizeSource   バッチ登録クラスを生成する一括バリデーション結果
+     */
+    ParallelImporter(InsertionStrategy<FORM> strategy, ConnectionFactory connectionFactory,
+                     ExecutorService executor, int partitionCount, BulkValidationResult<FORM> batchSizeSource) {
+        if (connectionFactory == null) {
+            throw new IllegalArgumentException("connectionFactory must not be null.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null.");
+        }
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException(
+                    "partitionCount must be greater than 0. partitionCount=[" + partitionCount + "]");
+        }
+        this.strategy = strategy;
+        this.connectionFactory = connectionFactory;
+        this.executor = executor;
+        this.partitionCount = partitionCount;
+        this.batchSizeSource = batchSizeSource;
+    }
+
+    /**
+     * バリデーション済みオブジェクトを並列に登録する。
+     *
+     * @param validObjects バリデーション済みオブジェクト
+     * @return 並列登録の結果
+     */
+    ParallelImportResult importAll(List<FORM> validObjects) {
+        List<PartitionTask> tasks = createTasks(validObjects);
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+        try {
+            for (PartitionTask task : tasks) {
+                futures.add(executor.submit(task));
+            }
+        } catch (RuntimeException e) {
+            // RejectedExecutionExceptionなど。投入済みのタスクは終了を待ってロールバックする
+            tasks.get(futures.size()).partition.setFailure(e);
+            aborted = true;
+        }
+        // コネクションを使用中のタスクが残らないよう、投入した全タスクの終了を待つ
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            interrupted |= await(futures.get(i), tasks.get(i));
+        }
+        complete(tasks, interrupted);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        List<Partition> partitions = new ArrayList<Partition>(tasks.size());
+        for (PartitionTask task : tasks) {
+            partitions.add(task.partition);
+        }
+        return new ParallelImportResult(partitions);
+    }
+
+    /**
+     * バリデーション済みオブジェクトを連続した範囲ごとに分割し、パーティションごとのタスクを生成する。
+     *
+     * @param validObjects バリデーション済みオブジェクト
+     * @return パーティションごとのタスク
+     */
+    private List<PartitionTask> createTasks(List<FORM> validObjects) {
+        int total = validObjects.size();
+        int count = Math.min(partitionCount, total);
+        List<PartitionTask> tasks = new ArrayList<PartitionTask>(count);
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            int size = total / count + (i < total % count ? 1 : 0);
+            tasks.add(new PartitionTask(new Partition(i, from, size), validObjects));
+            from += size;
+        }
+        return tasks;
+    }
+
+    /**
+     * タスクの終了を待つ。
+     * <p/>
+     * 割り込まれた場合は、登録の中止を指示した上でタスクの終了を待つ。
+     *
+     * @param future タスクの実行結果
+     * @param task   タスク
+     * @return 割り込まれた場合は{@code true}
+     */
+    private boolean await(Future<?> future, PartitionTask task) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                aborted = true;
+            } catch (CancellationException e) {
+                task.partition.setFailure(e);
+                return interrupted;
+            } catch (ExecutionException e) {
+                task.partition.setFailure(e.getCause());
+                return interrupted;
+            }
+        }
+    }
+
+    /**
+     * 全パーティションのトランザクションを終了する。
+     * <p/>
+     * 全パーティションが成功した場合はコミットし、それ以外の場合はロールバックする。
+     * コミット中に失敗した場合、以降のパーティションはロールバックする。
+     *
+     * @param tasks       パーティションごとのタスク
+     * @param interrupted 割り込まれた場合は{@code true}
+     */
+    private void complete(List<PartitionTask> tasks, boolean interrupted) {
+        boolean commit = !interrupted && !aborted;
+        for (PartitionTask task : tasks) {
+            if (task.partition.getFailure() != null) {
+                commit = false;
+            }
+        }
+        for (PartitionTask task : tasks) {
+            TransactionManagerConnection connection = task.connection;
+            if (connection == null) {
+                continue;
+            }
+            try {
+                if (commit) {
+                    connection.commit();
+                    task.partition.setCommitted();
+                } else {
+                    connection.rollback();
+                }
+            } catch (RuntimeException e) {
+                task.partition.setFailure(e);
+                commit = false;
+            } finally {
+                connection.terminate();
+            }
+        }
+        if (LOGGER.isDebugEnabled()) {
+            for (PartitionTask task : tasks) {
+                Partition p = task.partition;
+                LOGGER.logDebug(concat(
+                        "parallel import partition finished.",
+                        " partition=[", p.getIndex(), "]",
+                        " from=[", p.getFromIndex(), "]",
+                        " size=[", p.getSize(), "]",
+                        " committed=[", p.isCommitted(), "]",
+                        " failure=[", p.getFailure(), "]"));
+            }
+        }
+    }
+
+    /** パーティション１つ分の登録を行うタスク。 */
+    private final class PartitionTask implements Runnable {
+
+        /** パーティションの結果 */
+        private final Partition partition;
+
+        /** バリデーション済みオブジェクト */
+        private final List<FORM> validObjects;
+
+        /** パーティションの登録に使用するコネクション（取得前は{@code null}） */
+        private volatile TransactionManagerConnection connection;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param partition    パーティションの結果
+         * @param validObjects バリデーション済みオブジェクト
+         */
+        PartitionTask(Partition partition, List<FORM> validObjects) {
+            this.partition = partition;
+            this.validObjects = validObjects;
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            // CallerRunsPolicyなどで呼び出し元スレッドで実行された場合に備え、既存のコネクションを退避する
+            AppDbConnection previous = DbConnectionContext.containConnection(CONNECTION_NAME)
+                    ? DbConnectionContext.getConnection(CONNECTION_NAME) : null;
+            if (previous != null) {
+                DbConnectionContext.removeConnection(CONNECTION_NAME);
+            }
+            Iterator<FORM> it = null;
+            try {
+                connection = connectionFactory.getConnection(CONNECTION_NAME);
+                DbConnectionContext.setConnection(CONNECTION_NAME, connection);
+                BatchInserter<FORM> inserter = batchSizeSource.createBatchInserter(strategy);
+                it = SpillableList.iterator(validObjects, partition.getFromIndex(),
+                        partition.getFromIndex() + partition.getSize());
+                while (it.hasNext() && !aborted) {
+                    inserter.add(it.next());
+                }
+                if (aborted) {
+                    // 他のパーティションが失敗しているためロールバックされる。以降の登録は行わない
+                    return;
+                }
+                inserter.flush();
+                partition.setExecutedCount(inserter.getExecutedCount());
+            } catch (RuntimeException e) {
+                partition.setFailure(e);
+                aborted = true;
+            } catch (Error e) {
+                partition.setFailure(e);
+                aborted = true;
+            } finally {
+                // 中止や例外により読み終えていない場合も、一時ファイルを開いたままにしない
+                SpillableList.closeIterator(it);
+                if (DbConnectionContext.containConnection(CONNECTION_NAME)) {
+                    DbConnectionContext.removeConnection(CONNECTION_NAME);
+                }
+                if (previous != null) {
+                    DbConnectionContext.setConnection(CONNECTION_NAME, previous);
+                }
+            }
+        }
+    }
+}
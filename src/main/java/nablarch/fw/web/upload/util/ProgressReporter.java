@@ -0,0 +1,123 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * 一定のレコード数または一定の時間が経過するごとに、{@link UploadProgressListener}へ進捗を通知するクラス。
+ * <p/>
+ * 本クラスは処理中のスレッドのみから呼び出されるため、スレッドセーフではない。
+ */
+final class ProgressReporter {
+
+    /** 通知先 */
+    private final UploadProgressListener listener;
+
+    /** 通知するレコード数の間隔（0以下の場合はレコード数では通知しない） */
+    private final int recordInterval;
+
+    /** 通知する時間の間隔（ナノ秒、0以下の場合は時間では通知しない） */
+    private final long timeIntervalNanos;
+
+    /** 処理区分 */
+    private final UploadPhase phase;
+
+    /** 処理対象の全レコード数（不明な場合は-1） */
+    private final int totalCount;
+
+    /** 読み込んだバイト数の取得元（取得できない場合は{@code null}） */
+    private final FileInputStream source;
+
+    /** ファイル全体のバイト数（不明な場合は-1） */
+    private final long totalBytes;
+
+    /** 処理開始時刻（ナノ秒） */
+    private final long startNanos = System.nanoTime();
+
+    /** 前回通知した時刻（ナノ秒） */
+    private long lastReportedNanos = startNanos;
+
+    /** 前回通知したレコード数 */
+    private int lastReportedCount = 0;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param listener           通知先
+     * @param recordInterval     通知するレコード数の間隔（0以下の場合はレコード数では通知しない）
+     * @param timeIntervalMillis 通知する時間の間隔（ミリ秒、0以下の場合は時間では通知しない）
+     * @param phase              処理区分
+     * @param totalCount         処理対象の全レコード数（不明な場合は-1）
+     * @param source             読み込んだバイト数の取得元（取得できない場合は{@code null}）
+     * @param totalBytes         ファイル全体のバイト数（不明な場合は-1）
+     */
+    ProgressReporter(UploadProgressListener listener, int recordInterval, long timeIntervalMillis,
+                     UploadPhase phase, int totalCount, FileInputStream source, long totalBytes) {
+        this.listener = listener;
+        this.recordInterval = recordInterval;
+        this.timeIntervalNanos = timeIntervalMillis * 1000L * 1000L;
+        this.phase = phase;
+        this.totalCount = totalCount;
+        this.source = source;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * 前回の通知から一定のレコード数または一定の時間が経過していれば、進捗を通知する。
+     *
+     * @param processedCount 処理したレコード数
+     * @param errorCount     エラーが発生したレコード数
+     */
+    void report(int processedCount, int errorCount) {
+        if (recordInterval > 0 && processedCount - lastReportedCount >= recordInterval) {
+            notify(processedCount, errorCount, System.nanoTime(), false);
+        } else if (timeIntervalNanos > 0) {
+            long now = System.nanoTime();
+            if (now - lastReportedNanos >= timeIntervalNanos) {
+                notify(processedCount, errorCount, now, false);
+            }
+        }
+    }
+
+    /**
+     * 処理の終了を通知する。
+     *
+     * @param processedCount 処理したレコード数
+     * @param errorCount     エラーが発生したレコード数
+     */
+    void complete(int processedCount, int errorCount) {
+        notify(processedCount, errorCount, System.nanoTime(), true);
+    }
+
+    /**
+     * 進捗を通知する。
+     *
+     * @param processedCount 処理したレコード数
+     * @param errorCount     エラーが発生したレコード数
+     * @param now            現在時刻（ナノ秒）
+     * @param completed      処理が終了した場合は{@code true}
+     */
+    private void notify(int processedCount, int errorCount, long now, boolean completed) {
+        lastReportedCount = processedCount;
+        lastReportedNanos = now;
+        listener.onProgress(new UploadProgressEvent(phase, processedCount, errorCount, totalCount,
+                getBytesRead(), totalBytes, now - startNanos, completed));
+    }
+
+    /**
+     * 読み込んだバイト数を取得する。
+     *
+     * @return 読み込んだバイト数（取得できない場合は-1）
+     */
+    private long getBytesRead() {
+        if (source == null) {
+            return -1L;
+        }
+        try {
+            return source.getChannel().position();
+        } catch (IOException e) {
+            // クローズ済みなど
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.Serializable;
+
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.StringResource;
+
+/**
+ * レコードのバリデーションエラーを、行番号と元のメッセージを埋め込んだメッセージとして表すクラス。
+ * <p/>
+ * 元のメッセージは本メッセージをフォーマットする時点で初めてフォーマットする。
+ * 一括バリデーションでは大量のエラーメッセージが生成されるが、その多くは画面に表示されないため、
+ * 生成時にはフォーマットしないことで処理時間と生成するオブジェクトを削減する。
+ * <p/>
+ * メッセージのパラメータには、行番号と元のメッセージをフォーマットした文言がこの順に設定される。
+ * 元のメッセージは本メッセージをフォーマットしたスレッドの言語でフォーマットされる。
+ * ただし、本メッセージをシリアライズした場合、元のメッセージはシリアライズしたスレッドの言語でフォーマットされ、
+ * フォーマットした文言がパラメータとしてシリアライズされる。
+ * 元のメッセージ自体はシリアライズしないため、元のメッセージがシリアライズ可能である必要はない。
+ */
+final class RecordErrorMessage extends Message {
+
+    /** シリアルバージョンUID */
+    private static final long serialVersionUID = 1L;
+
+    /** 行番号 */
+    private final int recordNumber;
+
+    /** 文字列リソース（シリアライズしない） */
+    private final transient StringResource stringResource;
+
+    /** 元のメッセージ（シリアライズしない） */
+    private final transient Message nestedMessage;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param level          メッセージレベル
+     * @param stringResource 文字列リソース
+     * @param recordNumber   行番号
+     * @param nestedMessage  元のメッセージ
+     */
+    RecordErrorMessage(MessageLevel level, StringResource stringResource, int recordNumber, Message nestedMessage) {
+        super(level, stringResource, new Object[] {recordNumber, new FormatOnDemand(nestedMessage)});
+        this.recordNumber = recordNumber;
+        this.stringResource = stringResource;
+        this.nestedMessage = nestedMessage;
+    }
+
+    /**
+     * 行番号を取得する。
+     *
+     * @return 行番号
+     */
+    int getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * 文字列リソースを取得する。
+     *
+     * @return 文字列リソース（デシリアライズしたメッセージの場合は{@code null}）
+     */
+    StringResource getStringResource() {
+        return stringResource;
+    }
+
+    /**
+     * 元のメッセージを取得する。
+     *
+     * @return 元のメッセージ（デシリアライズしたメッセージの場合は{@code null}）
+     */
+    Message getNestedMessage() {
+        return nestedMessage;
+    }
+
+    /**
+     * 文字列に変換された時点でメッセージをフォーマットするパラメータ。
+     * <p/>
+     * {@link java.text.MessageFormat}はパラメータを{@link #toString()}で文字列に変換するため、
+     * 本メッセージをフォーマットするまで元のメッセージはフォーマットされない。
+     * <p/>
+     * シリアライズ時は、フォーマットした文言に置き換えてシリアライズする。
+     * そのため、デシリアライズ後のパラメータは{@link String}となる。
+     */
+    private static final class FormatOnDemand implements Serializable {
+
+        /** シリアルバージョンUID */
+        private static final long serialVersionUID = 1L;
+
+        /** フォーマットするメッセージ */
+        private final Message message;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param message フォーマットするメッセージ
+         */
+        FormatOnDemand(Message message) {
+            this.message = message;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * メッセージをフォーマットした文言を返却する。
+         */
+        @Override
+        public String toString() {
+            return message.formatMessage();
+        }
+
+        /**
+         * シリアライズするオブジェクトを、メッセージをフォーマットした文言に置き換える。
+         *
+         * @return メッセージをフォーマットした文言
+         */
+        private Object writeReplace() {
+            return toString();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FormatOnDemand && message.equals(((FormatOnDemand) o).message);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return message.hashCode();
+        }
+    }
+}
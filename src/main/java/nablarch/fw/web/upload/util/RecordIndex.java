@@ -0,0 +1,209 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.Arrays;
+
+/**
+ * 一括バリデーションで処理したレコードの行番号から、バリデーション結果の位置を引くための索引クラス。
+ * <p/>
+ * 妥当なレコードとエラーのレコードを処理順に1つの索引で保持する。
+ * 行番号が連続し、かつ妥当・エラーの区分が同じレコードは1つの区間にまとめ、
+ * 区間ごとに先頭の行番号、処理順の位置、バリデーション済みオブジェクトの位置をプリミティブの配列で保持する。
+ * このため、エラーの少ないファイルでは行数に関わらず数区間分のメモリしか使用しない。
+ * 行番号または処理順の位置からの検索は、区間の二分探索で行う。
+ * <p/>
+ * 行番号は昇順に追加しなければならない。
+ * 本クラスはバリデーションを実行するスレッドのみから更新されるため、スレッドセーフではない。
+ */
+final class RecordIndex {
+
+    /** 配列の初期サイズ */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** エラーのレコードの区間であることを示すバリデーション済みオブジェクトの位置 */
+    private static final int INVALID = -1;
+
+    /** 区間の先頭の行番号（昇順） */
+    private int[] runStarts = new int[0];
+
+    /** 区間の先頭のレコードの処理順の位置（昇順） */
+    private int[] runPositions = new int[0];
+
+    /** 区間の先頭のレコードのバリデーション済みオブジェクトの位置（エラーの区間は{@link #INVALID}） */
+    private int[] runValidSlots = new int[0];
+
+    /** 区間の数 */
+    private int runCount = 0;
+
+    /** レコード数 */
+    private int size = 0;
+
+    /** 妥当なレコード数 */
+    private int validCount = 0;
+
+    /** 最後に追加した行番号 */
+    private int lastRecordNumber = 0;
+
+    /**
+     * 妥当なレコードを追加する。
+     *
+     * @param recordNumber 行番号
+     * @throws IllegalArgumentException 行番号が最後に追加した行番号以下の場合
+     */
+    void addValid(int recordNumber) {
+        append(recordNumber, validCount);
+        validCount++;
+    }
+
+    /**
+     * エラーのレコードを追加する。
+     *
+     * @param recordNumber 行番号
+     * @throws IllegalArgumentException 行番号が最後に追加した行番号以下の場合
+     */
+    void addInvalid(int recordNumber) {
+        append(recordNumber, INVALID);
+    }
+
+    /**
+     * レコードを追加する。
+     *
+     * @param recordNumber 行番号
+     * @param validSlot    バリデーション済みオブジェクトの位置（エラーの場合は{@link #INVALID}）
+     */
+    private void append(int recordNumber, int validSlot) {
+        if (size > 0 && recordNumber <= lastRecordNumber) {
+            throw new IllegalArgumentException("recordNumber must be added in ascending order."
+                    + " recordNumber=[" + recordNumber + "] last=[" + lastRecordNumber + "]");
+        }
+        boolean continues = runCount > 0
+                && recordNumber == lastRecordNumber + 1
+                && (runValidSlots[runCount - 1] == INVALID) == (validSlot == INVALID);
+        if (!continues) {
+            ensureCapacity(runCount + 1);
+            runStarts[runCount] = recordNumber;
+            runPositions[runCount] = size;
+            runValidSlots[runCount] = validSlot;
+            runCount++;
+        }
+        lastRecordNumber = recordNumber;
+        size++;
+    }
+
+    /**
+     * 配列の容量を確保する。
+     *
+     * @param required 必要な容量
+     */
+    private void ensureCapacity(int required) {
+        if (required <= runStarts.length) {
+            return;
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, runStarts.length + (runStarts.length >> 1));
+        if (capacity < required) {
+            capacity = required;
+        }
+        runStarts = Arrays.copyOf(runStarts, capacity);
+        runPositions = Arrays.copyOf(runPositions, capacity);
+        runValidSlots = Arrays.copyOf(runValidSlots, capacity);
+    }
+
+    /**
+     * レコード数を取得する。
+     *
+     * @return レコード数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 処理順の位置のレコードの行番号を取得する。
+     *
+     * @param position 処理順の位置
+     * @return 行番号
+     * @throws IndexOutOfBoundsException 位置が範囲外の場合
+     */
+    int getRecordNumber(int position) {
+        int run = findRunByPosition(position);
+        return runStarts[run] + (position - runPositions[run]);
+    }
+
+    /**
+     * 行番号のレコードの処理順の位置を取得する。
+     *
+     * @param recordNumber 行番号
+     * @return 処理順の位置（索引に存在しない場合は-1）
+     */
+    int indexOf(int recordNumber) {
+        int run = findRunByRecordNumber(recordNumber);
+        if (run < 0) {
+            return -1;
+        }
+        return runPositions[run] + (recordNumber - runStarts[run]);
+    }
+
+    /**
+     * 行番号のレコードのバリデーション済みオブジェクトの位置を取得する。
+     *
+     * @param recordNumber 行番号
+     * @return バリデーション済みオブジェクトの位置（エラーのレコード、または索引に存在しない場合は-1）
+     */
+    int getValidSlot(int recordNumber) {
+        int run = findRunByRecordNumber(recordNumber);
+        if (run < 0 || runValidSlots[run] == INVALID) {
+            return -1;
+        }
+        return runValidSlots[run] + (recordNumber - runStarts[run]);
+    }
+
+    /**
+     * 行番号のレコードを含む区間を検索する。
+     *
+     * @param recordNumber 行番号
+     * @return 区間（存在しない場合は-1）
+     */
+    private int findRunByRecordNumber(int recordNumber) {
+        int run = floor(runStarts, recordNumber);
+        if (run < 0 || recordNumber - runStarts[run] >= runLength(run)) {
+            return -1;
+        }
+        return run;
+    }
+
+    /**
+     * 処理順の位置のレコードを含む区間を検索する。
+     *
+     * @param position 処理順の位置
+     * @return 区間
+     * @throws IndexOutOfBoundsException 位置が範囲外の場合
+     */
+    private int findRunByPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position=[" + position + "] size=[" + size + "]");
+        }
+        return floor(runPositions, position);
+    }
+
+    /**
+     * 区間に含まれるレコード数を取得する。
+     *
+     * @param run 区間
+     * @return レコード数
+     */
+    private int runLength(int run) {
+        int end = run + 1 < runCount ? runPositions[run + 1] : size;
+        return end - runPositions[run];
+    }
+
+    /**
+     * 昇順の配列から、指定した値以下の最大の要素の位置を検索する。
+     *
+     * @param sorted 昇順の配列
+     * @param key    検索する値
+     * @return 要素の位置（存在しない場合は-1）
+     */
+    private int floor(int[] sorted, int key) {
+        int index = Arrays.binarySearch(sorted, 0, runCount, key);
+        return index >= 0 ? index : -(index + 1) - 1;
+    }
+}
@@ -0,0 +1,463 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import nablarch.core.util.FileUtil;
+
+/**
+ * 指定された件数を超えた要素を一時ファイルへ退避するリスト。
+ * <p/>
+ * 指定された件数まではヒープ上に保持し、それを超えた要素はシリアライズして一時ファイルへ追記する。
+ * 一時ファイルへ退避した要素は、イテレータで先頭から順に読み込む。
+ * <p/>
+ * {@link #get(int)}は前回取得した位置より後ろの要素であれば続きから読み込むが、
+ * 前回取得した位置以前の要素は一時ファイルの先頭から読み込み直すため、退避した件数に比例した時間がかかる。
+ * 要素を順に処理する場合は{@link #get(int)}を使用せず、{@link #iterator()}または{@link #iterator(List, int, int)}を使用すること
+ * （{@link #subList(int, int)}のイテレータは{@link #get(int)}を使用するため、同様に低速となる）。
+ * <p/>
+ * イテレータは一時ファイルを個別に開き、全要素を返却した時点で閉じる。
+ * 全要素を返却する前にイテレータの使用を止める場合は、{@link #closeIterator(Iterator)}で閉じること。
+ * 閉じなかったイテレータの一時ファイルは、{@link #close()}まで開いたままとなる。
+ * <p/>
+ * 要素の追加を終えた時点で{@link #endWriting()}を呼び出し、一時ファイルへの出力ストリームを閉じること。
+ * 一時ファイルは{@link #close()}で削除されるため、リストの所有者は使用後に必ず{@link #close()}を呼び出すこと。
+ * 一時ファイルの削除はスレッドに依存しないため、リクエスト処理以外のスレッドで生成したリストも同様に削除できる。
+ * 退避する要素は{@link java.io.Serializable}を実装していなければならない。
+ *
+ * @param <E> 要素の型
+ */
+class SpillableList<E> extends AbstractList<E> implements Closeable {
+
+    /** シリアライズ時の参照テーブルをリセットする間隔 */
+    private static final int RESET_INTERVAL = 1000;
+
+    /** 読み書き時のバッファサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** ヒープ上に保持する最大件数 */
+    private final int maxOnHeap;
+
+    /** 一時ファイルを作成するディレクトリ（{@code null}の場合はシステムのデフォルト） */
+    private final File directory;
+
+    /** ヒープ上に保持する要素 */
+    private final List<E> onHeap = new ArrayList<E>();
+
+    /** 一時ファイル */
+    private File spillFile;
+
+    /** 一時ファイルへの出力ストリーム */
+    private ObjectOutputStream out;
+
+    /** 一時ファイルへ退避した件数 */
+    private int spilled = 0;
+
+    /** {@link #get(int)}で使用する読み込み位置のキャッシュ */
+    private SpillReader cachedReader;
+
+    /** 開いている一時ファイルの読み込み（{@link #close()}で閉じるために保持する） */
+    private final Set<SpillReader> openReaders = new HashSet<SpillReader>();
+
+    /** 要素の追加を終えたかどうか */
+    private boolean writingEnded = false;
+
+    /** クローズ済みかどうか */
+    private boolean closed = false;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param maxOnHeap ヒープ上に保持する最大件数
+     * @param directory 一時ファイルを作成するディレクトリ（{@code null}の場合はシステムのデフォルト）
+     */
+    SpillableList(int maxOnHeap, File directory) {
+        if (maxOnHeap < 0) {
+            throw new IllegalArgumentException("maxOnHeap must not be negative. maxOnHeap=[" + maxOnHeap + "]");
+        }
+        this.maxOnHeap = maxOnHeap;
+        this.directory = directory;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean add(E e) {
+        if (writingEnded) {
+            throw new IllegalStateException("can't add an element after writing has ended.");
+        }
+        if (onHeap.size() < maxOnHeap) {
+            onHeap.add(e);
+        } else {
+            spill(e);
+        }
+        modCount++;
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return onHeap.size() + spilled;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 一時ファイルへ退避した要素を取得する場合、前回取得した位置より後ろであれば続きから読み込み、
+     * そうでなければ一時ファイルの先頭から読み込む（退避した件数に比例した時間がかかる）。
+     * 前回の取得後に退避された要素を取得する場合も、一時ファイルの先頭から読み込み直す。
+     */
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index=[" + index + "] size=[" + size() + "]");
+        }
+        if (index < onHeap.size()) {
+            return onHeap.get(index);
+        }
+        int position = index - onHeap.size();
+        if (cachedReader == null || cachedReader.position > position || position >= cachedReader.limit) {
+            closeCachedReader();
+            cachedReader = new SpillReader();
+        }
+        while (cachedReader.position < position) {
+            cachedReader.next();
+        }
+        E element = cachedReader.next();
+        if (cachedReader.position >= spilled) {
+            closeCachedReader();
+        }
+        return element;
+    }
+
+    /**
+     * {@inheritDoc}
+     * ヒープ上の要素を返却した後、一時ファイルへ退避した要素を先頭から順に読み込んで返却する。
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(0, size());
+    }
+
+    /**
+     * 指定された範囲の要素を順に返却するイテレータを取得する。
+     * <p/>
+     * 返却したイテレータは互いに独立して一時ファイルを読み込むため、
+     * 要素を追加しない限り、複数のスレッドから並行して使用できる。
+     * 開始位置が一時ファイル内にある場合、開始位置までの要素を読み飛ばす。
+     *
+     * @param fromIndex 開始位置（この位置を含む）
+     * @param toIndex   終了位置（この位置を含まない）
+     * @return イテレータ
+     */
+    Iterator<E> iterator(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    "fromIndex=[" + fromIndex + "] toIndex=[" + toIndex + "] size=[" + size() + "]");
+        }
+        return new Itr(fromIndex, toIndex);
+    }
+
+    /**
+     * リストの指定された範囲の要素を順に返却するイテレータを取得する。
+     * <p/>
+     * リストが{@code SpillableList}の場合は{@link #iterator(int, int)}を使用し、
+     * それ以外の場合は{@link List#subList(int, int)}のイテレータを使用する。
+     *
+     * @param list      リスト
+     * @param fromIndex 開始位置（この位置を含む）
+     * @param toIndex   終了位置（この位置を含まない）
+     * @param <E>       要素の型
+     * @return イテレータ
+     */
+    static <E> Iterator<E> iterator(List<E> list, int fromIndex, int toIndex) {
+        if (list instanceof SpillableList) {
+            // 位置キャッシュを共有しないよう、専用のイテレータを使用する
+            return ((SpillableList<E>) list).iterator(fromIndex, toIndex);
+        }
+        return list.subList(fromIndex, toIndex).iterator();
+    }
+
+    /**
+     * {@link #iterator(List, int, int)}で取得したイテレータによる一時ファイルの読み込みを終了する。
+     * <p/>
+     * 全要素を返却する前にイテレータの使用を止める場合（例外の発生時など）は、
+     * 一時ファイルを開いたままとならないよう、finallyブロックで本メソッドを呼び出すこと。
+     * 一時ファイルを読み込まないイテレータや、{@code null}の場合は何もしない。
+     *
+     * @param iterator イテレータ
+     */
+    static void closeIterator(Iterator<?> iterator) {
+        if (iterator instanceof Closeable) {
+            FileUtil.closeQuietly((Closeable) iterator);
+        }
+    }
+
+    /**
+     * 一時ファイルへ退避した件数を取得する。
+     *
+     * @return 一時ファイルへ退避した件数
+     */
+    int getSpilledCount() {
+        return spilled;
+    }
+
+    /**
+     * 要素の追加を終え、一時ファイルへの出力ストリームを閉じる。
+     * <p/>
+     * 以降は要素を追加できない。退避済みの要素は引き続き参照できる。
+     * 既に追加を終えている場合は何もしない。
+     */
+    synchronized void endWriting() {
+        if (writingEnded) {
+            return;
+        }
+        writingEnded = true;
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new RuntimeException("failed to close temporary file. file=[" + spillFile + "]", e);
+            } finally {
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * 一時ファイルへの入出力ストリームを全て閉じ、一時ファイルを削除する。
+     * <p/>
+     * 使用中のイテレータも含め、以降は退避した要素を参照できない。
+     * 既にクローズ済みの場合は何もしない。
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writingEnded = true;
+        FileUtil.closeQuietly(out);
+        out = null;
+        cachedReader = null;
+        for (SpillReader e : new ArrayList<SpillReader>(openReaders)) {
+            e.close();
+        }
+        if (spillFile != null && spillFile.exists() && !spillFile.delete()) {
+            spillFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * 要素を一時ファイルへ退避する。
+     *
+     * @param e 要素
+     */
+    private void spill(E e) {
+        try {
+            if (out == null) {
+                spillFile = File.createTempFile("nablarch-upload-", ".spill", directory);
+                out = new ObjectOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(spillFile), BUFFER_SIZE));
+            }
+            synchronized (this) {
+                out.writeObject(e);
+            }
+            spilled++;
+            if (spilled % RESET_INTERVAL == 0) {
+                // 参照テーブルが増え続けないようにリセットする
+                out.reset();
+            }
+        } catch (NotSerializableException ex) {
+            throw new IllegalStateException(
+                    "element must be serializable to spill into temporary file. class=[" + ex.getMessage() + "]", ex);
+        } catch (IOException ex) {
+            throw new RuntimeException("failed to spill element into temporary file. file=[" + spillFile + "]", ex);
+        }
+    }
+
+    /** {@link #get(int)}で使用する読み込み位置のキャッシュを破棄する。 */
+    private void closeCachedReader() {
+        if (cachedReader != null) {
+            cachedReader.close();
+            cachedReader = null;
+        }
+    }
+
+    /** 一時ファイルへ退避した要素を先頭から順に読み込むクラス。 */
+    private final class SpillReader {
+
+        /** 入力ストリーム */
+        private final ObjectInputStream in;
+
+        /** 次に読み込む要素の位置 */
+        private int position = 0;
+
+        /** 生成時点で退避済みの件数 */
+        private final int limit = spilled;
+
+        /**
+         * コンストラクタ。
+         *
+         * @throws IllegalStateException リストがクローズ済みの場合
+         */
+        SpillReader() {
+            synchronized (SpillableList.this) {
+                if (closed) {
+                    throw new IllegalStateException("list has already been closed. file=[" + spillFile + "]");
+                }
+                try {
+                    if (out != null) {
+                        out.flush();
+                    }
+                    in = new ObjectInputStream(
+                            new BufferedInputStream(new FileInputStream(spillFile), BUFFER_SIZE));
+                } catch (IOException e) {
+                    throw new RuntimeException("failed to open temporary file. file=[" + spillFile + "]", e);
+                }
+                openReaders.add(this);
+            }
+        }
+
+        /**
+         * 次の要素が存在するかどうか。
+         *
+         * @return 存在する場合は{@code true}
+         */
+        boolean hasNext() {
+            return position < limit;
+        }
+
+        /**
+         * 次の要素を読み込む。
+         *
+         * @return 要素
+         */
+        @SuppressWarnings("unchecked")
+        E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                E element = (E) in.readObject();
+                position++;
+                return element;
+            } catch (IOException e) {
+                throw new RuntimeException("failed to read temporary file. file=[" + spillFile + "]", e);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("failed to read temporary file. file=[" + spillFile + "]", e);
+            }
+        }
+
+        /** 入力ストリームを閉じる。 */
+        void close() {
+            FileUtil.closeQuietly(in);
+            synchronized (SpillableList.this) {
+                openReaders.remove(this);
+            }
+        }
+    }
+
+    /** ヒープ上の要素と一時ファイルへ退避した要素を順に返却するイテレータ。 */
+    private final class Itr implements Iterator<E>, Closeable {
+
+        /** ヒープ上の要素のイテレータ */
+        private Iterator<E> heap;
+
+        /** 一時ファイルの読み込み（未使用の場合は{@code null}） */
+        private SpillReader reader;
+
+        /** 一時ファイル内の開始位置 */
+        private final int spillFrom;
+
+        /** 一時ファイル内の終了位置（この位置を含まない） */
+        private final int spillTo;
+
+        /** 退避済み要素を読み込み終えたかどうか */
+        private boolean spillExhausted;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param fromIndex 開始位置（この位置を含む）
+         * @param toIndex   終了位置（この位置を含まない）
+         */
+        Itr(int fromIndex, int toIndex) {
+            int heapSize = onHeap.size();
+            heap = onHeap.subList(Math.min(fromIndex, heapSize), Math.min(toIndex, heapSize)).iterator();
+            spillFrom = Math.max(fromIndex - heapSize, 0);
+            spillTo = Math.max(toIndex - heapSize, 0);
+            spillExhausted = spillFrom >= spillTo;
+        }
+
+        /** {@inheritDoc} */
+        public boolean hasNext() {
+            if (heap.hasNext()) {
+                return true;
+            }
+            if (spillExhausted) {
+                return false;
+            }
+            if (reader == null) {
+                reader = new SpillReader();
+                while (reader.position < spillFrom) {
+                    reader.next();
+                }
+            }
+            if (reader.position >= spillTo) {
+                reader.close();
+                spillExhausted = true;
+                return false;
+            }
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (reader == null) {
+                return heap.next();
+            }
+            E element = reader.next();
+            if (reader.position >= spillTo) {
+                reader.close();
+                spillExhausted = true;
+            }
+            return element;
+        }
+
+        /** {@inheritDoc} */
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * 一時ファイルの読み込みを終了する。
+         * <p/>
+         * 以降は要素を返却しない。既に終了している場合は何もしない。
+         */
+        public void close() {
+            heap = Collections.<E>emptyList().iterator();
+            spillExhausted = true;
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.List;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.message.Message;
+
+/**
+ * バリデーション済みオブジェクトを保持せず、バリデーションと並行して一括登録を行う一括バリデーション結果クラス。
+ * <p/>
+ * バリデーション済みオブジェクトは一括実行数ごとにバッチ登録されるため、
+ * メモリ上に保持されるバリデーション済みオブジェクトは最大で一括実行数分となる。
+ * ただし、行番号の索引（{@link RecordIndex}）とエラーメッセージ（{@link CompactErrorStore}）は
+ * 他の一括バリデーション結果と同様に保持するため、メモリ使用量はファイルの行数に応じて増加する。
+ * 索引は妥当・エラーの区分が連続する区間ごとに、エラーメッセージはエラーの行ごとに保持するため、
+ * エラーが多いファイルほど使用量が大きくなる。
+ * エラーメッセージを保持する行数は{@link BulkValidator#setMaxRetainedErrorRecords(int)}で制限できる。
+ * <p/>
+ * 全件登録モードの場合、エラーが1件でも発生した時点で登録を中止し、
+ * それまでに登録したレコードをロールバックする。
+ * 以降のレコードはエラーメッセージを収集するためにバリデーションのみを行う。
+ * 登録中に例外が発生した場合も、{@link #abort()}でそれまでに登録したレコードをロールバックする。
+ *
+ * @param <FORM> バリデーションに使用するフォームクラスの型
+ */
+class StreamingImportResult<FORM> extends BulkValidationResult<FORM> {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(StreamingImportResult.class);
+
+    /** バッチ登録クラス */
+    private final BatchInserter<FORM> inserter;
+
+    /** 全件登録モード（全レコードが妥当な場合のみ登録する）かどうか */
+    private final boolean allOrNothing;
+
+    /** バリデーション済みオブジェクトの件数 */
+    private int validCount = 0;
+
+    /** 登録を中止したかどうか */
+    private boolean aborted = false;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param insertionStrategy 登録ロジック
+     * @param batchSize         INSERT時の一括実行数
+     * @param allOrNothing      全レコードが妥当な場合のみ登録する場合、{@code true}
+     */
+    StreamingImportResult(InsertionStrategy<FORM> insertionStrategy, int batchSize, boolean allOrNothing) {
+        this(insertionStrategy, new BatchSizeController(batchSize), allOrNothing);
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param insertionStrategy   登録ロジック
+     * @param batchSizeController 一括実行数の決定ロジック
+     * @param allOrNothing        全レコードが妥当な場合のみ登録する場合、{@code true}
+     */
+    StreamingImportResult(InsertionStrategy<FORM> insertionStrategy, BatchSizeController batchSizeController,
+                          boolean allOrNothing) {
+        super(batchSizeController.getBatchSize());
+        this.inserter = new BatchInserter<FORM>(insertionStrategy, batchSizeController, allOrNothing);
+        this.allOrNothing = allOrNothing;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 本実装では、バリデーション済みオブジェクトを保持せずにバッチ登録する。
+     */
+    @Override
+    void addValidObject(FORM validObject) {
+        validCount++;
+        if (!aborted) {
+            inserter.add(validObject);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void addErrors(int recordNumber, List<Message> messages) {
+        super.addErrors(recordNumber, messages);
+        abortIfAllOrNothing();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void addError(Integer recordNumber, Message message) {
+        super.addError(recordNumber, message);
+        abortIfAllOrNothing();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isEmpty() {
+        return validCount == 0 && !hasError();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 本実装では、一括登録を並行して行っているため、{@link #complete()}または{@link #abort()}で終了を通知する。
+     */
+    @Override
+    void validationFinished() {
+        // nop
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void setMetrics(UploadMetrics metrics) {
+        super.setMetrics(metrics);
+        inserter.setMetrics(metrics);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void setProgress(UploadProgress progress) {
+        super.setProgress(progress);
+        inserter.setProgress(progress);
+    }
+
+    /**
+     * 全件登録モードの場合、登録を中止し、それまでに登録したレコードをロールバックする。
+     */
+    private void abortIfAllOrNothing() {
+        if (allOrNothing && !aborted) {
+            inserter.rollback();
+            aborted = true;
+        }
+    }
+
+    /**
+     * 例外の発生により登録を中止する。
+     * <p/>
+     * 全件登録モードの場合、それまでに登録したレコードをセーブポイントまでロールバックする。
+     * 発生した例外を優先して送出するため、ロールバックに失敗した場合はログ出力のみ行う。
+     * 計測している場合は、処理の終了を通知する。
+     */
+    void abort() {
+        finishMetrics();
+        if (aborted) {
+            return;
+        }
+        aborted = true;
+        if (!allOrNothing) {
+            return;
+        }
+        try {
+            inserter.rollback();
+        } catch (RuntimeException e) {
+            LOGGER.logWarn("failed to rollback streaming import.", e);
+        }
+    }
+
+    /**
+     * 登録を完了する。
+     * <p/>
+     * バッチ登録待ちのオブジェクトをバッチ実行し、登録件数を返却する。
+     *
+     * @return レコード登録件数
+     */
+    int complete() {
+        if (!aborted) {
+            inserter.finish();
+        }
+        finishMetrics();
+        return inserter.getExecutedCount();
+    }
+}
@@ -0,0 +1,62 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.ThreadContext;
+
+/**
+ * {@link ThreadContext}の内容を別スレッドへ引き継ぐためのスナップショット。
+ * <p/>
+ * メッセージの言語やユーザIDなど、リクエストスレッドの{@link ThreadContext}に保持された値を
+ * ワーカースレッドでも参照できるようにするために使用する。
+ */
+final class ThreadContextSnapshot {
+
+    /** 引き継ぐ{@link ThreadContext}のキー */
+    private static final String[] KEYS = {
+            ThreadContext.LANG_KEY,
+            ThreadContext.TIME_ZONE_KEY,
+            ThreadContext.USER_ID_KEY,
+            ThreadContext.REQUEST_ID_KEY,
+            ThreadContext.INTERNAL_REQUEST_ID_KEY,
+            ThreadContext.EXECUTION_ID_KEY
+    };
+
+    /** キーに対応する値 */
+    private final Object[] values;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param values キーに対応する値
+     */
+    private ThreadContextSnapshot(Object[] values) {
+        this.values = values;
+    }
+
+    /**
+     * 現在のスレッドの{@link ThreadContext}からスナップショットを取得する。
+     *
+     * @return スナップショット
+     */
+    static ThreadContextSnapshot take() {
+        Object[] values = new Object[KEYS.length];
+        for (int i = 0; i < KEYS.length; i++) {
+            values[i] = ThreadContext.getObject(KEYS[i]);
+        }
+        return new ThreadContextSnapshot(values);
+    }
+
+    /**
+     * 現在のスレッドの{@link ThreadContext}にスナップショットの内容を設定する。
+     * <p/>
+     * 処理終了後に元の状態へ戻せるよう、設定前の内容をスナップショットとして返却する。
+     *
+     * @return 設定前のスナップショット
+     */
+    ThreadContextSnapshot apply() {
+        ThreadContextSnapshot previous = take();
+        for (int i = 0; i < KEYS.length; i++) {
+            ThreadContext.setObject(KEYS[i], values[i]);
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,262 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.Arrays;
+
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.MessageUtil;
+import nablarch.core.util.ObjectUtil;
+
+/**
+ * アップロードファイル内でキーが重複していないかを検査するクラス。
+ * <p/>
+ * バリデーション済みオブジェクトの指定されたプロパティの値（文字列表現）の組をキーとし、
+ * キーをバイト列に符号化したものと、そのフィンガープリントを保持する。
+ * フィンガープリントは{@link FingerprintSet}に、符号化したキーは1つのバイト配列に連結して保持するため、
+ * キーごとにオブジェクトを生成しない。
+ * フィンガープリントが一致した場合のみ、符号化したキーを比較して重複かどうかを確定する。
+ * 比較にはバリデーション済みオブジェクトを使用しないため、一時ファイルへ退避したオブジェクトの読み込みや、
+ * バリデーション済みオブジェクトを保持しない場合（バリデーションと並行して登録する場合）の誤判定は発生しない。
+ * <p/>
+ * {@link #encode(Object)}と{@link #fingerprint(byte[])}はスレッドセーフであり、ワーカースレッドから呼び出してよい。
+ * {@link #check(int, byte[], long)}はバリデーション結果を反映するスレッドのみから、行番号の昇順に呼び出すこと。
+ *
+ * @param <FORM> バリデーションに使用するフォームクラスの型
+ */
+final class UniqueKeyChecker<FORM> implements FingerprintSet.KeyVerifier {
+
+    /** FNV-1aのオフセット基底 */
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    /** FNV-1aの素数 */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /** 符号化したキーを保持する配列の初期サイズ */
+    private static final int INITIAL_KEY_BYTES = 16 * 1024;
+
+    /** 保持するキーの数の初期値 */
+    private static final int INITIAL_KEY_COUNT = 1024;
+
+    /** {@code null}の値を表すタグ */
+    private static final byte NULL_TAG = 0;
+
+    /** {@code null}以外の値を表すタグ */
+    private static final byte VALUE_TAG = 1;
+
+    /** キーとするプロパティ名 */
+    private final String[] propertyNames;
+
+    /** キーが重複した場合のメッセージID */
+    private final String messageId;
+
+    /** キーのフィンガープリント */
+    private final FingerprintSet fingerprints = new FingerprintSet();
+
+    /** 符号化したキーを連結したバイト列 */
+    private byte[] keyBytes = new byte[INITIAL_KEY_BYTES];
+
+    /** {@link #keyBytes}の使用済みの長さ */
+    private int keyBytesLength = 0;
+
+    /** 保持しているキーの行番号（昇順） */
+    private int[] keyRecordNumbers = new int[INITIAL_KEY_COUNT];
+
+    /** 保持しているキーの{@link #keyBytes}における開始位置 */
+    private int[] keyStarts = new int[INITIAL_KEY_COUNT];
+
+    /** 保持しているキーの数 */
+    private int keyCount = 0;
+
+    /** 検査中の符号化したキー */
+    private byte[] current;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param propertyNames キーとするプロパティ名
+     * @param messageId     キーが重複した場合のメッセージID
+     */
+    UniqueKeyChecker(String[] propertyNames, String messageId) {
+        this.propertyNames = propertyNames;
+        this.messageId = messageId;
+    }
+
+    /**
+     * バリデーション済みオブジェクトのキーをバイト列に符号化する。
+     * <p/>
+     * プロパティごとに、{@code null}かどうかのタグ、文字列表現の長さ、文字列表現をこの順に出力する。
+     * 文字列表現は修正UTF-8（{@link java.io.DataOutput#writeUTF(String)}と同じ形式）で符号化するため、
+     * 異なるキーが同じバイト列になることはない。
+     *
+     * @param validObject バリデーション済みオブジェクト
+     * @return 符号化したキー
+     */
+    byte[] encode(FORM validObject) {
+        ByteArrayBuilder out = new ByteArrayBuilder();
+        for (String e : propertyNames) {
+            Object value = ObjectUtil.getProperty(validObject, e);
+            if (value == null) {
+                out.write(NULL_TAG);
+                continue;
+            }
+            String s = value.toString();
+            out.write(VALUE_TAG);
+            out.writeInt(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    out.write(c);
+                } else if (c <= 0x07FF) {
+                    out.write(0xC0 | (c >> 6));
+                    out.write(0x80 | (c & 0x3F));
+                } else {
+                    out.write(0xE0 | (c >> 12));
+                    out.write(0x80 | ((c >> 6) & 0x3F));
+                    out.write(0x80 | (c & 0x3F));
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 符号化したキーのフィンガープリントを算出する。
+     *
+     * @param key {@link #encode(Object)}で符号化したキー
+     * @return フィンガープリント
+     */
+    static long fingerprint(byte[] key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * キーの重複を検査する。
+     * <p/>
+     * 重複していない場合は、以降の検査のためにキーを記録する。
+     *
+     * @param recordNumber 行番号（前回の呼び出しより大きくなければならない）
+     * @param key          {@link #encode(Object)}で符号化したキー
+     * @param fingerprint  {@link #fingerprint(byte[])}で算出したフィンガープリント
+     * @return キーが重複した場合のエラーメッセージ（重複していない場合は{@code null}）
+     */
+    Message check(int recordNumber, byte[] key, long fingerprint) {
+        current = key;
+        int duplicated;
+        try {
+            duplicated = fingerprints.add(fingerprint, recordNumber, this);
+        } finally {
+            current = null;
+        }
+        if (duplicated < 0) {
+            append(recordNumber, key);
+            return null;
+        }
+        return MessageUtil.createMessage(MessageLevel.ERROR, messageId, recordNumber, duplicated);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 本実装では、先に現れた行の符号化したキーとバイト列を比較する。
+     */
+    public boolean isSameKey(int recordNumber) {
+        int index = Arrays.binarySearch(keyRecordNumbers, 0, keyCount, recordNumber);
+        if (index < 0) {
+            return false;
+        }
+        int start = keyStarts[index];
+        int end = index + 1 < keyCount ? keyStarts[index + 1] : keyBytesLength;
+        if (end - start != current.length) {
+            return false;
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (keyBytes[start + i] != current[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 符号化したキーを記録する。
+     *
+     * @param recordNumber 行番号
+     * @param key          符号化したキー
+     */
+    private void append(int recordNumber, byte[] key) {
+        if (keyCount == keyStarts.length) {
+            keyStarts = Arrays.copyOf(keyStarts, keyCount * 2);
+            keyRecordNumbers = Arrays.copyOf(keyRecordNumbers, keyCount * 2);
+        }
+        if (keyBytesLength + key.length > keyBytes.length) {
+            keyBytes = Arrays.copyOf(keyBytes, Math.max(keyBytes.length * 2, keyBytesLength + key.length));
+        }
+        keyStarts[keyCount] = keyBytesLength;
+        keyRecordNumbers[keyCount] = recordNumber;
+        keyCount++;
+        System.arraycopy(key, 0, keyBytes, keyBytesLength, key.length);
+        keyBytesLength += key.length;
+    }
+
+    /**
+     * ハッシュ値の各ビットを全体に拡散させる。
+     *
+     * @param hash ハッシュ値
+     * @return 拡散させたハッシュ値
+     */
+    private static long mix(long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** 同期を行わない、キーの符号化用のバイト列バッファ。 */
+    private static final class ByteArrayBuilder {
+
+        /** バッファ */
+        private byte[] buffer = new byte[32];
+
+        /** 使用済みの長さ */
+        private int length = 0;
+
+        /**
+         * 1バイト出力する。
+         *
+         * @param b 出力する値（下位8ビットのみ使用する）
+         */
+        void write(int b) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, length * 2);
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        /**
+         * {@code int}値をビッグエンディアンの4バイトで出力する。
+         *
+         * @param v 出力する値
+         */
+        void writeInt(int v) {
+            write(v >>> 24);
+            write(v >>> 16);
+            write(v >>> 8);
+            write(v);
+        }
+
+        /**
+         * 出力したバイト列を取得する。
+         *
+         * @return 出力したバイト列
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import nablarch.core.log.Logger;
+import nablarch.core.util.FileUtil;
+import nablarch.fw.web.upload.PartInfo;
+
+/**
+ * アップロードファイルの内容を16進数でデバッグログに出力するクラス。
+ * <p/>
+ * ファイル全体をメモリに読み込まないよう、先頭と末尾の指定バイト数のみを一定サイズのチャンクごとに出力する。
+ * 中間の省略したバイト数とファイル全体のバイト数も併せて出力する。
+ * 出力例を以下に示す。
+ * <pre>
+ * content of uploaded file. offset=[0] length=[512] 0x31746F6B796F20...
+ * content of uploaded file. omitted=[209714176] bytes
+ * content of uploaded file. offset=[209714688] length=[512] 0x326F73616B6120...
+ * content of uploaded file. fileName=[cities.txt] totalLength=[209715200] dumpedLength=[1024]
+ * </pre>
+ */
+class UploadContentDumper {
+
+    /** 1行に出力するバイト数 */
+    static final int CHUNK_SIZE = 512;
+
+    /** 16進数の表記に使用する文字 */
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /** 出力先のロガー */
+    private final Logger logger;
+
+    /** 先頭から出力するバイト数 */
+    private final int headBytes;
+
+    /** 末尾から出力するバイト数 */
+    private final int tailBytes;
+
+    /** 16進数に変換する際のバッファ */
+    private final char[] hexBuffer = new char[CHUNK_SIZE * 2];
+
+    /**
+     * コンストラクタ。
+     *
+     * @param logger    出力先のロガー
+     * @param headBytes 先頭から出力するバイト数
+     * @param tailBytes 末尾から出力するバイト数
+     */
+    UploadContentDumper(Logger logger, int headBytes, int tailBytes) {
+        if (headBytes < 0 || tailBytes < 0) {
+            throw new IllegalArgumentException(concat(
+                    "headBytes and tailBytes must be 0 or more. ",
+                    "headBytes=[", headBytes, "] tailBytes=[", tailBytes, "]"));
+        }
+        this.logger = logger;
+        this.headBytes = headBytes;
+        this.tailBytes = tailBytes;
+    }
+
+    /**
+     * アップロードファイルの内容を出力する。
+     *
+     * @param partInfo アップロードファイル
+     */
+    void dump(PartInfo partInfo) {
+        File savedFile = partInfo.getSavedFile();
+        long length = savedFile == null ? -1L : savedFile.length();
+        InputStream in = partInfo.getInputStream();
+        try {
+            dump(in, length, partInfo.getFileName());
+        } catch (IOException e) {
+            throw new RuntimeException("failed to read uploaded file. partInfo=[" + partInfo + "]", e);
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 入力ストリームの内容を出力する。
+     * <p/>
+     * 長さが分かっている場合は中間を読み飛ばす。
+     * 分からない場合は末尾を保持しながら最後まで読み込む。
+     *
+     * @param in       入力ストリーム
+     * @param length   入力ストリームの長さ（不明な場合は負数）
+     * @param fileName ファイル名
+     * @throws IOException 読み込みに失敗した場合
+     */
+    void dump(InputStream in, long length, String fileName) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        long offset = 0;
+        while (offset < headBytes) {
+            int read = in.read(chunk, 0, (int) Math.min(chunk.length, headBytes - offset));
+            if (read < 0) {
+                writeSummary(fileName, offset, offset);
+                return;
+            }
+            writeChunk(offset, chunk, read);
+            offset += read;
+        }
+        long tailStart = offset;
+        if (length >= 0 && length - offset > tailBytes) {
+            tailStart += skip(in, length - offset - tailBytes);
+        }
+
+        // 末尾の指定バイト数をリングバッファに保持する
+        byte[] tail = new byte[tailBytes];
+        long tailRead = 0;
+        int read;
+        while ((read = in.read(chunk)) >= 0) {
+            for (int i = 0; i < read && tailBytes > 0; i++) {
+                tail[(int) ((tailRead + i) % tailBytes)] = chunk[i];
+            }
+            tailRead += read;
+        }
+        int kept = (int) Math.min(tailRead, tailBytes);
+        long omitted = tailStart - offset + tailRead - kept;
+        if (omitted > 0) {
+            write(concat("content of uploaded file. omitted=[", omitted, "] bytes"));
+        }
+        long keptStart = tailStart + tailRead - kept;
+        for (int i = 0; i < kept; i += CHUNK_SIZE) {
+            int n = Math.min(CHUNK_SIZE, kept - i);
+            for (int j = 0; j < n; j++) {
+                chunk[j] = tail[(int) ((keptStart - tailStart + i + j) % tailBytes)];
+            }
+            writeChunk(keptStart + i, chunk, n);
+        }
+        writeSummary(fileName, tailStart + tailRead, offset + kept);
+    }
+
+    /**
+     * ファイル全体のバイト数と出力したバイト数を出力する。
+     *
+     * @param fileName     ファイル名
+     * @param totalLength  ファイル全体のバイト数
+     * @param dumpedLength 出力したバイト数
+     */
+    private void writeSummary(String fileName, long totalLength, long dumpedLength) {
+        write(concat("content of uploaded file. fileName=[", fileName, "] ",
+                     "totalLength=[", totalLength, "] dumpedLength=[", dumpedLength, "]"));
+    }
+
+    /**
+     * 指定したバイト数を読み飛ばす。
+     *
+     * @param in    入力ストリーム
+     * @param count 読み飛ばすバイト数
+     * @return 読み飛ばしたバイト数
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static long skip(InputStream in, long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            long n = in.skip(count - skipped);
+            if (n <= 0) {
+                break;
+            }
+            skipped += n;
+        }
+        return skipped;
+    }
+
+    /**
+     * チャンクを16進数で出力する。
+     *
+     * @param offset 先頭からの位置
+     * @param chunk  チャンク
+     * @param length チャンクの長さ
+     */
+    private void writeChunk(long offset, byte[] chunk, int length) {
+        for (int i = 0; i < length; i++) {
+            hexBuffer[i * 2] = HEX[(chunk[i] >> 4) & 0x0F];
+            hexBuffer[i * 2 + 1] = HEX[chunk[i] & 0x0F];
+        }
+        write(concat("content of uploaded file. offset=[", offset, "] length=[", length, "] 0x",
+                     new String(hexBuffer, 0, length * 2)));
+    }
+
+    /**
+     * 1行出力する。
+     *
+     * @param line 出力内容
+     */
+    void write(String line) {
+        logger.logDebug(line);
+    }
+}
@@ -0,0 +1,286 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 圧縮されたアップロードファイルを判定し、読み込みながら展開する入力ストリームを生成するユーティリティクラス。
+ * <p/>
+ * 以下のいずれかに該当する場合に圧縮されていると判定する。
+ * <ul>
+ * <li>gzip形式：ファイル名の拡張子が{@code .gz}または{@code .gzip}、または先頭2バイトがgzipのマジックナンバー（{@code 1F 8B}）</li>
+ * <li>deflate形式（zlib形式）：ファイル名の拡張子が{@code .deflate}または{@code .zz}、
+ * または先頭2バイトがウィンドウサイズ32KBのzlibのヘッダ
+ * （{@code 78 01}、{@code 78 5E}、{@code 78 9C}、{@code 78 DA}）であり、
+ * ヘッダのチェックサム（{@code (CMF * 256 + FLG) % 31 == 0}）が正しく、かつ先頭部分を試しに展開できる</li>
+ * </ul>
+ * zlibのヘッダは{@code "x^"}のようにテキストの先頭と一致し得るため、
+ * 拡張子で判定できない場合は先頭部分を試しに展開し、展開できない場合は圧縮されていないとみなす。
+ * <p/>
+ * 展開は一時ファイルを使用せず、フォーマッタの読み込みに合わせて行う。
+ * 展開後のサイズの上限を指定した場合、上限を超えた時点で読み込みを中断して{@link IOException}を送出する。
+ */
+final class UploadDecompressor {
+
+    /** 展開前後の読み込みに使用するバッファサイズ */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /** gzipのマジックナンバーの1バイト目 */
+    private static final int GZIP_MAGIC_1 = 0x1F;
+
+    /** gzipのマジックナンバーの2バイト目 */
+    private static final int GZIP_MAGIC_2 = 0x8B;
+
+    /** zlibヘッダの1バイト目（deflate、ウィンドウサイズ32KB） */
+    private static final int ZLIB_CMF = 0x78;
+
+    /** zlibヘッダの2バイト目（圧縮レベルごと） */
+    private static final int[] ZLIB_FLAGS = {0x01, 0x5E, 0x9C, 0xDA};
+
+    /** zlibヘッダのチェックサムの除数 */
+    private static final int ZLIB_CHECK_DIVISOR = 31;
+
+    /** zlib形式かどうかを試しに展開して判定する際に読み込む最大バイト数 */
+    private static final int ZLIB_PROBE_SIZE = 512;
+
+    /** 隠蔽コンストラクタ。 */
+    private UploadDecompressor() {
+    }
+
+    /** 圧縮形式 */
+    enum Compression {
+        /** 非圧縮 */
+        NONE,
+        /** gzip形式 */
+        GZIP,
+        /** deflate形式（zlib形式） */
+        DEFLATE
+    }
+
+    /**
+     * 圧縮されていれば展開しながら読み込む、markSupportedな入力ストリームを生成する。
+     * <p/>
+     * 圧縮されていない場合は、元の入力ストリームをそのまま読み込む。
+     * 展開前後の読み込みには、いずれも指定されたサイズのバッファを使用する。
+     * 展開後のサイズが上限を超えた場合、生成した入力ストリームの読み込み時に{@link IOException}を送出する。
+     *
+     * @param in                  アップロードファイルの入力ストリーム
+     * @param fileName            アップロードされたファイルのファイル名（不明な場合は{@code null}）
+     * @param bufferSize          バッファサイズ
+     * @param maxDecompressedSize 展開後のサイズの上限（バイト数。0以下の場合は無制限）
+     * @return markSupportedな入力ストリーム
+     * @throws IOException 入出力例外
+     */
+    static InputStream open(InputStream in, String fileName, int bufferSize, long maxDecompressedSize)
+            throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, bufferSize);
+        InputStream decompressed;
+        switch (detect(buffered, fileName)) {
+            case GZIP:
+                decompressed = new GZIPInputStream(buffered, bufferSize);
+                break;
+            case DEFLATE:
+                decompressed = new InflaterInputStream(buffered, new Inflater(), bufferSize);
+                break;
+            default:
+                return buffered;
+        }
+        if (maxDecompressedSize > 0) {
+            decompressed = new SizeLimitedInputStream(decompressed, maxDecompressedSize, fileName);
+        }
+        return new BufferedInputStream(decompressed, bufferSize);
+    }
+
+    /**
+     * 圧縮形式を判定する。
+     * <p/>
+     * ファイル名で判定できない場合は先頭2バイトを読み込んで判定し、読み込み位置を先頭に戻す。
+     *
+     * @param in       markSupportedな入力ストリーム
+     * @param fileName ファイル名（不明な場合は{@code null}）
+     * @return 圧縮形式
+     * @throws IOException 入出力例外
+     */
+    static Compression detect(InputStream in, String fileName) throws IOException {
+        if (fileName != null) {
+            String name = fileName.toLowerCase(Locale.ENGLISH);
+            if (name.endsWith(".gz") || name.endsWith(".gzip")) {
+                return Compression.GZIP;
+            }
+            if (name.endsWith(".deflate") || name.endsWith(".zz")) {
+                return Compression.DEFLATE;
+            }
+        }
+        in.mark(ZLIB_PROBE_SIZE);
+        byte[] head = new byte[ZLIB_PROBE_SIZE];
+        int length;
+        try {
+            length = readHead(in, head);
+        } finally {
+            in.reset();
+        }
+        if (length < 2) {
+            return Compression.NONE;
+        }
+        int b1 = head[0] & 0xFF;
+        int b2 = head[1] & 0xFF;
+        if (b1 == GZIP_MAGIC_1 && b2 == GZIP_MAGIC_2) {
+            return Compression.GZIP;
+        }
+        if (isZlibHeader(b1, b2) && canInflate(head, length)) {
+            return Compression.DEFLATE;
+        }
+        return Compression.NONE;
+    }
+
+    /**
+     * 判定のために先頭のバイト列を読み込む。
+     *
+     * @param in   入力ストリーム
+     * @param head 読み込み先
+     * @return 読み込んだバイト数
+     * @throws IOException 入出力例外
+     */
+    private static int readHead(InputStream in, byte[] head) throws IOException {
+        int length = 0;
+        while (length < head.length) {
+            int read = in.read(head, length, head.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * 先頭2バイトがzlibのヘッダかどうかを判定する。
+     * <p/>
+     * 任意のバイト列と区別しにくいため、よく使用されるヘッダのうち、チェックサムが正しいもののみを対象とする。
+     *
+     * @param cmf 1バイト目（CMF）
+     * @param flg 2バイト目（FLG）
+     * @return zlibのヘッダの場合は{@code true}
+     */
+    private static boolean isZlibHeader(int cmf, int flg) {
+        if (cmf != ZLIB_CMF || (cmf * 256 + flg) % ZLIB_CHECK_DIVISOR != 0) {
+            return false;
+        }
+        for (int flag : ZLIB_FLAGS) {
+            if (flg == flag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 先頭部分をzlib形式として展開できるかどうかを判定する。
+     * <p/>
+     * 先頭のバイト列がファイル全体である（読み込んだバイト数が判定に使用する最大バイト数に満たない）場合は、
+     * 終端まで展開できた場合のみ展開できるとみなす。
+     *
+     * @param head   先頭のバイト列
+     * @param length 先頭のバイト列の長さ
+     * @return 展開できる場合は{@code true}
+     */
+    private static boolean canInflate(byte[] head, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(head, 0, length);
+            byte[] out = new byte[ZLIB_PROBE_SIZE];
+            int inflated;
+            do {
+                inflated = inflater.inflate(out);
+            } while (inflated > 0 && !inflater.finished());
+            if (inflater.needsDictionary()) {
+                return false;
+            }
+            // ファイルの先頭部分のみの場合は、形式エラーとならずに入力が不足した時点で展開できたとみなす
+            return inflater.finished() || length == head.length;
+        } catch (DataFormatException e) {
+            return false;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** 読み込んだバイト数が上限を超えた場合に例外を送出する入力ストリーム。 */
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+
+        /** 読み込めるバイト数の上限 */
+        private final long maxSize;
+
+        /** ファイル名（例外のメッセージに使用する） */
+        private final String fileName;
+
+        /** 読み込んだバイト数 */
+        private long count = 0L;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param in       入力ストリーム
+         * @param maxSize  読み込めるバイト数の上限
+         * @param fileName ファイル名
+         */
+        SizeLimitedInputStream(InputStream in, long maxSize, String fileName) {
+            super(in);
+            this.maxSize = maxSize;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            if (skipped > 0) {
+                count(skipped);
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * 読み込んだバイト数を加算する。
+         *
+         * @param n 読み込んだバイト数
+         * @throws IOException 上限を超えた場合
+         */
+        private void count(long n) throws IOException {
+            count += n;
+            if (count > maxSize) {
+                throw new IOException("decompressed size exceeds the limit. fileName=[" + fileName
+                        + "] maxDecompressedSize=[" + maxSize + "]");
+            }
+        }
+    }
+}
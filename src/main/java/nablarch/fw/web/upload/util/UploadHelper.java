@@ -4,7 +4,13 @@ import static nablarch.core.util.Builder.concat;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import nablarch.core.dataformat.DataRecordFormatter;
 import nablarch.core.dataformat.FormatterFactory;
@@ -13,6 +19,7 @@ import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
 import nablarch.core.util.BinaryUtil;
 import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
 import nablarch.core.util.annotation.Published;
 import nablarch.fw.web.upload.PartInfo;
 
@@ -26,9 +33,36 @@ public class UploadHelper {
     /** ロガー */
     private static final Logger LOGGER = LoggerManager.get(UploadHelper.class);
 
+    /** 配列として確保可能な最大バイト数 */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     /** 処理対象のPart */
     private final PartInfo partInfo;
 
+    /** アップロードされたファイルのファイル名（{@code null}の場合は{@link PartInfo#getFileName()}を使用する） */
+    private final String fileName;
+
+    /** 進捗（記録しない場合は{@code null}） */
+    private final UploadProgress progress;
+
+    /** フォーマット適用時に計算するダイジェストのアルゴリズム名 */
+    private String[] digestAlgorithms = new String[0];
+
+    /** バリデーションを打ち切った場合に、残りを読み込んでダイジェストを確定するかどうか */
+    private boolean digestRemainingOnClose = false;
+
+    /** 圧縮されたファイルを展開するかどうか */
+    private boolean decompression = false;
+
+    /** 圧縮されたファイルを展開した後のサイズの上限（バイト数。0以下の場合は無制限） */
+    private long maxDecompressedSize = 0L;
+
+    /** デバッグログにアップロードファイルの内容を出力する際、先頭から出力するバイト数 */
+    private int contentDumpHeadBytes = 1024;
+
+    /** デバッグログにアップロードファイルの内容を出力する際、末尾から出力するバイト数 */
+    private int contentDumpTailBytes = 256;
+
     /**
      * {@code UploadHelper}を生成する。
      *
@@ -36,22 +70,214 @@ public class UploadHelper {
      */
     @Published
     public UploadHelper(PartInfo partInfo) {
+        this(partInfo, null, null);
+    }
+
+    /**
+     * ファイル名と進捗を指定して{@code UploadHelper}を生成する。
+     *
+     * @param partInfo 処理対象の{@link PartInfo}オブジェクト
+     * @param fileName アップロードされたファイルのファイル名（{@code null}の場合は{@link PartInfo#getFileName()}を使用する）
+     * @param progress 進捗（記録しない場合は{@code null}）
+     */
+    UploadHelper(PartInfo partInfo, String fileName, UploadProgress progress) {
         this.partInfo = partInfo;
+        this.fileName = fileName;
+        this.progress = progress;
+    }
+
+    /**
+     * フォーマット適用時に計算するダイジェストのアルゴリズム名を設定する。
+     * <p/>
+     * ダイジェストはフォーマッタがファイルを読み込む際に同時に計算するため、ダイジェストのための追加の読み込みは発生しない。
+     * 計算したダイジェストは、一括バリデーションの終了後に{@link BulkValidationResult#getDigest(String)}などで取得できる。
+     * デフォルトは空であり、この場合はダイジェストを計算しない。
+     *
+     * @param algorithms アルゴリズム名（{@link java.security.MessageDigest#getInstance(String)}に指定できる名前）
+     * @return 本インスタンス
+     */
+    @Published
+    public UploadHelper setDigestAlgorithms(String... algorithms) {
+        this.digestAlgorithms = algorithms.clone();
+        return this;
+    }
+
+    /**
+     * バリデーションを打ち切った場合に、ファイルの残りを読み込んでダイジェストを確定するかどうかを設定する。
+     * <p/>
+     * {@code true}を設定した場合、レコードフォーマッタのクローズ時にファイルの残りを読み込み、
+     * ファイル全体のダイジェストを確定する。このため、打ち切った場合でもファイル全体を読み込むこととなる。
+     * デフォルトは{@code false}であり、打ち切った場合はダイジェストを確定しない
+     * （{@link BulkValidationResult#getDigest(String)}は例外を送出する）。
+     *
+     * @param digestRemainingOnClose 残りを読み込んでダイジェストを確定する場合は{@code true}
+     * @return 本インスタンス
+     * @see #setDigestAlgorithms(String...)
+     */
+    @Published
+    public UploadHelper setDigestRemainingOnClose(boolean digestRemainingOnClose) {
+        this.digestRemainingOnClose = digestRemainingOnClose;
+        return this;
+    }
+
+    /**
+     * フォーマット適用時に、圧縮されたファイルを展開しながら読み込むかどうかを設定する。
+     * <p/>
+     * {@code true}を設定した場合、ファイル名の拡張子または先頭のバイト列からgzip形式、deflate形式（zlib形式）のファイルを判定し、
+     * 一時ファイルへ展開せずに読み込みながら展開する。
+     * ダイジェストは展開前（アップロードされたまま）の内容に対して計算する。
+     * デフォルトは{@code false}。
+     *
+     * @param decompression 展開する場合は{@code true}
+     * @return 本インスタンス
+     * @see #setMaxDecompressedSize(long)
+     */
+    @Published
+    public UploadHelper setDecompression(boolean decompression) {
+        this.decompression = decompression;
+        return this;
+    }
+
+    /**
+     * 圧縮されたファイルを展開した後のサイズの上限を設定する。
+     * <p/>
+     * 展開した内容が上限を超えた時点で読み込みを中断し、{@link IOException}を原因とする例外を送出する。
+     * 圧縮率の極めて高いファイル（いわゆるzip爆弾）によって、
+     * 展開とバリデーションが際限なく続くことを防ぐために設定する。
+     * デフォルトは0（無制限）。
+     *
+     * @param maxDecompressedSize 展開後のサイズの上限（バイト数。0以下の場合は無制限）
+     * @return 本インスタンス
+     * @see #setDecompression(boolean)
+     */
+    @Published
+    public UploadHelper setMaxDecompressedSize(long maxDecompressedSize) {
+        this.maxDecompressedSize = maxDecompressedSize;
+        return this;
+    }
+
+    /**
+     * デバッグログにアップロードファイルの内容を出力する際のバイト数を設定する。
+     * <p/>
+     * アップロードファイルの内容は、DEBUGレベルが有効な場合に{@link #applyFormat(String, String)}で
+     * 16進数で出力される。ファイル全体はメモリに読み込まず、先頭と末尾の指定バイト数のみを出力する。
+     * デフォルトは先頭1024バイト、末尾256バイト。
+     *
+     * @param headBytes 先頭から出力するバイト数
+     * @param tailBytes 末尾から出力するバイト数
+     * @return 本インスタンス
+     */
+    @Published
+    public UploadHelper setContentDumpSize(int headBytes, int tailBytes) {
+        if (headBytes < 0 || tailBytes < 0) {
+            throw new IllegalArgumentException(concat(
+                    "headBytes and tailBytes must be 0 or more. ",
+                    "headBytes=[", headBytes, "] tailBytes=[", tailBytes, "]"));
+        }
+        this.contentDumpHeadBytes = headBytes;
+        this.contentDumpTailBytes = tailBytes;
+        return this;
     }
 
     /**
      * アップロードされたファイルを移動する。
+     * <p/>
+     * 一時ファイルに保存されている場合は、{@link #transferTo(String, String)}と同様に移動する。
+     * 一時ファイルに保存されていない場合は、従来どおり{@link PartInfo#moveTo(File, String)}に移動を委譲する。
      *
      * @param basePathName {@link FilePathSetting}のベースパス論理名
      * @param fileName     移動後のファイル名
      */
     @Published
     public void moveFileTo(String basePathName, String fileName) {
-        // 移動先ディレクトリを取得
-        FilePathSetting setting = FilePathSetting.getInstance();
-        File dir = setting.getBaseDirectory(basePathName);
-        // 移動
-        partInfo.moveTo(dir, fileName);
+        if (partInfo.getSavedFile() == null) {
+            // 移動先ディレクトリを取得
+            FilePathSetting setting = FilePathSetting.getInstance();
+            File dir = setting.getBaseDirectory(basePathName);
+            // 移動
+            partInfo.moveTo(dir, fileName);
+            return;
+        }
+        transferTo(basePathName, fileName);
+    }
+
+    /**
+     * アップロードされたファイルを移動し、移動結果を返却する。
+     * <p/>
+     * 同じファイルシステム内であれば名前の変更のみで移動する。
+     * 異なるファイルシステムの場合は、{@link java.nio.channels.FileChannel#transferTo}で
+     * 移動先ディレクトリの一時ファイルへ転送してストレージに同期し、移動先へ名前を変更する。
+     * このため、移動先に転送途中のファイルが現れることはない。
+     * 移動先にファイルが存在する場合は置き換える。
+     *
+     * @param basePathName {@link FilePathSetting}のベースパス論理名
+     * @param fileName     移動後のファイル名
+     * @return 移動結果
+     * @throws IllegalStateException アップロードファイルが一時ファイルに保存されていない場合
+     */
+    @Published
+    public FileMoveResult transferTo(String basePathName, String fileName) {
+        File source = getSavedFile();
+        File destination = new File(FilePathSetting.getInstance().getBaseDirectory(basePathName), fileName);
+        try {
+            return FileMover.move(source, destination);
+        } catch (IOException e) {
+            throw new RuntimeException(concat(
+                    "failed to move uploaded file. partInfo=[", partInfo, "] ",
+                    "destination=[", destination.getAbsolutePath(), "]"), e);
+        }
+    }
+
+    /**
+     * アップロードされたファイルを非同期で移動する。
+     * <p/>
+     * 同じファイルシステム内であれば、呼び出し元のスレッドで名前の変更のみで移動し、完了済みの{@link Future}を返却する。
+     * 異なるファイルシステムの場合は、転送を{@code ioExecutor}で実行する。
+     * 転送前にアップロードされた一時ファイルを退避するため、リクエストの終了後も転送を継続できる。
+     * 転送方法は{@link #transferTo(String, String)}と同じ。
+     * <p/>
+     * 大きなファイルの転送でリクエストスレッドを占有しないよう、ファイル転送専用の{@link ExecutorService}を指定すること。
+     *
+     * @param basePathName {@link FilePathSetting}のベースパス論理名
+     * @param fileName     移動後のファイル名
+     * @param ioExecutor   転送を実行する{@link ExecutorService}
+     * @return 移動結果（転送に失敗した場合は{@link Future#get()}が{@link java.util.concurrent.ExecutionException}を送出する）
+     * @throws IllegalStateException アップロードファイルが一時ファイルに保存されていない場合
+     */
+    @Published
+    public Future<FileMoveResult> transferToAsync(String basePathName, String fileName, ExecutorService ioExecutor) {
+        File source = getSavedFile();
+        File destination = new File(FilePathSetting.getInstance().getBaseDirectory(basePathName), fileName);
+        try {
+            return FileMover.moveAsync(source, destination, ioExecutor);
+        } catch (IOException e) {
+            throw new RuntimeException(concat(
+                    "failed to move uploaded file. partInfo=[", partInfo, "] ",
+                    "destination=[", destination.getAbsolutePath(), "]"), e);
+        }
+    }
+
+    /**
+     * アップロードされたファイルのファイル名を取得する。
+     *
+     * @return ファイル名
+     */
+    private String getFileName() {
+        return fileName != null ? fileName : partInfo.getFileName();
+    }
+
+    /**
+     * アップロードファイルを保存した一時ファイルを取得する。
+     *
+     * @return 一時ファイル
+     * @throws IllegalStateException 一時ファイルに保存されていない場合
+     */
+    private File getSavedFile() {
+        File savedFile = partInfo.getSavedFile();
+        if (savedFile == null) {
+            throw new IllegalStateException("upload file not saved yet. partInfo=[" + partInfo + "]");
+        }
+        return savedFile;
     }
 
     /**
@@ -78,23 +304,85 @@ public class UploadHelper {
     @Published
     public BulkValidator applyFormat(String basePathName, String layoutFileName) {
         logContentOfUploaded();
+        UploadMetrics metrics = UploadMetrics.create(getFileName());
+        long start = metrics == null ? 0L : System.nanoTime();
         // 適用するフォーマット定義ファイルを取得
         File layoutFile = getLayoutFile(basePathName, layoutFileName);
+        InputStream source = partInfo.getInputStream();
+        // ダイジェストを計算する場合は、読み込みと同時に計算するストリームを挟む
+        DigestingInputStream digestStream = createDigestStream(source);
         // フォーマッタに入力ストリームを設定（markSupportedでなければならないのでBufferedInputStreamを使用）
-        InputStream in = new BufferedInputStream(partInfo.getInputStream());
+        InputStream in = openFormatterInput(digestStream == null ? source : digestStream);
         DataRecordFormatter formatter;
         try {
-            formatter = FormatterFactory.getInstance()
-                                        .createFormatter(layoutFile)
-                                        .setInputStream(in)
-                                        .initialize();
+            formatter = createFormatter(layoutFile, in);
         } catch (SyntaxErrorException e) {
             throw createApplyFormatException(basePathName, layoutFileName, layoutFile, e);
         } catch (IllegalArgumentException e) {
             throw createApplyFormatException(basePathName, layoutFileName, layoutFile, e);
         }
+        if (metrics != null) {
+            metrics.recordSince(UploadPhase.LAYOUT_LOAD, start);
+        }
         // フォーマットを適用した一括バリデーションクラスを返却する
-        return new BulkValidator(formatter, partInfo.getFileName());
+        return new BulkValidator(formatter, getFileName())
+                .setMetrics(metrics)
+                .setDigestStream(digestStream)
+                .setProgress(progress)
+                .setSource(source instanceof FileInputStream ? (FileInputStream) source : null,
+                        partInfo.getSavedFile() == null ? -1L : partInfo.getSavedFile().length());
+    }
+
+    /**
+     * フォーマッタに設定する、markSupportedな入力ストリームを生成する。
+     * <p/>
+     * 圧縮されたファイルを展開する設定の場合、圧縮されていれば展開しながら読み込む入力ストリームを生成する。
+     *
+     * @param in アップロードファイルの入力ストリーム
+     * @return markSupportedな入力ストリーム
+     */
+    private InputStream openFormatterInput(InputStream in) {
+        if (!decompression) {
+            return new BufferedInputStream(in);
+        }
+        try {
+            return UploadDecompressor.open(in, getFileName(), UploadDecompressor.BUFFER_SIZE,
+                    maxDecompressedSize);
+        } catch (IOException e) {
+            FileUtil.closeQuietly(in);
+            throw new RuntimeException("failed to read uploaded file. partInfo=[" + partInfo + "]", e);
+        }
+    }
+
+    /**
+     * ダイジェストを計算する入力ストリームを生成する。
+     *
+     * @param source アップロードファイルの入力ストリーム
+     * @return ダイジェストを計算する入力ストリーム（計算しない場合は{@code null}）
+     */
+    private DigestingInputStream createDigestStream(InputStream source) {
+        if (digestAlgorithms.length == 0) {
+            return null;
+        }
+        return new DigestingInputStream(source, digestAlgorithms)
+                .setDrainOnClose(digestRemainingOnClose);
+    }
+
+    /**
+     * 入力ストリームを設定し、初期化したフォーマッタを生成する。
+     * <p/>
+     * {@link LayoutDefinitionCache}が登録されている場合は、解析済みのフォーマット定義からフォーマッタを生成する。
+     *
+     * @param layoutFile フォーマット定義ファイル
+     * @param in         入力ストリーム（markSupportedでなければならない）
+     * @return フォーマッタ
+     */
+    static DataRecordFormatter createFormatter(File layoutFile, InputStream in) {
+        LayoutDefinitionCache cache = LayoutDefinitionCache.getInstance();
+        DataRecordFormatter formatter = cache == null
+                ? FormatterFactory.getInstance().createFormatter(layoutFile)
+                : FormatterFactory.getInstance().createFormatter(cache.get(layoutFile));
+        return formatter.setInputStream(in).initialize();
     }
 
     /**
@@ -122,7 +410,7 @@ public class UploadHelper {
      * @param layoutFileName フォーマット定義ファイル名
      * @return フォーマット定義ファイル
      */
-    private File getLayoutFile(String basePathName, String layoutFileName) {
+    static File getLayoutFile(String basePathName, String layoutFileName) {
         File layoutFile = FilePathSetting.getInstance().getFileWithoutCreate(basePathName, layoutFileName);
         if (LOGGER.isDebugEnabled()) {
             LOGGER.logDebug(concat(
@@ -142,17 +430,88 @@ public class UploadHelper {
      */
     @Published
     public byte[] toByteArray() {
-        return BinaryUtil.toByteArray(partInfo.getInputStream());
+        return toByteArray(MAX_ARRAY_SIZE);
+    }
+
+    /**
+     * ファイルをバイト配列に変換する。
+     * <p/>
+     * ファイルサイズの配列へ直接読み込むため、ファイルサイズを超える配列の確保やコピーは発生しない。
+     *
+     * @param maxSize 許容する最大バイト数
+     * @return バイト配列
+     * @throws IllegalStateException ファイルサイズが最大バイト数を超えた場合
+     */
+    @Published
+    public byte[] toByteArray(int maxSize) {
+        File savedFile = partInfo.getSavedFile();
+        return BinaryUtil.toByteArray(partInfo.getInputStream(),
+                savedFile == null ? -1L : savedFile.length(), maxSize);
+    }
+
+    /**
+     * ファイルを{@link ByteBuffer}に変換する。
+     * <p/>
+     * 返却するバッファは{@link #toByteArray()}で読み込んだバイト配列をコピーせずに参照する。
+     *
+     * @return バッファ
+     */
+    @Published
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(toByteArray());
+    }
+
+    /**
+     * ファイルを{@link ByteBuffer}に変換する。
+     * <p/>
+     * 返却するバッファは{@link #toByteArray(int)}で読み込んだバイト配列をコピーせずに参照する。
+     *
+     * @param maxSize 許容する最大バイト数
+     * @return バッファ
+     * @throws IllegalStateException ファイルサイズが最大バイト数を超えた場合
+     */
+    @Published
+    public ByteBuffer toByteBuffer(int maxSize) {
+        return ByteBuffer.wrap(toByteArray(maxSize));
+    }
+
+    /**
+     * ファイルを読み取り専用でメモリにマップした{@link ByteBuffer}を取得する。
+     * <p/>
+     * ヒープへの読み込みやコピーを行わずにファイルの内容を参照できる。
+     * マッピングはバッファが到達不能になるまで解放されないため、
+     * プラットフォームによってはその間{@link #moveFileTo(String, String)}に失敗する場合がある。
+     * ファイルを移動する場合は、移動後のファイルに対してマップすること。
+     *
+     * @return 読み取り専用のバッファ
+     * @throws IllegalStateException アップロードファイルが一時ファイルに保存されていない場合
+     */
+    @Published
+    public ByteBuffer toMappedByteBuffer() {
+        File savedFile = getSavedFile();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(savedFile);
+            FileChannel channel = in.getChannel();
+            // マップしたバッファはチャネルをクローズした後も有効である
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("failed to map uploaded file. partInfo=[" + partInfo + "]", e);
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
     }
 
 
-    /** アップロードファイルの中身をログ出力する。 */
+    /**
+     * アップロードファイルの中身をログ出力する。
+     * <p/>
+     * ファイル全体をメモリに読み込まないよう、{@link #setContentDumpSize(int, int)}で指定された
+     * 先頭と末尾のバイト数のみを出力する。
+     */
     private void logContentOfUploaded() {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.logDebug(concat(
-                    "content of uploaded file is [",
-                    BinaryUtil.convertToHexStringWithPrefix(toByteArray()),
-                    "]"));
+            new UploadContentDumper(LOGGER, contentDumpHeadBytes, contentDumpTailBytes).dump(partInfo);
         }
     }
 
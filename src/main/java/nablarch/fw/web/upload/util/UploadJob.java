@@ -0,0 +1,38 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link UploadJobExecutor}で非同期に実行するアップロード処理のインタフェース。
+ * <p/>
+ * 引数の{@link UploadHelper}は、リクエスト終了後も参照できるよう退避したアップロードファイルを対象とする。
+ * {@link UploadHelper#applyFormat(String, String)}以降の処理（バリデーションや登録）を通常どおり実装すれば、
+ * 処理したレコード数などの進捗が{@link UploadJobStatus}に反映される。
+ * <pre>
+ * {@code
+ * public class CityUploadJob implements UploadJob {
+ *     public void execute(UploadHelper helper) {
+ *         helper.applyFormat("CITY")
+ *               .setUpMessageIdOnError("MSG00001", "MSG00002", "MSG00003")
+ *               .validateAndImportWith(CityForm.class, "upload",
+ *                                      new DbAccessSupport(CityUploadJob.class), "INSERT_CITY");
+ *     }
+ * }
+ * }
+ * </pre>
+ * 本インタフェースの実装は、ジョブを実行するスレッドから呼び出される。
+ * リクエストスコープやセッションスコープの値は参照できないため、必要な値は実装クラスのフィールドに保持すること。
+ * 例外を送出した場合、ジョブは異常終了し、登録したレコードはロールバックされる。
+ * バリデーションエラーにより{@link nablarch.core.message.ApplicationException}を送出した場合も異常終了となるが、
+ * エラーメッセージは{@link UploadJobStatus#getErrorMessages()}で取得できる。
+ */
+@Published
+public interface UploadJob {
+
+    /**
+     * アップロード処理を実行する。
+     *
+     * @param helper アップロードファイルを対象とした{@link UploadHelper}
+     */
+    void execute(UploadHelper helper);
+}
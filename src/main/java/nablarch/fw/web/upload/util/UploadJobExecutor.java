@@ -0,0 +1,474 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.connection.ConnectionFactory;
+import nablarch.core.db.connection.DbConnectionContext;
+import nablarch.core.db.connection.TransactionManagerConnection;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.transaction.TransactionContext;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.web.upload.PartInfo;
+
+/**
+ * アップロード処理を非同期に実行するクラス。
+ * <p/>
+ * 大きなファイルのバリデーションや登録でリクエストスレッドを占有しないよう、
+ * アップロードファイルを退避した上で{@link UploadJob}を専用のスレッドで実行し、直ちにジョブIDを返却する。
+ * ジョブの状態と進捗（処理したレコード数、エラーメッセージなど）は{@link UploadJobStore}に保存され、
+ * {@link #getStatus(String)}で取得できる。
+ * <pre>
+ * {@code
+ * // アップロードを受け付けるアクション
+ * String jobId = uploadJobExecutor.submit(request.getPart("uploadFile").get(0), new CityUploadJob());
+ *
+ * // 進捗を参照するアクション
+ * UploadJobStatus status = uploadJobExecutor.getStatus(jobId);
+ * }
+ * </pre>
+ * 本クラスは以下のようにコンポーネント定義に登録して使用する。
+ * {@link #setConnectionFactory(ConnectionFactory)}を設定した場合、ジョブごとにコネクションを取得し、
+ * ジョブが正常終了した場合はコミット、例外を送出した場合はロールバックする。
+ * <pre>
+ * {@code
+ * <component name="uploadJobExecutor" class="nablarch.fw.web.upload.util.UploadJobExecutor">
+ *   <property name="poolSize" value="2" />
+ *   <property name="queueCapacity" value="20" />
+ *   <property name="connectionFactory" ref="connectionFactory" />
+ *   <property name="workBasePathName" value="uploadJobWork" />
+ *   <property name="store">
+ *     <component class="nablarch.fw.web.upload.util.DbUploadJobStore">
+ *       <property name="transactionManager" ref="uploadJobTransaction" />
+ *     </component>
+ *   </property>
+ * </component>
+ * }
+ * </pre>
+ * ジョブを実行するスレッドは{@link #initialize()}で生成するため、初期化対象のコンポーネントにも登録すること。
+ */
+@Published(tag = "architect")
+public class UploadJobExecutor implements Initializable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(UploadJobExecutor.class);
+
+    /** ジョブで使用するコネクション名 */
+    private static final String CONNECTION_NAME = TransactionContext.DEFAULT_TRANSACTION_CONTEXT_KEY;
+
+    /** 退避したアップロードファイルのファイル名の接頭辞 */
+    private static final String WORK_FILE_PREFIX = "upload-job-";
+
+    /** ジョブを同時に実行するスレッド数 */
+    private int poolSize = 1;
+
+    /** 実行待ちのジョブの上限 */
+    private int queueCapacity = 10;
+
+    /** 実行中のジョブの状態を保存する間隔（ミリ秒） */
+    private long progressUpdateInterval = 1000L;
+
+    /** ジョブの状態の保存先 */
+    private UploadJobStore store = new InMemoryUploadJobStore();
+
+    /** ジョブで使用するコネクションの取得に使用する{@link ConnectionFactory}（使用しない場合は{@code null}） */
+    private ConnectionFactory connectionFactory;
+
+    /** アップロードファイルを退避するディレクトリの{@link FilePathSetting}のベースパス論理名 */
+    private String workBasePathName;
+
+    /** ジョブを実行する{@link ThreadPoolExecutor}（初期化前は{@code null}） */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * ジョブを同時に実行するスレッド数を設定する。
+     * デフォルトは1。
+     *
+     * @param poolSize スレッド数
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * 実行待ちのジョブの上限を設定する。
+     * <p/>
+     * 上限を超えてジョブを投入した場合、{@link #submit(PartInfo, UploadJob)}は
+     * {@link RejectedExecutionException}を送出する。
+     * デフォルトは10。
+     *
+     * @param queueCapacity 実行待ちのジョブの上限
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 実行中のジョブの状態を保存する間隔を設定する。
+     * <p/>
+     * 処理したレコード数が更新された際、前回の保存からこの間隔が経過していれば保存する。
+     * デフォルトは1000ミリ秒。
+     *
+     * @param progressUpdateInterval 保存する間隔（ミリ秒）
+     */
+    public void setProgressUpdateInterval(long progressUpdateInterval) {
+        this.progressUpdateInterval = progressUpdateInterval;
+    }
+
+    /**
+     * ジョブの状態の保存先を設定する。
+     * デフォルトは{@link InMemoryUploadJobStore}。
+     *
+     * @param store ジョブの状態の保存先
+     */
+    public void setStore(UploadJobStore store) {
+        this.store = store;
+    }
+
+    /**
+     * ジョブで使用するコネクションの取得に使用する{@link ConnectionFactory}を設定する。
+     * <p/>
+     * 設定した場合、ジョブを実行するスレッドの{@link DbConnectionContext}にコネクションを設定するため、
+     * {@link nablarch.core.db.support.DbAccessSupport}を使用した登録処理をそのまま使用できる。
+     *
+     * @param connectionFactory コネクションの取得に使用する{@link ConnectionFactory}
+     */
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * アップロードファイルを退避するディレクトリを、{@link FilePathSetting}のベースパス論理名で設定する。
+     * <p/>
+     * アップロードファイルはリクエストの終了時に削除されるため、ジョブの投入時にこのディレクトリへ移動する。
+     * 移動したファイルはジョブの終了時に削除する。
+     * 設定しない場合は、システムプロパティ"java.io.tmpdir"のディレクトリを使用する。
+     *
+     * @param workBasePathName ベースパス論理名
+     */
+    public void setWorkBasePathName(String workBasePathName) {
+        this.workBasePathName = workBasePathName;
+    }
+
+    /**
+     * ジョブを実行するスレッドプールを生成する。
+     * <p/>
+     * スレッドはジョブがない状態が続くと終了するため、明示的に停止しなくてもアプリケーションの終了を妨げない。
+     */
+    public synchronized void initialize() {
+        if (executor != null) {
+            return;
+        }
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize must be greater than 0. poolSize=[" + poolSize + "]");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "queueCapacity must be greater than 0. queueCapacity=[" + queueCapacity + "]");
+        }
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new JobThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 新たなジョブの受け付けを停止する。
+     * <p/>
+     * 実行中および実行待ちのジョブは、引き続き実行される。
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * アップロード処理をジョブとして投入する。
+     * <p/>
+     * アップロードファイルを作業用のディレクトリへ移動した後、ジョブを投入し、直ちにジョブIDを返却する。
+     * ジョブは投入したスレッドの{@link nablarch.core.ThreadContext}（言語やユーザIDなど）を引き継いで実行される。
+     *
+     * @param part アップロードファイル
+     * @param job  アップロード処理
+     * @return ジョブID
+     * @throws IllegalStateException      アップロードファイルが一時ファイルに保存されていない場合
+     * @throws RejectedExecutionException 実行待ちのジョブが上限に達している場合
+     */
+    public String submit(PartInfo part, UploadJob job) {
+        File savedFile = part.getSavedFile();
+        if (savedFile == null) {
+            throw new IllegalStateException("upload file not saved yet. partInfo=[" + part + "]");
+        }
+        String jobId = UUID.randomUUID().toString();
+        File workFile = new File(getWorkDirectory(), WORK_FILE_PREFIX + jobId);
+        try {
+            FileMover.move(savedFile, workFile);
+        } catch (IOException e) {
+            throw new RuntimeException(concat(
+                    "failed to move uploaded file. partInfo=[", part, "] ",
+                    "destination=[", workFile.getAbsolutePath(), "]"), e);
+        }
+        JobTask task = new JobTask(jobId, part.getFileName(), workFile, job, ThreadContextSnapshot.take());
+        try {
+            store.save(task.createStatus(UploadJobState.QUEUED, null));
+        } catch (RuntimeException e) {
+            delete(workFile);
+            throw e;
+        }
+        try {
+            getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            delete(workFile);
+            store.save(task.createStatus(UploadJobState.FAILED, "job was rejected. " + e));
+            throw e;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug(concat("upload job submitted. jobId=[", jobId, "] fileName=[", part.getFileName(), "]"));
+        }
+        return jobId;
+    }
+
+    /**
+     * ジョブの状態を取得する。
+     *
+     * @param jobId ジョブID
+     * @return ジョブの状態（存在しない場合は{@code null}）
+     */
+    public UploadJobStatus getStatus(String jobId) {
+        return store.load(jobId);
+    }
+
+    /**
+     * ジョブを実行する{@link ThreadPoolExecutor}を取得する。
+     * <p/>
+     * 初期化されていない場合は、初期化する。
+     *
+     * @return ジョブを実行する{@link ThreadPoolExecutor}
+     */
+    private synchronized ThreadPoolExecutor getExecutor() {
+        initialize();
+        return executor;
+    }
+
+    /**
+     * アップロードファイルを退避するディレクトリを取得する。
+     *
+     * @return ディレクトリ
+     */
+    private File getWorkDirectory() {
+        if (workBasePathName == null) {
+            return new File(System.getProperty("java.io.tmpdir"));
+        }
+        return FilePathSetting.getInstance().getBaseDirectory(workBasePathName);
+    }
+
+    /**
+     * ファイルを削除する。
+     *
+     * @param file ファイル
+     */
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.logWarn(concat("failed to delete work file of upload job. file=[", file.getAbsolutePath(), "]"));
+        }
+    }
+
+    /** ジョブを実行するスレッドを生成する{@link ThreadFactory}。 */
+    private static final class JobThreadFactory implements ThreadFactory {
+
+        /** スレッド番号 */
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "upload-job-" + threadNumber.incrementAndGet());
+        }
+    }
+
+    /** ジョブ１件を実行するタスク。 */
+    private final class JobTask extends UploadProgress implements Runnable {
+
+        /** ジョブID */
+        private final String jobId;
+
+        /** アップロードされたファイルのファイル名 */
+        private final String fileName;
+
+        /** 退避したアップロードファイル */
+        private final File workFile;
+
+        /** アップロード処理 */
+        private final UploadJob job;
+
+        /** 引き継ぐスレッドコンテキスト */
+        private final ThreadContextSnapshot context;
+
+        /** 前回状態を保存した時刻（ミリ秒） */
+        private long lastSaved;
+
+        /** ジョブ内で生成された一括バリデーション結果（ジョブの終了時にクローズする） */
+        private final List<BulkValidationResult<?>> results = new ArrayList<BulkValidationResult<?>>();
+
+        /**
+         * コンストラクタ。
+         *
+         * @param jobId    ジョブID
+         * @param fileName アップロードされたファイルのファイル名
+         * @param workFile 退避したアップロードファイル
+         * @param job      アップロード処理
+         * @param context  引き継ぐスレッドコンテキスト
+         */
+        JobTask(String jobId, String fileName, File workFile, UploadJob job, ThreadContextSnapshot context) {
+            this.jobId = jobId;
+            this.fileName = fileName;
+            this.workFile = workFile;
+            this.job = job;
+            this.context = context;
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            ThreadContextSnapshot previousContext = context.apply();
+            // CallerRunsPolicyなどで呼び出し元スレッドで実行された場合に備え、既存のコネクションを退避する
+            AppDbConnection previous = DbConnectionContext.containConnection(CONNECTION_NAME)
+                    ? DbConnectionContext.getConnection(CONNECTION_NAME) : null;
+            if (previous != null) {
+                DbConnectionContext.removeConnection(CONNECTION_NAME);
+            }
+            TransactionManagerConnection connection = null;
+            try {
+                saveQuietly(UploadJobState.RUNNING, null);
+                if (connectionFactory != null) {
+                    connection = connectionFactory.getConnection(CONNECTION_NAME);
+                    DbConnectionContext.setConnection(CONNECTION_NAME, connection);
+                }
+                PartInfo part = PartInfo.newInstance(WORK_FILE_PREFIX + jobId);
+                part.setSavedFile(workFile);
+                job.execute(new UploadHelper(part, fileName, this));
+                if (connection != null) {
+                    connection.commit();
+                }
+                saveQuietly(UploadJobState.SUCCEEDED, null);
+            } catch (RuntimeException e) {
+                fail(connection, e);
+            } catch (Error e) {
+                fail(connection, e);
+                throw e;
+            } finally {
+                if (connection != null) {
+                    connection.terminate();
+                }
+                if (DbConnectionContext.containConnection(CONNECTION_NAME)) {
+                    DbConnectionContext.removeConnection(CONNECTION_NAME);
+                }
+                if (previous != null) {
+                    DbConnectionContext.setConnection(CONNECTION_NAME, previous);
+                }
+                delete(workFile);
+                closeResults();
+                previousContext.apply();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        synchronized void resultCreated(BulkValidationResult<?> result) {
+            results.add(result);
+        }
+
+        /**
+         * ジョブ内で生成された一括バリデーション結果をクローズし、一時ファイルを削除する。
+         * <p/>
+         * ジョブを実行するスレッドはプールされるため、リクエスト処理の終了時の削除に頼らずにここで削除する。
+         */
+        private synchronized void closeResults() {
+            for (BulkValidationResult<?> e : results) {
+                try {
+                    e.close();
+                } catch (RuntimeException closeError) {
+                    LOGGER.logWarn(concat("failed to close validation result. jobId=[", jobId, "]"), closeError);
+                }
+            }
+            results.clear();
+        }
+
+        /**
+         * ジョブの異常終了を記録し、ロールバックする。
+         *
+         * @param connection コネクション（使用しない場合は{@code null}）
+         * @param e          ジョブが送出した例外
+         */
+        private void fail(TransactionManagerConnection connection, Throwable e) {
+            LOGGER.logWarn(concat("upload job failed. jobId=[", jobId, "] fileName=[", fileName, "]"), e);
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (RuntimeException rollbackError) {
+                    LOGGER.logWarn(concat("failed to rollback upload job. jobId=[", jobId, "]"), rollbackError);
+                }
+            }
+            saveQuietly(UploadJobState.FAILED, e.toString());
+        }
+
+        /**
+         * 件数が更新された際、前回の保存から一定時間が経過していれば実行中の状態を保存する。
+         */
+        @Override
+        synchronized void updated() {
+            long now = System.currentTimeMillis();
+            if (now - lastSaved >= progressUpdateInterval) {
+                lastSaved = now;
+                saveQuietly(UploadJobState.RUNNING, null);
+            }
+        }
+
+        /**
+         * ジョブの状態を保存する。
+         * <p/>
+         * 保存に失敗してもジョブの実行は継続する。
+         *
+         * @param state   ジョブの状態
+         * @param failure 異常終了した原因
+         */
+        private void saveQuietly(UploadJobState state, String failure) {
+            try {
+                store.save(createStatus(state, failure));
+            } catch (RuntimeException e) {
+                LOGGER.logWarn(concat("failed to save upload job status. jobId=[", jobId, "] state=[", state, "]"), e);
+            }
+        }
+
+        /**
+         * 現在の進捗からジョブの状態を生成する。
+         * <p/>
+         * 異常終了した場合、ジョブのトランザクションはロールバックされるため、
+         * 登録したレコード数は途中でコミットされたレコード数（チェックポイントごとのコミットや、
+         * ZIPファイルのエントリごとのコミットにより確定したレコード数）とする。
+         *
+         * @param state   ジョブの状態
+         * @param failure 異常終了した原因
+         * @return ジョブの状態
+         */
+        UploadJobStatus createStatus(UploadJobState state, String failure) {
+            return new UploadJobStatus(jobId, fileName, state,
+                    getReadCount(), getValidCount(), getInvalidCount(),
+                    state == UploadJobState.FAILED ? getCommittedCount() : getImportedCount(),
+                    getErrorMessages(), failure);
+        }
+    }
+}
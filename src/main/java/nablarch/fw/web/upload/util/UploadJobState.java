@@ -0,0 +1,33 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロードジョブの状態。
+ *
+ * @see UploadJobStatus
+ */
+@Published
+public enum UploadJobState {
+
+    /** 実行待ち */
+    QUEUED,
+
+    /** 実行中 */
+    RUNNING,
+
+    /** 正常終了（バリデーションエラーの有無は問わない） */
+    SUCCEEDED,
+
+    /** 異常終了（ジョブが例外を送出した場合） */
+    FAILED;
+
+    /**
+     * 終了しているかどうかを判定する。
+     *
+     * @return 終了している場合は{@code true}
+     */
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
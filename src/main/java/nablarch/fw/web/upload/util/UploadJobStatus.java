@@ -0,0 +1,176 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.web.upload.util.BulkValidationResult.ErrorMessages;
+
+/**
+ * アップロードジョブの状態と進捗を保持するクラス。
+ * <p/>
+ * 本クラスは、ある時点の状態を表す不変オブジェクトである。
+ * 最新の状態は{@link UploadJobExecutor#getStatus(String)}で再度取得すること。
+ *
+ * @see UploadJobExecutor
+ */
+public class UploadJobStatus {
+
+    /** ジョブID */
+    private final String jobId;
+
+    /** アップロードされたファイルのファイル名 */
+    private final String fileName;
+
+    /** ジョブの状態 */
+    private final UploadJobState state;
+
+    /** バリデーションしたレコード数 */
+    private final int readCount;
+
+    /** バリデーションに成功したレコード数 */
+    private final int validCount;
+
+    /** バリデーションに失敗したレコード数 */
+    private final int invalidCount;
+
+    /** 登録したレコード数 */
+    private final int importedCount;
+
+    /** エラーメッセージ */
+    private final ErrorMessages errorMessages;
+
+    /** 異常終了した原因 */
+    private final String failure;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param jobId         ジョブID
+     * @param fileName      アップロードされたファイルのファイル名
+     * @param state         ジョブの状態
+     * @param readCount     バリデーションしたレコード数
+     * @param validCount    バリデーションに成功したレコード数
+     * @param invalidCount  バリデーションに失敗したレコード数
+     * @param importedCount 登録したレコード数
+     * @param errorMessages エラーメッセージ（{@code null}の場合は空のエラーメッセージとする）
+     * @param failure       異常終了した原因（異常終了していない場合は{@code null}）
+     */
+    @Published(tag = "architect")
+    public UploadJobStatus(String jobId, String fileName, UploadJobState state,
+                           int readCount, int validCount, int invalidCount, int importedCount,
+                           ErrorMessages errorMessages, String failure) {
+        this.jobId = jobId;
+        this.fileName = fileName;
+        this.state = state;
+        this.readCount = readCount;
+        this.validCount = validCount;
+        this.invalidCount = invalidCount;
+        this.importedCount = importedCount;
+        this.errorMessages = errorMessages == null ? new ErrorMessages() : errorMessages;
+        this.failure = failure;
+    }
+
+    /**
+     * ジョブIDを取得する。
+     *
+     * @return ジョブID
+     */
+    @Published
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * アップロードされたファイルのファイル名を取得する。
+     *
+     * @return ファイル名
+     */
+    @Published
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * ジョブの状態を取得する。
+     *
+     * @return ジョブの状態
+     */
+    @Published
+    public UploadJobState getState() {
+        return state;
+    }
+
+    /**
+     * バリデーションしたレコード数を取得する。
+     *
+     * @return バリデーションしたレコード数
+     */
+    @Published
+    public int getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * バリデーションに成功したレコード数を取得する。
+     *
+     * @return バリデーションに成功したレコード数
+     */
+    @Published
+    public int getValidCount() {
+        return validCount;
+    }
+
+    /**
+     * バリデーションに失敗したレコード数を取得する。
+     *
+     * @return バリデーションに失敗したレコード数
+     */
+    @Published
+    public int getInvalidCount() {
+        return invalidCount;
+    }
+
+    /**
+     * 登録したレコード数を取得する。
+     * <p/>
+     * ジョブが異常終了した場合は、途中でコミットされたレコード数となる。
+     * チェックポイントごとにコミットする場合や、ZIPファイルのエントリごとにコミットする場合は、
+     * 異常終了までにコミットされたレコードは登録されたままとなるため、その件数を返却する。
+     * 途中でコミットしない場合は、全てロールバックされているため0となる。
+     *
+     * @return 登録したレコード数
+     */
+    @Published
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * エラーメッセージを取得する。
+     * <p/>
+     * バリデーションが終了するまでは空の{@link ErrorMessages}が返却される。
+     *
+     * @return エラーメッセージ
+     */
+    @Published
+    public ErrorMessages getErrorMessages() {
+        return errorMessages;
+    }
+
+    /**
+     * 異常終了した原因を取得する。
+     *
+     * @return 異常終了した原因（異常終了していない場合は{@code null}）
+     */
+    @Published
+    public String getFailure() {
+        return failure;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "UploadJobStatus{jobId=" + jobId + ", fileName=" + fileName + ", state=" + state
+                + ", readCount=" + readCount + ", validCount=" + validCount + ", invalidCount=" + invalidCount
+                + ", importedCount=" + importedCount + ", errorMessages=" + errorMessages.size()
+                + ", failure=" + failure + "}";
+    }
+}
@@ -0,0 +1,43 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロードジョブの状態を保存するインタフェース。
+ * <p/>
+ * 複数のアプリケーションサーバでジョブの状態を参照する場合は、
+ * {@link DbUploadJobStore}のように全サーバから参照できる保存先を使用すること。
+ *
+ * @see InMemoryUploadJobStore
+ * @see DbUploadJobStore
+ */
+@Published(tag = "architect")
+public interface UploadJobStore {
+
+    /**
+     * ジョブの状態を保存する。
+     * <p/>
+     * 同じジョブIDの状態が保存されている場合は上書きする。
+     * ジョブを実行するスレッドから繰り返し呼び出される。
+     *
+     * @param status ジョブの状態
+     */
+    void save(UploadJobStatus status);
+
+    /**
+     * ジョブの状態を取得する。
+     *
+     * @param jobId ジョブID
+     * @return ジョブの状態（存在しない場合は{@code null}）
+     */
+    UploadJobStatus load(String jobId);
+
+    /**
+     * ジョブの状態を削除する。
+     * <p/>
+     * 存在しない場合は何もしない。
+     *
+     * @param jobId ジョブID
+     */
+    void remove(String jobId);
+}
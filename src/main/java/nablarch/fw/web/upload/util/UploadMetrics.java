@@ -0,0 +1,144 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロード処理の処理区分ごとの処理時間と処理回数を保持するクラス。
+ * <p/>
+ * バリデーションを並列実行する場合は複数スレッドから同時に計測結果が加算されるため、スレッドセーフとしている。
+ * ワーカースレッドで計測した処理時間は各スレッドの処理時間の合計であるため、
+ * 処理区分ごとの処理時間の合計が全体の経過時間を超える場合がある。
+ *
+ * @see UploadMetricsListener
+ */
+@Published(tag = "architect")
+public class UploadMetrics {
+
+    /** アップロードされたファイルのファイル名 */
+    private final String fileName;
+
+    /** 計測結果の通知先 */
+    private final UploadMetricsListener listener;
+
+    /** 計測開始時刻（ナノ秒） */
+    private final long startNanos = System.nanoTime();
+
+    /** 処理区分ごとの処理時間（ナノ秒） */
+    private final AtomicLongArray elapsed = new AtomicLongArray(UploadPhase.values().length);
+
+    /** 処理区分ごとの処理回数 */
+    private final AtomicLongArray counts = new AtomicLongArray(UploadPhase.values().length);
+
+    /** 処理の終了を通知済みかどうか */
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    /**
+     * コンストラクタ。
+     *
+     * @param fileName アップロードされたファイルのファイル名
+     * @param listener 計測結果の通知先
+     */
+    UploadMetrics(String fileName, UploadMetricsListener listener) {
+        this.fileName = fileName;
+        this.listener = listener;
+    }
+
+    /**
+     * コンポーネント定義に登録された通知先に通知する、計測結果を保持するオブジェクトを生成する。
+     *
+     * @param fileName アップロードされたファイルのファイル名
+     * @return 計測結果を保持するオブジェクト（計測しない場合は{@code null}）
+     * @see UploadMetricsListener#REPOSITORY_KEY
+     */
+    static UploadMetrics create(String fileName) {
+        return create(fileName, SystemRepository.<UploadMetricsListener>get(UploadMetricsListener.REPOSITORY_KEY));
+    }
+
+    /**
+     * 計測結果を保持するオブジェクトを生成する。
+     *
+     * @param fileName アップロードされたファイルのファイル名
+     * @param listener 計測結果の通知先
+     * @return 計測結果を保持するオブジェクト（通知先が{@code null}または{@link NopUploadMetricsListener}の場合は{@code null}）
+     */
+    static UploadMetrics create(String fileName, UploadMetricsListener listener) {
+        if (listener == null || listener instanceof NopUploadMetricsListener) {
+            return null;
+        }
+        return new UploadMetrics(fileName, listener);
+    }
+
+    /**
+     * アップロードされたファイルのファイル名を取得する。
+     *
+     * @return ファイル名
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * 処理区分の処理時間の合計を取得する。
+     *
+     * @param phase 処理区分
+     * @return 処理時間（ナノ秒）
+     */
+    public long getElapsedNanos(UploadPhase phase) {
+        return elapsed.get(phase.ordinal());
+    }
+
+    /**
+     * 処理区分の処理回数を取得する。
+     *
+     * @param phase 処理区分
+     * @return 処理回数
+     */
+    public long getCount(UploadPhase phase) {
+        return counts.get(phase.ordinal());
+    }
+
+    /**
+     * 計測開始からの経過時間を取得する。
+     *
+     * @return 経過時間（ナノ秒）
+     */
+    public long getWallClockNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 処理時間を加算する。
+     *
+     * @param phase        処理区分
+     * @param elapsedNanos 処理時間（ナノ秒）
+     */
+    void record(UploadPhase phase, long elapsedNanos) {
+        elapsed.addAndGet(phase.ordinal(), elapsedNanos);
+        counts.incrementAndGet(phase.ordinal());
+    }
+
+    /**
+     * 計測開始時刻から現在までの処理時間を加算する。
+     *
+     * @param phase     処理区分
+     * @param startNano 計測開始時刻（{@link System#nanoTime()}の値）
+     */
+    void recordSince(UploadPhase phase, long startNano) {
+        record(phase, System.nanoTime() - startNano);
+    }
+
+    /**
+     * 処理の終了を通知する。
+     * <p/>
+     * 1つのアップロード処理につき1回だけ通知するため、2回目以降の呼び出しでは何もしない。
+     */
+    void finish() {
+        if (finished.compareAndSet(false, true)) {
+            listener.onFinish(this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロード処理の計測結果を受け取るインタフェース。
+ * <p/>
+ * アップロード処理の終了時に、1つのアップロード処理につき1回だけ呼び出される。
+ * 呼び出されるタイミングは以下のとおり。
+ * <ul>
+ * <li>一括登録を行った場合は、一括登録の終了時（例外が発生した場合を含む）。計測結果には一括バリデーションの計測結果も含まれる。</li>
+ * <li>バリデーションエラーが発生した場合や空ファイルの場合など、一括登録を行えない場合は、一括バリデーションの終了時。</li>
+ * <li>一括バリデーションのみを行い一括登録を行わない場合は、{@link BulkValidationResult#close()}の呼び出し時。</li>
+ * </ul>
+ * <p/>
+ * 実装クラスを{@value #REPOSITORY_KEY}という名前でコンポーネント定義に登録すると、
+ * フォーマットの適用からバリデーション、登録までの処理区分ごとに処理時間と処理回数を計測する。
+ * 登録されていない場合、または{@link NopUploadMetricsListener}を登録した場合は、計測自体を行わない。
+ * <pre>
+ * {@code
+ * <component name="uploadMetricsListener" class="nablarch.fw.web.upload.util.LoggingUploadMetricsListener" />
+ * }
+ * </pre>
+ *
+ * @see UploadPhase
+ * @see NopUploadMetricsListener
+ * @see LoggingUploadMetricsListener
+ */
+@Published(tag = "architect")
+public interface UploadMetricsListener {
+
+    /** コンポーネント定義に登録する際の名前 */
+    String REPOSITORY_KEY = "uploadMetricsListener";
+
+    /**
+     * 処理の終了を通知する。
+     *
+     * @param metrics 計測結果
+     */
+    void onFinish(UploadMetrics metrics);
+}
@@ -0,0 +1,30 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロード処理の処理区分。
+ * <p/>
+ * {@link UploadMetrics}で処理区分ごとの処理時間と処理回数を計測する際に使用する。
+ */
+@Published(tag = "architect")
+public enum UploadPhase {
+
+    /** フォーマット定義ファイルの取得およびフォーマッタの生成 */
+    LAYOUT_LOAD,
+
+    /** レコードの読み込み（{@link nablarch.core.dataformat.DataRecordFormatter#readRecord()}） */
+    PARSE,
+
+    /** レコードのバリデーション（{@link ValidatingStrategy#validateRecord(nablarch.core.dataformat.DataRecord)}） */
+    VALIDATION,
+
+    /** バリデーション済みオブジェクトの生成（{@link nablarch.core.validation.ValidationContext#createObject()}） */
+    OBJECT_CREATION,
+
+    /** エラーメッセージの生成（{@link ValidatingStrategy#handleInvalidRecord}および{@link ValidatingStrategy#handleInvalidFormatRecord}） */
+    ERROR_MESSAGE,
+
+    /** バッチ実行（{@link nablarch.core.db.statement.ParameterizedSqlPStatement#executeBatch()}） */
+    EXECUTE_BATCH
+}
@@ -0,0 +1,158 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nablarch.fw.web.upload.util.BulkValidationResult.ErrorMessages;
+
+/**
+ * 一括バリデーションおよび一括登録の進捗を保持するクラス。
+ * <p/>
+ * 処理中のスレッドが件数を加算し、別スレッドから参照されるため、スレッドセーフとしている。
+ * 件数が更新されるたびに{@link #updated()}が呼び出されるため、サブクラスで進捗の通知に使用できる。
+ */
+class UploadProgress {
+
+    /** バリデーションしたレコード数 */
+    private final AtomicInteger readCount = new AtomicInteger();
+
+    /** バリデーションに成功したレコード数 */
+    private final AtomicInteger validCount = new AtomicInteger();
+
+    /** バリデーションに失敗したレコード数 */
+    private final AtomicInteger invalidCount = new AtomicInteger();
+
+    /** 登録したレコード数 */
+    private final AtomicInteger importedCount = new AtomicInteger();
+
+    /** 登録したレコードのうち、コミット済みのレコード数 */
+    private final AtomicInteger committedCount = new AtomicInteger();
+
+    /** バリデーションが終了した一括バリデーション結果（終了前は{@code null}） */
+    private volatile BulkValidationResult<?> completedResult;
+
+    /**
+     * バリデーションに成功したレコードを記録する。
+     */
+    void recordValid() {
+        readCount.incrementAndGet();
+        validCount.incrementAndGet();
+        updated();
+    }
+
+    /**
+     * バリデーションに失敗したレコードを記録する。
+     */
+    void recordInvalid() {
+        readCount.incrementAndGet();
+        invalidCount.incrementAndGet();
+        updated();
+    }
+
+    /**
+     * 登録したレコード数を加算する。
+     *
+     * @param count 登録したレコード数（ロールバックした場合は負数）
+     */
+    void addImported(int count) {
+        importedCount.addAndGet(count);
+        updated();
+    }
+
+    /**
+     * 登録したレコードのコミットを記録する。
+     * <p/>
+     * 本メソッドの呼び出し時点で登録したレコードは、以降ロールバックされてもコミット済みのレコード数に含める。
+     */
+    void committed() {
+        committedCount.set(importedCount.get());
+    }
+
+    /**
+     * バリデーションの終了を記録する。
+     * <p/>
+     * エラーメッセージは{@link #getErrorMessages()}の呼び出し時に生成するため、ここでは結果のみを保持する。
+     *
+     * @param result バリデーションが終了した一括バリデーション結果
+     */
+    void validationCompleted(BulkValidationResult<?> result) {
+        this.completedResult = result;
+        updated();
+    }
+
+    /**
+     * 進捗を記録する一括バリデーション結果が生成された際に呼び出される。
+     * <p/>
+     * 本クラスでは何もしない。サブクラスで、処理の終了時に結果をクローズするために使用できる。
+     *
+     * @param result 生成された一括バリデーション結果
+     */
+    void resultCreated(BulkValidationResult<?> result) {
+        // nop
+    }
+
+    /**
+     * 件数が更新された際に呼び出される。
+     * <p/>
+     * 本クラスでは何もしない。
+     */
+    void updated() {
+        // nop
+    }
+
+    /**
+     * バリデーションしたレコード数を取得する。
+     *
+     * @return バリデーションしたレコード数
+     */
+    int getReadCount() {
+        return readCount.get();
+    }
+
+    /**
+     * バリデーションに成功したレコード数を取得する。
+     *
+     * @return バリデーションに成功したレコード数
+     */
+    int getValidCount() {
+        return validCount.get();
+    }
+
+    /**
+     * バリデーションに失敗したレコード数を取得する。
+     *
+     * @return バリデーションに失敗したレコード数
+     */
+    int getInvalidCount() {
+        return invalidCount.get();
+    }
+
+    /**
+     * 登録したレコード数を取得する。
+     *
+     * @return 登録したレコード数
+     */
+    int getImportedCount() {
+        return importedCount.get();
+    }
+
+    /**
+     * 登録したレコードのうち、コミット済みのレコード数を取得する。
+     *
+     * @return コミット済みのレコード数
+     * @see #committed()
+     */
+    int getCommittedCount() {
+        return committedCount.get();
+    }
+
+    /**
+     * バリデーション終了後のエラーメッセージを取得する。
+     *
+     * @return エラーメッセージ（バリデーションが終了していない場合は{@code null}）
+     * @see BulkValidationResult#getErrorMessages()
+     */
+    ErrorMessages getErrorMessages() {
+        BulkValidationResult<?> result = completedResult;
+        return result == null ? null : result.getErrorMessages();
+    }
+}
@@ -0,0 +1,161 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 一括バリデーションおよび一括登録の進捗を表すクラス。
+ *
+ * @see UploadProgressListener
+ */
+public class UploadProgressEvent {
+
+    /** 処理区分 */
+    private final UploadPhase phase;
+
+    /** 処理したレコード数 */
+    private final int processedCount;
+
+    /** エラーが発生したレコード数 */
+    private final int errorCount;
+
+    /** 処理対象の全レコード数（不明な場合は-1） */
+    private final int totalCount;
+
+    /** 読み込んだバイト数（不明な場合は-1） */
+    private final long bytesRead;
+
+    /** ファイル全体のバイト数（不明な場合は-1） */
+    private final long totalBytes;
+
+    /** 処理開始からの経過時間（ナノ秒） */
+    private final long elapsedNanos;
+
+    /** 処理が終了したかどうか */
+    private final boolean completed;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param phase          処理区分
+     * @param processedCount 処理したレコード数
+     * @param errorCount     エラーが発生したレコード数
+     * @param totalCount     処理対象の全レコード数（不明な場合は-1）
+     * @param bytesRead      読み込んだバイト数（不明な場合は-1）
+     * @param totalBytes     ファイル全体のバイト数（不明な場合は-1）
+     * @param elapsedNanos   処理開始からの経過時間（ナノ秒）
+     * @param completed      処理が終了した場合は{@code true}
+     */
+    UploadProgressEvent(UploadPhase phase, int processedCount, int errorCount, int totalCount,
+                        long bytesRead, long totalBytes, long elapsedNanos, boolean completed) {
+        this.phase = phase;
+        this.processedCount = processedCount;
+        this.errorCount = errorCount;
+        this.totalCount = totalCount;
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.completed = completed;
+    }
+
+    /**
+     * 処理区分を取得する。
+     * <p/>
+     * 一括バリデーションの場合は{@link UploadPhase#VALIDATION}、
+     * 一括登録の場合は{@link UploadPhase#EXECUTE_BATCH}となる。
+     *
+     * @return 処理区分
+     */
+    @Published
+    public UploadPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * 処理したレコード数を取得する。
+     *
+     * @return 処理したレコード数
+     */
+    @Published
+    public int getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * エラーが発生したレコード数を取得する。
+     * <p/>
+     * 一括登録の場合は常に0となる。
+     *
+     * @return エラーが発生したレコード数
+     */
+    @Published
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * 処理対象の全レコード数を取得する。
+     * <p/>
+     * 一括バリデーションの場合、ファイルを全て読み込むまでレコード数は分からないため-1となる。
+     *
+     * @return 処理対象の全レコード数（不明な場合は-1）
+     */
+    @Published
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * アップロードファイルから読み込んだバイト数を取得する。
+     * <p/>
+     * 一括バリデーションの場合のみ取得できる。
+     * 先読みしたバイト数を含むため、処理したレコードのバイト数より大きい場合がある。
+     *
+     * @return 読み込んだバイト数（不明な場合は-1）
+     */
+    @Published
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * アップロードファイル全体のバイト数を取得する。
+     *
+     * @return ファイル全体のバイト数（不明な場合は-1）
+     */
+    @Published
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 処理開始からの経過時間を取得する。
+     *
+     * @param unit 時間の単位
+     * @return 経過時間
+     */
+    @Published
+    public long getElapsedTime(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 処理が終了したかどうかを判定する。
+     *
+     * @return 処理が終了した場合は{@code true}
+     */
+    @Published
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "UploadProgressEvent{phase=" + phase + ", processedCount=" + processedCount
+                + ", errorCount=" + errorCount + ", totalCount=" + totalCount
+                + ", bytesRead=" + bytesRead + ", totalBytes=" + totalBytes
+                + ", elapsedMillis=" + getElapsedTime(TimeUnit.MILLISECONDS) + ", completed=" + completed + "}";
+    }
+}
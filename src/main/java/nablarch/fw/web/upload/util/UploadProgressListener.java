@@ -0,0 +1,23 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 一括バリデーションおよび一括登録の進捗を受け取るインタフェース。
+ * <p/>
+ * 一定のレコード数または一定の時間が経過するごとに、処理中のスレッドから呼び出される。
+ * また、処理の終了時には{@link UploadProgressEvent#isCompleted()}が{@code true}のイベントで必ず呼び出される。
+ * 処理中のスレッドで呼び出されるため、重い処理を行わないこと。
+ * <p/>
+ * 実装クラスは{@link BulkValidator#setProgressListener(UploadProgressListener, int, long)}で設定する。
+ */
+@Published
+public interface UploadProgressListener {
+
+    /**
+     * 進捗を通知する。
+     *
+     * @param event 進捗
+     */
+    void onProgress(UploadProgressEvent event);
+}
@@ -0,0 +1,357 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import nablarch.core.dataformat.DataRecordFormatter;
+import nablarch.core.dataformat.SyntaxErrorException;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.web.upload.PartInfo;
+
+/**
+ * 同じレイアウトのファイルを複数格納したZIPファイルのアップロードに対する定型処理を提供するユーティリティクラス。
+ * <p/>
+ * ZIPファイルの各エントリは一時ファイルへ展開せず、アップロードされた一時ファイルから直接読み込みながらバリデーションする。
+ * {@link #setValidationExecutor(ExecutorService)}を設定した場合、エントリごとに並列にバリデーションする。
+ * バリデーション結果はエントリ名と行番号をキーとする{@link ZipValidationResult}にまとめて返却する。
+ * <p/>
+ * ディレクトリのエントリは無視する。
+ */
+@Published
+public class ZipUploadHelper {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(ZipUploadHelper.class);
+
+    /** 処理対象のPart */
+    private final PartInfo partInfo;
+
+    /** バリデーションを並列実行する{@link ExecutorService}（逐次実行の場合は{@code null}） */
+    private ExecutorService validationExecutor;
+
+    /** 形式エラー時のメッセージID */
+    private String messageIdOnFormatError;
+
+    /** バリデーションエラー時のメッセージID */
+    private String messageIdOnValidationError;
+
+    /** 空ファイルの場合のメッセージID */
+    private String messageIdOnEmptyFile;
+
+    /**
+     * {@code ZipUploadHelper}を生成する。
+     *
+     * @param partInfo 処理対象の{@link PartInfo}オブジェクト（一時ファイルに保存されたZIPファイル）
+     */
+    public ZipUploadHelper(PartInfo partInfo) {
+        this.partInfo = partInfo;
+    }
+
+    /**
+     * エントリのバリデーションを並列実行する{@link ExecutorService}を設定する。
+     * <p/>
+     * 1エントリのバリデーションを1タスクとして実行する。
+     * 同時にバリデーションするエントリ数（メモリ使用量）を抑えるため、スレッド数に上限のある{@link ExecutorService}を指定すること。
+     * 設定しない場合は、呼び出し元のスレッドでエントリ順にバリデーションする。
+     *
+     * @param executor バリデーションを実行する{@link ExecutorService}（{@code null}の場合は逐次実行する）
+     * @return 本インスタンス
+     */
+    public ZipUploadHelper setValidationExecutor(ExecutorService executor) {
+        this.validationExecutor = executor;
+        return this;
+    }
+
+    /**
+     * エラー発生時のメッセージIDを設定する。
+     *
+     * @param messageIdOnFormatError     形式エラー時のメッセージID
+     * @param messageIdOnValidationError バリデーションエラー時のメッセージID
+     * @param messageIdOnEmptyFile       空のエントリの場合のメッセージID
+     * @return 本インスタンス
+     * @see BulkValidator#setUpMessageIdOnError(String, String, String)
+     */
+    public ZipUploadHelper setUpMessageIdOnError(String messageIdOnFormatError,
+                                                 String messageIdOnValidationError,
+                                                 String messageIdOnEmptyFile) {
+        this.messageIdOnFormatError = messageIdOnFormatError;
+        this.messageIdOnValidationError = messageIdOnValidationError;
+        this.messageIdOnEmptyFile = messageIdOnEmptyFile;
+        return this;
+    }
+
+    /**
+     * 全エントリにフォーマットを適用し、指定されたフォームクラスを用いて一括バリデーション処理を行う。
+     * <p/>
+     * 各エントリのバリデーションは{@link BulkValidator.ErrorHandlingBulkValidator#validateWith(Class, String)}と同じである。
+     * 空のエントリがある場合は{@link nablarch.core.message.ApplicationException}が送出される。
+     *
+     * @param basePathName   {@link FilePathSetting}のベースパス論理名
+     * @param layoutFileName フォーマット定義ファイル名
+     * @param formClass      バリデーションに使用するフォームクラス
+     * @param validateFor    バリデーションメソッド名
+     * @param <FORM>         フォームクラスの型
+     * @return エントリごとの一括バリデーション結果
+     * @throws IllegalStateException フォーマット適用に失敗した場合、
+     *                               またはアップロードファイルが一時ファイルに保存されていない場合
+     */
+    public <FORM> ZipValidationResult<FORM> validateWith(String basePathName, String layoutFileName,
+                                                         Class<FORM> formClass, String validateFor) {
+        File layoutFile = UploadHelper.getLayoutFile(basePathName, layoutFileName);
+        File savedFile = partInfo.getSavedFile();
+        if (savedFile == null) {
+            throw new IllegalStateException("upload file not saved yet. partInfo=[" + partInfo + "]");
+        }
+        ZipFile zip;
+        try {
+            zip = new ZipFile(savedFile);
+        } catch (IOException e) {
+            throw new RuntimeException("failed to open uploaded zip file. partInfo=[" + partInfo + "]", e);
+        }
+        try {
+            List<EntryValidationTask<FORM>> tasks = new ArrayList<EntryValidationTask<FORM>>();
+            ThreadContextSnapshot context = ThreadContextSnapshot.take();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    tasks.add(new EntryValidationTask<FORM>(
+                            this, zip, entry, layoutFile, formClass, validateFor, context));
+                }
+            }
+            return new ZipValidationResult<FORM>(validationExecutor == null
+                    ? validateSequentially(tasks) : validateInParallel(tasks));
+        } finally {
+            closeQuietly(zip);
+        }
+    }
+
+    /**
+     * ZIPファイルをクローズする。
+     * <p/>
+     * クローズに失敗した場合は、ログ出力のみ行う。
+     *
+     * @param zip ZIPファイル
+     */
+    private void closeQuietly(ZipFile zip) {
+        try {
+            zip.close();
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to close uploaded zip file. partInfo=[" + partInfo + "]", e);
+        }
+    }
+
+    /**
+     * 呼び出し元のスレッドで、エントリ順にバリデーションする。
+     *
+     * @param tasks  エントリごとのバリデーションタスク
+     * @param <FORM> フォームクラスの型
+     * @return エントリ名をキーとする一括バリデーション結果
+     */
+    private static <FORM> Map<String, BulkValidationResult<FORM>> validateSequentially(
+            List<EntryValidationTask<FORM>> tasks) {
+        Map<String, BulkValidationResult<FORM>> results = new LinkedHashMap<String, BulkValidationResult<FORM>>();
+        boolean completed = false;
+        try {
+            for (EntryValidationTask<FORM> task : tasks) {
+                results.put(task.entry.getName(), task.validate());
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                // 結果を返却しないため、バリデーション済みのエントリの一時ファイルを削除する
+                ZipValidationResult.closeAll(results.values());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * ワーカースレッドで、エントリごとに並列にバリデーションする。
+     * <p/>
+     * ZIPファイルは全タスクの終了後にクローズするため、失敗したエントリがあっても他のエントリの終了を待つ。
+     * 複数のエントリで失敗した場合は、エントリ順で最初の例外を送出する。
+     * 失敗した場合、成功したエントリの一括バリデーション結果はクローズする。
+     *
+     * @param tasks  エントリごとのバリデーションタスク
+     * @param <FORM> フォームクラスの型
+     * @return エントリ名をキーとする一括バリデーション結果
+     */
+    private <FORM> Map<String, BulkValidationResult<FORM>> validateInParallel(
+            List<EntryValidationTask<FORM>> tasks) {
+        List<Future<BulkValidationResult<FORM>>> futures = new ArrayList<Future<BulkValidationResult<FORM>>>();
+        for (EntryValidationTask<FORM> task : tasks) {
+            futures.add(validationExecutor.submit(task));
+        }
+        Map<String, BulkValidationResult<FORM>> results = new LinkedHashMap<String, BulkValidationResult<FORM>>();
+        Throwable failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.put(tasks.get(i).entry.getName(), futures.get(i).get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                for (Future<BulkValidationResult<FORM>> future : futures) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                ZipValidationResult.closeAll(results.values());
+                throw new RuntimeException("interrupted while waiting for validation.", e);
+            }
+        }
+        if (failure != null) {
+            ZipValidationResult.closeAll(results.values());
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+        return results;
+    }
+
+    /**
+     * エントリにフォーマットを適用した一括バリデーションクラスを生成する。
+     *
+     * @param zip        ZIPファイル
+     * @param entry      エントリ
+     * @param layoutFile フォーマット定義ファイル
+     * @return 一括バリデーションクラス
+     * @throws IllegalStateException フォーマット適用に失敗した場合
+     */
+    private BulkValidator.ErrorHandlingBulkValidator applyFormat(ZipFile zip, ZipEntry entry, File layoutFile) {
+        InputStream in;
+        try {
+            // フォーマッタに入力ストリームを設定（markSupportedでなければならないのでBufferedInputStreamを使用）
+            in = new BufferedInputStream(zip.getInputStream(entry));
+        } catch (IOException e) {
+            throw new RuntimeException(concat(
+                    "failed to read zip entry. partInfo=[", partInfo, "] entry=[", entry.getName(), "]"), e);
+        }
+        DataRecordFormatter formatter;
+        try {
+            formatter = UploadHelper.createFormatter(layoutFile, in);
+        } catch (SyntaxErrorException e) {
+            FileUtil.closeQuietly(in);
+            throw createApplyFormatException(layoutFile, entry, e);
+        } catch (IllegalArgumentException e) {
+            FileUtil.closeQuietly(in);
+            throw createApplyFormatException(layoutFile, entry, e);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug(concat("validating zip entry. entry=[", entry.getName(), "] size=[", entry.getSize(), "]"));
+        }
+        return new BulkValidator(formatter, entry.getName())
+                .setUpMessageIdOnError(messageIdOnFormatError, messageIdOnValidationError, messageIdOnEmptyFile);
+    }
+
+    /**
+     * フォーマットの適用に失敗した際に送出する例外を作成する。
+     *
+     * @param layoutFile フォーマットファイル
+     * @param entry      エントリ
+     * @param e          元例外
+     * @return フォーマットの適用に失敗した際に送出する例外
+     */
+    private IllegalStateException createApplyFormatException(File layoutFile, ZipEntry entry, Throwable e) {
+        return new IllegalStateException(concat(
+                "fail applying format file. layoutFile=[", layoutFile.getAbsolutePath(), "] ",
+                "entry=[", entry.getName(), "] ",
+                "partInfo=[", partInfo, "]"), e);
+    }
+
+    /**
+     * 1エントリをバリデーションするタスク。
+     *
+     * @param <FORM> フォームクラスの型
+     */
+    private static final class EntryValidationTask<FORM> implements Callable<BulkValidationResult<FORM>> {
+
+        /** ヘルパー */
+        private final ZipUploadHelper helper;
+
+        /** ZIPファイル */
+        private final ZipFile zip;
+
+        /** エントリ */
+        private final ZipEntry entry;
+
+        /** フォーマット定義ファイル */
+        private final File layoutFile;
+
+        /** フォームクラス */
+        private final Class<FORM> formClass;
+
+        /** バリデーションメソッド名 */
+        private final String validateFor;
+
+        /** 引き継ぐスレッドコンテキスト */
+        private final ThreadContextSnapshot context;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param helper      ヘルパー
+         * @param zip         ZIPファイル
+         * @param entry       エントリ
+         * @param layoutFile  フォーマット定義ファイル
+         * @param formClass   フォームクラス
+         * @param validateFor バリデーションメソッド名
+         * @param context     引き継ぐスレッドコンテキスト
+         */
+        EntryValidationTask(ZipUploadHelper helper, ZipFile zip, ZipEntry entry, File layoutFile,
+                            Class<FORM> formClass, String validateFor, ThreadContextSnapshot context) {
+            this.helper = helper;
+            this.zip = zip;
+            this.entry = entry;
+            this.layoutFile = layoutFile;
+            this.formClass = formClass;
+            this.validateFor = validateFor;
+            this.context = context;
+        }
+
+        /**
+         * 呼び出し元のスレッドでバリデーションする。
+         *
+         * @return 一括バリデーション結果
+         */
+        BulkValidationResult<FORM> validate() {
+            return helper.applyFormat(zip, entry, layoutFile).validateWith(formClass, validateFor);
+        }
+
+        /** {@inheritDoc} */
+        public BulkValidationResult<FORM> call() {
+            ThreadContextSnapshot previous = context.apply();
+            try {
+                return validate();
+            } finally {
+                previous.apply();
+            }
+        }
+    }
+}
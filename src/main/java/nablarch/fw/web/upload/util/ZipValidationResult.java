@@ -0,0 +1,233 @@
+package nablarch.fw.web.upload.util;
+
+import static nablarch.core.util.Builder.concat;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.db.connection.DbConnectionContext;
+import nablarch.core.db.support.DbAccessSupport;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.message.ApplicationException;
+import nablarch.core.message.Message;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.web.upload.util.BulkValidationResult.ErrorMessages;
+
+/**
+ * ZIPファイルの全エントリの一括バリデーション結果を保持するクラス。
+ * <p/>
+ * エントリごとの{@link BulkValidationResult}をZIPファイル内の順序で保持し、
+ * エントリ名と行番号をキーとしてバリデーション結果を取得できる。
+ * 一括登録は、全エントリを呼び出し元の1トランザクションで行うか、エントリごとにコミットするかを選択できる。
+ * 使用後は{@link #close()}を呼び出し、各エントリの一括バリデーション結果が使用する一時ファイルを削除すること。
+ *
+ * @param <FORM> バリデーションに使用するフォームクラスの型
+ * @see ZipUploadHelper
+ */
+@Published
+public class ZipValidationResult<FORM> implements Closeable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(ZipValidationResult.class);
+
+    /** エントリ名をキーとする一括バリデーション結果（ZIPファイル内の順序） */
+    private final Map<String, BulkValidationResult<FORM>> results;
+
+    /** エントリごとにコミットするかどうか */
+    private boolean commitPerEntry = false;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param results エントリ名をキーとする一括バリデーション結果（ZIPファイル内の順序）
+     */
+    ZipValidationResult(Map<String, BulkValidationResult<FORM>> results) {
+        this.results = results;
+    }
+
+    /**
+     * 一括登録時に、エントリごとにコミットするかどうかを設定する。
+     * <p/>
+     * {@code true}を指定した場合、1エントリの登録が終わるごとにスレッドに紐付くトランザクションをコミットする。
+     * 登録中に失敗した場合でも、コミット済みのエントリは登録されたままとなる。
+     * デフォルトは{@code false}で、全エントリを呼び出し元のトランザクションで登録する（コミットは行わない）。
+     *
+     * @param commitPerEntry エントリごとにコミットする場合は{@code true}
+     * @return 本インスタンス
+     */
+    public ZipValidationResult<FORM> setCommitPerEntry(boolean commitPerEntry) {
+        this.commitPerEntry = commitPerEntry;
+        return this;
+    }
+
+    /**
+     * ZIPファイル内の順序で、エントリ名を取得する。
+     *
+     * @return エントリ名
+     */
+    public List<String> getEntryNames() {
+        return Collections.unmodifiableList(new ArrayList<String>(results.keySet()));
+    }
+
+    /**
+     * エントリの一括バリデーション結果を取得する。
+     *
+     * @param entryName エントリ名
+     * @return 一括バリデーション結果（エントリが存在しない場合は{@code null}）
+     */
+    public BulkValidationResult<FORM> getResult(String entryName) {
+        return results.get(entryName);
+    }
+
+    /**
+     * いずれかのエントリでエラーが発生しているかどうかを判定する。
+     *
+     * @return エラーが１件でも発生している場合は、{@code true}
+     */
+    public boolean hasError() {
+        for (BulkValidationResult<FORM> e : results.values()) {
+            if (e.hasError()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 全エントリでエラーが発生したレコード数の合計を取得する。
+     *
+     * @return エラーが発生したレコード数
+     */
+    public int getErrorCount() {
+        int count = 0;
+        for (BulkValidationResult<FORM> e : results.values()) {
+            count += e.getErrorCount();
+        }
+        return count;
+    }
+
+    /**
+     * エラーが発生したエントリのエラーメッセージを、エントリ名をキーとして取得する。
+     *
+     * @return エントリ名をキーとするエラーメッセージ（ZIPファイル内の順序）
+     */
+    public Map<String, ErrorMessages> getErrorMessages() {
+        Map<String, ErrorMessages> errors = new LinkedHashMap<String, ErrorMessages>();
+        for (Map.Entry<String, BulkValidationResult<FORM>> e : results.entrySet()) {
+            if (e.getValue().hasError()) {
+                errors.put(e.getKey(), e.getValue().getErrorMessages());
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * エントリ名と行番号を指定して、エラーメッセージを取得する。
+     *
+     * @param entryName    エントリ名
+     * @param recordNumber 行番号
+     * @return エラーメッセージ（エラーが発生していない行、または存在しないエントリの場合は空のリスト）
+     */
+    public List<Message> getErrorMessages(String entryName, int recordNumber) {
+        BulkValidationResult<FORM> result = results.get(entryName);
+        return result == null ? Collections.<Message>emptyList() : result.getErrorMessages(recordNumber);
+    }
+
+    /**
+     * エントリ名と行番号を指定して、バリデーション済みオブジェクトを取得する。
+     *
+     * @param entryName    エントリ名
+     * @param recordNumber 行番号
+     * @return バリデーション済みオブジェクト（エラーのレコード、または存在しないエントリの場合は{@code null}）
+     */
+    public FORM getValidObject(String entryName, int recordNumber) {
+        BulkValidationResult<FORM> result = results.get(entryName);
+        return result == null ? null : result.getValidObject(recordNumber);
+    }
+
+    /**
+     * ZIPファイル内の順序、行番号の昇順で、全エントリのエラーメッセージを取得する。
+     * <p/>
+     * バリデーションを打ち切ったエントリは、打ち切ったことを示すメッセージをそのエントリの最後に含む。
+     *
+     * @return 全てのエラーメッセージ
+     */
+    public List<Message> getAllMessages() {
+        List<Message> all = new ArrayList<Message>();
+        for (BulkValidationResult<FORM> e : results.values()) {
+            all.addAll(e.getAllErrorMessages());
+            if (e.isTruncated()) {
+                all.add(e.getTruncationMessage());
+            }
+        }
+        return all;
+    }
+
+    /**
+     * 指定されたSQLIDを用いて、全エントリのバリデーション済みオブジェクトをZIPファイル内の順序で一括登録する。
+     *
+     * @param dbAccessSupport 登録に使用する{@link DbAccessSupport}クラス
+     * @param insertSqlId     登録に使用するSQLID
+     * @return レコード登録件数
+     * @throws ApplicationException いずれかのエントリで一件でもエラーが発生していた場合
+     * @see #importAll(InsertionStrategy)
+     */
+    public int importWith(DbAccessSupport dbAccessSupport, String insertSqlId) throws ApplicationException {
+        return importAll(BulkValidationResult.<FORM>createInsertionStrategy(dbAccessSupport, insertSqlId));
+    }
+
+    /**
+     * 登録ロジックを用いて、全エントリのバリデーション済みオブジェクトをZIPファイル内の順序で一括登録する。
+     * <p/>
+     * いずれかのエントリでエラーが発生していた場合は、1件も登録しない。
+     * エントリごとにコミットするかどうかは{@link #setCommitPerEntry(boolean)}で指定する。
+     *
+     * @param strategy 登録ロジック
+     * @return レコード登録件数
+     * @throws ApplicationException いずれかのエントリで一件でもエラーが発生していた場合。
+     *          この例外には、全エントリのエラーメッセージが{@link #getAllMessages()}の順序で格納されている。
+     */
+    public int importAll(InsertionStrategy<FORM> strategy) throws ApplicationException {
+        if (hasError()) {
+            throw new ApplicationException(getAllMessages());
+        }
+        int count = 0;
+        for (Map.Entry<String, BulkValidationResult<FORM>> e : results.entrySet()) {
+            count += e.getValue().importAll(strategy);
+            if (commitPerEntry) {
+                DbConnectionContext.getTransactionManagerConnection().commit();
+                e.getValue().committed();
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.logDebug(concat("zip entry imported and committed. entry=[", e.getKey(), "]"));
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 全エントリの一括バリデーション結果をクローズし、一時ファイルを削除する。
+     *
+     * @see BulkValidationResult#close()
+     */
+    public void close() {
+        closeAll(results.values());
+    }
+
+    /**
+     * 一括バリデーション結果を全てクローズする。
+     *
+     * @param results 一括バリデーション結果
+     * @param <FORM>  バリデーションに使用するフォームクラスの型
+     */
+    static <FORM> void closeAll(Iterable<BulkValidationResult<FORM>> results) {
+        for (BulkValidationResult<FORM> e : results) {
+            e.close();
+        }
+    }
+}
@@ -8,8 +8,10 @@ import java.io.InputStream;
 import java.nio.charset.Charset;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
 
 /**
  * {@link BinaryUtil}のテストクラス。
@@ -96,4 +98,89 @@ public class BinaryUtilTest {
 
         BinaryUtil.toByteArray(stream);
     }
+
+    /** 1回の読み込みで少量ずつしか返却しない入力ストリームも、全て読み込めること。 */
+    @Test
+    public void testToByteArrayBulk() {
+        byte[] bytes = bytes(100000);
+        assertArrayEquals(bytes, BinaryUtil.toByteArray(new SlowInputStream(bytes)));
+        assertArrayEquals(new byte[0], BinaryUtil.toByteArray(new ByteArrayInputStream(new byte[0])));
+    }
+
+    /** 長さの見込みどおりの場合も、見込みと異なる場合も、全て読み込めること。 */
+    @Test
+    public void testToByteArrayWithExpectedLength() {
+        byte[] bytes = bytes(100000);
+        assertArrayEquals(bytes, BinaryUtil.toByteArray(new SlowInputStream(bytes), bytes.length));
+        assertArrayEquals(bytes, BinaryUtil.toByteArray(new SlowInputStream(bytes), 10));
+        assertArrayEquals(bytes, BinaryUtil.toByteArray(new SlowInputStream(bytes), 200000));
+        assertArrayEquals(new byte[0], BinaryUtil.toByteArray(new ByteArrayInputStream(new byte[0]), 0, 10));
+    }
+
+    /** 最大バイト数ちょうどの場合は読み込め、超えた場合は例外が送出されること。 */
+    @Test
+    public void testToByteArrayWithMaxSize() {
+        assertArrayEquals(bytes(10000), BinaryUtil.toByteArray(new ByteArrayInputStream(bytes(10000)), -1, 10000));
+        assertArrayEquals(bytes(10000), BinaryUtil.toByteArray(new ByteArrayInputStream(bytes(10000)), 10000, 10000));
+        try {
+            BinaryUtil.toByteArray(new ByteArrayInputStream(bytes(10001)), 10001, 10000);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("size=[10001] maxSize=[10000]"));
+        }
+        try {
+            BinaryUtil.toByteArray(new ByteArrayInputStream(bytes(10001)), -1, 10000);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("size=[10001] maxSize=[10000]"));
+        }
+        try {
+            BinaryUtil.toByteArray(new ByteArrayInputStream(bytes(10001)), 100, 10000);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("maxSize=[10000]"));
+        }
+    }
+
+    /** 読み込み後に入力ストリームがクローズされること。 */
+    @Test
+    public void testToByteArrayCloseStream() {
+        final boolean[] closed = {false};
+        InputStream stream = new ByteArrayInputStream(new byte[]{0x01}) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        BinaryUtil.toByteArray(stream, 1);
+        assertThat(closed[0], is(true));
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    /** 1回の読み込みで少量ずつしか返却しない入力ストリーム。 */
+    private static class SlowInputStream extends InputStream {
+
+        private final ByteArrayInputStream in;
+
+        SlowInputStream(byte[] bytes) {
+            in = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, Math.min(len, 777));
+        }
+    }
 }
@@ -0,0 +1,100 @@
+package nablarch.fw.web.upload.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+/**
+ * {@link BatchSizeController}のテストクラス。
+ */
+public class BatchSizeControllerTest {
+
+    /** 最小値と最大値が同じ場合、一括実行数が変更されないこと。 */
+    @Test
+    public void testFixed() {
+        BatchSizeController target = new BatchSizeController(100);
+        assertThat(target.isAdaptive(), is(false));
+        for (int i = 0; i < 30; i++) {
+            target.recordExecution(100, 1000L * (i + 1));
+        }
+        assertThat(target.getBatchSize(), is(100));
+    }
+
+    /** スループットが向上する間は一括実行数を増やし、上限を超えないこと。 */
+    @Test
+    public void testGrowToMax() {
+        BatchSizeController target = new BatchSizeController(100, 10, 1000);
+        assertThat(target.isAdaptive(), is(true));
+        for (int i = 0; i < 100; i++) {
+            int size = target.getBatchSize();
+            // 1回あたりの固定コストが大きく、件数が多いほど効率が良い
+            target.recordExecution(size, 1000000L + size * 1000L);
+            assertTrue(target.getBatchSize() <= 1000);
+        }
+        assertThat(target.getBatchSize(), is(1000));
+    }
+
+    /** スループットが最大となる一括実行数の近傍に収束すること。 */
+    @Test
+    public void testConverge() {
+        BatchSizeController target = new BatchSizeController(10, 10, 10000);
+        for (int i = 0; i < 300; i++) {
+            int size = target.getBatchSize();
+            target.recordExecution(size, elapsed(size));
+        }
+        for (int i = 0; i < 60; i++) {
+            int size = target.getBatchSize();
+            assertTrue("size=" + size, size >= 160 && size <= 640);
+            target.recordExecution(size, elapsed(size));
+        }
+    }
+
+    /** 一括実行数に満たないバッチ実行は計測対象とならないこと。 */
+    @Test
+    public void testIgnorePartialBatch() {
+        BatchSizeController target = new BatchSizeController(100, 10, 1000);
+        for (int i = 0; i < 30; i++) {
+            target.recordExecution(99, 1L);
+        }
+        assertThat(target.getBatchSize(), is(100));
+    }
+
+    /** 初期値が範囲外の場合、範囲内に収められること。 */
+    @Test
+    public void testClampInitialSize() {
+        assertThat(new BatchSizeController(5, 10, 1000).getBatchSize(), is(10));
+        assertThat(new BatchSizeController(5000, 10, 1000).getBatchSize(), is(1000));
+    }
+
+    /** 不正な範囲を指定した場合、例外が送出されること。 */
+    @Test
+    public void testInvalidRange() {
+        try {
+            new BatchSizeController(100, 0, 1000);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("minBatchSize must be greater than 0"));
+        }
+        try {
+            new BatchSizeController(100, 1000, 10);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("minBatchSize must not be greater than maxBatchSize"));
+        }
+    }
+
+    /**
+     * 一括実行数が320件前後で最もスループットが高くなる実行時間を算出する。
+     *
+     * @param size 一括実行数
+     * @return 実行時間（ナノ秒）
+     */
+    private static long elapsed(int size) {
+        double perRow = 1000.0 + 320000.0 / size + size * 3.0;
+        return (long) (size * perRow);
+    }
+}
@@ -1,20 +1,33 @@
 package nablarch.fw.web.upload.util;
 
+import nablarch.core.db.connection.ConnectionFactory;
 import nablarch.core.db.statement.ParameterizedSqlPStatement;
 import nablarch.core.db.support.DbAccessSupport;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.MessageUtil;
+import nablarch.core.repository.SystemRepository;
 import nablarch.fw.web.upload.PartInfo;
 import nablarch.test.support.db.helper.DatabaseTestRunner;
 import nablarch.test.support.db.helper.VariousDbTestHelper;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
 
 /**
  * {@link BulkValidationResult}のテストケース。
@@ -24,9 +37,15 @@ import static org.junit.Assert.assertThat;
 @RunWith(DatabaseTestRunner.class)
 public class BulkValidationResultTest extends TestSetUpper {
 
+    @BeforeClass
+    public static void createCheckpointTable() {
+        VariousDbTestHelper.createTable(TestUploadCheckpoint.class);
+    }
+
     @Before
     public void deleteTable() throws SQLException {
         VariousDbTestHelper.delete(TestCities.class);
+        VariousDbTestHelper.delete(TestUploadCheckpoint.class);
     }
 
     @Test
@@ -66,6 +85,379 @@ public class BulkValidationResultTest extends TestSetUpper {
         assertRecordCount(3);
     }
 
+    /**
+     * 公開APIで一括実行数を設定できること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testSetBatchSize() throws SQLException {
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>().setBatchSize(2);
+        assertThat(target.getBatchSize(), is(2));
+        int cnt = exec(target);
+        assertThat(cnt, is(3));
+        assertRecordCount(3);
+    }
+
+    /**
+     * 一括実行数を自動調整する場合でも、全件登録されること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testAdaptiveBatchSize() throws SQLException {
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(1)
+                .setAdaptiveBatchSize(1, 4);
+        assertThat(target.createBatchSizeController().isAdaptive(), is(true));
+        for (long i = 1; i <= 50; i++) {
+            target.addValidObject(new Form(i, "city" + i));
+        }
+        int cnt = target.importAll(new MyStrategy());
+        TestSetUpper.tmConn.commit();
+        assertThat(cnt, is(50));
+        assertRecordCount(50);
+    }
+
+    /** 不正な一括実行数を指定した場合、例外が送出されること。 */
+    @Test
+    public void testInvalidBatchSize() {
+        try {
+            new BulkValidationResult<Form>().setBatchSize(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("batchSize must be greater than 0"));
+        }
+        try {
+            new BulkValidationResult<Form>().setAdaptiveBatchSize(10, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("maxBatchSize"));
+        }
+    }
+
+    /**
+     * 複数のコネクションで並列に登録した場合、全パーティションがコミットされること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testImportAllInParallel() throws SQLException {
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(2);
+        for (long i = 0; i < 10; i++) {
+            target.addValidObject(new Form(i, "city" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ParallelImportResult result = target.importAllInParallel(
+                    new MyStrategy(), connectionFactory(), executor, 3);
+            assertThat(result.isCommitted(), is(true));
+            assertThat(result.getImportedCount(), is(10));
+            assertThat(result.getFailedPartitions().isEmpty(), is(true));
+            List<ParallelImportResult.Partition> partitions = result.getPartitions();
+            assertThat(partitions.size(), is(3));
+            assertThat(partitions.get(0).getFromIndex(), is(0));
+            assertThat(partitions.get(0).getSize(), is(4));
+            assertThat(partitions.get(1).getFromIndex(), is(4));
+            assertThat(partitions.get(2).getFromIndex(), is(7));
+            assertThat(partitions.get(2).getImportedCount(), is(3));
+        } finally {
+            executor.shutdown();
+        }
+        assertRecordCount(10);
+    }
+
+    /**
+     * いずれかのパーティションで登録に失敗した場合、全パーティションがロールバックされ、
+     * 失敗したパーティションが結果から取得できること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testImportAllInParallelFailure() throws SQLException {
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(1);
+        for (long i = 0; i < 6; i++) {
+            // 5件目はカラム長を超えるため登録に失敗する
+            target.addValidObject(new Form(i, i == 4 ? "toolongcityname" : "city" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ParallelImportResult result = target.importWithInParallel(
+                    new DbAccessSupport(BasicValidatingStrategyTest.class), "INSERT_SQL",
+                    connectionFactory(), executor, 3);
+            assertThat(result.isCommitted(), is(false));
+            assertThat(result.getImportedCount(), is(0));
+            List<ParallelImportResult.Partition> failed = result.getFailedPartitions();
+            assertThat(failed.size(), is(1));
+            assertThat(failed.get(0).getIndex(), is(2));
+            assertThat(failed.get(0).getFailure() != null, is(true));
+        } finally {
+            executor.shutdown();
+        }
+        assertRecordCount(0);
+    }
+
+    /** 登録対象が存在しない場合、パーティションを作成せずに終了すること。 */
+    @Test
+    public void testImportAllInParallelEmpty() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ParallelImportResult result = new BulkValidationResult<Form>().importAllInParallel(
+                    new MyStrategy(), connectionFactory(), executor, 4);
+            assertThat(result.isCommitted(), is(true));
+            assertThat(result.getPartitions().isEmpty(), is(true));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 全件の登録が完了した場合、チェックポイントが削除されること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testImportAllWithCheckpoint() throws SQLException {
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(2);
+        for (long i = 1; i <= 5; i++) {
+            target.addValidObject(new Form(i, "city" + i));
+        }
+        int cnt = target.importAllWithCheckpoint(new MyStrategy(), "digest1", 1);
+        assertThat(cnt, is(5));
+        assertRecordCount(5);
+        assertNoCheckpoint("digest1");
+    }
+
+    /**
+     * 登録途中で失敗した場合、最後のチェックポイントまでがコミットされ、
+     * 再開時にはチェックポイント以降のレコードのみが登録されること。
+     * チェックポイントにはアップロードファイル上の行番号が記録されること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testResumeImportAll() throws SQLException {
+        BulkValidationResult<Form> failing = new BulkValidationResult<Form>(1);
+        for (long i = 1; i <= 5; i++) {
+            // 1行目はヘッダのため、行番号は2から始まる
+            // 4件目（5行目）はカラム長を超えるため登録に失敗する
+            failing.addValidObject((int) i + 1, new Form(i, i == 4 ? "toolongcityname" : "city" + i));
+        }
+        try {
+            failing.importAllWithCheckpoint(new MyStrategy(), "digest2", 1);
+            fail();
+        } catch (RuntimeException e) {
+            TestSetUpper.tmConn.rollback();
+        }
+        assertRecordCount(3);
+        assertCheckpoint("digest2", 4);
+
+        BulkValidationResult<Form> resubmitted = new BulkValidationResult<Form>(1);
+        for (long i = 1; i <= 5; i++) {
+            resubmitted.addValidObject((int) i + 1, new Form(i, "city" + i));
+        }
+        int cnt = resubmitted.resumeImportAll(new MyStrategy(), "digest2", 2);
+        assertThat(cnt, is(2));
+        assertRecordCount(5);
+        assertNoCheckpoint("digest2");
+    }
+
+    /**
+     * チェックポイントの行番号が妥当なレコードの行番号に含まれない場合、例外が送出されること。
+     */
+    @Test
+    public void testResumeImportAllWithUnknownRecordNumber() {
+        VariousDbTestHelper.setUpTable(new TestUploadCheckpoint("digest4", 1));
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(1);
+        target.addValidObject(2, new Form(1L, "tokyo"));
+        target.addValidObject(3, new Form(2L, "osaka"));
+        try {
+            target.resumeImportAll(new MyStrategy(), "digest4", 1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("checkpoint does not match any record number"));
+        }
+    }
+
+    /**
+     * チェックポイントがレコード件数を超えている場合、例外が送出されること。
+     */
+    @Test
+    public void testResumeImportAllWithInvalidCheckpoint() {
+        VariousDbTestHelper.setUpTable(new TestUploadCheckpoint("digest3", 10));
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(1);
+        target.addValidObject(new Form(1L, "tokyo"));
+        try {
+            target.resumeImportAll(new MyStrategy(), "digest3", 1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("checkpoint exceeds the number of records"));
+        }
+    }
+
+    /**
+     * MERGE文を{@link BulkValidationResult#importWith(DbAccessSupport, String)}でバッチ実行し、
+     * 登録済みのレコードが更新され、未登録のレコードが登録されること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testMergeWithMergeStatement() throws SQLException {
+        VariousDbTestHelper.setUpTable(new TestCities(1L, "tokyo"), new TestCities(2L, "osaka"));
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(2);
+        target.addValidObject(new Form(2L, "kobe"));
+        target.addValidObject(new Form(3L, "nara"));
+        int cnt = target.importWith(new DbAccessSupport(BasicValidatingStrategyTest.class), "MERGE_SQL");
+        TestSetUpper.tmConn.commit();
+        assertThat(cnt, is(2));
+        assertCities("tokyo", "kobe", "nara");
+    }
+
+    /**
+     * キーの検索、更新、登録のSQLで、登録済みのレコードが更新され、未登録のレコードが登録されること。
+     * 一括実行数の範囲内外を問わず、ファイル内で同じキーが複数回現れた場合は後に現れた内容が反映されること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testMergeWithSelectAndUpdate() throws SQLException {
+        VariousDbTestHelper.setUpTable(new TestCities(1L, "tokyo"), new TestCities(2L, "osaka"));
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(2);
+        target.addValidObject(new Form(2L, "kobe"));
+        target.addValidObject(new Form(3L, "nara"));
+        target.addValidObject(new Form(3L, "sendai"));
+        target.addValidObject(new Form(4L, "sapporo"));
+        target.addValidObject(new Form(5L, "fukuoka"));
+        target.addValidObject(new Form(5L, "kumamoto"));
+        MergeImportResult result = target.mergeWith(new DbAccessSupport(BasicValidatingStrategyTest.class),
+                "id", "SELECT_KEY_SQL", "UPDATE_SQL", "INSERT_SQL");
+        TestSetUpper.tmConn.commit();
+        assertThat(result.getInsertedCount(), is(3));
+        assertThat(result.getUpdatedCount(), is(3));
+        assertThat(result.getMergedCount(), is(6));
+        assertCities("tokyo", "kobe", "sendai", "sapporo", "kumamoto");
+    }
+
+    /**
+     * 文字列（VARCHAR型のカラム）をキーとした場合に、登録済みのレコードが更新され、未登録のレコードが登録されること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testMergeWithStringKey() throws SQLException {
+        VariousDbTestHelper.setUpTable(new TestCities(1L, "tokyo"), new TestCities(3L, "osaka"));
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(2);
+        target.addValidObject(new Form(2L, "osaka"));
+        target.addValidObject(new Form(3L, "nara"));
+        target.addValidObject(new Form(1L, "tokyo"));
+        MergeImportResult result = target.mergeWith(new DbAccessSupport(BasicValidatingStrategyTest.class),
+                "city", "SELECT_CITY_KEY_SQL", "UPDATE_BY_CITY_SQL", "INSERT_SQL");
+        TestSetUpper.tmConn.commit();
+        assertThat(result.getInsertedCount(), is(1));
+        assertThat(result.getUpdatedCount(), is(2));
+        assertCities("tokyo", "osaka", "nara");
+    }
+
+    /**
+     * キーを検索するSQLがキー以外のカラムを取得する場合、例外が発生すること。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testMergeWithMultipleKeyColumns() throws SQLException {
+        VariousDbTestHelper.setUpTable(new TestCities(1L, "tokyo"));
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>(2);
+        target.addValidObject(new Form(1L, "kyoto"));
+        try {
+            target.mergeWith(new DbAccessSupport(BasicValidatingStrategyTest.class),
+                    "id", "SELECT_ALL_COLUMNS_SQL", "UPDATE_SQL", "INSERT_SQL");
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("SELECT_ALL_COLUMNS_SQL"));
+        }
+    }
+
+    /**
+     * バリデーション済みオブジェクトが存在しない場合、何も登録されないこと。
+     *
+     * @throws SQLException 予期しない例外
+     */
+    @Test
+    public void testMergeEmpty() throws SQLException {
+        MergeImportResult result = new BulkValidationResult<Form>().mergeWith(
+                new DbAccessSupport(BasicValidatingStrategyTest.class),
+                "id", "SELECT_KEY_SQL", "UPDATE_SQL", "INSERT_SQL");
+        assertThat(result.getMergedCount(), is(0));
+        assertRecordCount(0);
+    }
+
+    /**
+     * {@link BulkValidationResult#getErrorMessages()}は、エラーメッセージを追加するまで同じスナップショットを返却し、
+     * スナップショットを変更しても結果には反映されないこと。
+     */
+    @Test
+    public void testErrorMessagesSnapshot() {
+        BulkValidationResult<Form> target = new BulkValidationResult<Form>();
+        target.addError(1, MessageUtil.createMessage(MessageLevel.ERROR, "MSG00102", 1, 0));
+        BulkValidationResult.ErrorMessages snapshot = target.getErrorMessages();
+        assertThat(target.getErrorMessages(), is(sameInstance(snapshot)));
+
+        snapshot.clear();
+        assertThat(target.hasError(), is(true));
+        assertThat(target.getErrorMessages(1).size(), is(1));
+        assertThat(target.getAllErrorMessages().size(), is(1));
+
+        target.addError(3, MessageUtil.createMessage(MessageLevel.ERROR, "MSG00102", 3, 2));
+        assertThat(target.getErrorMessages(), is(not(sameInstance(snapshot))));
+        assertThat(target.getErrorMessages().keySet().toArray(), is(new Object[] {1, 3}));
+        assertThat(target.getAllErrorMessages().size(), is(2));
+    }
+
+    /**
+     * 数値のキーは、型およびスケールを問わず値が等しければ同じキーとみなされること。
+     * 文字列のキーは、末尾の空白を除いて比較されること。
+     */
+    @Test
+    public void testNormalizeKey() {
+        assertThat(MergeImporter.normalize(1L), is(MergeImporter.normalize(new BigDecimal("1.00"))));
+        assertThat(MergeImporter.normalize(0), is(MergeImporter.normalize(new BigDecimal("0.0"))));
+        assertThat(MergeImporter.normalize(10), is((Object) "10"));
+        assertThat(MergeImporter.normalize("abc"), is((Object) "abc"));
+        assertThat(MergeImporter.normalize("abc   "), is(MergeImporter.normalize("abc")));
+        assertThat(MergeImporter.normalize(" abc"), is((Object) " abc"));
+        assertThat(MergeImporter.normalize("   "), is((Object) ""));
+    }
+
+    private static void assertCities(String... expected) {
+        List<TestCities> actual = VariousDbTestHelper.findAll(TestCities.class, "id");
+        assertThat(actual.size(), is(expected.length));
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(actual.get(i).id, is((long) i + 1));
+            assertThat(actual.get(i).city, is(expected[i]));
+        }
+    }
+
+    private static void assertCheckpoint(String digest, int expected) {
+        List<TestUploadCheckpoint> checkpoints = VariousDbTestHelper.findAll(TestUploadCheckpoint.class);
+        for (TestUploadCheckpoint e : checkpoints) {
+            if (e.fileDigest.equals(digest)) {
+                assertThat(e.lastRecordNumber, is(expected));
+                return;
+            }
+        }
+        fail("checkpoint not found. digest=" + digest);
+    }
+
+    private static void assertNoCheckpoint(String digest) {
+        for (TestUploadCheckpoint e : VariousDbTestHelper.findAll(TestUploadCheckpoint.class)) {
+            if (e.fileDigest.equals(digest)) {
+                fail("checkpoint remains. digest=" + digest);
+            }
+        }
+    }
+
+    private static ConnectionFactory connectionFactory() {
+        return SystemRepository.get("connectionFactory");
+    }
 
     private void assertRecordCount(int expected) throws SQLException {
         assertThat(VariousDbTestHelper.findAll(TestCities.class).size(), is(expected));
@@ -4,15 +4,28 @@ import nablarch.core.dataformat.DataRecord;
 import nablarch.core.dataformat.DataRecordFormatter;
 import nablarch.core.dataformat.FixedLengthDataRecordFormatter;
 import nablarch.core.dataformat.InvalidDataFormatException;
+import nablarch.core.db.support.DbAccessSupport;
+import nablarch.core.message.ApplicationException;
+import nablarch.core.message.Message;
+import nablarch.fw.web.upload.PartInfo;
 import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.junit.matchers.JUnitMatchers.containsString;
@@ -23,6 +36,11 @@ import static org.junit.matchers.JUnitMatchers.containsString;
 @RunWith(DatabaseTestRunner.class)
 public class BulkValidatorTest extends TestSetUpper {
 
+    @Before
+    public void deleteTable() throws SQLException {
+        VariousDbTestHelper.delete(TestCities.class);
+    }
+
     /** IO例外が発生した場合、実行時例外にラップされること。 */
     @Test
     public void testIOException() {
@@ -56,4 +74,304 @@ public class BulkValidatorTest extends TestSetUpper {
             assertThat(e.getMessage(), containsString("for testing."));
         }
     }
+
+    /** バリデーションと並行して、全レコードが登録されること。 */
+    @Test
+    public void testValidateAndImportWith() throws IOException {
+        BulkValidator.ErrorHandlingBulkValidator target = prepare("1tokyo    2osaka    3kyoto    ");
+
+        int cnt = target.validateAndImportWith(
+                Form.class, "upload", new DbAccessSupport(BasicValidatingStrategyTest.class), "INSERT_SQL");
+        tmConn.commit();
+
+        assertThat(cnt, is(3));
+        List<TestCities> actual = VariousDbTestHelper.findAll(TestCities.class, "id");
+        assertThat(actual.size(), is(3));
+        assertThat(actual.get(2).city, is("kyoto"));
+    }
+
+    /** エラーが発生した場合、例外が送出され、１件も登録されないこと。 */
+    @Test
+    public void testValidateAndImportWithError() throws IOException {
+        BulkValidator.ErrorHandlingBulkValidator target = prepare("1tokyo    2osaka    Zkyoto    ");
+        try {
+            target.validateAndImportWith(
+                    Form.class, "upload", new DbAccessSupport(BasicValidatingStrategyTest.class), "INSERT_SQL");
+            fail();
+        } catch (ApplicationException e) {
+            assertThat(e.getMessages().size(), is(1));
+            assertThat(e.getMessages().get(0).getMessageId(), is("MSG00098"));
+        }
+        tmConn.commit();
+        assertThat(VariousDbTestHelper.findAll(TestCities.class).size(), is(0));
+    }
+
+    /**
+     * 全件登録モードの場合、エラー発生前にバッチ実行済みのレコードもロールバックされること。
+     * （１件ごとにexecuteBatchする）
+     */
+    @Test
+    public void testStreamingAllOrNothing() throws IOException {
+        StreamingImportResult<Form> result = new StreamingImportResult<Form>(
+                BulkValidationResult.<Form>createInsertionStrategy(
+                        new DbAccessSupport(BasicValidatingStrategyTest.class), "INSERT_SQL"), 1, true);
+        BulkValidator validator = applyFormat("1tokyo    2osaka    3aa       4nara     ");
+        new BulkValidator.BulkValidationDriver<Form>(
+                strategy(), validator.getFormatter(), "hoge.txt", result).validateAll();
+        int cnt = result.complete();
+        tmConn.commit();
+
+        assertThat(cnt, is(0));
+        assertThat(result.hasError(), is(true));
+        assertThat(result.getErrorMessages().containsKey(3), is(true));
+        assertThat(VariousDbTestHelper.findAll(TestCities.class).size(), is(0));
+    }
+
+    /**
+     * 全件登録モードでバッチ実行中に例外が発生した場合、本メソッドで登録したレコードのみがロールバックされ、
+     * 例外が送出されること。
+     */
+    @Test
+    public void testStreamingAllOrNothingRollbackOnFailure() throws IOException {
+        InsertionStrategy<Form> insertionStrategy = BulkValidationResult.createInsertionStrategy(
+                new DbAccessSupport(BasicValidatingStrategyTest.class), "INSERT_SQL");
+        // 呼び出し前に同じトランザクションで登録したレコード
+        BatchInserter<Form> before = new BatchInserter<Form>(insertionStrategy, 1);
+        before.add(new Form(9L, "nara"));
+
+        // 3件目が1件目と主キーが重複するため、3回目のバッチ実行で例外が発生する
+        BulkValidator validator = applyFormat("1tokyo    2osaka    1tokyo    ").setBatchSize(1);
+        try {
+            validator.validateAndImportAll(strategy(), insertionStrategy, true);
+            fail();
+        } catch (RuntimeException e) {
+            // OK
+        }
+        tmConn.commit();
+
+        List<TestCities> actual = VariousDbTestHelper.findAll(TestCities.class, "id");
+        assertThat(actual.size(), is(1));
+        assertThat(actual.get(0).city, is("nara"));
+    }
+
+    /** 全件登録モードでない場合、エラーとなったレコード以外が登録されること。 */
+    @Test
+    public void testStreamingValidOnly() throws IOException {
+        StreamingImportResult<Form> result = new StreamingImportResult<Form>(
+                BulkValidationResult.<Form>createInsertionStrategy(
+                        new DbAccessSupport(BasicValidatingStrategyTest.class), "INSERT_SQL"), 2, false);
+        BulkValidator validator = applyFormat("1tokyo    2osaka    3aa       4nara     ");
+        new BulkValidator.BulkValidationDriver<Form>(
+                strategy(), validator.getFormatter(), "hoge.txt", result).validateAll();
+        int cnt = result.complete();
+        tmConn.commit();
+
+        assertThat(cnt, is(3));
+        assertThat(result.hasError(), is(true));
+        assertThat(VariousDbTestHelper.findAll(TestCities.class).size(), is(3));
+    }
+
+    /**
+     * 並列にバリデーションした場合でも、バリデーション済みオブジェクトの順序と
+     * エラーメッセージの行番号が逐次実行時と同じになること。
+     */
+    @Test
+    public void testValidateInParallel() throws IOException {
+        String content = "1tokyo    2osaka    3aa       4nara     Zkobe     6sendai   7kyoto    ";
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BulkValidationResult<Form> result = applyFormat(content)
+                    .setValidationExecutor(executor, 2)
+                    .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                    .validateWith(Form.class, "upload");
+
+            assertThat(result.getErrorMessages().size(), is(2));
+            assertThat(result.getErrorMessages().get(3).get(0).getMessageId(), is("MSG00099"));
+            assertThat(result.getErrorMessages().get(5).get(0).getMessageId(), is("MSG00098"));
+
+            BulkValidationResult<Form> valid = applyFormat("1tokyo    2osaka    3kyoto    4nara     5kobe     ")
+                    .setValidationExecutor(executor, 2)
+                    .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                    .validateWith(Form.class, "upload");
+            List<Form> objects = valid.getValidObjects();
+            assertThat(objects.size(), is(5));
+            for (int i = 0; i < objects.size(); i++) {
+                assertThat(objects.get(i).getId(), is((long) (i + 1)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /** 行番号を指定して、バリデーション済みオブジェクトとエラーメッセージが取得できること。 */
+    @Test
+    public void testLookupByRecordNumber() throws IOException {
+        String content = "1tokyo    2osaka    3aa       4nara     Zkobe     6sendai   7kyoto    ";
+        BulkValidationResult<Form> result = applyFormat(content)
+                .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                .validateWith(Form.class, "upload");
+
+        assertThat(result.getRecordCount(), is(7));
+        for (int i = 0; i < 7; i++) {
+            assertThat(result.getRecordNumber(i), is(i + 1));
+        }
+        assertThat(result.getValidObject(1), is(notNullValue()));
+        assertThat(result.getValidObject(3), is(nullValue()));
+        assertThat(result.getValidObject(5), is(nullValue()));
+        assertThat(result.getValidObject(8), is(nullValue()));
+        assertThat(result.getValidObject(4).getCity(), is("nara"));
+        assertThat(result.getValidObject(7).getCity(), is("kyoto"));
+        assertThat(result.getValidObject(3), is(nullValue()));
+        assertThat(result.getErrorMessages(3).get(0).getMessageId(), is("MSG00099"));
+        assertThat(result.getErrorMessages(5).get(0).getMessageId(), is("MSG00098"));
+        assertThat(result.getErrorMessages(4).isEmpty(), is(true));
+    }
+
+    /** キーが重複した行が、先に現れた行の行番号と共にエラーとなること。 */
+    @Test
+    public void testUniqueKey() throws IOException {
+        String content = "1tokyo    2osaka    1kyoto    3nara     2osaka    ";
+        BulkValidationResult<Form> result = applyFormat(content)
+                .setUniqueKey("MSG00102", "id")
+                .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                .validateWith(Form.class, "upload");
+
+        assertThat(result.getErrorCount(), is(2));
+        Message first = result.getErrorMessages(3).get(0);
+        assertThat(first.getMessageId(), is("MSG00102"));
+        assertThat(first.formatMessage(), is("3行目のキーが1行目と重複しています。"));
+        assertThat(result.getErrorMessages(5).get(0).formatMessage(), is("5行目のキーが2行目と重複しています。"));
+        assertThat(result.getValidObject(4), is(notNullValue()));
+        assertThat(result.getValidObject(3), is(nullValue()));
+
+        // 複数のプロパティの組をキーとする場合
+        BulkValidationResult<Form> composite = applyFormat(content)
+                .setUniqueKey("MSG00102", "id", "city")
+                .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                .validateWith(Form.class, "upload");
+        assertThat(composite.getErrorCount(), is(1));
+        assertThat(composite.getErrorMessages().keySet().toArray(), is(new Object[] {5}));
+    }
+
+    /** 並列にバリデーションした場合も、読み込み順でキーの重複が判定されること。 */
+    @Test
+    public void testUniqueKeyInParallel() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 40; i++) {
+            content.append(i % 10).append(String.format("%-9s", "c" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BulkValidationResult<Form> result = applyFormat(content.toString())
+                    .setValidationExecutor(executor, 3)
+                    .setUniqueKey("MSG00102", "id")
+                    .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                    .validateWith(Form.class, "upload");
+            assertThat(result.getErrorCount(), is(30));
+            for (int i = 1; i <= 10; i++) {
+                assertThat(result.getValidObject(i), is(notNullValue()));
+            }
+            assertThat(result.getErrorMessages(37).get(0).formatMessage(), is("37行目のキーが7行目と重複しています。"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /** 最大エラー件数に達した時点でバリデーションが打ち切られること。 */
+    @Test
+    public void testMaxErrorCount() throws IOException {
+        BulkValidationResult<Form> result = applyFormat("1tokyo    2a        3aa       4nara     5b        ")
+                .setMaxErrorCount(2, "MSG00101")
+                .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                .validateWith(Form.class, "upload");
+
+        assertThat(result.isTruncated(), is(true));
+        assertThat(result.getErrorMessages().size(), is(2));
+        assertThat(result.getTruncationMessage().getMessageId(), is("MSG00101"));
+        try {
+            result.getValidObjects();
+            fail();
+        } catch (ApplicationException e) {
+            List<Message> messages = e.getMessages();
+            assertThat(messages.size(), is(3));
+            assertThat(messages.get(2).getMessageId(), is("MSG00101"));
+            assertThat(messages.get(2).formatMessage(), is("エラーが多いため3行目で処理を中断しました。エラー件数=[2]"));
+        }
+
+        // 閾値に達しない場合は打ち切らない
+        BulkValidationResult<Form> notTruncated = applyFormat("1tokyo    2a        3osaka    ")
+                .setMaxErrorCount(2, "MSG00101")
+                .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                .validateWith(Form.class, "upload");
+        assertThat(notTruncated.isTruncated(), is(false));
+        assertThat(notTruncated.getTruncationMessage() == null, is(true));
+    }
+
+    /** サンプル件数処理後のエラー率が最大エラー率を超えた時点でバリデーションが打ち切られること。 */
+    @Test
+    public void testMaxErrorRatio() throws IOException {
+        String content = "1a        2tokyo    3b        4c        5osaka    6nara     ";
+        BulkValidationResult<Form> result = applyFormat(content)
+                .setMaxErrorRatio(0.5, 4, "MSG00101")
+                .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                .validateWith(Form.class, "upload");
+        // 3行目まではサンプル件数に満たないため判定しない
+        assertThat(result.isTruncated(), is(true));
+        assertThat(result.getErrorMessages().size(), is(3));
+        assertThat(result.getErrorMessages().lastKey(), is(4));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BulkValidationResult<Form> parallel = applyFormat(content)
+                    .setValidationExecutor(executor, 1)
+                    .setMaxErrorRatio(0.5, 4, "MSG00101")
+                    .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                    .validateWith(Form.class, "upload");
+            assertThat(parallel.isTruncated(), is(true));
+            assertThat(parallel.getErrorMessages().lastKey(), is(4));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /** 閾値に不正な値を指定した場合、例外が送出されること。 */
+    @Test
+    public void testInvalidErrorThreshold() throws IOException {
+        BulkValidator validator = applyFormat("1tokyo    ");
+        try {
+            validator.setMaxErrorCount(0, "MSG00101");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("maxErrorCount"));
+        }
+        try {
+            validator.setMaxErrorRatio(1.0, 10, "MSG00101");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("maxErrorRatio"));
+        }
+        try {
+            validator.setMaxErrorRatio(0.5, 0, "MSG00101");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("sampleSize"));
+        }
+        validator.getFormatter().close();
+    }
+
+    private BulkValidator.ErrorHandlingBulkValidator prepare(String content) throws IOException {
+        return applyFormat(content).setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100");
+    }
+
+    private BulkValidator applyFormat(String content) throws IOException {
+        File uploaded = testFileWriter.writeFile("moge.txt", content);
+        PartInfo part = PartInfo.newInstance("fuga");
+        part.setSavedFile(uploaded);
+        return new UploadHelper(part).applyFormat(FORMAT_BASE_PATH_NAME, "FMT001");
+    }
+
+    private static BasicValidatingStrategy<Form> strategy() {
+        return new BasicValidatingStrategy<Form>(Form.class, "upload",
+                new BulkValidator.ErrorHandlingBulkValidator(null, "MSG00098", "MSG00099", "MSG00100"));
+    }
 }
@@ -0,0 +1,180 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.StringResource;
+import nablarch.fw.web.upload.util.BulkValidationResult.ErrorMessages;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link CompactErrorStore}のテストクラス。
+ */
+public class CompactErrorStoreTest {
+
+    /** 行番号の昇順でエラーメッセージが取得できること。 */
+    @Test
+    public void testAdd() {
+        CompactErrorStore target = new CompactErrorStore(0);
+        assertTrue(target.isEmpty());
+        target.add(2, message("E2"));
+        target.add(5, Arrays.asList(message("E5a"), message("E5b")));
+        target.add(3, message("E3"));
+
+        assertFalse(target.isEmpty());
+        assertThat(target.getErrorCount(), is(3));
+        assertThat(target.getOmittedCount(), is(0));
+        assertThat(ids(target.getAllMessages()), is(Arrays.asList("E2", "E3", "E5a", "E5b")));
+
+        ErrorMessages errorMessages = target.toErrorMessages();
+        assertThat(errorMessages.keySet().toArray(), is(new Object[] {2, 3, 5}));
+        assertThat(ids(errorMessages.get(5)), is(Arrays.asList("E5a", "E5b")));
+        assertThat(ids(errorMessages.getAllMessages()), is(Arrays.asList("E2", "E3", "E5a", "E5b")));
+        assertThat(errorMessages.getOmittedCount(), is(0));
+    }
+
+    /** 行番号を指定してエラーメッセージが取得できること。 */
+    @Test
+    public void testGet() {
+        CompactErrorStore target = new CompactErrorStore(0);
+        target.add(2, message("E2"));
+        target.add(5, Arrays.asList(message("E5a"), message("E5b")));
+
+        assertThat(ids(target.get(2)), is(Arrays.asList("E2")));
+        assertThat(ids(target.get(5)), is(Arrays.asList("E5a", "E5b")));
+        assertThat(target.get(1), is(nullValue()));
+        assertThat(target.get(3), is(nullValue()));
+        assertThat(target.get(6), is(nullValue()));
+    }
+
+    /** 同じ行番号を追加した場合、置き換えられること。 */
+    @Test
+    public void testReplace() {
+        CompactErrorStore target = new CompactErrorStore(0);
+        target.add(1, message("E1"));
+        target.add(2, message("E2"));
+        target.add(1, message("E1x"));
+
+        assertThat(target.getErrorCount(), is(2));
+        assertThat(ids(target.getAllMessages()), is(Arrays.asList("E1x", "E2")));
+    }
+
+    /**
+     * バリデーションエラーのメッセージは、行番号を除いた部分（テンプレート）が共有され、
+     * 取得時に行番号を埋め込んだメッセージが生成されること。
+     */
+    @Test
+    public void testSharedTemplate() {
+        CompactErrorStore target = new CompactErrorStore(0);
+        StringResource resource = resource("MSG00099");
+        Message nested = message("N1");
+        target.add(1, new RecordErrorMessage(MessageLevel.ERROR, resource, 1, nested));
+        target.add(2, new RecordErrorMessage(MessageLevel.ERROR, resource, 2, message("N1")));
+        target.add(3, Arrays.asList(
+                (Message) new RecordErrorMessage(MessageLevel.ERROR, resource, 3, message("N1")),
+                new RecordErrorMessage(MessageLevel.ERROR, resource, 3, message("N2"))));
+
+        List<Message> all = target.getAllMessages();
+        assertThat(all.size(), is(4));
+        int[] recordNumbers = {1, 2, 3, 3};
+        for (int i = 0; i < recordNumbers.length; i++) {
+            RecordErrorMessage actual = (RecordErrorMessage) all.get(i);
+            assertThat(actual.getMessageId(), is("MSG00099"));
+            assertThat(actual.getRecordNumber(), is(recordNumbers[i]));
+            assertThat(actual.getStringResource(), is(sameInstance(resource)));
+        }
+        // 等しい元のメッセージは最初に追加したインスタンスが共有される
+        assertThat(((RecordErrorMessage) all.get(1)).getNestedMessage(), is(sameInstance(nested)));
+        assertThat(((RecordErrorMessage) all.get(2)).getNestedMessage(), is(sameInstance(nested)));
+        assertThat(((RecordErrorMessage) all.get(3)).getNestedMessage().getMessageId(), is("N2"));
+        assertThat(((RecordErrorMessage) target.get(2).get(0)).getRecordNumber(), is(2));
+        assertThat(((RecordErrorMessage) target.toErrorMessages().get(3).get(1)).getRecordNumber(), is(3));
+
+        // 行番号が一致しないメッセージはそのまま保持される
+        RecordErrorMessage other = new RecordErrorMessage(MessageLevel.ERROR, resource, 9, nested);
+        target.add(4, other);
+        assertThat(target.get(4).get(0), is(sameInstance((Message) other)));
+    }
+
+    /** 上限を超えた行のメッセージは保持せず、件数のみ数えること。 */
+    @Test
+    public void testMaxRetainedRecords() {
+        CompactErrorStore target = new CompactErrorStore(2);
+        for (int i = 1; i <= 100; i++) {
+            target.add(i, message("E" + i));
+        }
+        assertThat(target.getErrorCount(), is(100));
+        assertThat(target.getOmittedCount(), is(98));
+        assertThat(ids(target.getAllMessages()), is(Arrays.asList("E1", "E2")));
+        assertThat(target.toErrorMessages().size(), is(2));
+        assertThat(target.toErrorMessages().getOmittedCount(), is(98));
+    }
+
+    /** 上限を超えた行に再度メッセージを追加しても、重複して数えないこと。 */
+    @Test
+    public void testReAddOmittedRecord() {
+        CompactErrorStore target = new CompactErrorStore(1);
+        target.add(1, message("E1"));
+        target.add(2, message("E2"));
+        target.add(3, message("E3"));
+        target.add(2, message("E2x"));
+        target.add(3, Arrays.asList(message("E3a"), message("E3b")));
+        target.add(1, message("E1x"));
+
+        assertThat(target.getErrorCount(), is(3));
+        assertThat(target.getOmittedCount(), is(2));
+        assertThat(ids(target.getAllMessages()), is(Arrays.asList("E1x")));
+    }
+
+    /**
+     * メッセージを生成する。
+     *
+     * @param id メッセージID
+     * @return メッセージ
+     */
+    private static Message message(String id) {
+        return new Message(MessageLevel.ERROR, resource(id));
+    }
+
+    /**
+     * 文字列リソースを生成する。
+     *
+     * @param id メッセージID
+     * @return 文字列リソース
+     */
+    private static StringResource resource(final String id) {
+        return new StringResource() {
+            public String getId() {
+                return id;
+            }
+
+            public String getValue(Locale locale) {
+                return id;
+            }
+        };
+    }
+
+    /**
+     * メッセージIDのリストに変換する。
+     *
+     * @param messages メッセージ
+     * @return メッセージID
+     */
+    private static List<String> ids(List<Message> messages) {
+        String[] ids = new String[messages.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = messages.get(i).getMessageId();
+        }
+        return Arrays.asList(ids);
+    }
+}
@@ -0,0 +1,79 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.StringResource;
+import nablarch.fw.web.upload.util.BulkValidationResult.ErrorMessages;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link DbUploadJobStore}のエラーメッセージのエンコードに関するテストクラス。
+ */
+public class DbUploadJobStoreTest {
+
+    /** エンコードしたエラーメッセージをデコードできること。 */
+    @Test
+    public void testEncodeAndDecode() {
+        ErrorMessages errorMessages = new ErrorMessages();
+        add(errorMessages, 3, MessageLevel.ERROR, "MSG001", "3行目:\t値が不正です。\\path\r\n次の行");
+        add(errorMessages, 3, MessageLevel.WARN, "MSG002", "");
+        add(errorMessages, 10, MessageLevel.ERROR, "MSG003", "10行目のエラー");
+
+        ErrorMessages actual = DbUploadJobStore.decode(DbUploadJobStore.encode(errorMessages, 100));
+
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get(3).size(), is(2));
+        Message first = actual.get(3).get(0);
+        assertThat(first.getLevel(), is(MessageLevel.ERROR));
+        assertThat(first.getMessageId(), is("MSG001"));
+        assertThat(first.formatMessage(), is("3行目:\t値が不正です。\\path\r\n次の行"));
+        assertThat(actual.get(3).get(1).getLevel(), is(MessageLevel.WARN));
+        assertThat(actual.get(3).get(1).formatMessage(), is(""));
+        assertThat(actual.get(10).get(0).formatMessage(), is("10行目のエラー"));
+    }
+
+    /** 上限を超えたエラーメッセージはエンコードしないこと。 */
+    @Test
+    public void testMaxCount() {
+        ErrorMessages errorMessages = new ErrorMessages();
+        for (int i = 1; i <= 5; i++) {
+            add(errorMessages, i, MessageLevel.ERROR, "MSG001", "error" + i);
+        }
+        ErrorMessages actual = DbUploadJobStore.decode(DbUploadJobStore.encode(errorMessages, 3));
+        assertThat(actual.getAllMessages().size(), is(3));
+        assertThat(actual.lastKey(), is(3));
+    }
+
+    /** エラーメッセージがない場合は{@code null}にエンコードされること。 */
+    @Test
+    public void testEmpty() {
+        assertThat(DbUploadJobStore.encode(new ErrorMessages(), 10), is(nullValue()));
+        assertThat(DbUploadJobStore.decode(null).isEmpty(), is(true));
+    }
+
+    private static void add(ErrorMessages errorMessages, int recordNumber, MessageLevel level,
+                            final String id, final String text) {
+        List<Message> messages = errorMessages.get(recordNumber);
+        if (messages == null) {
+            messages = new ArrayList<Message>();
+            errorMessages.put(recordNumber, messages);
+        }
+        messages.add(new Message(level, new StringResource() {
+            public String getId() {
+                return id;
+            }
+
+            public String getValue(Locale locale) {
+                return text;
+            }
+        }));
+    }
+}
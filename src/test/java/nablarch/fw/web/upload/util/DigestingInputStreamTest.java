@@ -0,0 +1,179 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+/**
+ * {@link DigestingInputStream}のテストクラス。
+ */
+public class DigestingInputStreamTest {
+
+    /** 読み込んだバイト列で、指定した全てのアルゴリズムのダイジェストが計算されること。 */
+    @Test
+    public void testDigest() throws Exception {
+        byte[] bytes = bytes(100000);
+        DigestingInputStream target = new DigestingInputStream(new ByteArrayInputStream(bytes), "SHA-256", "MD5");
+        InputStream in = new BufferedInputStream(target);
+        byte[] buffer = new byte[1000];
+        in.read();
+        while (in.read(buffer) >= 0) {
+            // 終端まで読み込む
+        }
+        assertThat(target.isCompleted(), is(false));
+        in.close();
+
+        assertThat(target.isCompleted(), is(true));
+        assertArrayEquals(expected("SHA-256", bytes), target.getDigest("SHA-256"));
+        assertArrayEquals(expected("MD5", bytes), target.getDigest("MD5"));
+    }
+
+    /** mark/resetで読み戻しても、ダイジェストが二重に更新されないこと。 */
+    @Test
+    public void testMarkAndReset() throws Exception {
+        byte[] bytes = bytes(10000);
+        DigestingInputStream target = new DigestingInputStream(new ByteArrayInputStream(bytes), "SHA-256");
+        InputStream in = new BufferedInputStream(target);
+        in.mark(100);
+        in.read(new byte[50]);
+        in.reset();
+        in.skip(5000);
+        while (in.read() >= 0) {
+            // 終端まで読み込む
+        }
+        in.close();
+
+        assertArrayEquals(expected("SHA-256", bytes), target.getDigest("SHA-256"));
+    }
+
+    /** 途中までしか読み込まずにクローズした場合、ダイジェストが確定しないこと。 */
+    @Test
+    public void testCloseBeforeEof() throws Exception {
+        CountingInputStream source = new CountingInputStream(bytes(50000));
+        DigestingInputStream target = new DigestingInputStream(source, "SHA-256");
+        target.read(new byte[100]);
+        target.close();
+        target.close();
+
+        assertThat(target.isCompleted(), is(false));
+        assertThat(source.read, is(100));
+        assertThat(source.closed, is(true));
+        try {
+            target.getDigest("SHA-256");
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("digest is not completed."));
+        }
+    }
+
+    /** 残りを読み込む設定の場合、途中までしか読み込まずにクローズしても全体のダイジェストが計算されること。 */
+    @Test
+    public void testDrainOnClose() throws Exception {
+        byte[] bytes = bytes(50000);
+        DigestingInputStream target = new DigestingInputStream(new ByteArrayInputStream(bytes), "SHA-256")
+                .setDrainOnClose(true);
+        target.read(new byte[100]);
+        target.close();
+        target.close();
+
+        assertThat(target.isCompleted(), is(true));
+        assertArrayEquals(expected("SHA-256", bytes), target.getDigest("SHA-256"));
+    }
+
+    /** 空のストリームのダイジェストが計算できること。 */
+    @Test
+    public void testEmpty() throws Exception {
+        DigestingInputStream target = new DigestingInputStream(new ByteArrayInputStream(new byte[0]), "SHA-256");
+        assertThat(target.read(), is(-1));
+        target.close();
+        assertArrayEquals(expected("SHA-256", new byte[0]), target.getDigest("SHA-256"));
+    }
+
+    /** ダイジェストの確定前や、指定していないアルゴリズムの場合は例外が送出されること。 */
+    @Test
+    public void testInvalidState() throws IOException {
+        DigestingInputStream target = new DigestingInputStream(new ByteArrayInputStream(bytes(10)), "SHA-256");
+        try {
+            target.getDigest("SHA-256");
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("digest is not completed."));
+        }
+        target.close();
+        try {
+            target.getDigest("MD5");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("algorithm=[MD5] specified=[SHA-256]"));
+        }
+        assertThat(target.markSupported(), is(false));
+    }
+
+    /** サポートされていないアルゴリズムの場合は例外が送出されること。 */
+    @Test
+    public void testUnsupportedAlgorithm() {
+        try {
+            new DigestingInputStream(new ByteArrayInputStream(new byte[0]), "UNKNOWN");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("algorithm=[UNKNOWN]"));
+        }
+        try {
+            new DigestingInputStream(new ByteArrayInputStream(new byte[0]));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("algorithms must not be empty."));
+        }
+    }
+
+    /** 読み込んだバイト数とクローズされたかどうかを記録する入力ストリーム。 */
+    private static final class CountingInputStream extends ByteArrayInputStream {
+
+        /** 読み込んだバイト数 */
+        private int read = 0;
+
+        /** クローズされたかどうか */
+        private boolean closed = false;
+
+        CountingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    private static byte[] expected(String algorithm, byte[] bytes) throws Exception {
+        return MessageDigest.getInstance(algorithm).digest(bytes);
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+}
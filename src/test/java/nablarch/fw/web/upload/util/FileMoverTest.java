@@ -0,0 +1,212 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.util.BinaryUtil;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link FileMover}のテストクラス。
+ */
+public class FileMoverTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /** 同じファイルシステム内では名前の変更で移動できること。 */
+    @Test
+    public void testMoveByRename() throws IOException {
+        byte[] bytes = bytes(10000);
+        File source = write(tempFolder.newFile("source.txt"), bytes);
+        File destination = new File(tempFolder.newFolder("dest"), "moved.txt");
+
+        FileMoveResult result = FileMover.move(source, destination);
+
+        assertThat(result.isRenamed(), is(true));
+        assertThat(result.getDestination(), is(destination));
+        assertThat(result.getSize(), is(10000L));
+        assertThat(result.getElapsedTime(TimeUnit.NANOSECONDS) >= 0, is(true));
+        assertThat(source.exists(), is(false));
+        assertArrayEquals(bytes, read(destination));
+    }
+
+    /** 名前の変更で移動できた場合、完了済みのFutureが返却されること。 */
+    @Test
+    public void testMoveAsyncByRename() throws Exception {
+        byte[] bytes = bytes(100);
+        File source = write(tempFolder.newFile("source.txt"), bytes);
+        File destination = new File(tempFolder.getRoot(), "moved.txt");
+
+        Future<FileMoveResult> future = FileMover.moveAsync(source, destination, executor);
+
+        assertThat(future.isDone(), is(true));
+        assertThat(future.get().isRenamed(), is(true));
+        assertThat(source.exists(), is(false));
+        assertArrayEquals(bytes, read(destination));
+    }
+
+    /** 非同期の転送に失敗した場合、Futureから例外が取得でき、退避したファイルが残らないこと。 */
+    @Test
+    public void testMoveAsyncTransferFailed() throws Exception {
+        File source = write(tempFolder.newFile("source.txt"), bytes(100));
+        // 存在しないディレクトリへは名前の変更も転送もできない
+        File destination = new File(tempFolder.getRoot(), "notfound/moved.txt");
+
+        Future<FileMoveResult> future = FileMover.moveAsync(source, destination, executor);
+        // 呼び出し元に制御が戻った時点で、移動元は退避済みであること
+        assertThat(source.exists(), is(false));
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+        }
+        assertThat(new File(source.getPath() + ".moving").exists(), is(false));
+        assertThat(destination.exists(), is(false));
+    }
+
+    /** 移動先に既存のファイルがある場合、置き換えられること。 */
+    @Test
+    public void testMoveReplacesExisting() throws IOException {
+        byte[] bytes = bytes(100);
+        File source = write(tempFolder.newFile("source.txt"), bytes);
+        File destination = write(tempFolder.newFile("moved.txt"), bytes(10));
+
+        FileMoveResult result = FileMover.move(source, destination);
+
+        assertThat(result.isRenamed(), is(true));
+        assertThat(source.exists(), is(false));
+        assertArrayEquals(bytes, read(destination));
+        assertThat(new File(destination.getPath() + ".replaced").exists(), is(false));
+    }
+
+    /**
+     * 退避ファイルを使用して置き換える場合、前回の退避ファイルが残っていても置き換えられること。
+     * 残っていた退避ファイルは変更されないこと。
+     */
+    @Test
+    public void testReplaceWithStaleReplacedFile() throws IOException {
+        byte[] bytes = bytes(100);
+        File source = write(tempFolder.newFile("source.txt"), bytes);
+        File destination = write(tempFolder.newFile("moved.txt"), bytes(10));
+        File stale = write(tempFolder.newFile("moved.txt.replaced"), bytes(5));
+
+        assertThat(FileMover.replace(source, destination), is(true));
+
+        assertThat(source.exists(), is(false));
+        assertArrayEquals(bytes, read(destination));
+        assertArrayEquals(bytes(5), read(stale));
+        assertThat(new File(destination.getPath() + ".1.replaced").exists(), is(false));
+    }
+
+    /** 転送を受け付けられなかった場合、退避したファイルが移動元へ戻されること。 */
+    @Test
+    public void testMoveAsyncRejected() throws Exception {
+        byte[] bytes = bytes(100);
+        File source = write(tempFolder.newFile("source.txt"), bytes);
+        // 存在しないディレクトリへは名前の変更で移動できないため、転送が必要となる
+        File destination = new File(tempFolder.getRoot(), "notfound/moved.txt");
+        executor.shutdown();
+        try {
+            FileMover.moveAsync(source, destination, executor);
+            fail();
+        } catch (RejectedExecutionException e) {
+            // OK
+        }
+        assertArrayEquals(bytes, read(source));
+        assertThat(new File(source.getPath() + ".moving").exists(), is(false));
+        assertThat(destination.exists(), is(false));
+    }
+
+    /** 転送により、移動先に既存のファイルがあっても内容を置き換えられること。 */
+    @Test
+    public void testTransfer() throws IOException {
+        byte[] bytes = bytes(1024 * 1024 + 1);
+        File source = write(tempFolder.newFile("source.txt"), bytes);
+        File destination = write(tempFolder.newFile("moved.txt"), bytes(10));
+
+        FileMover.transfer(source, destination);
+
+        assertArrayEquals(bytes, read(destination));
+        assertThat(new File(destination.getPath() + ".transferring").exists(), is(false));
+        // 転送では移動元は削除しない
+        assertThat(source.exists(), is(true));
+    }
+
+    /** 移動元が存在しない場合、例外が送出されること。 */
+    @Test
+    public void testSourceNotFound() throws IOException {
+        File source = new File(tempFolder.getRoot(), "notfound.txt");
+        File destination = new File(tempFolder.getRoot(), "moved.txt");
+        try {
+            FileMover.move(source, destination);
+            fail();
+        } catch (IOException e) {
+            assertThat(e.getMessage().contains("source file not found"), is(true));
+        }
+        try {
+            FileMover.moveAsync(source, destination, executor);
+            fail();
+        } catch (IOException e) {
+            assertThat(e.getMessage().contains("source file not found"), is(true));
+        }
+    }
+
+    /** 1秒あたりの転送バイト数が算出できること。 */
+    @Test
+    public void testBytesPerSecond() {
+        File destination = new File("moved.txt");
+        assertThat(new FileMoveResult(destination, 1000, TimeUnit.MILLISECONDS.toNanos(500), false).getBytesPerSecond(),
+                is(2000L));
+        assertThat(new FileMoveResult(destination, 1000, 0, true).getBytesPerSecond(), is(0L));
+        assertThat(new FileMoveResult(destination, 1000, TimeUnit.SECONDS.toNanos(3), false)
+                .getElapsedTime(TimeUnit.MILLISECONDS), is(3000L));
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static File write(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        return BinaryUtil.toByteArray(new FileInputStream(file), file.length());
+    }
+}
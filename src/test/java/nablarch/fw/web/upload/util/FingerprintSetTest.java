@@ -0,0 +1,67 @@
+package nablarch.fw.web.upload.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link FingerprintSet}のテストクラス。
+ */
+public class FingerprintSetTest {
+
+    /** 検証で常にキーが等しいと判定する。 */
+    private static final FingerprintSet.KeyVerifier SAME = new FingerprintSet.KeyVerifier() {
+        public boolean isSameKey(int recordNumber) {
+            return true;
+        }
+    };
+
+    /** 検証で常にキーが異なると判定する。 */
+    private static final FingerprintSet.KeyVerifier DIFFERENT = new FingerprintSet.KeyVerifier() {
+        public boolean isSameKey(int recordNumber) {
+            return false;
+        }
+    };
+
+    /** 同じキーを追加した場合、先に追加した行番号が返却されること。 */
+    @Test
+    public void testDuplicate() {
+        FingerprintSet target = new FingerprintSet();
+        assertThat(target.add(100L, 1, SAME), is(-1));
+        assertThat(target.add(200L, 2, SAME), is(-1));
+        assertThat(target.add(100L, 3, SAME), is(1));
+        assertThat(target.add(0L, 4, SAME), is(-1));
+        assertThat(target.add(0L, 5, SAME), is(4));
+        assertThat(target.size(), is(3));
+    }
+
+    /** フィンガープリントが一致してもキーが異なる場合は、別のキーとして追加されること。 */
+    @Test
+    public void testCollision() {
+        FingerprintSet target = new FingerprintSet();
+        assertThat(target.add(100L, 1, DIFFERENT), is(-1));
+        assertThat(target.add(100L, 2, DIFFERENT), is(-1));
+        assertThat(target.size(), is(2));
+
+        // 2行目のキーとのみ等しい場合
+        assertThat(target.add(100L, 3, new FingerprintSet.KeyVerifier() {
+            public boolean isSameKey(int recordNumber) {
+                return recordNumber == 2;
+            }
+        }), is(2));
+    }
+
+    /** テーブルの拡張後も、全てのキーが保持されていること。 */
+    @Test
+    public void testGrow() {
+        FingerprintSet target = new FingerprintSet();
+        for (int i = 1; i <= 100000; i++) {
+            assertThat(target.add(i * 0x9E3779B97F4A7C15L, i, SAME), is(-1));
+        }
+        assertThat(target.size(), is(100000));
+        for (int i = 1; i <= 100000; i++) {
+            assertThat(target.add(i * 0x9E3779B97F4A7C15L, 100000 + i, SAME), is(i));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import nablarch.core.dataformat.LayoutDefinition;
+import nablarch.core.dataformat.SyntaxErrorException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link LayoutDefinitionCache}のテストクラス。
+ */
+public class LayoutDefinitionCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /** 同じファイルの場合は、解析済みのフォーマット定義が返却されること。 */
+    @Test
+    public void testCached() throws IOException {
+        File layout = writeLayout("A.fmt", 10);
+        LayoutDefinitionCache target = new LayoutDefinitionCache(10, null);
+
+        LayoutDefinition first = target.get(layout);
+        assertThat(first.getRecords().size(), is(1));
+        assertThat(target.get(layout), sameInstance(first));
+        assertThat(target.get(new File(layout.getPath())), sameInstance(first));
+        assertThat(target.size(), is(1));
+    }
+
+    /** ファイルが更新された場合は、再度解析されること。 */
+    @Test
+    public void testModified() throws IOException {
+        File layout = writeLayout("A.fmt", 10);
+        LayoutDefinitionCache target = new LayoutDefinitionCache(10, null);
+        LayoutDefinition first = target.get(layout);
+
+        // サイズが変わった場合
+        writeLayout("A.fmt", 100);
+        LayoutDefinition second = target.get(layout);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getDirective().get("record-length"), is((Object) 100));
+
+        // 最終更新日時のみ変わった場合
+        layout.setLastModified(layout.lastModified() - 10000L);
+        LayoutDefinition third = target.get(layout);
+        assertThat(third, not(sameInstance(second)));
+        assertThat(target.get(layout), sameInstance(third));
+        assertThat(target.size(), is(1));
+    }
+
+    /** 最大件数を超えた場合は、最も長く参照されていないものから破棄されること。 */
+    @Test
+    public void testEviction() throws IOException {
+        File a = writeLayout("A.fmt", 10);
+        File b = writeLayout("B.fmt", 10);
+        File c = writeLayout("C.fmt", 10);
+        LayoutDefinitionCache target = new LayoutDefinitionCache(2, null);
+
+        LayoutDefinition definitionA = target.get(a);
+        LayoutDefinition definitionB = target.get(b);
+        // Aを参照するため、Bが最も長く参照されていない
+        assertThat(target.get(a), sameInstance(definitionA));
+        target.get(c);
+        assertThat(target.size(), is(2));
+        assertThat(target.get(a), sameInstance(definitionA));
+        assertThat(target.get(b), not(sameInstance(definitionB)));
+    }
+
+    /** 破棄した場合は、再度解析されること。 */
+    @Test
+    public void testClear() throws IOException {
+        File layout = writeLayout("A.fmt", 10);
+        LayoutDefinitionCache target = new LayoutDefinitionCache(10, null);
+        LayoutDefinition first = target.get(layout);
+
+        target.clear();
+        assertThat(target.size(), is(0));
+        assertThat(target.get(layout), not(sameInstance(first)));
+    }
+
+    /** 解析に失敗した場合は、例外が送出されキャッシュされないこと。 */
+    @Test
+    public void testSyntaxError() throws IOException {
+        File layout = tempFolder.newFile("INVALID.fmt");
+        write(layout, "おかしなフォーマット定義ファイル");
+        LayoutDefinitionCache target = new LayoutDefinitionCache(10, null);
+        try {
+            target.get(layout);
+            fail();
+        } catch (SyntaxErrorException e) {
+            assertThat(e.getMessage(), not(nullValue()));
+        }
+        assertThat(target.size(), is(0));
+    }
+
+    /** 最大件数が不正な場合、例外が送出されること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize() {
+        new LayoutDefinitionCache(0, null);
+    }
+
+    /** コンポーネント定義に登録されていない場合はキャッシュしないこと。 */
+    @Test
+    public void testNotRegistered() {
+        assertThat(LayoutDefinitionCache.getInstance(), nullValue());
+    }
+
+    /** プロパティで最大件数を設定できること。 */
+    @Test
+    public void testProperties() throws IOException {
+        LayoutDefinitionCache target = new LayoutDefinitionCache();
+        target.setMaxSize(1);
+        target.setEncoding("UTF-8");
+
+        LayoutDefinition definitionA = target.get(writeLayout("A.fmt", 10));
+        target.get(writeLayout("B.fmt", 10));
+        assertThat(target.size(), is(1));
+        assertThat(target.get(new File(tempFolder.getRoot(), "A.fmt")), not(sameInstance(definitionA)));
+    }
+
+    private File writeLayout(String name, int recordLength) throws IOException {
+        File file = new File(tempFolder.getRoot(), name);
+        write(file, "file-type:     \"Fixed\"\n"
+                + "text-encoding: \"ms932\"\n"
+                + "record-length: " + recordLength + "\n"
+                + "[Default]\n"
+                + "1    id            Z(1)\n"
+                + "2    city          X(" + (recordLength - 1) + ")\n");
+        return file;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ProgressReporter}のテストクラス。
+ */
+public class ProgressReporterTest {
+
+    /** 通知されたイベント */
+    private final List<UploadProgressEvent> events = new ArrayList<UploadProgressEvent>();
+
+    /** イベントを記録する通知先 */
+    private final UploadProgressListener listener = new UploadProgressListener() {
+        public void onProgress(UploadProgressEvent event) {
+            events.add(event);
+        }
+    };
+
+    /** テスト用のファイル */
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("progress", ".dat");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[100]);
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /** 指定したレコード数ごとに通知されること。 */
+    @Test
+    public void testRecordInterval() {
+        ProgressReporter target = new ProgressReporter(listener, 3, 0L, UploadPhase.EXECUTE_BATCH, 7, null, -1L);
+        for (int i = 1; i <= 7; i++) {
+            target.report(i, 0);
+        }
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0).getProcessedCount(), is(3));
+        assertThat(events.get(1).getProcessedCount(), is(6));
+        assertThat(events.get(1).getPhase(), is(UploadPhase.EXECUTE_BATCH));
+        assertThat(events.get(1).getTotalCount(), is(7));
+        assertThat(events.get(1).getBytesRead(), is(-1L));
+        assertFalse(events.get(1).isCompleted());
+    }
+
+    /** 指定した時間が経過するごとに通知されること。 */
+    @Test
+    public void testTimeInterval() throws InterruptedException {
+        ProgressReporter target = new ProgressReporter(listener, 0, 50L, UploadPhase.VALIDATION, -1, null, -1L);
+        target.report(1, 0);
+        assertThat(events.size(), is(0));
+        Thread.sleep(60L);
+        target.report(2, 1);
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getProcessedCount(), is(2));
+        assertThat(events.get(0).getErrorCount(), is(1));
+        assertTrue(events.get(0).getElapsedTime(TimeUnit.MILLISECONDS) >= 50L);
+        target.report(3, 1);
+        assertThat(events.size(), is(1));
+    }
+
+    /** 間隔に関わらず終了時は通知されること。 */
+    @Test
+    public void testComplete() {
+        ProgressReporter target = new ProgressReporter(listener, 0, 0L, UploadPhase.VALIDATION, -1, null, -1L);
+        target.report(1, 0);
+        target.complete(1, 0);
+        assertThat(events.size(), is(1));
+        assertTrue(events.get(0).isCompleted());
+        assertThat(events.get(0).getProcessedCount(), is(1));
+    }
+
+    /** ファイルの読み込み位置が読み込んだバイト数として通知されること。 */
+    @Test
+    public void testBytesRead() throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            ProgressReporter target = new ProgressReporter(listener, 1, 0L, UploadPhase.VALIDATION, -1, in, 100L);
+            assertThat(in.read(new byte[40]), is(40));
+            target.report(1, 0);
+            assertThat(events.get(0).getBytesRead(), is(40L));
+            assertThat(events.get(0).getTotalBytes(), is(100L));
+        } finally {
+            in.close();
+        }
+    }
+
+    /** クローズ済みのストリームの場合、読み込んだバイト数は-1となること。 */
+    @Test
+    public void testBytesReadClosed() throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        in.getChannel();
+        in.close();
+        ProgressReporter target = new ProgressReporter(listener, 1, 0L, UploadPhase.VALIDATION, -1, in, 100L);
+        target.complete(0, 0);
+        assertThat(events.get(0).getBytesRead(), is(-1L));
+    }
+}
@@ -0,0 +1,146 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Locale;
+
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.StringResource;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link RecordErrorMessage}のテストクラス。
+ */
+public class RecordErrorMessageTest {
+
+    /** 元のメッセージは、本メッセージをフォーマットする時点でフォーマットされること。 */
+    @Test
+    public void testFormatOnDemand() {
+        CountingStringResource nested = new CountingStringResource("NESTED", "cityが不正です。");
+        RecordErrorMessage target = new RecordErrorMessage(MessageLevel.ERROR,
+                new CountingStringResource("MSG00099", "{0}行目にエラーがあります。[{1}]"), 3,
+                new Message(MessageLevel.ERROR, nested));
+
+        assertThat(nested.count, is(0));
+        assertThat(target.getMessageId(), is("MSG00099"));
+        assertThat(target.getRecordNumber(), is(3));
+        assertThat(target.getNestedMessage().getMessageId(), is("NESTED"));
+
+        assertThat(target.formatMessage(), is("3行目にエラーがあります。[cityが不正です。]"));
+        assertThat(nested.count, is(1));
+    }
+
+    /** 行番号と元のメッセージが等しい場合、等しいと判定されること。 */
+    @Test
+    public void testEquals() {
+        StringResource resource = new CountingStringResource("MSG00099", "{0}:{1}");
+        RecordErrorMessage message = new RecordErrorMessage(MessageLevel.ERROR, resource, 1,
+                new Message(MessageLevel.ERROR, new CountingStringResource("A", "a")));
+        RecordErrorMessage same = new RecordErrorMessage(MessageLevel.ERROR, resource, 1,
+                new Message(MessageLevel.ERROR, new CountingStringResource("A", "a")));
+        RecordErrorMessage otherNested = new RecordErrorMessage(MessageLevel.ERROR, resource, 1,
+                new Message(MessageLevel.ERROR, new CountingStringResource("B", "b")));
+        RecordErrorMessage otherRecord = new RecordErrorMessage(MessageLevel.ERROR, resource, 2,
+                new Message(MessageLevel.ERROR, new CountingStringResource("A", "a")));
+
+        assertThat(message, is(same));
+        assertThat(message.hashCode(), is(same.hashCode()));
+        assertThat(message, is(not(otherNested)));
+        assertThat(message, is(not(otherRecord)));
+    }
+
+    /**
+     * シリアライズした場合、元のメッセージはシリアライズ時にフォーマットされ、
+     * デシリアライズ後も同じ文言にフォーマットされること。
+     *
+     * @throws Exception 予期しない例外
+     */
+    @Test
+    public void testSerialize() throws Exception {
+        CountingStringResource nested = new CountingStringResource("NESTED", "cityが不正です。");
+        RecordErrorMessage target = new RecordErrorMessage(MessageLevel.ERROR,
+                new CountingStringResource("MSG00099", "{0}行目にエラーがあります。[{1}]"), 3,
+                new Message(MessageLevel.ERROR, nested));
+
+        RecordErrorMessage actual = (RecordErrorMessage) deserialize(serialize(target));
+        assertThat(nested.count, is(1));
+        assertThat(actual.getMessageId(), is("MSG00099"));
+        assertThat(actual.getRecordNumber(), is(3));
+        assertThat(actual.getNestedMessage(), is(nullValue()));
+        assertThat(actual.formatMessage(), is("3行目にエラーがあります。[cityが不正です。]"));
+    }
+
+    /**
+     * オブジェクトをシリアライズする。
+     *
+     * @param object シリアライズするオブジェクト
+     * @return シリアライズしたバイト列
+     * @throws IOException 予期しない例外
+     */
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * バイト列をデシリアライズする。
+     *
+     * @param bytes シリアライズしたバイト列
+     * @return デシリアライズしたオブジェクト
+     * @throws Exception 予期しない例外
+     */
+    private static Object deserialize(byte[] bytes) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /** 文言の取得回数を数える文字列リソース。 */
+    private static final class CountingStringResource implements StringResource, Serializable {
+
+        /** メッセージID */
+        private final String id;
+
+        /** 文言 */
+        private final String value;
+
+        /** 文言を取得した回数 */
+        private int count = 0;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param id    メッセージID
+         * @param value 文言
+         */
+        CountingStringResource(String id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getValue(Locale locale) {
+            count++;
+            return value;
+        }
+    }
+}
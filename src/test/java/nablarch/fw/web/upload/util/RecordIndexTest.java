@@ -0,0 +1,106 @@
+package nablarch.fw.web.upload.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+/**
+ * {@link RecordIndex}のテストクラス。
+ */
+public class RecordIndexTest {
+
+    /** 行番号と処理順の位置、バリデーション済みオブジェクトの位置が相互に引けること。 */
+    @Test
+    public void testLookup() {
+        RecordIndex target = new RecordIndex();
+        target.addValid(1);
+        target.addValid(2);
+        target.addInvalid(3);
+        target.addInvalid(4);
+        target.addValid(5);
+        // 行番号の欠番
+        target.addValid(8);
+        target.addInvalid(10);
+
+        assertThat(target.size(), is(7));
+        int[] expected = {1, 2, 3, 4, 5, 8, 10};
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(target.getRecordNumber(i), is(expected[i]));
+            assertThat(target.indexOf(expected[i]), is(i));
+        }
+        assertThat(target.getValidSlot(1), is(0));
+        assertThat(target.getValidSlot(2), is(1));
+        assertThat(target.getValidSlot(3), is(-1));
+        assertThat(target.getValidSlot(4), is(-1));
+        assertThat(target.getValidSlot(5), is(2));
+        assertThat(target.getValidSlot(8), is(3));
+        assertThat(target.getValidSlot(10), is(-1));
+
+        // 索引に存在しない行番号
+        assertThat(target.indexOf(0), is(-1));
+        assertThat(target.indexOf(6), is(-1));
+        assertThat(target.indexOf(9), is(-1));
+        assertThat(target.indexOf(11), is(-1));
+        assertThat(target.getValidSlot(7), is(-1));
+    }
+
+    /** 初期容量を超える区間を追加できること。 */
+    @Test
+    public void testManyRuns() {
+        RecordIndex target = new RecordIndex();
+        for (int i = 1; i <= 1000; i++) {
+            if (i % 3 == 0) {
+                target.addInvalid(i);
+            } else {
+                target.addValid(i);
+            }
+        }
+        assertThat(target.size(), is(1000));
+        int slot = 0;
+        for (int i = 1; i <= 1000; i++) {
+            assertThat(target.getRecordNumber(i - 1), is(i));
+            assertThat(target.getValidSlot(i), is(i % 3 == 0 ? -1 : slot++));
+        }
+    }
+
+    /** 昇順でない行番号を追加した場合、例外が発生すること。 */
+    @Test
+    public void testNotAscending() {
+        RecordIndex target = new RecordIndex();
+        target.addValid(2);
+        try {
+            target.addInvalid(2);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("recordNumber=[2] last=[2]"));
+        }
+        try {
+            target.addValid(1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("recordNumber=[1] last=[2]"));
+        }
+    }
+
+    /** 範囲外の位置を指定した場合、例外が発生すること。 */
+    @Test
+    public void testPositionOutOfBounds() {
+        RecordIndex target = new RecordIndex();
+        target.addValid(1);
+        try {
+            target.getRecordNumber(1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            assertThat(e.getMessage(), containsString("position=[1] size=[1]"));
+        }
+        try {
+            target.getRecordNumber(-1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            assertThat(e.getMessage(), containsString("position=[-1] size=[1]"));
+        }
+    }
+}
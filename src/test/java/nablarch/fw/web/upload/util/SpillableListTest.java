@@ -0,0 +1,237 @@
+package nablarch.fw.web.upload.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link SpillableList}のテストクラス。
+ */
+public class SpillableListTest {
+
+    private final List<SpillableList<?>> targets = new ArrayList<SpillableList<?>>();
+
+    @After
+    public void tearDown() {
+        for (SpillableList<?> e : targets) {
+            e.close();
+        }
+    }
+
+    private <E> SpillableList<E> create(int maxOnHeap, File directory) {
+        SpillableList<E> target = new SpillableList<E>(maxOnHeap, directory);
+        targets.add(target);
+        return target;
+    }
+
+    /** 最大件数を超えた要素が一時ファイルへ退避され、追加した順に参照できること。 */
+    @Test
+    public void testSpill() {
+        SpillableList<String> target = this.<String>create(3, null);
+        for (int i = 0; i < 2500; i++) {
+            target.add("record" + i);
+        }
+        assertThat(target.size(), is(2500));
+        assertThat(target.getSpilledCount(), is(2497));
+
+        List<String> actual = new ArrayList<String>();
+        for (String e : target) {
+            actual.add(e);
+        }
+        assertThat(actual.size(), is(2500));
+        for (int i = 0; i < actual.size(); i++) {
+            assertThat(actual.get(i), is("record" + i));
+        }
+
+        // インデックスによる参照
+        assertThat(target.get(0), is("record0"));
+        assertThat(target.get(1500), is("record1500"));
+        assertThat(target.get(1501), is("record1501"));
+        assertThat(target.get(10), is("record10"));
+        assertThat(target.get(2499), is("record2499"));
+    }
+
+    /** 参照後に要素を追加した場合でも、追加した要素が参照できること。 */
+    @Test
+    public void testAddAfterIteration() {
+        SpillableList<String> target = this.<String>create(1, null);
+        target.add("a");
+        target.add("b");
+        assertThat(target.get(1), is("b"));
+        target.add("c");
+        Iterator<String> itr = target.iterator();
+        assertThat(itr.next(), is("a"));
+        assertThat(itr.next(), is("b"));
+        assertThat(itr.next(), is("c"));
+        assertThat(itr.hasNext(), is(false));
+    }
+
+    /**
+     * 退避済みの要素の参照と追加を交互に行った場合でも、
+     * 前回の参照後に退避された要素が参照できること。
+     */
+    @Test
+    public void testGetInterleavedWithAdd() {
+        SpillableList<String> target = this.<String>create(2, null);
+        for (int i = 0; i < 2000; i++) {
+            target.add("record" + i);
+            assertThat(target.get(i), is("record" + i));
+            if (i >= 1) {
+                assertThat(target.get(i - 1), is("record" + (i - 1)));
+                // 参照位置を最後の要素より手前に残した状態で追加する
+                assertThat(target.get(i / 2), is("record" + (i / 2)));
+            }
+        }
+        assertThat(target.size(), is(2000));
+    }
+
+    /**
+     * 追加を終えた後も参照でき、クローズすると一時ファイルが削除されること。
+     * クローズ後は退避済みの要素を参照できないこと。
+     */
+    @Test
+    public void testEndWritingAndClose() throws Exception {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "spillable-list-test");
+        directory.mkdirs();
+        SpillableList<String> target = this.<String>create(1, directory);
+        for (int i = 0; i < 10; i++) {
+            target.add("record" + i);
+        }
+        target.endWriting();
+        assertThat(target.get(9), is("record9"));
+        try {
+            target.add("record10");
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("can't add an element after writing has ended."));
+        }
+
+        // 途中まで読み込んだイテレータも、クローズにより閉じられる
+        Iterator<String> it = target.iterator();
+        it.next();
+        it.next();
+        assertThat(target.get(3), is("record3"));
+        assertThat(directory.listFiles().length, is(1));
+
+        target.close();
+        assertThat(directory.listFiles().length, is(0));
+        assertThat(target.get(0), is("record0"));
+        try {
+            target.get(5);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().startsWith("list has already been closed."), is(true));
+        }
+        try {
+            it.next();
+            fail();
+        } catch (RuntimeException e) {
+            // 入力ストリームが閉じられている
+        }
+        target.close();
+        directory.delete();
+    }
+
+    /** 最大件数に達していない場合は、ヒープ上に保持されること。 */
+    @Test
+    public void testOnHeap() {
+        SpillableList<Object> target = this.<Object>create(2, null);
+        target.add(new Object());
+        target.add(new Object());
+        assertThat(target.getSpilledCount(), is(0));
+        assertThat(target.size(), is(2));
+    }
+
+    /** シリアライズできない要素を退避しようとした場合、例外が送出されること。 */
+    @Test
+    public void testNotSerializable() {
+        SpillableList<Object> target = this.<Object>create(0, null);
+        try {
+            target.add(new Object());
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().contains("java.lang.Object"), is(true));
+        }
+    }
+
+    /** 範囲を指定したイテレータが、ヒープ上と一時ファイル上の要素をまたいで正しく返却すること。 */
+    @Test
+    public void testRangeIterator() {
+        SpillableList<String> target = this.<String>create(5, null);
+        for (int i = 0; i < 3000; i++) {
+            target.add("record" + i);
+        }
+        assertRange(target, 0, 3);
+        assertRange(target, 3, 1500);
+        assertRange(target, 1200, 3000);
+        assertRange(target, 10, 10);
+
+        // 複数のイテレータを交互に進めても互いに影響しないこと
+        Iterator<String> first = target.iterator(100, 200);
+        Iterator<String> second = target.iterator(2000, 2100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(first.next(), is("record" + (100 + i)));
+            assertThat(second.next(), is("record" + (2000 + i)));
+        }
+        assertThat(first.hasNext(), is(false));
+        assertThat(second.hasNext(), is(false));
+
+        try {
+            target.iterator(10, 3001);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // OK
+        }
+    }
+
+    /** 途中まで読み込んだイテレータの読み込みを終了すると、一時ファイルが閉じられること。 */
+    @Test
+    public void testCloseIterator() {
+        SpillableList<String> target = this.<String>create(1, null);
+        for (int i = 0; i < 10; i++) {
+            target.add("record" + i);
+        }
+        target.endWriting();
+        Iterator<String> it = SpillableList.iterator(target, 0, 10);
+        it.next();
+        it.next();
+        assertThat(openReaderCount(target), is(1));
+
+        SpillableList.closeIterator(it);
+        assertThat(openReaderCount(target), is(0));
+        assertThat(it.hasNext(), is(false));
+        // 既に終了している場合や、一時ファイルを読み込まないイテレータの場合は何もしないこと
+        SpillableList.closeIterator(it);
+        SpillableList.closeIterator(new ArrayList<String>().iterator());
+        SpillableList.closeIterator(null);
+    }
+
+    private static int openReaderCount(SpillableList<?> target) {
+        try {
+            Field field = SpillableList.class.getDeclaredField("openReaders");
+            field.setAccessible(true);
+            return ((Collection<?>) field.get(target)).size();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void assertRange(SpillableList<String> target, int from, int to) {
+        Iterator<String> it = target.iterator(from, to);
+        for (int i = from; i < to; i++) {
+            assertThat(it.hasNext(), is(true));
+            assertThat(it.next(), is("record" + i));
+        }
+        assertThat(it.hasNext(), is(false));
+    }
+}
@@ -62,7 +62,9 @@ public class TestSetUpper {
         { "MSG00053", "ja", "{0}は{1}以上{2}以下で入力してください。", "en", "{0} is not in the range {1} through {2}." },
         { "MSG00098", "ja", "{0}行目の値が不正です。", "en", "format error found in line {0}." },
         { "MSG00099", "ja", "{0}行目にエラーがあります。[ {1} ]", "en", "invalid value found in line {0}. [ {1} ]" },
-        { "MSG00100", "ja", "ファイルが空です。 ファイル=[{0}]", "en", "empty file uploaded. file=[{0}]" }
+        { "MSG00100", "ja", "ファイルが空です。 ファイル=[{0}]", "en", "empty file uploaded. file=[{0}]" },
+        { "MSG00101", "ja", "エラーが多いため{0}行目で処理を中断しました。エラー件数=[{1}]", "en", "too many errors. aborted at line {0}. errors=[{1}]" },
+        { "MSG00102", "ja", "{0}行目のキーが{1}行目と重複しています。", "en", "key in line {0} duplicates line {1}." }
     };
 
     @BeforeClass
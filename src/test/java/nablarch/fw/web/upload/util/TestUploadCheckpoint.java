@@ -0,0 +1,29 @@
+package nablarch.fw.web.upload.util;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * チェックポイント
+ */
+@Entity
+@Table(name = "UPLOAD_CHECKPOINT")
+public class TestUploadCheckpoint {
+
+    public TestUploadCheckpoint() {
+    };
+
+    public TestUploadCheckpoint(String fileDigest, Integer lastRecordNumber) {
+        this.fileDigest = fileDigest;
+        this.lastRecordNumber = lastRecordNumber;
+    }
+
+    @Id
+    @Column(name = "FILE_DIGEST", length = 64, nullable = false)
+    public String fileDigest;
+
+    @Column(name = "LAST_RECORD_NUMBER", length = 10, nullable = false)
+    public Integer lastRecordNumber;
+}
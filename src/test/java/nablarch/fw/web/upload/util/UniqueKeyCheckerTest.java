@@ -0,0 +1,52 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link UniqueKeyChecker}のテストクラス。
+ */
+public class UniqueKeyCheckerTest {
+
+    /** プロパティの区切りや{@code null}を区別して符号化されること。 */
+    @Test
+    public void testEncode() {
+        UniqueKeyChecker<TestSetUpper.Form> target = new UniqueKeyChecker<TestSetUpper.Form>(
+                new String[] {"id", "city"}, "MSG00102");
+        byte[] key = target.encode(new TestSetUpper.Form(1L, "tokyo"));
+        assertThat(Arrays.equals(key, target.encode(new TestSetUpper.Form(1L, "tokyo"))), is(true));
+        assertThat(Arrays.equals(key, target.encode(new TestSetUpper.Form(1L, "Tokyo"))), is(false));
+        assertThat(Arrays.equals(target.encode(new TestSetUpper.Form(11L, "")),
+                target.encode(new TestSetUpper.Form(1L, "1"))), is(false));
+        assertThat(Arrays.equals(target.encode(new TestSetUpper.Form(1L, null)),
+                target.encode(new TestSetUpper.Form(1L, "null"))), is(false));
+        assertThat(Arrays.equals(target.encode(new TestSetUpper.Form(1L, "\u0000")),
+                target.encode(new TestSetUpper.Form(1L, "\u0080"))), is(false));
+    }
+
+    /**
+     * フィンガープリントが衝突しても、キーが異なれば重複と判定されないこと。
+     * 一時ファイルへ退避したかどうかや、バリデーション済みオブジェクトを保持しているかどうかに関わらず、
+     * 符号化したキーのみで判定されること。
+     */
+    @Test
+    public void testCollision() {
+        UniqueKeyChecker<TestSetUpper.Form> target = new UniqueKeyChecker<TestSetUpper.Form>(
+                new String[] {"city"}, "MSG00102");
+        for (int i = 1; i <= 1000; i++) {
+            // 全てのキーのフィンガープリントを同じ値とする
+            byte[] key = target.encode(new TestSetUpper.Form(1L, "city" + i));
+            assertThat(target.check(i, key, 12345L), is(nullValue()));
+        }
+        // キーとしないプロパティは比較されない
+        byte[] key = target.encode(new TestSetUpper.Form(2L, "city500"));
+        assertThat(Arrays.equals(key, target.encode(new TestSetUpper.Form(1L, "city500"))), is(true));
+        assertThat(UniqueKeyChecker.fingerprint(key),
+                is(UniqueKeyChecker.fingerprint(target.encode(new TestSetUpper.Form(1L, "city500")))));
+    }
+}
@@ -0,0 +1,144 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link UploadContentDumper}のテストクラス。
+ */
+public class UploadContentDumperTest {
+
+    /** 先頭と末尾の合計より短い場合は、全体が出力されること。 */
+    @Test
+    public void testShortContent() throws IOException {
+        Dumper target = new Dumper(4, 4);
+        target.dump(new ByteArrayInputStream(new byte[] {0x01, 0x2A, (byte) 0xFF}), 3, "a.txt");
+
+        assertThat(target.lines.size(), is(2));
+        assertThat(target.lines.get(0), is("content of uploaded file. offset=[0] length=[3] 0x012AFF"));
+        assertThat(target.lines.get(1), is("content of uploaded file. fileName=[a.txt] totalLength=[3] dumpedLength=[3]"));
+    }
+
+    /** 長さが分かっている場合、中間を読み飛ばして先頭と末尾のみ出力されること。 */
+    @Test
+    public void testHeadAndTail() throws IOException {
+        CountingInputStream in = new CountingInputStream(bytes(10000));
+        Dumper target = new Dumper(3, 2);
+        target.dump(in, 10000, "a.txt");
+
+        assertThat(target.lines.size(), is(4));
+        assertThat(target.lines.get(0), is("content of uploaded file. offset=[0] length=[3] 0x000102"));
+        assertThat(target.lines.get(1), is("content of uploaded file. omitted=[9995] bytes"));
+        // 9998 % 256 = 14, 9999 % 256 = 15
+        assertThat(target.lines.get(2), is("content of uploaded file. offset=[9998] length=[2] 0x0E0F"));
+        assertThat(target.lines.get(3), is("content of uploaded file. fileName=[a.txt] totalLength=[10000] dumpedLength=[5]"));
+        // 中間は読み込まずに読み飛ばしていること
+        assertThat(in.read, is(5L));
+    }
+
+    /** 長さが不明な場合も、末尾のみ保持して出力されること。 */
+    @Test
+    public void testUnknownLength() throws IOException {
+        Dumper target = new Dumper(2, 3);
+        target.dump(new ByteArrayInputStream(bytes(1000)), -1, "a.txt");
+
+        assertThat(target.lines.size(), is(4));
+        assertThat(target.lines.get(0), is("content of uploaded file. offset=[0] length=[2] 0x0001"));
+        assertThat(target.lines.get(1), is("content of uploaded file. omitted=[995] bytes"));
+        // 997 % 256 = 229(E5)
+        assertThat(target.lines.get(2), is("content of uploaded file. offset=[997] length=[3] 0xE5E6E7"));
+        assertThat(target.lines.get(3), is("content of uploaded file. fileName=[a.txt] totalLength=[1000] dumpedLength=[5]"));
+    }
+
+    /** チャンクサイズごとに分割して出力されること。 */
+    @Test
+    public void testChunk() throws IOException {
+        int size = UploadContentDumper.CHUNK_SIZE * 2 + 10;
+        Dumper target = new Dumper(size, size);
+        target.dump(new ByteArrayInputStream(bytes(size)), size, "a.txt");
+
+        assertThat(target.lines.size(), is(4));
+        assertThat(target.lines.get(0).startsWith("content of uploaded file. offset=[0] length=[512] 0x000102"), is(true));
+        assertThat(target.lines.get(1).startsWith("content of uploaded file. offset=[512] length=[512] 0x000102"), is(true));
+        assertThat(target.lines.get(2), is("content of uploaded file. offset=[1024] length=[10] 0x00010203040506070809"));
+    }
+
+    /** 先頭、末尾ともに0の場合は、長さのみ出力されること。 */
+    @Test
+    public void testZero() throws IOException {
+        Dumper target = new Dumper(0, 0);
+        target.dump(new ByteArrayInputStream(bytes(100)), -1, "a.txt");
+
+        assertThat(target.lines.size(), is(2));
+        assertThat(target.lines.get(0), is("content of uploaded file. omitted=[100] bytes"));
+        assertThat(target.lines.get(1), is("content of uploaded file. fileName=[a.txt] totalLength=[100] dumpedLength=[0]"));
+    }
+
+    /** 空ファイルの場合。 */
+    @Test
+    public void testEmpty() throws IOException {
+        Dumper target = new Dumper(10, 10);
+        target.dump(new ByteArrayInputStream(new byte[0]), 0, "a.txt");
+
+        assertThat(target.lines.size(), is(1));
+        assertThat(target.lines.get(0), is("content of uploaded file. fileName=[a.txt] totalLength=[0] dumpedLength=[0]"));
+    }
+
+    /** 出力するバイト数が負数の場合、例外が送出されること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBytes() {
+        new Dumper(-1, 0);
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static class Dumper extends UploadContentDumper {
+
+        private final List<String> lines = new ArrayList<String>();
+
+        Dumper(int headBytes, int tailBytes) {
+            super(null, headBytes, tailBytes);
+        }
+
+        @Override
+        void write(String line) {
+            lines.add(line);
+        }
+    }
+
+    private static class CountingInputStream extends ByteArrayInputStream {
+
+        private long read = 0;
+
+        CountingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            return read(b, 0, b.length);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import nablarch.fw.web.upload.util.UploadDecompressor.Compression;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+/**
+ * {@link UploadDecompressor}のテストクラス。
+ */
+public class UploadDecompressorTest {
+
+    /** 先頭のバイト列から圧縮形式が判定され、判定後も先頭から読み込めること。 */
+    @Test
+    public void testDetectByMagic() throws IOException {
+        byte[] plain = bytes(10000);
+        assertDetected(gzip(plain), null, Compression.GZIP);
+        assertDetected(deflate(plain), null, Compression.DEFLATE);
+        assertDetected(plain, null, Compression.NONE);
+        assertDetected("x ".getBytes("US-ASCII"), null, Compression.NONE);
+        assertDetected(new byte[] {0x1F}, null, Compression.NONE);
+        assertDetected(new byte[0], null, Compression.NONE);
+    }
+
+    /**
+     * zlibのヘッダと一致するテキストや、チェックサムが正しくないヘッダは、
+     * 拡張子で判定できない場合に圧縮されていないと判定されること。
+     */
+    @Test
+    public void testDetectAmbiguousZlibHeader() throws IOException {
+        // 78 5E（"x^"）および78 9Cはチェックサムが正しいが、展開できない
+        assertDetected("x^abc,def\r\n1,tokyo\r\n".getBytes("US-ASCII"), null, Compression.NONE);
+        assertDetected("x^".getBytes("US-ASCII"), null, Compression.NONE);
+        assertDetected(new byte[] {0x78, (byte) 0x9C, 'a', 'b', 'c'}, null, Compression.NONE);
+        // チェックサムが正しくない
+        assertDetected(new byte[] {0x78, 0x5F, 0x00, 0x00}, null, Compression.NONE);
+        // 拡張子で判定できる場合は先頭のバイト列によらずzlib形式とみなす
+        assertDetected("x^abc".getBytes("US-ASCII"), "upload.zz", Compression.DEFLATE);
+        // 圧縮レベルやファイルサイズによらず判定できる
+        for (int level : new int[] {1, 6, 9}) {
+            assertDetected(deflate(bytes(10000), level), null, Compression.DEFLATE);
+        }
+        assertDetected(deflate(bytes(10)), null, Compression.DEFLATE);
+    }
+
+    /** ファイル名の拡張子から圧縮形式が判定されること。 */
+    @Test
+    public void testDetectByFileName() throws IOException {
+        byte[] plain = bytes(100);
+        assertDetected(plain, "upload.GZ", Compression.GZIP);
+        assertDetected(plain, "upload.txt.gzip", Compression.GZIP);
+        assertDetected(plain, "upload.deflate", Compression.DEFLATE);
+        assertDetected(plain, "upload.zz", Compression.DEFLATE);
+        assertDetected(plain, "upload.txt", Compression.NONE);
+    }
+
+    /** 圧縮されている場合は展開しながら、圧縮されていない場合はそのまま読み込めること。 */
+    @Test
+    public void testOpen() throws IOException {
+        byte[] plain = bytes(200000);
+        assertArrayEquals(plain, readAll(UploadDecompressor.open(
+                new ByteArrayInputStream(gzip(plain)), null, 1024, 0L)));
+        assertArrayEquals(plain, readAll(UploadDecompressor.open(
+                new ByteArrayInputStream(deflate(plain)), "upload.deflate", 1024, 0L)));
+        InputStream in = UploadDecompressor.open(new ByteArrayInputStream(plain), "upload.txt", 1024, 0L);
+        assertThat(in.markSupported(), is(true));
+        assertArrayEquals(plain, readAll(in));
+    }
+
+    /** 展開後のサイズが上限を超えた場合、読み込み時に例外が送出されること。 */
+    @Test
+    public void testMaxDecompressedSize() throws IOException {
+        byte[] plain = bytes(200000);
+        // 上限ちょうどの場合は読み込める
+        assertArrayEquals(plain, readAll(UploadDecompressor.open(
+                new ByteArrayInputStream(gzip(plain)), null, 1024, plain.length)));
+        try {
+            readAll(UploadDecompressor.open(new ByteArrayInputStream(gzip(plain)), "upload.gz", 1024, 100000L));
+            fail();
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("decompressed size exceeds the limit."));
+            assertThat(e.getMessage(), containsString("fileName=[upload.gz] maxDecompressedSize=[100000]"));
+        }
+        try {
+            readAll(UploadDecompressor.open(new ByteArrayInputStream(deflate(plain)), null, 1024, 100000L));
+            fail();
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("decompressed size exceeds the limit."));
+        }
+        // 圧縮されていない場合は上限を適用しない
+        assertArrayEquals(plain, readAll(UploadDecompressor.open(
+                new ByteArrayInputStream(plain), null, 1024, 100000L)));
+    }
+
+    private static void assertDetected(byte[] content, String fileName, Compression expected) throws IOException {
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(content));
+        assertThat(UploadDecompressor.detect(in, fileName), is(expected));
+        assertArrayEquals(content, readAll(in));
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ('0' + i % 10);
+        }
+        return bytes;
+    }
+
+    private static byte[] gzip(byte[] plain) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(plain);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] plain) throws IOException {
+        return deflate(plain, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    private static byte[] deflate(byte[] plain, int level) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeflaterOutputStream out = new DeflaterOutputStream(bytes, new Deflater(level));
+        out.write(plain);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -9,6 +9,7 @@ import nablarch.core.message.ApplicationException;
 import nablarch.core.message.Message;
 import nablarch.core.message.MessageLevel;
 import nablarch.core.message.MessageUtil;
+import nablarch.core.util.BinaryUtil;
 import nablarch.core.util.FilePathSetting;
 import nablarch.core.validation.ValidationContext;
 import nablarch.core.validation.ValidationUtil;
@@ -19,9 +20,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
@@ -64,6 +70,37 @@ public class UploadHelperTest extends TestSetUpper {
         removed.delete();
     }
 
+    /**
+     * アップロードファイルを移動し、移動結果が取得できること。
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testTransferUploadedFile() throws IOException {
+        FilePathSetting.getInstance().addBasePathSetting("temp.dir", "file:" + getDirectoryRootName());
+
+        PartInfo part = PartInfo.newInstance("file");
+        File f = File.createTempFile(getClass().getName(), ".tmp");
+        part.setSavedFile(f);
+        UploadHelper target = new UploadHelper(part);
+        FileMoveResult result = target.transferTo("temp.dir", "hoge.txt");
+
+        File moved = new File(getDirectoryRootName() + "/hoge.txt");
+        assertThat(moved.exists(), is(true));
+        assertThat(result.getDestination().getAbsoluteFile(), is(moved.getAbsoluteFile()));
+        assertThat(result.getSize(), is(0L));
+        assertThat(f.exists(), is(false));
+        moved.delete();
+    }
+
+    /**
+     * 一時ファイルに保存されていない場合、移動できないこと。
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testTransferNotSaved() {
+        new UploadHelper(PartInfo.newInstance("file")).transferTo("temp.dir", "hoge.txt");
+    }
+
     /**
      * アップロードファイルをバイト列に変換できること。
      *
@@ -84,6 +121,59 @@ public class UploadHelperTest extends TestSetUpper {
         assertThat(actual, is("fugafuga"));
     }
 
+    /**
+     * 最大バイト数を指定してアップロードファイルをバイト列に変換できること。
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testToByteArrayWithMaxSize() throws IOException {
+        File uploaded = testFileWriter.writeFile("fuga.txt", "fugafuga");
+        PartInfo part = PartInfo.newInstance("fuga");
+        part.setSavedFile(uploaded);
+        UploadHelper target = new UploadHelper(part);
+
+        assertThat(new String(target.toByteArray(8)), is("fugafuga"));
+        try {
+            target.toByteArray(7);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("size=[8] maxSize=[7]"));
+        }
+    }
+
+    /**
+     * アップロードファイルをByteBufferに変換できること。
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testToByteBuffer() throws IOException {
+        File uploaded = testFileWriter.writeFile("fuga.txt", "fugafuga");
+        PartInfo part = PartInfo.newInstance("fuga");
+        part.setSavedFile(uploaded);
+        UploadHelper target = new UploadHelper(part);
+
+        ByteBuffer buffer = target.toByteBuffer();
+        assertThat(new String(buffer.array(), 0, buffer.remaining()), is("fugafuga"));
+        assertThat(target.toByteBuffer(8).remaining(), is(8));
+
+        // メモリにマップしたバッファは読み取り専用であること
+        ByteBuffer mapped = target.toMappedByteBuffer();
+        assertThat(mapped.isReadOnly(), is(true));
+        byte[] actual = new byte[mapped.remaining()];
+        mapped.get(actual);
+        assertThat(new String(actual), is("fugafuga"));
+    }
+
+    /**
+     * 一時ファイルに保存されていない場合、メモリにマップできないこと。
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testToMappedByteBufferNotSaved() {
+        new UploadHelper(PartInfo.newInstance("fuga")).toMappedByteBuffer();
+    }
+
     /**
      * アップロードされたファイルが空の時、例外が発生すること。
      *
@@ -167,6 +257,89 @@ public class UploadHelperTest extends TestSetUpper {
         assertThat(second.getCity(), is("osaka"));
     }
 
+    /**
+     * 展開する設定の場合、gzip形式のアップロードファイルが展開されながらバリデーションされること。
+     *
+     * @throws Exception 予期しない例外
+     */
+    @Test
+    public void testDecompression() throws Exception {
+        File uploaded = tempFolder.newFile("fuga.dat");
+        GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(uploaded));
+        try {
+            out.write("1tokyo    2osaka    ".getBytes("ms932"));
+        } finally {
+            out.close();
+        }
+        PartInfo part = PartInfo.newInstance("fuga");
+        part.setSavedFile(uploaded);
+
+        BulkValidationResult<Form> result = new UploadHelper(part).setDecompression(true)
+                .applyFormat(FORMAT_BASE_PATH_NAME, "FMT001")
+                .validateAll(new SampleValidatingStrategy());
+        assertThat(result.getValidObjects().size(), is(2));
+        assertThat(result.getValidObjects().get(1).getCity(), is("osaka"));
+    }
+
+    /**
+     * フォーマット適用時に指定したアルゴリズムで、アップロードファイルのダイジェストが取得できること。
+     *
+     * @throws Exception 予期しない例外
+     */
+    @Test
+    public void testDigest() throws Exception {
+        String content = "1tokyo    2osaka    ";
+        File uploaded = testFileWriter.writeFile("fuga.txt", content);
+        PartInfo part = PartInfo.newInstance("fuga");
+        part.setSavedFile(uploaded);
+
+        UploadHelper target = new UploadHelper(part).setDigestAlgorithms("SHA-256");
+        BulkValidator validator = target.applyFormat(FORMAT_BASE_PATH_NAME, "FMT001");
+        BulkValidationResult<Form> result = validator.validateAll(new SampleValidatingStrategy());
+
+        String expected = BinaryUtil.convertToHexString(
+                MessageDigest.getInstance("SHA-256").digest(content.getBytes("UTF-8")));
+        assertThat(result.getDigest("SHA-256"), is(expected));
+        assertThat(validator.getDigest("SHA-256"), is(expected));
+        try {
+            result.getDigest("MD5");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("algorithm=[MD5]"));
+        }
+    }
+
+    /**
+     * バリデーションの進捗が通知されること。
+     *
+     * @throws IOException 予期しない例外
+     */
+    @Test
+    public void testProgressListener() throws IOException {
+        String content = "1tokyo    2osaka    ";
+        File uploaded = testFileWriter.writeFile("fuga.txt", content);
+        PartInfo part = PartInfo.newInstance("fuga");
+        part.setSavedFile(uploaded);
+
+        final List<UploadProgressEvent> events = new ArrayList<UploadProgressEvent>();
+        UploadHelper target = new UploadHelper(part);
+        target.applyFormat(FORMAT_BASE_PATH_NAME, "FMT001")
+              .setProgressListener(new UploadProgressListener() {
+                  public void onProgress(UploadProgressEvent event) {
+                      events.add(event);
+                  }
+              }, 1, 0L)
+              .validateAll(new SampleValidatingStrategy());
+
+        assertThat(events.size(), is(3));
+        assertThat(events.get(0).getProcessedCount(), is(1));
+        assertThat(events.get(0).getPhase(), is(UploadPhase.VALIDATION));
+        assertThat(events.get(0).getTotalBytes(), is((long) content.length()));
+        assertThat(events.get(2).getProcessedCount(), is(2));
+        assertThat(events.get(2).getErrorCount(), is(0));
+        assertThat(events.get(2).isCompleted(), is(true));
+    }
+
     /**
      * 精査が失敗した時、エラーメッセージが取得できること。
      *
@@ -209,6 +382,65 @@ public class UploadHelperTest extends TestSetUpper {
         }
     }
 
+    /**
+     * エラーメッセージを保持する行数の上限を超えた場合、件数のみ数えられること。
+     *
+     * @throws IOException 予期しない例外
+     */
+    @Test
+    public void testMaxRetainedErrorRecords() throws IOException {
+        File uploaded = testFileWriter.writeFile("fuga.txt", "1ab       Zosaka    ");
+        PartInfo part = PartInfo.newInstance("fuga");
+        part.setSavedFile(uploaded);
+
+        UploadHelper target = new UploadHelper(part);
+        BulkValidationResult<Form> result
+                = target.applyFormat(FORMAT_BASE_PATH_NAME, "FMT001")
+                        .setMaxRetainedErrorRecords(1)
+                        .validateAll(new SampleValidatingStrategy());
+
+        assertThat(result.hasError(), is(true));
+        assertThat(result.getErrorCount(), is(2));
+        ErrorMessages errorMessages = result.getErrorMessages();
+        assertThat(errorMessages.size(), is(1));
+        assertThat(errorMessages.get(1).get(0).getMessageId(), is("MSG00022"));
+        assertThat(errorMessages.getOmittedCount(), is(1));
+    }
+
+    /**
+     * 非同期に実行したジョブの進捗とエラーメッセージが取得できること。
+     *
+     * @throws Exception 予期しない例外
+     */
+    @Test
+    public void testUploadJob() throws Exception {
+        File uploaded = testFileWriter.writeFile("fuga.txt", "1tokyo    Zosaka    3nagoya   ");
+        PartInfo part = PartInfo.newInstance("fuga");
+        part.setSavedFile(uploaded);
+
+        UploadJobExecutor executor = new UploadJobExecutor();
+        try {
+            String jobId = executor.submit(part, new UploadJob() {
+                public void execute(UploadHelper helper) {
+                    helper.applyFormat(FORMAT_BASE_PATH_NAME, "FMT001")
+                          .validateAll(new SampleValidatingStrategy());
+                }
+            });
+            UploadJobStatus status = executor.getStatus(jobId);
+            for (int i = 0; i < 1000 && !status.getState().isFinished(); i++) {
+                Thread.sleep(10L);
+                status = executor.getStatus(jobId);
+            }
+            assertThat(status.getState(), is(UploadJobState.SUCCEEDED));
+            assertThat(status.getReadCount(), is(3));
+            assertThat(status.getValidCount(), is(2));
+            assertThat(status.getInvalidCount(), is(1));
+            assertThat(status.getErrorMessages().get(2).get(0).getMessageId(), is("MSG00001"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     /**
      * 精査済みオブジェクトを取得する際、精査エラーが１件でもある場合は、
      * 例外が発生すること。
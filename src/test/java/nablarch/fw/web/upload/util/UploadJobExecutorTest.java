@@ -0,0 +1,247 @@
+package nablarch.fw.web.upload.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.ThreadContext;
+import nablarch.fw.web.upload.PartInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+/**
+ * {@link UploadJobExecutor}のテストクラス。
+ */
+public class UploadJobExecutorTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private UploadJobExecutor target;
+
+    private InMemoryUploadJobStore store;
+
+    @Before
+    public void setUp() {
+        store = new InMemoryUploadJobStore();
+        target = new UploadJobExecutor();
+        target.setStore(store);
+        target.setProgressUpdateInterval(0L);
+    }
+
+    @After
+    public void tearDown() {
+        target.shutdown();
+        ThreadContext.clear();
+    }
+
+    /** ジョブが非同期に実行され、正常終了した状態が取得できること。 */
+    @Test
+    public void testSubmit() throws Exception {
+        PartInfo part = createPart("abc");
+        final String[] actual = new String[2];
+        final CountDownLatch done = new CountDownLatch(1);
+        ThreadContext.setUserId("user01");
+
+        String jobId = target.submit(part, new UploadJob() {
+            public void execute(UploadHelper helper) {
+                actual[0] = new String(helper.toByteArray());
+                actual[1] = ThreadContext.getUserId();
+                done.countDown();
+            }
+        });
+        // アップロードファイルは作業用ディレクトリへ移動されていること
+        assertThat(part.getSavedFile().exists(), is(false));
+
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        UploadJobStatus status = awaitFinished(jobId);
+        assertThat(status.getState(), is(UploadJobState.SUCCEEDED));
+        assertThat(status.getJobId(), is(jobId));
+        assertThat(status.getFailure(), is(nullValue()));
+        assertThat(status.getErrorMessages().isEmpty(), is(true));
+        // アップロードファイルの内容とスレッドコンテキストが引き継がれていること
+        assertThat(actual[0], is("abc"));
+        assertThat(actual[1], is("user01"));
+        // 作業用のファイルは削除されていること
+        assertThat(new File(System.getProperty("java.io.tmpdir"), "upload-job-" + jobId).exists(), is(false));
+    }
+
+    /** ジョブが例外を送出した場合、異常終了した状態が取得できること。 */
+    @Test
+    public void testFailed() throws Exception {
+        String jobId = target.submit(createPart("abc"), new UploadJob() {
+            public void execute(UploadHelper helper) {
+                throw new IllegalStateException("job error");
+            }
+        });
+        UploadJobStatus status = awaitFinished(jobId);
+        assertThat(status.getState(), is(UploadJobState.FAILED));
+        assertThat(status.getFailure(), containsString("job error"));
+        assertThat(status.getImportedCount(), is(0));
+    }
+
+    /** 途中でコミットした後に異常終了した場合、コミット済みのレコード数が取得できること。 */
+    @Test
+    public void testFailedAfterCommit() throws Exception {
+        String jobId = target.submit(createPart("abc"), new UploadJob() {
+            public void execute(UploadHelper helper) {
+                // チェックポイントごとのコミットを模擬する
+                UploadProgress progress = progressOf(helper);
+                progress.addImported(3);
+                progress.committed();
+                progress.addImported(2);
+                throw new IllegalStateException("job error");
+            }
+        });
+        UploadJobStatus status = awaitFinished(jobId);
+        assertThat(status.getState(), is(UploadJobState.FAILED));
+        assertThat(status.getImportedCount(), is(3));
+    }
+
+    /** 実行中のジョブの進捗が保存されること。 */
+    @Test
+    public void testProgress() throws Exception {
+        final CountDownLatch recorded = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        String jobId = target.submit(createPart("abc"), new UploadJob() {
+            public void execute(UploadHelper helper) {
+                // 進捗はUploadHelperから生成したBulkValidatorが記録する
+                UploadProgress progress = progressOf(helper);
+                progress.recordValid();
+                progress.recordValid();
+                progress.recordInvalid();
+                progress.addImported(2);
+                recorded.countDown();
+                await(finish);
+            }
+        });
+        assertThat(recorded.await(10, TimeUnit.SECONDS), is(true));
+        UploadJobStatus running = target.getStatus(jobId);
+        assertThat(running.getState(), is(UploadJobState.RUNNING));
+        assertThat(running.getReadCount(), is(3));
+        assertThat(running.getValidCount(), is(2));
+        assertThat(running.getInvalidCount(), is(1));
+        assertThat(running.getImportedCount(), is(2));
+        finish.countDown();
+
+        UploadJobStatus status = awaitFinished(jobId);
+        assertThat(status.getState(), is(UploadJobState.SUCCEEDED));
+        assertThat(status.getImportedCount(), is(2));
+    }
+
+    /** 実行待ちのジョブが上限に達している場合、ジョブを投入できないこと。 */
+    @Test
+    public void testRejected() throws Exception {
+        target.setPoolSize(1);
+        target.setQueueCapacity(1);
+        target.initialize();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        UploadJob blocking = new UploadJob() {
+            public void execute(UploadHelper helper) {
+                started.countDown();
+                await(finish);
+            }
+        };
+        String running = target.submit(createPart("1"), blocking);
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        String queued = target.submit(createPart("2"), blocking);
+        assertThat(target.getStatus(queued).getState(), is(UploadJobState.QUEUED));
+        PartInfo rejected = createPart("3");
+        try {
+            target.submit(rejected, blocking);
+            fail();
+        } catch (RejectedExecutionException e) {
+            // OK
+        }
+        finish.countDown();
+        assertThat(awaitFinished(running).getState(), is(UploadJobState.SUCCEEDED));
+        assertThat(awaitFinished(queued).getState(), is(UploadJobState.SUCCEEDED));
+    }
+
+    /** アップロードファイルが保存されていない場合、例外が送出されること。 */
+    @Test(expected = IllegalStateException.class)
+    public void testNotSaved() {
+        target.submit(PartInfo.newInstance("file"), new UploadJob() {
+            public void execute(UploadHelper helper) {
+            }
+        });
+    }
+
+    /** 存在しないジョブIDの場合は{@code null}が返却されること。 */
+    @Test
+    public void testUnknownJob() {
+        assertThat(target.getStatus("unknown"), is(nullValue()));
+    }
+
+    /** 保存件数の上限を超えた場合、古いジョブの状態から削除されること。 */
+    @Test
+    public void testInMemoryStoreMaxJobs() {
+        store.setMaxJobs(2);
+        store.save(new UploadJobStatus("1", "a", UploadJobState.QUEUED, 0, 0, 0, 0, null, null));
+        store.save(new UploadJobStatus("2", "b", UploadJobState.QUEUED, 0, 0, 0, 0, null, null));
+        store.save(new UploadJobStatus("1", "a", UploadJobState.RUNNING, 0, 0, 0, 0, null, null));
+        store.save(new UploadJobStatus("3", "c", UploadJobState.QUEUED, 0, 0, 0, 0, null, null));
+        assertThat(store.load("1"), is(nullValue()));
+        assertThat(store.load("2").getFileName(), is("b"));
+        assertThat(store.load("3").getFileName(), is("c"));
+        store.remove("2");
+        assertThat(store.load("2"), is(nullValue()));
+    }
+
+    private UploadJobStatus awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (System.currentTimeMillis() < deadline) {
+            UploadJobStatus status = target.getStatus(jobId);
+            if (status.getState().isFinished()) {
+                return status;
+            }
+            Thread.sleep(10L);
+        }
+        throw new AssertionError("job not finished. jobId=" + jobId);
+    }
+
+    private PartInfo createPart(String content) throws IOException {
+        File file = tempFolder.newFile("upload" + System.nanoTime() + ".txt");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        PartInfo part = PartInfo.newInstance("file");
+        part.setSavedFile(file);
+        return part;
+    }
+
+    private static UploadProgress progressOf(UploadHelper helper) {
+        try {
+            Field field = UploadHelper.class.getDeclaredField("progress");
+            field.setAccessible(true);
+            return (UploadProgress) field.get(helper);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
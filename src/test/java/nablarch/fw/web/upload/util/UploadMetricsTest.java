@@ -0,0 +1,163 @@
+package nablarch.fw.web.upload.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import nablarch.core.db.statement.ParameterizedSqlPStatement;
+import nablarch.core.message.ApplicationException;
+import nablarch.core.message.Message;
+import nablarch.core.message.MessageLevel;
+import nablarch.core.message.StringResource;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+/**
+ * {@link UploadMetrics}のテストクラス。
+ */
+public class UploadMetricsTest {
+
+    /** 処理区分ごとに処理時間と処理回数が加算されること。 */
+    @Test
+    public void testRecord() {
+        UploadMetrics target = new UploadMetrics("test.csv", new NopUploadMetricsListener());
+        target.record(UploadPhase.PARSE, 100L);
+        target.record(UploadPhase.PARSE, 200L);
+        target.record(UploadPhase.EXECUTE_BATCH, 1000L);
+
+        assertThat(target.getFileName(), is("test.csv"));
+        assertThat(target.getElapsedNanos(UploadPhase.PARSE), is(300L));
+        assertThat(target.getCount(UploadPhase.PARSE), is(2L));
+        assertThat(target.getElapsedNanos(UploadPhase.EXECUTE_BATCH), is(1000L));
+        assertThat(target.getCount(UploadPhase.EXECUTE_BATCH), is(1L));
+        assertThat(target.getElapsedNanos(UploadPhase.VALIDATION), is(0L));
+        assertThat(target.getCount(UploadPhase.VALIDATION), is(0L));
+        assertTrue(target.getWallClockNanos() >= 0L);
+    }
+
+    /** 計測開始時刻からの経過時間が加算されること。 */
+    @Test
+    public void testRecordSince() {
+        UploadMetrics target = new UploadMetrics("test.csv", new NopUploadMetricsListener());
+        target.recordSince(UploadPhase.VALIDATION, System.nanoTime());
+        assertThat(target.getCount(UploadPhase.VALIDATION), is(1L));
+        assertTrue(target.getElapsedNanos(UploadPhase.VALIDATION) >= 0L);
+    }
+
+    /** 処理の終了時に通知先が1回だけ呼び出されること。 */
+    @Test
+    public void testFinish() {
+        final List<UploadMetrics> notified = new ArrayList<UploadMetrics>();
+        UploadMetrics target = new UploadMetrics("test.csv", new UploadMetricsListener() {
+            public void onFinish(UploadMetrics metrics) {
+                notified.add(metrics);
+            }
+        });
+        target.finish();
+        target.finish();
+        assertThat(notified.size(), is(1));
+        assertThat(notified.get(0), is(target));
+    }
+
+    /** バリデーション済みオブジェクトがない場合も、一括登録の終了時に1回だけ通知されること。 */
+    @Test
+    public void testFinishOnEmptyImport() {
+        List<UploadMetrics> notified = new ArrayList<UploadMetrics>();
+        BulkValidationResult<String> result = new BulkValidationResult<String>(10);
+        result.setMetrics(new UploadMetrics("test.csv", collect(notified)));
+
+        assertThat(result.importAll(new InsertionStrategy<String>() {
+            public ParameterizedSqlPStatement prepareStatement(String form) {
+                throw new UnsupportedOperationException();
+            }
+
+            public void addBatch(ParameterizedSqlPStatement statement, String form) {
+                throw new UnsupportedOperationException();
+            }
+        }), is(0));
+        assertThat(notified.size(), is(1));
+        result.validationFinished();
+        result.close();
+        assertThat(notified.size(), is(1));
+    }
+
+    /** バリデーションエラーが発生した場合、一括バリデーションの終了時に1回だけ通知されること。 */
+    @Test
+    public void testFinishOnError() {
+        List<UploadMetrics> notified = new ArrayList<UploadMetrics>();
+        BulkValidationResult<String> result = new BulkValidationResult<String>(10);
+        result.setMetrics(new UploadMetrics("test.csv", collect(notified)));
+        result.addError(1, new Message(MessageLevel.ERROR, new StringResource() {
+            public String getId() {
+                return "MSG00001";
+            }
+
+            public String getValue(Locale locale) {
+                return "error";
+            }
+        }));
+
+        result.validationFinished();
+        assertThat(notified.size(), is(1));
+        try {
+            result.importAll(null);
+            fail();
+        } catch (ApplicationException e) {
+            assertThat(notified.size(), is(1));
+        }
+    }
+
+    /** 一括登録を行わない場合、クローズ時に通知されること。 */
+    @Test
+    public void testFinishOnClose() {
+        List<UploadMetrics> notified = new ArrayList<UploadMetrics>();
+        BulkValidationResult<String> result = new BulkValidationResult<String>(10);
+        result.addValidObject("a");
+        result.setMetrics(new UploadMetrics("test.csv", collect(notified)));
+
+        result.validationFinished();
+        assertThat(notified.size(), is(0));
+        result.close();
+        assertThat(notified.size(), is(1));
+    }
+
+    /** 全ての処理区分が「処理時間/処理回数」の形式で出力されること。 */
+    @Test
+    public void testLoggingFormat() {
+        UploadMetrics metrics = new UploadMetrics("test.csv", new NopUploadMetricsListener());
+        metrics.record(UploadPhase.PARSE, 5000000L);
+        metrics.record(UploadPhase.PARSE, 5000000L);
+        String line = new LoggingUploadMetricsListener().format(metrics);
+
+        assertThat(line, containsString("upload metrics. fileName=[test.csv] total=["));
+        assertThat(line, containsString(" PARSE=[10ms/2]"));
+        for (UploadPhase phase : UploadPhase.values()) {
+            assertThat(line, containsString(" " + phase.name() + "=["));
+        }
+        // ログ出力するだけで例外が発生しないこと
+        new LoggingUploadMetricsListener().onFinish(metrics);
+    }
+
+    /** 通知先が設定されていない場合、またはNop実装の場合は計測しないこと。 */
+    @Test
+    public void testCreateMetrics() {
+        assertThat(UploadMetrics.create("test.csv"), nullValue());
+        assertThat(UploadMetrics.create("test.csv", null), nullValue());
+        assertThat(UploadMetrics.create("test.csv", new NopUploadMetricsListener()), nullValue());
+        assertThat(UploadMetrics.create("test.csv", new LoggingUploadMetricsListener()).getFileName(), is("test.csv"));
+    }
+
+    private static UploadMetricsListener collect(final List<UploadMetrics> notified) {
+        return new UploadMetricsListener() {
+            public void onFinish(UploadMetrics metrics) {
+                notified.add(metrics);
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package nablarch.fw.web.upload.util;
+
+import nablarch.core.db.support.DbAccessSupport;
+import nablarch.core.message.ApplicationException;
+import nablarch.fw.web.upload.PartInfo;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ZipUploadHelper}のテストクラス。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class ZipUploadHelperTest extends TestSetUpper {
+
+    @Before
+    public void deleteTable() throws SQLException {
+        VariousDbTestHelper.delete(TestCities.class);
+    }
+
+    /** 並列にバリデーションした場合に、エントリ名と行番号で結果が取得できること。 */
+    @Test
+    public void testValidateInParallel() throws IOException {
+        PartInfo part = zip("a.txt", "1tokyo    2osaka    3kyoto    ",
+                "dir/", null,
+                "dir/b.txt", "4nara     5aa       Zkobe     ");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ZipValidationResult<Form> result = new ZipUploadHelper(part)
+                    .setValidationExecutor(executor)
+                    .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                    .validateWith(FORMAT_BASE_PATH_NAME, "FMT001", Form.class, "upload");
+
+            assertThat(result.getEntryNames(), is(Arrays.asList("a.txt", "dir/b.txt")));
+            assertThat(result.hasError(), is(true));
+            assertThat(result.getErrorCount(), is(2));
+            assertThat(result.getResult("a.txt").hasError(), is(false));
+            assertThat(result.getErrorMessages().keySet().toArray(), is(new Object[] {"dir/b.txt"}));
+            assertThat(result.getErrorMessages("dir/b.txt", 2).get(0).getMessageId(), is("MSG00099"));
+            assertThat(result.getErrorMessages("dir/b.txt", 3).get(0).getMessageId(), is("MSG00098"));
+            assertThat(result.getErrorMessages("a.txt", 2).isEmpty(), is(true));
+            assertThat(result.getErrorMessages("c.txt", 1).isEmpty(), is(true));
+            assertThat(result.getValidObject("a.txt", 2).getCity(), is("osaka"));
+            assertThat(result.getValidObject("dir/b.txt", 1).getCity(), is("nara"));
+            assertThat(result.getValidObject("dir/b.txt", 2), is(nullValue()));
+            assertThat(result.getAllMessages().size(), is(2));
+
+            try {
+                result.importWith(new DbAccessSupport(BasicValidatingStrategyTest.class), "INSERT_SQL");
+                fail();
+            } catch (ApplicationException e) {
+                assertThat(e.getMessages().size(), is(2));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /** 逐次バリデーションした全エントリが、エントリごとにコミットされながら登録されること。 */
+    @Test
+    public void testImportPerEntry() throws IOException {
+        PartInfo part = zip("a.txt", "1tokyo    2osaka    3kyoto    ",
+                "b.txt", "4nara     5kobe     ");
+        ZipValidationResult<Form> result = new ZipUploadHelper(part)
+                .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                .validateWith(FORMAT_BASE_PATH_NAME, "FMT001", Form.class, "upload");
+
+        int count = result.setCommitPerEntry(true)
+                .importWith(new DbAccessSupport(BasicValidatingStrategyTest.class), "INSERT_SQL");
+        tmConn.rollback();
+
+        assertThat(count, is(5));
+        List<TestCities> actual = VariousDbTestHelper.findAll(TestCities.class, "id");
+        assertThat(actual.size(), is(5));
+        assertThat(actual.get(3).city, is("nara"));
+    }
+
+    /** 空のエントリがある場合、例外が送出されること。 */
+    @Test
+    public void testEmptyEntry() throws IOException {
+        PartInfo part = zip("a.txt", "1tokyo    ", "empty.txt", "");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new ZipUploadHelper(part)
+                    .setValidationExecutor(executor)
+                    .setUpMessageIdOnError("MSG00098", "MSG00099", "MSG00100")
+                    .validateWith(FORMAT_BASE_PATH_NAME, "FMT001", Form.class, "upload");
+            fail();
+        } catch (ApplicationException e) {
+            assertThat(e.getMessages().get(0).getMessageId(), is("MSG00100"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /** 一時ファイルに保存されていない場合、例外が送出されること。 */
+    @Test
+    public void testNotSaved() {
+        try {
+            new ZipUploadHelper(PartInfo.newInstance("zip"))
+                    .validateWith(FORMAT_BASE_PATH_NAME, "FMT001", Form.class, "upload");
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().startsWith("upload file not saved yet."), is(true));
+        }
+    }
+
+    /**
+     * ZIPファイルを作成する。
+     *
+     * @param namesAndContents エントリ名と内容の組（内容が{@code null}の場合はディレクトリ）
+     * @return ZIPファイルを保存したパート
+     */
+    private PartInfo zip(String... namesAndContents) throws IOException {
+        File file = tempFolder.newFile("upload.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                out.putNextEntry(new ZipEntry(namesAndContents[i]));
+                if (namesAndContents[i + 1] != null) {
+                    out.write(namesAndContents[i + 1].getBytes("ms932"));
+                }
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        PartInfo part = PartInfo.newInstance("zip");
+        part.setSavedFile(file);
+        return part;
+    }
+}
@@ -10,3 +10,61 @@ VALUES
     :id,
     :city
     )
+
+MERGE_SQL =
+MERGE INTO
+    TEST_CITIES
+    (
+    ID,
+    CITY
+    )
+KEY
+    (
+    ID
+    )
+VALUES
+    (
+    :id,
+    :city
+    )
+
+SELECT_KEY_SQL =
+SELECT
+    ID
+FROM
+    TEST_CITIES
+WHERE
+    $if(keys) {ID IN (:keys[])}
+
+UPDATE_SQL =
+UPDATE
+    TEST_CITIES
+SET
+    CITY = :city
+WHERE
+    ID = :id
+
+SELECT_CITY_KEY_SQL =
+SELECT
+    CITY
+FROM
+    TEST_CITIES
+WHERE
+    $if(keys) {CITY IN (:keys[])}
+
+SELECT_ALL_COLUMNS_SQL =
+SELECT
+    ID,
+    CITY
+FROM
+    TEST_CITIES
+WHERE
+    $if(keys) {ID IN (:keys[])}
+
+UPDATE_BY_CITY_SQL =
+UPDATE
+    TEST_CITIES
+SET
+    ID = :id
+WHERE
+    CITY = :city